@@ -0,0 +1,145 @@
+package elevatorsimulator;
+
+/**
+ * Represents the arrival process of a building. The arrivals of all floors form a single non-homogeneous Poisson process,
+ * where the time of the next arrival is sampled from the total arrival rate of the building and the origin floor
+ * is then chosen weighted by the arrival rate of each floor. As the rate is constant within each interval of the traffic profile,
+ * the time of the next arrival is computed exactly by integrating the rate over the intervals.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class ArrivalProcess {
+	private final CompiledTrafficProfile trafficProfile;
+	private final long intervalLength;
+	private final double cycleArrivals;
+	
+	private long nextArrivalTime = -1;
+	private int nextArrivalInterval = -1;
+	
+	/**
+	 * Creates a new arrival process
+	 * @param trafficProfile The compiled traffic profile
+	 */
+	public ArrivalProcess(CompiledTrafficProfile trafficProfile) {
+		this.trafficProfile = trafficProfile;
+		this.intervalLength = trafficProfile.getTrafficProfile().length();
+		
+		double cycleArrivals = 0.0;
+		for (int i = 0; i < trafficProfile.getNumIntervals(); i++) {
+			cycleArrivals += trafficProfile.totalArrivalRate(i);
+		}
+		
+		this.cycleArrivals = cycleArrivals;
+	}
+	
+	/**
+	 * Returns the compiled traffic profile
+	 */
+	public CompiledTrafficProfile getTrafficProfile() {
+		return trafficProfile;
+	}
+	
+	/**
+	 * Returns the time of the next arrival, or -1 if not generated yet. Long.MAX_VALUE if there are no more arrivals.
+	 */
+	public long getNextArrivalTime() {
+		return nextArrivalTime;
+	}
+	
+	/**
+	 * Samples the time of the next arrival after the given time. The interval of the arrival is stored in nextArrivalInterval.
+	 * @param simulator The simulator
+	 * @param time The time
+	 */
+	private long sampleNextArrival(Simulator simulator, long time) {
+		if (this.cycleArrivals <= 0) {
+			this.nextArrivalInterval = -1;
+			return Long.MAX_VALUE;
+		}
+		
+		//The number of arrivals until the next arrival, in a process with unit rate
+		double arrivals = -Math.log(1.0 - simulator.getRandomStreams().nextArrivalTime());
+		
+		SimulatorClock clock = simulator.getClock();
+		long intervalStart = (time / this.intervalLength) * this.intervalLength;
+		int interval = this.trafficProfile.intervalIndex(time);
+		long start = time;
+		
+		while (true) {
+			long intervalEnd = intervalStart + this.intervalLength;
+			double rate = this.trafficProfile.totalArrivalRate(interval);
+			double intervalArrivals = rate * (clock.asSecond(intervalEnd - start) / 60.0);
+			
+			if (rate > 0 && intervalArrivals >= arrivals) {
+				this.nextArrivalInterval = interval;
+				return Math.min(start + clock.minutesToTime(arrivals / rate), intervalEnd - 1);
+			}
+			
+			arrivals -= intervalArrivals;
+			start = intervalEnd;
+			intervalStart = intervalEnd;
+			interval = (interval + 1) % this.trafficProfile.getNumIntervals();
+		}
+	}
+	
+	/**
+	 * Generates the arrival at the current time
+	 * @param simulator The simulator
+	 */
+	private void generateArrival(Simulator simulator) {
+		Building building = simulator.getBuilding();
+		RandomStreams randomStreams = simulator.getRandomStreams();
+		int originFloor = this.trafficProfile.sampleOrigin(this.nextArrivalInterval, randomStreams.nextOriginFloor());
+		int destinationFloor = this.trafficProfile.sampleDestination(
+			this.nextArrivalInterval,
+			originFloor,
+			randomStreams.nextDestinationFloor());
+		
+		Passenger newPassenger = new Passenger(
+			simulator.nextPassengerId(),
+			originFloor,
+			building.nextStop(originFloor, destinationFloor),
+			destinationFloor,
+			1,
+			simulator.getClock());
+		
+		building.getFloors()[originFloor].getWaitingQueue().add(newPassenger);
+		simulator.getControlSystem().handleHallCall(newPassenger);
+		
+		simulator.log(
+			"Generated passenger #" + newPassenger.getId() + " at floor "
+			+ originFloor + " with the destination: "
+			+ newPassenger.getFinalDestinationFloor() + ".");
+		
+		simulator.arrivalGenerated(newPassenger);
+	}
+	
+	/**
+	 * Generates the arrivals that have occurred up to the current time
+	 * @param simulator The simulator
+	 * @return The number of generated arrivals
+	 */
+	public int update(Simulator simulator) {
+		long timeNow = simulator.getClock().timeNow();
+		if (this.nextArrivalTime == -1) {
+			this.nextArrivalTime = this.sampleNextArrival(simulator, timeNow);
+		}
+		
+		int numArrivals = 0;
+		while (this.nextArrivalTime <= timeNow && simulator.canGenerateArrivals()) {
+			this.generateArrival(simulator);
+			this.nextArrivalTime = this.sampleNextArrival(simulator, this.nextArrivalTime);
+			numArrivals++;
+		}
+		
+		return numArrivals;
+	}
+	
+	/**
+	 * Resets the arrival process
+	 */
+	public void reset() {
+		this.nextArrivalTime = -1;
+		this.nextArrivalInterval = -1;
+	}
+}
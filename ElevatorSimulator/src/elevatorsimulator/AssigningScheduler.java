@@ -0,0 +1,18 @@
+package elevatorsimulator;
+
+/**
+ * Represents a scheduling algorithm that assigns each hall call to one elevator car when the call is made.
+ * Another scheduler can then choose the car of a call, and let this scheduler serve it.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public interface AssigningScheduler extends SchedulingAlgorithm {
+	/**
+	 * Assigns the given call to the given elevator car, instead of the car that the scheduler would choose.
+	 * The assignment event is emitted by the scheduler that chose the car, not by this scheduler.
+	 * @param simulator The simulator
+	 * @param passenger The passenger that made the call
+	 * @param elevatorCar The elevator car
+	 */
+	public void assignCall(Simulator simulator, Passenger passenger, ElevatorCar elevatorCar);
+}
@@ -1,12 +1,28 @@
 package elevatorsimulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
 /**
- * Represents a building
+ * Represents a building. The elevator cars of the building are divided into banks, where each bank serves a set of floors.
+ * Passengers whose destination is not served by a bank on their floor travel via transfer floors, such as sky lobbies.
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  *
  */
 public class Building {
 	private final Floor[] floors;
 	private final ElevatorCar[] elevatorCars;
+	private final ElevatorBank[] banks;
+	private final ElevatorBank bank;
+	private final Floor[] servedFloors;
+	private final int totalNumberOfResidents;
+	private final ArrivalProcess arrivalProcess;
+	
+	private final ElevatorBank[] elevatorCarToBank;
+	private final int[][] nextStop;
+	private final ElevatorBank[][] routeBank;
 	
 	/**
 	 * The lobby floor
@@ -14,23 +30,186 @@ public class Building {
 	public static final int LOBBY = 0;
 	
 	/**
-	 * Creates a new building
+	 * Creates a new building with one bank that serves all floors
 	 * @param floors The floors
 	 * @param numElevatorCars The number of elevator cars
 	 * @param startFloor The start floor for the elevator cars
 	 * @param elevatorCarConfiguration The configuration for the elevator cars
+	 * @param trafficProfile The traffic profile compiled for the floors
+	 */
+	public Building(Floor[] floors, int numElevatorCars, int startFloor, ElevatorCarConfiguration elevatorCarConfiguration,
+		CompiledTrafficProfile trafficProfile) {
+		this(floors, singleBank(floors, numElevatorCars, startFloor, elevatorCarConfiguration), trafficProfile);
+	}
+	
+	/**
+	 * Creates a new building with the given banks
+	 * @param floors The floors
+	 * @param bankConfigurations The configurations of the banks
+	 * @param trafficProfile The traffic profile compiled for the floors
 	 */
-	public Building(Floor[] floors, int numElevatorCars, int startFloor, ElevatorCarConfiguration elevatorCarConfiguration) {
+	public Building(Floor[] floors, ElevatorBankConfiguration[] bankConfigurations, CompiledTrafficProfile trafficProfile) {
 		if (floors.length < 2) {
 			throw new IllegalArgumentException("The number of floors in the building must be >= 2.");
 		}
 		
+		if (bankConfigurations.length == 0) {
+			throw new IllegalArgumentException("The building must have at least one elevator bank.");
+		}
+		
+		if (trafficProfile.getNumFloors() != floors.length) {
+			throw new IllegalArgumentException("The traffic profile must be compiled for the floors of the building.");
+		}
+		
 		this.floors = floors;
+		this.bank = null;
+		this.servedFloors = floors;
+		this.totalNumberOfResidents = totalNumberOfResidents(floors);
+		this.arrivalProcess = new ArrivalProcess(trafficProfile);
 		
-		this.elevatorCars = new ElevatorCar[numElevatorCars];
-		for (int i = 0; i < this.elevatorCars.length; i++) {
-			this.elevatorCars[i] = new ElevatorCar(i, startFloor, elevatorCarConfiguration);
+		List<ElevatorCar> elevatorCars = new ArrayList<ElevatorCar>();
+		this.banks = new ElevatorBank[bankConfigurations.length];
+		for (int i = 0; i < this.banks.length; i++) {
+			this.banks[i] = new ElevatorBank(i, bankConfigurations[i], floors.length, elevatorCars.size());
+			elevatorCars.addAll(Arrays.asList(this.banks[i].getElevatorCars()));
+		}
+		
+		this.elevatorCars = elevatorCars.toArray(new ElevatorCar[elevatorCars.size()]);
+		this.elevatorCarToBank = new ElevatorBank[this.elevatorCars.length];
+		for (ElevatorBank bank : this.banks) {
+			for (ElevatorCar elevatorCar : bank.getElevatorCars()) {
+				this.elevatorCarToBank[elevatorCar.getId()] = bank;
+			}
+		}
+		
+		this.nextStop = new int[floors.length][floors.length];
+		this.routeBank = new ElevatorBank[floors.length][floors.length];
+		this.computeRoutes();
+	}
+	
+	/**
+	 * Creates a view of the given building that only contains the elevator cars of the given bank
+	 * @param building The building
+	 * @param bank The bank
+	 */
+	private Building(Building building, ElevatorBank bank) {
+		this.floors = building.floors;
+		this.elevatorCars = bank.getElevatorCars();
+		this.banks = new ElevatorBank[] { bank };
+		this.bank = bank;
+		this.elevatorCarToBank = building.elevatorCarToBank;
+		this.nextStop = building.nextStop;
+		this.routeBank = building.routeBank;
+		this.totalNumberOfResidents = building.totalNumberOfResidents;
+		this.arrivalProcess = building.arrivalProcess;
+		
+		this.servedFloors = new Floor[bank.getServedFloors().length];
+		for (int i = 0; i < this.servedFloors.length; i++) {
+			this.servedFloors[i] = this.floors[bank.getServedFloors()[i]];
+		}
+	}
+	
+	/**
+	 * Returns the configuration of a bank that serves all the given floors
+	 * @param floors The floors
+	 * @param numElevatorCars The number of elevator cars
+	 * @param startFloor The start floor for the elevator cars
+	 * @param elevatorCarConfiguration The configuration for the elevator cars
+	 */
+	private static ElevatorBankConfiguration[] singleBank(Floor[] floors, int numElevatorCars, int startFloor,
+		ElevatorCarConfiguration elevatorCarConfiguration) {
+		if (floors.length < 2) {
+			throw new IllegalArgumentException("The number of floors in the building must be >= 2.");
 		}
+		
+		return new ElevatorBankConfiguration[] {
+			new ElevatorBankConfiguration(
+				"Main",
+				ElevatorBankConfiguration.floorRange(0, floors.length - 1),
+				numElevatorCars,
+				startFloor,
+				elevatorCarConfiguration)
+		};
+	}
+	
+	/**
+	 * Computes the route between each pair of floors, using as few elevator rides as possible.
+	 * When several banks give equally short routes, the bank that serves the fewest floors is used,
+	 * which makes passengers take the express shuttles to the sky lobbies.
+	 */
+	private void computeRoutes() {
+		int numFloors = this.floors.length;
+		ElevatorBank[] banksBySize = this.banks.clone();
+		Arrays.sort(banksBySize, new Comparator<ElevatorBank>() {
+			@Override
+			public int compare(ElevatorBank x, ElevatorBank y) {
+				return Integer.compare(x.getServedFloors().length, y.getServedFloors().length);
+			}
+		});
+		
+		int[] previous = new int[numFloors];
+		ElevatorBank[] previousBank = new ElevatorBank[numFloors];
+		int[] queue = new int[numFloors];
+		
+		for (int origin = 0; origin < numFloors; origin++) {
+			//Breadth-first search where each ride with a bank is one step
+			Arrays.fill(previous, -1);
+			previous[origin] = origin;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = origin;
+			
+			while (head < tail) {
+				int floor = queue[head++];
+				for (ElevatorBank bank : banksBySize) {
+					if (!bank.serves(floor)) {
+						continue;
+					}
+					
+					for (int nextFloor : bank.getServedFloors()) {
+						if (previous[nextFloor] == -1) {
+							previous[nextFloor] = floor;
+							previousBank[nextFloor] = bank;
+							queue[tail++] = nextFloor;
+						}
+					}
+				}
+			}
+			
+			for (int destination = 0; destination < numFloors; destination++) {
+				if (destination == origin || previous[destination] == -1) {
+					this.nextStop[origin][destination] = -1;
+					continue;
+				}
+				
+				int stop = destination;
+				while (previous[stop] != origin) {
+					stop = previous[stop];
+				}
+				
+				this.nextStop[origin][destination] = stop;
+				this.routeBank[origin][destination] = previousBank[stop];
+			}
+		}
+		
+		//Check that all the floors that generates traffic can be reached
+		for (Floor from : this.floors) {
+			for (Floor to : this.floors) {
+				if (from != to && isTrafficFloor(from) && isTrafficFloor(to)
+					&& this.nextStop[from.getFloorNumber()][to.getFloorNumber()] == -1) {
+					throw new IllegalArgumentException("There is no route from floor " + from.getFloorNumber()
+						+ " to floor " + to.getFloorNumber() + ".");
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Indicates if passengers can travel from or to the given floor
+	 * @param floor The floor
+	 */
+	private static boolean isTrafficFloor(Floor floor) {
+		return floor.getFloorNumber() == LOBBY || floor.getNumResidents() > 0;
 	}
 	
 	/**
@@ -47,7 +226,15 @@ public class Building {
 	public Floor[] getFloors() {
 		return floors;
 	}
-
+	
+	/**
+	 * Returns the floors served by the elevator cars. For a bank view these are the floors served by the bank,
+	 * otherwise all the floors.
+	 */
+	public Floor[] getServedFloors() {
+		return servedFloors;
+	}
+	
 	/**
 	 * Returns the elevator cars
 	 */
@@ -56,28 +243,128 @@ public class Building {
 	}
 	
 	/**
-	 * Returns the total number of residents
+	 * Returns the banks
 	 */
-	public int getTotalNumberOfResidents() {
+	public ElevatorBank[] getBanks() {
+		return banks;
+	}
+	
+	/**
+	 * Indicates if the building is a view of a single bank
+	 */
+	public boolean isBankView() {
+		return this.bank != null;
+	}
+	
+	/**
+	 * Creates a view of the building that only contains the elevator cars of the given bank.
+	 * Schedulers created for the view only see and command the cars of the bank.
+	 * @param bank The bank
+	 */
+	public Building createBankView(ElevatorBank bank) {
+		return new Building(this, bank);
+	}
+	
+	/**
+	 * Returns the bank that the given elevator car belongs to
+	 * @param elevatorCar The elevator car
+	 */
+	public ElevatorBank getBank(ElevatorCar elevatorCar) {
+		return this.elevatorCarToBank[elevatorCar.getId()];
+	}
+	
+	/**
+	 * Returns the bank that the given waiting passenger will travel with
+	 * @param passenger The passenger
+	 */
+	public ElevatorBank getBank(Passenger passenger) {
+		return this.routeBank[passenger.getArrivalFloor()][passenger.getFinalDestinationFloor()];
+	}
+	
+	/**
+	 * Returns the floor where a passenger on the given floor with the given destination leaves the next elevator car.
+	 * This is either the destination or a transfer floor.
+	 * @param floor The floor
+	 * @param destinationFloor The destination floor
+	 */
+	public int nextStop(int floor, int destinationFloor) {
+		return this.nextStop[floor][destinationFloor];
+	}
+	
+	/**
+	 * Returns the lobby. For a bank view this is the lowest floor served by the bank.
+	 */
+	public int getLobby() {
+		if (this.bank != null) {
+			return this.bank.getLowestFloor();
+		}
+		
+		return LOBBY;
+	}
+	
+	/**
+	 * Returns the total number of residents on the given floors
+	 * @param floors The floors
+	 */
+	private static int totalNumberOfResidents(Floor[] floors) {
 		int total = 0;
 		
-		for (Floor floor : this.floors) {
+		for (Floor floor : floors) {
 			total += floor.getNumResidents();
 		}
 		
 		return total;
 	}
 	
+	/**
+	 * Returns the arrival process
+	 */
+	public ArrivalProcess getArrivalProcess() {
+		return this.arrivalProcess;
+	}
+	
+	/**
+	 * Returns the total number of residents
+	 */
+	public int getTotalNumberOfResidents() {
+		return this.totalNumberOfResidents;
+	}
+	
 	/**
 	 * Updates the building
 	 * @param simulator The simulator
 	 * @param The elapsed time since the last time step
 	 */
 	public void update(Simulator simulator, long duration) {
+		this.updateFloors(simulator, duration);
+		this.updateArrivals(simulator);
+		this.updateElevatorCars(simulator);
+	}
+	
+	/**
+	 * Updates the floors, which lets the waiting passengers board
+	 * @param simulator The simulator
+	 * @param The elapsed time since the last time step
+	 */
+	public void updateFloors(Simulator simulator, long duration) {
 		for (int i = 0; i < this.floors.length; i++) {
 			this.floors[i].update(simulator, duration);
 		}
-		
+	}
+	
+	/**
+	 * Generates the arrivals of the time step
+	 * @param simulator The simulator
+	 */
+	public void updateArrivals(Simulator simulator) {
+		this.arrivalProcess.update(simulator);
+	}
+	
+	/**
+	 * Updates the elevator cars
+	 * @param simulator The simulator
+	 */
+	public void updateElevatorCars(Simulator simulator) {
 		for (int i = 0; i < this.elevatorCars.length; i++) {
 			this.elevatorCars[i].update(simulator);
 		}
@@ -91,6 +378,8 @@ public class Building {
 			floor.reset();
 		}
 		
+		this.arrivalProcess.reset();
+		
 		for (ElevatorCar elevator : this.elevatorCars) {
 			elevator.reset();
 		}
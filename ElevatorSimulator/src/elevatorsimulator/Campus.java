@@ -0,0 +1,259 @@
+package elevatorsimulator;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import elevatorsimulator.schedulers.ThreePassageGroupElevator;
+
+/**
+ * Simulates a campus of buildings, where each building has its own simulator, scheduler and random generator.
+ * The buildings are advanced in parallel on a pool of worker threads, and are synchronized at the end of each
+ * stats interval where the campus statistics are combined.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class Campus {
+	private final String name;
+	private final Simulator[] simulators;
+	private final SimulatorStats[] buildingStats;
+	private final boolean[] finished;
+	private final int numThreads;
+	
+	private final SimulatorClock clock;
+	private final SimulatorStats stats;
+	private boolean exportStats = true;
+	private int numCombinedIntervals = 0;
+	
+	/**
+	 * Creates a new campus that uses a worker thread for each processor
+	 * @param scenarios The scenario for each building
+	 * @param settings The settings
+	 * @param schedulerCreator The scheduler creator
+	 * @param randSeed The random seed
+	 */
+	public Campus(Scenario[] scenarios, SimulatorSettings settings, SchedulerCreator schedulerCreator, long randSeed) {
+		this(scenarios, settings, schedulerCreator, randSeed, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Creates a new campus
+	 * @param scenarios The scenario for each building
+	 * @param settings The settings
+	 * @param schedulerCreator The scheduler creator
+	 * @param randSeed The random seed. Each building gets its own seed derived from it.
+	 * @param numThreads The number of worker threads
+	 */
+	public Campus(Scenario[] scenarios, SimulatorSettings settings, SchedulerCreator schedulerCreator, long randSeed,
+		int numThreads) {
+		if (scenarios.length == 0) {
+			throw new IllegalArgumentException("The campus must have at least one building.");
+		}
+		
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("The number of threads must be >= 1.");
+		}
+		
+		if (randSeed == -1) {
+			randSeed = System.currentTimeMillis();
+		}
+		
+		this.numThreads = numThreads;
+		this.simulators = new Simulator[scenarios.length];
+		this.buildingStats = new SimulatorStats[scenarios.length];
+		this.finished = new boolean[scenarios.length];
+		Building[] buildings = new Building[scenarios.length];
+		
+		for (int i = 0; i < scenarios.length; i++) {
+			this.simulators[i] = new Simulator(scenarios[i], settings, schedulerCreator, RandomStreams.streamSeed(randSeed, i));
+			this.simulators[i].setExportStats(false);
+			this.buildingStats[i] = this.simulators[i].getStats();
+			buildings[i] = this.simulators[i].getBuilding();
+		}
+		
+		this.name = "Campus-" + scenarios.length + "-" + this.simulators[0].getControlSystem().getSchedulerName();
+		this.clock = new SimulatorClock(settings.getTimeStep());
+		this.stats = new SimulatorStats(this.clock, buildings);
+	}
+	
+	/**
+	 * Returns the name of the simulation
+	 */
+	public String getSimulationName() {
+		return this.name;
+	}
+	
+	/**
+	 * Returns the simulators for the buildings
+	 */
+	public Simulator[] getSimulators() {
+		return simulators;
+	}
+	
+	/**
+	 * Returns the combined statistics for the campus. These are updated at the end of each stats interval.
+	 */
+	public SimulatorStats getStats() {
+		return stats;
+	}
+	
+	/**
+	 * Returns the number of worker threads
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	/**
+	 * Indicates if the stats are exported
+	 */
+	public boolean isExportStats() {
+		return exportStats;
+	}
+	
+	/**
+	 * Sets if the stats are exported
+	 * @param exportStats The export stats state
+	 */
+	public void setExportStats(boolean exportStats) {
+		this.exportStats = exportStats;
+	}
+	
+	/**
+	 * Indicates if all the buildings are finished
+	 */
+	private boolean allFinished() {
+		for (boolean buildingFinished : this.finished) {
+			if (!buildingFinished) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Advances the given building until it has completed the given stats interval, or the simulation is finished
+	 * @param building The index of the building
+	 * @param interval The index of the interval
+	 */
+	private void advanceBuilding(int building, int interval) {
+		Simulator simulator = this.simulators[building];
+		
+		while (simulator.getStats().getStatsIntervals().size() <= interval) {
+			if (!simulator.advance()) {
+				this.finished[building] = true;
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Combines the stats of the buildings for the intervals that all the buildings have completed
+	 */
+	private void combineStats() {
+		while (this.stats.combineInterval(this.buildingStats, this.numCombinedIntervals)) {
+			this.numCombinedIntervals++;
+			
+			//Wait for the interval to be completed by the buildings that are still running
+			if (!this.allFinished()) {
+				break;
+			}
+		}
+		
+		this.stats.combineGlobal(this.buildingStats);
+		
+		long simulatedTime = 0;
+		for (Simulator simulator : this.simulators) {
+			simulatedTime = Math.max(simulatedTime, simulator.getClock().simulatedTime());
+		}
+		
+		while (this.clock.simulatedTime() < simulatedTime) {
+			this.clock.step();
+		}
+	}
+	
+	/**
+	 * Runs the simulation
+	 */
+	public void run() {
+		System.out.println(new Date() + ": Campus simulation started.");
+		
+		List<Callable<Void>> buildingUpdates = new ArrayList<Callable<Void>>();
+		final int[] interval = new int[1];
+		for (int i = 0; i < this.simulators.length; i++) {
+			final int building = i;
+			this.simulators[i].start();
+			buildingUpdates.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					advanceBuilding(building, interval[0]);
+					return null;
+				}
+			});
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(this.numThreads);
+		
+		try {
+			while (!this.allFinished()) {
+				//The buildings are synchronized when all of them have completed the interval
+				for (Future<Void> update : executor.invokeAll(buildingUpdates)) {
+					update.get();
+				}
+				
+				this.combineStats();
+				interval[0]++;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+		
+		System.out.println(new Date() + ": Campus simulation finished.");
+		System.out.println("--------------------" + this.name + "--------------------");
+		this.printStats();
+	}
+	
+	/**
+	 * Prints the statistics
+	 */
+	public void printStats() {
+		this.stats.printStats();
+		
+		if (this.isExportStats()) {
+			this.stats.exportStats(this.getSimulationName());
+		}
+	}
+	
+	public static void main(String[] args) {
+		SchedulerCreator creator = new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new ThreePassageGroupElevator(building);
+			}
+		};
+		
+		Scenario[] scenarios = new Scenario[24];
+		for (int i = 0; i < scenarios.length; i++) {
+			scenarios[i] = i % 2 == 0 ? Scenarios.createMediumBuilding(2) : Scenarios.createLargeBuilding(3);
+		}
+		
+		Campus campus = new Campus(
+			scenarios,
+			new SimulatorSettings(0.01, 24 * 60 * 60),
+			creator,
+			1337);
+		
+		campus.run();
+	}
+}
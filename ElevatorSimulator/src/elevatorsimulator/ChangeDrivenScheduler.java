@@ -0,0 +1,50 @@
+package elevatorsimulator;
+
+import java.util.EnumSet;
+
+/**
+ * Represents a scheduling algorithm that only needs to be updated when something it depends on has changed.
+ * The control system skips the update of the scheduler in the time steps where none of its events have occurred,
+ * which requires that an update without any such event would not command any elevator car.
+ * Schedulers that do not implement this interface are updated every time step.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public interface ChangeDrivenScheduler extends SchedulingAlgorithm {
+	/**
+	 * The events that can cause an update of the scheduler
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static enum Event {
+		/**
+		 * A passenger has made a hall call
+		 */
+		HALL_CALL,
+		
+		/**
+		 * A passenger has boarded an elevator car
+		 */
+		BOARDING,
+		
+		/**
+		 * A passenger has exited an elevator car
+		 */
+		EXIT,
+		
+		/**
+		 * An elevator car has changed state
+		 */
+		STATE_CHANGED,
+		
+		/**
+		 * A moving elevator car has passed a floor
+		 */
+		FLOOR_PASSED
+	}
+	
+	/**
+	 * Returns the events after which the scheduler must be updated
+	 */
+	public EnumSet<Event> getUpdateEvents();
+}
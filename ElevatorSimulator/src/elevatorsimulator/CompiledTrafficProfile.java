@@ -0,0 +1,186 @@
+package elevatorsimulator;
+
+/**
+ * Represents a traffic profile compiled for the floors of a scenario. The arrival rates of the building and of each floor,
+ * and the cumulative distributions of the origin and destination floors, are computed once for each interval and stored
+ * in flat arrays, which makes generating an arrival an array lookup. The profile is never changed after it has been created,
+ * which means that it can be shared by all the simulators and threads that simulate the scenario.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class CompiledTrafficProfile {
+	private final TrafficProfile trafficProfile;
+	private final int numFloors;
+	private final int numIntervals;
+	
+	private final double[] arrivalRates;
+	private final double[] totalArrivalRates;
+	private final double[] originCdfs;
+	private final double[] destinationCdfs;
+	
+	/**
+	 * Compiles the given traffic profile
+	 * @param trafficProfile The traffic profile
+	 * @param floorResidents The residents on each floor
+	 */
+	public CompiledTrafficProfile(TrafficProfile trafficProfile, int[] floorResidents) {
+		if (floorResidents.length < 2) {
+			throw new IllegalArgumentException("The number of floors must be >= 2.");
+		}
+		
+		this.trafficProfile = trafficProfile;
+		this.numFloors = floorResidents.length;
+		this.numIntervals = trafficProfile.numIntervals();
+		this.arrivalRates = new double[this.numIntervals * this.numFloors];
+		this.totalArrivalRates = new double[this.numIntervals];
+		this.originCdfs = new double[this.numIntervals * this.numFloors];
+		this.destinationCdfs = new double[this.numIntervals * this.numFloors * (this.numFloors - 1)];
+		
+		int totalResidents = 0;
+		for (int numResidents : floorResidents) {
+			totalResidents += numResidents;
+		}
+		
+		double lengthInMinutes = trafficProfile.lengthInMinutes();
+		for (int i = 0; i < this.numIntervals; i++) {
+			TrafficProfile.Interval interval = trafficProfile.getInterval(i);
+			double totalArrivalRate = 0.0;
+			
+			for (int floor = 0; floor < this.numFloors; floor++) {
+				double arrivalRate = interval.averageNumberOfArrivals(totalResidents, floor, floorResidents[floor]) / lengthInMinutes;
+				this.arrivalRates[i * this.numFloors + floor] = arrivalRate;
+				totalArrivalRate += arrivalRate;
+				this.originCdfs[i * this.numFloors + floor] = totalArrivalRate;
+				
+				int cdfStart = this.cdfStart(i, floor);
+				double cumulative = 0.0;
+				for (int k = 0; k < this.numFloors - 1; k++) {
+					int destinationFloor = destinationFloor(floor, k);
+					cumulative += interval.destinationFloorProbability(
+						totalResidents,
+						floor,
+						floorResidents[floor],
+						destinationFloor,
+						floorResidents[destinationFloor]);
+					
+					this.destinationCdfs[cdfStart + k] = cumulative;
+				}
+			}
+			
+			this.totalArrivalRates[i] = totalArrivalRate;
+		}
+	}
+	
+	/**
+	 * Returns the index of the first value in the given range of a cumulative distribution that is above the given value
+	 * @param cdf The cumulative distribution
+	 * @param start The start of the range
+	 * @param end The end of the range (exclusive)
+	 * @param value The value
+	 */
+	private static int search(double[] cdf, int start, int end, double value) {
+		int low = start;
+		int high = end - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (value < cdf[mid]) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * Returns the start of the destination distribution for the given interval and floor
+	 * @param interval The index of the interval
+	 * @param floor The floor
+	 */
+	private int cdfStart(int interval, int floor) {
+		return (interval * this.numFloors + floor) * (this.numFloors - 1);
+	}
+	
+	/**
+	 * Returns the destination floor for the given index in the destination distribution of the given floor
+	 * @param floor The arrival floor
+	 * @param index The index in the distribution, which skips the arrival floor
+	 */
+	private static int destinationFloor(int floor, int index) {
+		return index < floor ? index : index + 1;
+	}
+	
+	/**
+	 * Returns the traffic profile
+	 */
+	public TrafficProfile getTrafficProfile() {
+		return trafficProfile;
+	}
+	
+	/**
+	 * Returns the number of floors
+	 */
+	public int getNumFloors() {
+		return numFloors;
+	}
+	
+	/**
+	 * Returns the number of intervals
+	 */
+	public int getNumIntervals() {
+		return numIntervals;
+	}
+	
+	/**
+	 * Returns the index of the interval at the given time
+	 * @param time The time
+	 */
+	public int intervalIndex(long time) {
+		return this.trafficProfile.intervalIndex(time);
+	}
+	
+	/**
+	 * Returns the average number of arrivals per minute for the given floor
+	 * @param interval The index of the interval
+	 * @param floor The floor
+	 */
+	public double arrivalRate(int interval, int floor) {
+		return this.arrivalRates[interval * this.numFloors + floor];
+	}
+	
+	/**
+	 * Returns the average number of arrivals per minute in the whole building
+	 * @param interval The index of the interval
+	 */
+	public double totalArrivalRate(int interval) {
+		return this.totalArrivalRates[interval];
+	}
+	
+	/**
+	 * Returns the origin floor for an arrival in the building, where each floor is weighted by its arrival rate
+	 * @param interval The index of the interval
+	 * @param randomValue A uniform random value in [0, 1)
+	 */
+	public int sampleOrigin(int interval, double randomValue) {
+		int start = interval * this.numFloors;
+		return search(this.originCdfs, start, start + this.numFloors, randomValue * this.totalArrivalRates[interval]) - start;
+	}
+	
+	/**
+	 * Returns the destination floor for an arrival at the given floor
+	 * @param interval The index of the interval
+	 * @param floor The arrival floor
+	 * @param randomValue A uniform random value in [0, 1)
+	 */
+	public int sampleDestination(int interval, int floor, double randomValue) {
+		int start = this.cdfStart(interval, floor);
+		int end = start + this.numFloors - 1;
+		
+		if (!(randomValue < this.destinationCdfs[end - 1])) {
+			throw new IllegalStateException("The probabilities of the values do not add up to 1.");
+		}
+		
+		return destinationFloor(floor, search(this.destinationCdfs, start, end, randomValue) - start);
+	}
+}
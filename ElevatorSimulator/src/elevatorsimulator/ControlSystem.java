@@ -1,16 +1,31 @@
 package elevatorsimulator;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
+import elevatorsimulator.ChangeDrivenScheduler.Event;
+
 /**
- * Represents the control system for the elevator
+ * Represents the control system for the elevator. Each bank of elevator cars has its own scheduler and hall queue.
+ * The events of each bank are tracked, so that change-driven schedulers are only updated when one of their events has occurred.
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  *
  */
 public class ControlSystem {
 	private final Simulator simulator;
+	private final Building building;
 	private final Queue<Passenger> hallCallQueue = new LinkedList<Passenger>();
-	private final SchedulingAlgorithm scheduler;
+	private final SchedulingAlgorithm[] schedulers;
+	private final List<Queue<Passenger>> bankHallCallQueues = new ArrayList<Queue<Passenger>>();
+	
+	private final int[] updateEvents;
+	private final int[] occurredEvents;
+	
+	/**
+	 * The update events of a scheduler that is updated every time step
+	 */
+	private static final int EVERY_TIME_STEP = -1;
 	
 	/**
 	 * Creates a new control system for the given simulator
@@ -18,26 +33,104 @@ public class ControlSystem {
 	 * @param The scheduler
 	 */
 	public ControlSystem(Simulator simulator, SchedulingAlgorithm scheduler) {
+		this(simulator, new SchedulingAlgorithm[] { scheduler });
+	}
+	
+	/**
+	 * Creates a new control system for the given simulator
+	 * @param simulator The simulator
+	 * @param schedulers The scheduler for each bank
+	 */
+	public ControlSystem(Simulator simulator, SchedulingAlgorithm[] schedulers) {
 		this.simulator = simulator;
-		this.scheduler = scheduler;
+		this.building = simulator.getBuilding();
+		this.schedulers = schedulers;
+		this.updateEvents = new int[schedulers.length];
+		this.occurredEvents = new int[schedulers.length];
+		
+		if (schedulers.length != this.building.getBanks().length) {
+			throw new IllegalArgumentException("There must be one scheduler for each elevator bank.");
+		}
+		
+		for (int i = 0; i < schedulers.length; i++) {
+			//With one bank, the bank queue is the same as the hall queue
+			if (schedulers.length == 1) {
+				this.bankHallCallQueues.add(this.hallCallQueue);
+			} else {
+				this.bankHallCallQueues.add(new LinkedList<Passenger>());
+			}
+			
+			this.updateEvents[i] = updateEvents(schedulers[i]);
+			this.occurredEvents[i] = EVERY_TIME_STEP;
+		}
 		
-		for (ElevatorCar elevator : simulator.getBuilding().getElevatorCars()) {
+		for (ElevatorCar elevator : this.building.getElevatorCars()) {
 			this.elevatorIdle(elevator);
 		}
 	}
 	
 	/**
-	 * Returns the scheduler
+	 * Returns the events after which the given scheduler must be updated, as a bit mask
+	 * @param scheduler The scheduler
+	 */
+	private static int updateEvents(SchedulingAlgorithm scheduler) {
+		if (!(scheduler instanceof ChangeDrivenScheduler)) {
+			return EVERY_TIME_STEP;
+		}
+		
+		int events = 0;
+		for (Event event : ((ChangeDrivenScheduler)scheduler).getUpdateEvents()) {
+			events |= 1 << event.ordinal();
+		}
+		
+		return events;
+	}
+	
+	/**
+	 * Marks that the given event has occurred in the given bank
+	 * @param bank The bank
+	 * @param event The event
+	 */
+	private void eventOccurred(ElevatorBank bank, Event event) {
+		this.occurredEvents[bank.getId()] |= 1 << event.ordinal();
+	}
+	
+	/**
+	 * Indicates if the scheduler of the given bank needs to be updated
+	 * @param bank The index of the bank
+	 */
+	private boolean needsUpdate(int bank) {
+		return this.updateEvents[bank] == EVERY_TIME_STEP || (this.updateEvents[bank] & this.occurredEvents[bank]) != 0;
+	}
+	
+	/**
+	 * Returns the scheduler. With several banks, this is the scheduler of the first bank.
 	 */
 	public SchedulingAlgorithm getScheduler() {
-		return this.scheduler;
+		return this.schedulers[0];
+	}
+	
+	/**
+	 * Returns the scheduler for the given bank
+	 * @param bank The bank
+	 */
+	public SchedulingAlgorithm getScheduler(ElevatorBank bank) {
+		return this.schedulers[bank.getId()];
 	}
 	
 	/**
 	 * Returns the name of the scheduler
 	 */
 	public String getSchedulerName() {
-		return this.scheduler.toString();
+		String name = this.schedulers[0].toString();
+		
+		for (int i = 1; i < this.schedulers.length; i++) {
+			if (!this.schedulers[i].toString().equals(this.schedulers[0].toString())) {
+				name += "+" + this.schedulers[i].toString();
+			}
+		}
+		
+		return name;
 	}
 	
 	/**
@@ -47,13 +140,50 @@ public class ControlSystem {
 		return this.hallCallQueue;
 	}
 	
+	/**
+	 * Returns the queue for the passengers waiting to be handled by the given bank
+	 * @param bank The bank
+	 */
+	public Queue<Passenger> getHallQueue(ElevatorBank bank) {
+		return this.bankHallCallQueues.get(bank.getId());
+	}
+	
+	/**
+	 * Returns the queue for the passengers waiting to be handled by the elevator cars in the given building.
+	 * For a bank view, this is the queue of the bank.
+	 * @param building The building
+	 */
+	public Queue<Passenger> getHallQueue(Building building) {
+		if (building.isBankView()) {
+			return this.getHallQueue(building.getBanks()[0]);
+		}
+		
+		return this.hallCallQueue;
+	}
+	
 	/**
 	 * Handles the given hall call
 	 * @param passenger The passenger that made the call
 	 */
 	public void handleHallCall(Passenger passenger) {
+		ElevatorBank bank = this.building.getBank(passenger);
 		this.hallCallQueue.add(passenger);
-		this.scheduler.passengerArrived(this.simulator, passenger);
+		
+		if (this.schedulers.length > 1) {
+			this.getHallQueue(bank).add(passenger);
+		}
+		
+		this.eventOccurred(bank, Event.HALL_CALL);
+		SimulatorEvents.passengerArrived(this.simulator, passenger);
+		SchedulingAlgorithm scheduler = this.getScheduler(bank);
+		PhaseTimer phaseTimer = this.simulator.getPhaseTimer();
+		if (phaseTimer != null) {
+			long startTime = System.nanoTime();
+			scheduler.passengerArrived(this.simulator, passenger);
+			phaseTimer.record(PhaseTimer.Phase.PASSENGER_ARRIVED, startTime);
+		} else {
+			scheduler.passengerArrived(this.simulator, passenger);
+		}
 	}
 	
 	/**
@@ -62,8 +192,24 @@ public class ControlSystem {
 	 * @param passenger The passenger
 	 */
 	public void hallCallHandled(ElevatorCar elevatorCar, Passenger passenger) {
+		ElevatorBank bank = this.building.getBank(elevatorCar);
 		this.hallCallQueue.remove(passenger);
-		this.scheduler.passengerBoarded(this.simulator, elevatorCar, passenger);
+		
+		if (this.schedulers.length > 1) {
+			this.getHallQueue(bank).remove(passenger);
+		}
+		
+		this.eventOccurred(bank, Event.BOARDING);
+		SimulatorEvents.passengerBoarded(this.simulator, elevatorCar, passenger);
+		SchedulingAlgorithm scheduler = this.getScheduler(bank);
+		PhaseTimer phaseTimer = this.simulator.getPhaseTimer();
+		if (phaseTimer != null) {
+			long startTime = System.nanoTime();
+			scheduler.passengerBoarded(this.simulator, elevatorCar, passenger);
+			phaseTimer.record(PhaseTimer.Phase.PASSENGER_BOARDED, startTime);
+		} else {
+			scheduler.passengerBoarded(this.simulator, elevatorCar, passenger);
+		}
 	}
 	
 	/**
@@ -72,7 +218,34 @@ public class ControlSystem {
 	 * @param passenger The passenger
 	 */
 	public void passengerExited(ElevatorCar elevatorCar, Passenger passenger) {
-		this.scheduler.passengerExited(this.simulator, elevatorCar, passenger);
+		ElevatorBank bank = this.building.getBank(elevatorCar);
+		this.eventOccurred(bank, Event.EXIT);
+		SimulatorEvents.passengerExited(this.simulator, elevatorCar, passenger);
+		SchedulingAlgorithm scheduler = this.getScheduler(bank);
+		PhaseTimer phaseTimer = this.simulator.getPhaseTimer();
+		if (phaseTimer != null) {
+			long startTime = System.nanoTime();
+			scheduler.passengerExited(this.simulator, elevatorCar, passenger);
+			phaseTimer.record(PhaseTimer.Phase.PASSENGER_EXITED, startTime);
+		} else {
+			scheduler.passengerExited(this.simulator, elevatorCar, passenger);
+		}
+	}
+	
+	/**
+	 * Marks that the given elevator car has changed state
+	 * @param elevatorCar The elevator car
+	 */
+	public void elevatorStateChanged(ElevatorCar elevatorCar) {
+		this.eventOccurred(this.building.getBank(elevatorCar), Event.STATE_CHANGED);
+	}
+	
+	/**
+	 * Marks that the given elevator car has passed a floor
+	 * @param elevatorCar The elevator car
+	 */
+	public void elevatorPassedFloor(ElevatorCar elevatorCar) {
+		this.eventOccurred(this.building.getBank(elevatorCar), Event.FLOOR_PASSED);
 	}
 	
 	/**
@@ -80,7 +253,15 @@ public class ControlSystem {
 	 * @param elevator The elevator car
 	 */
 	public void elevatorIdle(ElevatorCar elevatorCar) {
-		this.scheduler.onIdle(simulator, elevatorCar);
+		SchedulingAlgorithm scheduler = this.getScheduler(this.building.getBank(elevatorCar));
+		PhaseTimer phaseTimer = this.simulator.getPhaseTimer();
+		if (phaseTimer != null) {
+			long startTime = System.nanoTime();
+			scheduler.onIdle(this.simulator, elevatorCar);
+			phaseTimer.record(PhaseTimer.Phase.ON_IDLE, startTime);
+		} else {
+			scheduler.onIdle(this.simulator, elevatorCar);
+		}
 	}
 	
 	/**
@@ -88,15 +269,29 @@ public class ControlSystem {
  	 * @param elevatorCar The elevator car
 	 */
 	public void elevatorTurned(ElevatorCar elevatorCar) {
-		this.scheduler.onTurned(simulator, elevatorCar);
+		SchedulingAlgorithm scheduler = this.getScheduler(this.building.getBank(elevatorCar));
+		PhaseTimer phaseTimer = this.simulator.getPhaseTimer();
+		if (phaseTimer != null) {
+			long startTime = System.nanoTime();
+			scheduler.onTurned(this.simulator, elevatorCar);
+			phaseTimer.record(PhaseTimer.Phase.ON_TURNED, startTime);
+		} else {
+			scheduler.onTurned(this.simulator, elevatorCar);
+		}
 	}
 	
 	/**
-	 * Updates the control system
+	 * Updates the control system. The schedulers that do not need to be updated are skipped.
 	 * @param duration The elapsed time since the last time step
 	 */
-	public void update(long duration) {		
-		this.scheduler.update(simulator);
+	public void update(long duration) {
+		for (int i = 0; i < this.schedulers.length; i++) {
+			if (this.needsUpdate(i)) {
+				//The events are cleared before the update, which makes the commands of the scheduler cause a new update
+				this.occurredEvents[i] = 0;
+				this.schedulers[i].update(simulator);
+			}
+		}
 	}
 	
 	/**
@@ -104,5 +299,13 @@ public class ControlSystem {
 	 */
 	public void reset() {
 		this.hallCallQueue.clear();
+		
+		for (Queue<Passenger> queue : this.bankHallCallQueues) {
+			queue.clear();
+		}
+		
+		for (int i = 0; i < this.occurredEvents.length; i++) {
+			this.occurredEvents[i] = EVERY_TIME_STEP;
+		}
 	}
 }
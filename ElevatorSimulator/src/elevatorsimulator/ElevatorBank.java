@@ -0,0 +1,108 @@
+package elevatorsimulator;
+
+/**
+ * Represents a bank of elevator cars that serves a set of floors.
+ * An express shuttle is a bank that only serves a lobby and a sky lobby.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class ElevatorBank {
+	private final int id;
+	private final ElevatorBankConfiguration configuration;
+	private final ElevatorCar[] elevatorCars;
+	private final boolean[] serves;
+	
+	/**
+	 * Creates a new elevator bank
+	 * @param id The id of the bank
+	 * @param configuration The configuration
+	 * @param numFloors The number of floors in the building
+	 * @param firstElevatorCarId The id of the first elevator car in the bank
+	 */
+	public ElevatorBank(int id, ElevatorBankConfiguration configuration, int numFloors, int firstElevatorCarId) {
+		this.id = id;
+		this.configuration = configuration;
+		this.serves = new boolean[numFloors];
+		
+		for (int floor : configuration.getServedFloors()) {
+			if (floor < 0 || floor >= numFloors) {
+				throw new IllegalArgumentException("The bank '" + configuration.getName() + "' serves the floor " + floor
+					+ " that does not exist.");
+			}
+			
+			this.serves[floor] = true;
+		}
+		
+		this.elevatorCars = new ElevatorCar[configuration.getNumElevatorCars()];
+		for (int i = 0; i < this.elevatorCars.length; i++) {
+			this.elevatorCars[i] = new ElevatorCar(
+				firstElevatorCarId + i,
+				i,
+				configuration.getStartFloor(),
+				configuration.getElevatorCarConfiguration());
+		}
+	}
+	
+	/**
+	 * Returns the id of the bank
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Returns the name of the bank
+	 */
+	public String getName() {
+		return this.configuration.getName();
+	}
+	
+	/**
+	 * Returns the configuration
+	 */
+	public ElevatorBankConfiguration getConfiguration() {
+		return configuration;
+	}
+	
+	/**
+	 * Returns the elevator cars
+	 */
+	public ElevatorCar[] getElevatorCars() {
+		return elevatorCars;
+	}
+	
+	/**
+	 * Returns the served floors, in increasing order
+	 */
+	public int[] getServedFloors() {
+		return this.configuration.getServedFloors();
+	}
+	
+	/**
+	 * Indicates if the bank serves the given floor
+	 * @param floor The floor
+	 */
+	public boolean serves(int floor) {
+		return this.serves[floor];
+	}
+	
+	/**
+	 * Returns the lowest floor served by the bank
+	 */
+	public int getLowestFloor() {
+		return this.configuration.getServedFloors()[0];
+	}
+	
+	/**
+	 * Returns the highest floor served by the bank
+	 */
+	public int getHighestFloor() {
+		int[] servedFloors = this.configuration.getServedFloors();
+		return servedFloors[servedFloors.length - 1];
+	}
+	
+	@Override
+	public String toString() {
+		return this.getName();
+	}
+}
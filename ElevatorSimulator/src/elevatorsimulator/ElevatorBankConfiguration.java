@@ -0,0 +1,118 @@
+package elevatorsimulator;
+
+/**
+ * Represents the configuration of a bank of elevator cars
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class ElevatorBankConfiguration {
+	private final String name;
+	private final int[] servedFloors;
+	private final int numElevatorCars;
+	private final int startFloor;
+	private final ElevatorCarConfiguration elevatorCarConfiguration;
+	
+	/**
+	 * Creates a new elevator bank configuration
+	 * @param name The name of the bank
+	 * @param servedFloors The floors served by the bank, in increasing order
+	 * @param numElevatorCars The number of elevator cars
+	 * @param startFloor The start floor for the elevator cars
+	 * @param elevatorCarConfiguration The configuration for the elevator cars
+	 */
+	public ElevatorBankConfiguration(String name, int[] servedFloors, int numElevatorCars, int startFloor,
+		ElevatorCarConfiguration elevatorCarConfiguration) {
+		if (servedFloors.length < 2) {
+			throw new IllegalArgumentException("An elevator bank must serve at least two floors.");
+		}
+		
+		for (int i = 1; i < servedFloors.length; i++) {
+			if (servedFloors[i] <= servedFloors[i - 1]) {
+				throw new IllegalArgumentException("The served floors must be in increasing order.");
+			}
+		}
+		
+		this.name = name;
+		this.servedFloors = servedFloors;
+		this.numElevatorCars = numElevatorCars;
+		this.startFloor = startFloor;
+		this.elevatorCarConfiguration = elevatorCarConfiguration;
+	}
+	
+	/**
+	 * Creates a new elevator bank configuration where the cars start at the lowest served floor
+	 * @param name The name of the bank
+	 * @param servedFloors The floors served by the bank, in increasing order
+	 * @param numElevatorCars The number of elevator cars
+	 * @param elevatorCarConfiguration The configuration for the elevator cars
+	 */
+	public ElevatorBankConfiguration(String name, int[] servedFloors, int numElevatorCars,
+		ElevatorCarConfiguration elevatorCarConfiguration) {
+		this(name, servedFloors, numElevatorCars, servedFloors[0], elevatorCarConfiguration);
+	}
+	
+	/**
+	 * Returns the floors between the given floors (inclusive)
+	 * @param minFloor The min floor
+	 * @param maxFloor The max floor
+	 */
+	public static int[] floorRange(int minFloor, int maxFloor) {
+		int[] floors = new int[maxFloor - minFloor + 1];
+		for (int i = 0; i < floors.length; i++) {
+			floors[i] = minFloor + i;
+		}
+		
+		return floors;
+	}
+	
+	/**
+	 * Returns the lobby together with the floors between the given floors (inclusive)
+	 * @param lobby The lobby
+	 * @param minFloor The min floor
+	 * @param maxFloor The max floor
+	 */
+	public static int[] floorRange(int lobby, int minFloor, int maxFloor) {
+		int[] floors = new int[maxFloor - minFloor + 2];
+		floors[0] = lobby;
+		for (int i = 1; i < floors.length; i++) {
+			floors[i] = minFloor + i - 1;
+		}
+		
+		return floors;
+	}
+	
+	/**
+	 * Returns the name
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the served floors
+	 */
+	public int[] getServedFloors() {
+		return servedFloors;
+	}
+	
+	/**
+	 * Returns the number of elevator cars
+	 */
+	public int getNumElevatorCars() {
+		return numElevatorCars;
+	}
+	
+	/**
+	 * Returns the start floor for the elevator cars
+	 */
+	public int getStartFloor() {
+		return startFloor;
+	}
+	
+	/**
+	 * Returns the configuration for the elevator cars
+	 */
+	public ElevatorCarConfiguration getElevatorCarConfiguration() {
+		return elevatorCarConfiguration;
+	}
+}
@@ -1,21 +1,29 @@
 package elevatorsimulator;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 
 /**
- * Represents an elevator car
+ * Represents an elevator car.
+ * The car keeps the floors where it must stop: the destinations of its passengers,
+ * and the stops for hall calls that schedulers have added, for each direction.
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  *
  */
 public class ElevatorCar {
 	private int id;
+	private final int index;
+	private final int startFloor;
 	
 	private int floor;
 	private Direction direction;
 	private int destinationFloor;
 	
 	private final List<Passenger> passengers;
+	private final BitSet carCalls = new BitSet();
+	private final BitSet upStops = new BitSet();
+	private final BitSet downStops = new BitSet();
 	
 	private final ElevatorCarConfiguration configuration;
 	
@@ -33,8 +41,43 @@ public class ElevatorCar {
 		TURNING
 	}
 	
+	/**
+	 * Listens to the commands given to an elevator car by a scheduler
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static interface CommandListener {
+		/**
+		 * Marks that the given elevator car has been commanded to move towards the given floor
+		 * @param elevatorCar The elevator car
+		 * @param targetFloor The floor to move towards
+		 */
+		void movedTowards(ElevatorCar elevatorCar, int targetFloor);
+		
+		/**
+		 * Marks that a stop for a hall call has been added to the given elevator car
+		 * @param elevatorCar The elevator car
+		 * @param floor The floor
+		 * @param direction The direction of the hall call
+		 */
+		void stopAdded(ElevatorCar elevatorCar, int floor, Direction direction);
+		
+		/**
+		 * Marks that a stop for a hall call has been removed from the given elevator car
+		 * @param elevatorCar The elevator car
+		 * @param floor The floor
+		 * @param direction The direction of the hall call
+		 */
+		void stopRemoved(ElevatorCar elevatorCar, int floor, Direction direction);
+		
+		/**
+		 * Marks that all stops for hall calls have been removed from the given elevator car
+		 * @param elevatorCar The elevator car
+		 */
+		void hallStopsCleared(ElevatorCar elevatorCar);
+	}
+	
 	private State state = State.IDLE;
-	private boolean stopAtNext = false;
 	private long lastMovement;			
 	private long stopStartTime;
 	private long startStartTime;
@@ -45,6 +88,7 @@ public class ElevatorCar {
 	private Direction prevDirection;
 	
 	private long numPassengers;
+	private CommandListener commandListener;
 	
 	/**
 	 * Creates a new elevator
@@ -53,7 +97,20 @@ public class ElevatorCar {
 	 * @param configuration The configuration
 	 */
 	public ElevatorCar(int id, int startFloor, ElevatorCarConfiguration configuration) {
+		this(id, id, startFloor, configuration);
+	}
+	
+	/**
+	 * Creates a new elevator in a bank
+	 * @param id The id of the elevator
+	 * @param index The index of the elevator in its bank
+	 * @param startFloor The start floor
+	 * @param configuration The configuration
+	 */
+	public ElevatorCar(int id, int index, int startFloor, ElevatorCarConfiguration configuration) {
 		this.id = id;
+		this.index = index;
+		this.startFloor = startFloor;
 		this.floor = startFloor;
 		this.direction = Direction.NONE;
 		this.passengers = new ArrayList<Passenger>();
@@ -67,6 +124,13 @@ public class ElevatorCar {
 		return id;
 	}
 	
+	/**
+	 * Returns the index of the elevator in its bank
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
 	/**
 	 * Returns the floor
 	 */
@@ -117,6 +181,13 @@ public class ElevatorCar {
 		return passengers.isEmpty();
 	}
 	
+	/**
+	 * Returns the configuration
+	 */
+	public ElevatorCarConfiguration getConfiguration() {
+		return configuration;
+	}
+	
 	/**
 	 * Returns the number of passengers handled
 	 */
@@ -124,6 +195,41 @@ public class ElevatorCar {
 		return numPassengers;
 	}
 
+	/**
+	 * Returns the time when the elevator car last passed a floor, or started moving
+	 */
+	public long getLastMovementTime() {
+		return this.lastMovement;
+	}
+	
+	/**
+	 * Returns the time when the elevator car started to slow down
+	 */
+	public long getStopStartTime() {
+		return this.stopStartTime;
+	}
+	
+	/**
+	 * Returns the time when the elevator car started to accelerate
+	 */
+	public long getStartStartTime() {
+		return this.startStartTime;
+	}
+	
+	/**
+	 * Returns the time when the doors last started to close
+	 */
+	public long getDoorStartTime() {
+		return this.intervalEnterStart;
+	}
+	
+	/**
+	 * Returns the time when the elevator car started to turn
+	 */
+	public long getTurnStartTime() {
+		return this.turnStartTime;
+	}
+	
 	/**
 	 * Returns the next floor the elevator will be on. 
 	 * If the elevator is not traveling, the current floor is returned.
@@ -143,24 +249,43 @@ public class ElevatorCar {
 	}
 	
 	/**
-	 * Stops the elevator
+	 * Changes the state of the elevator car and marks the change in the control system
 	 * @param simulator The simulator
+	 * @param state The new state
 	 */
-	public void stopElevator(Simulator simulator) {
-		simulator.elevatorDebugLog(id, "Starts to slow down.");
-		this.stopStartTime = simulator.getClock().timeNow();
-		this.state = State.DECELERATING;
+	private void changeState(Simulator simulator, State state) {
+		State previousState = this.state;
+		this.state = state;
+		SimulatorEvents.elevatorStateChanged(simulator, this, previousState);
+		
+		//The control system is not created yet when the initial idle actions are executed
+		ControlSystem controlSystem = simulator.getControlSystem();
+		if (controlSystem != null) {
+			controlSystem.elevatorStateChanged(this);
+		}
 	}
 	
 	/**
-	 * Stops the elevator at the next floor
+	 * Marks in the control system that the elevator car has passed a floor
+	 * @param simulator The simulator
 	 */
-	public void stopElevatorAtNextFloor() {
-		if (this.passengers.size() < this.configuration.getCapacity()) {
-			this.stopAtNext = true;
+	private void floorPassed(Simulator simulator) {
+		ControlSystem controlSystem = simulator.getControlSystem();
+		if (controlSystem != null) {
+			controlSystem.elevatorPassedFloor(this);
 		}
 	}
 	
+	/**
+	 * Stops the elevator
+	 * @param simulator The simulator
+	 */
+	public void stopElevator(Simulator simulator) {
+		simulator.elevatorDebugLog(id, "Starts to slow down.");
+		this.stopStartTime = simulator.getClock().timeNow();
+		this.changeState(simulator, State.DECELERATING);
+	}
+	
 	/**
 	 * Indicates if the elevator has stopped
 	 * @param simulator The simulator
@@ -183,7 +308,7 @@ public class ElevatorCar {
 	public void startElevator(Simulator simulator) {
 		simulator.elevatorDebugLog(this.id, "Starts accelerating the elevator.");
 		this.startStartTime = simulator.getClock().timeNow();
-		this.state = State.ACCELERATING;
+		this.changeState(simulator, State.ACCELERATING);
 	}
 	
 	/**
@@ -216,7 +341,7 @@ public class ElevatorCar {
 	 */
 	public void turnElevator(Simulator simulator) {
 		if (this.direction != Direction.NONE) {
-			this.state = State.TURNING;
+			this.changeState(simulator, State.TURNING);
 			this.turnStartTime = simulator.getClock().timeNow();
 			this.direction = this.direction.oppositeDir();
 		}
@@ -237,6 +362,175 @@ public class ElevatorCar {
 		}
 	}
 	
+	/**
+	 * Returns the stops for hall calls in the given direction, or null if no direction
+	 * @param direction The direction
+	 */
+	private BitSet getStops(Direction direction) {
+		if (direction == Direction.UP) {
+			return this.upStops;
+		} else if (direction == Direction.DOWN) {
+			return this.downStops;
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Adds a stop for a hall call. The elevator car stops at the floor when it passes it in the given direction,
+	 * unless it is full. If the car travels in the given direction and the floor is beyond its destination,
+	 * the destination is extended to the floor. An idle car is not started by this.
+	 * @param floor The floor
+	 * @param direction The direction of the hall call
+	 */
+	public void addStop(int floor, Direction direction) {
+		BitSet stops = this.getStops(direction);
+		if (stops == null) {
+			throw new IllegalArgumentException("The direction of a stop must be up or down.");
+		}
+		
+		if (this.commandListener != null) {
+			this.commandListener.stopAdded(this, floor, direction);
+		}
+		
+		stops.set(floor);
+		
+		if (this.state != State.IDLE && this.direction == direction) {
+			if (direction == Direction.UP && floor > this.destinationFloor) {
+				this.destinationFloor = floor;
+			} else if (direction == Direction.DOWN && floor < this.destinationFloor) {
+				this.destinationFloor = floor;
+			}
+		}
+	}
+	
+	/**
+	 * Removes the stop for a hall call
+	 * @param floor The floor
+	 * @param direction The direction of the hall call
+	 */
+	public void removeStop(int floor, Direction direction) {
+		if (this.commandListener != null) {
+			this.commandListener.stopRemoved(this, floor, direction);
+		}
+		
+		BitSet stops = this.getStops(direction);
+		if (stops != null) {
+			stops.clear(floor);
+		}
+	}
+	
+	/**
+	 * Removes all stops for hall calls
+	 */
+	public void clearHallStops() {
+		if (this.commandListener != null) {
+			this.commandListener.hallStopsCleared(this);
+		}
+		
+		this.upStops.clear();
+		this.downStops.clear();
+	}
+	
+	/**
+	 * Indicates if the elevator car stops at the given floor when passing it in the given direction,
+	 * either for a passenger inside or for a hall call
+	 * @param floor The floor
+	 * @param direction The direction
+	 */
+	public boolean hasStop(int floor, Direction direction) {
+		BitSet stops = this.getStops(direction);
+		return this.carCalls.get(floor) || (stops != null && stops.get(floor));
+	}
+	
+	/**
+	 * Indicates if a passenger inside the elevator car has the given floor as destination
+	 * @param floor The floor
+	 */
+	public boolean hasCarCall(int floor) {
+		return this.carCalls.get(floor);
+	}
+	
+	/**
+	 * Indicates if the elevator car has any stops for hall calls
+	 */
+	public boolean hasHallStops() {
+		return !this.upStops.isEmpty() || !this.downStops.isEmpty();
+	}
+	
+	/**
+	 * Clears the stops on the current floor whose hall calls have been served,
+	 * which are the stops where no passenger of the bank waits in the direction of the stop
+	 * @param simulator The simulator
+	 */
+	private void clearServedStops(Simulator simulator) {
+		if (!this.upStops.get(this.floor) && !this.downStops.get(this.floor)) {
+			return;
+		}
+		
+		Building building = simulator.getBuilding();
+		ElevatorBank bank = building.getBank(this);
+		boolean waitingUp = false;
+		boolean waitingDown = false;
+		for (Passenger passenger : building.getFloors()[this.floor].getWaitingQueue()) {
+			if (building.getBank(passenger) == bank) {
+				if (passenger.getDirection() == Direction.UP) {
+					waitingUp = true;
+				} else if (passenger.getDirection() == Direction.DOWN) {
+					waitingDown = true;
+				}
+			}
+		}
+		
+		if (!waitingUp) {
+			this.upStops.clear(this.floor);
+		}
+		
+		if (!waitingDown) {
+			this.downStops.clear(this.floor);
+		}
+	}
+	
+	/**
+	 * Starts the empty elevator car towards the closest stop for a hall call, preferring the current direction at ties
+	 * @param simulator The simulator
+	 * @return True if the car was started
+	 */
+	private boolean continueToClosestStop(Simulator simulator) {
+		//The hall calls on the current floor that are still waiting are served by waiting here
+		this.clearServedStops(simulator);
+		if (this.upStops.get(this.floor) || this.downStops.get(this.floor)) {
+			return false;
+		}
+		
+		if (!this.hasHallStops()) {
+			return false;
+		}
+		
+		//There are no stops on the current floor, so these are the closest stops above and below
+		int upAbove = this.upStops.nextSetBit(this.floor);
+		int downAbove = this.downStops.nextSetBit(this.floor);
+		int above = upAbove == -1 || downAbove == -1 ? Math.max(upAbove, downAbove) : Math.min(upAbove, downAbove);
+		int below = Math.max(this.upStops.previousSetBit(this.floor), this.downStops.previousSetBit(this.floor));
+		
+		int targetFloor;
+		if (above == -1) {
+			targetFloor = below;
+		} else if (below == -1) {
+			targetFloor = above;
+		} else if (above - this.floor != this.floor - below) {
+			targetFloor = above - this.floor < this.floor - below ? above : below;
+		} else {
+			targetFloor = this.direction == Direction.DOWN ? below : above;
+		}
+		
+		simulator.elevatorDebugLog(this.id, "Continues to the stop at floor " + targetFloor + ".");
+		this.destinationFloor = targetFloor;
+		this.direction = Direction.getDirection(this.floor, targetFloor);
+		this.startElevator(simulator);
+		return true;
+	}
+	
 	/**
 	 * Updates the elevator car
 	 * @param The simulator
@@ -258,19 +552,17 @@ public class ElevatorCar {
 					}
 					
 					this.lastMovement = timeNow;
+					this.floorPassed(simulator);
 					
-					//Check if to stop
-					if (this.stopAtNext) {
-						this.stopElevator(simulator);
-						this.stopAtNext = false;
-					}
+					//Check if a hall call is waiting in the direction of travel. The stop is cleared when the call is served.
+					BitSet stops = this.getStops(this.direction);
+					boolean stop = stops != null && stops.get(this.floor)
+						&& (this.canPickupPassenger() || this.carCalls.get(this.floor));
 					
 					//Check if any passenger wants to go off
-					for (Passenger passenger : new LinkedList<Passenger>(this.passengers)) {
-						if (this.floor == passenger.getDestinationFloor()) {
-							this.stopElevator(simulator);
-							return;
-						}
+					if (this.carCalls.get(this.floor)) {
+						this.stopElevator(simulator);
+						return;
 					}
 					
 					//If the destination floor has been reached, stop.
@@ -278,6 +570,8 @@ public class ElevatorCar {
 						this.stopElevator(simulator);
 						simulator.elevatorDebugLog(id, "Terminated movement at floor " + this.floor + ".");
 						this.direction = Direction.NONE;
+					} else if (stop) {
+						this.stopElevator(simulator);
 					}
 				}
 			}
@@ -286,14 +580,18 @@ public class ElevatorCar {
 			{
 				//Let of passengers if the current floor is their destination
 				boolean leaved = false;
-				for (Passenger passenger : new LinkedList<Passenger>(this.passengers)) {
-					if (this.floor == passenger.getDestinationFloor()) {
-						simulator.elevatorLog(this.id, "Passenger #" + passenger.getId() + " exited at floor " + this.floor + ".");
-						simulator.log("Passenger #" + passenger.getId() + " stats: " + passenger.getStats(simulator.getClock()) + ".");
-						simulator.passengerExited(this, passenger);
-						this.passengers.remove(passenger);
-						leaved = true;
+				if (this.carCalls.get(this.floor)) {
+					for (Passenger passenger : new LinkedList<Passenger>(this.passengers)) {
+						if (this.floor == passenger.getDestinationFloor()) {
+							simulator.elevatorLog(this.id, "Passenger #" + passenger.getId() + " exited at floor " + this.floor + ".");
+							simulator.log("Passenger #" + passenger.getId() + " stats: " + passenger.getStats(simulator.getClock()) + ".");
+							simulator.passengerExited(this, passenger);
+							this.passengers.remove(passenger);
+							leaved = true;
+						}
 					}
+					
+					this.carCalls.clear(this.floor);
 				}
 				
 				if (this.passengers.size() > 0) {
@@ -301,9 +599,14 @@ public class ElevatorCar {
 						this.beginDoorTime(simulator);
 					}
 				} else {
+					//If there are stops left for hall calls, continue to the closest
+					if (this.continueToClosestStop(simulator)) {
+						return;
+					}
+					
 					//If there are no more passengers, the elevator is idle and waits on the floor.
 					this.direction = Direction.NONE;
-					this.state = State.IDLE;
+					this.changeState(simulator, State.IDLE);
 					simulator.getControlSystem().elevatorIdle(this);
 					return;
 				}
@@ -311,6 +614,7 @@ public class ElevatorCar {
 				//Check if the doors has closed and the elevator starts moving again
 				long duration = timeNow - this.intervalEnterStart;
 				if (clock.durationFromRealTime(duration) >= clock.secondsToTime(this.configuration.getDoorTime())) {
+					this.clearServedStops(simulator);
 					this.startElevator(simulator);
 				}
 			}
@@ -318,7 +622,7 @@ public class ElevatorCar {
 		case ACCELERATING:
 			{
 				if (this.hasStarted(simulator)) {
-					this.state = State.MOVING;
+					this.changeState(simulator, State.MOVING);
 					this.lastMovement = timeNow;
 					simulator.elevatorDebugLog(this.id, "Has started.");
 					
@@ -333,7 +637,7 @@ public class ElevatorCar {
 		case DECELERATING:
 			{
 				if (this.hasStopped(simulator)) {
-					this.state = State.STOPPED;
+					this.changeState(simulator, State.STOPPED);
 					simulator.elevatorDebugLog(this.id, "Has stopped at floor " + this.floor + ".");
 					this.prevDirection = this.direction;
 				}
@@ -342,7 +646,7 @@ public class ElevatorCar {
 		case TURNING:
 			{
 				if (this.hasTurned(simulator)) {
-					this.state = State.MOVING;
+					this.changeState(simulator, State.MOVING);
 				}
 			}
 			break;
@@ -389,11 +693,18 @@ public class ElevatorCar {
 	 */
 	public void pickUp(Simulator simulator, Passenger passenger) {
 		if (this.state == State.IDLE) {
-			this.state = State.STOPPED;
+			this.changeState(simulator, State.STOPPED);
 		}
 		
 		passenger.rideStarted(simulator.getClock());
 		this.passengers.add(passenger);
+		this.carCalls.set(passenger.getDestinationFloor());
+		
+		BitSet stops = this.getStops(passenger.getDirection());
+		if (stops != null) {
+			stops.clear(this.floor);
+		}
+		
 		this.beginDoorTime(simulator);
 		this.boardWaitTime = 1.0;
 		this.numPassengers++;
@@ -411,6 +722,10 @@ public class ElevatorCar {
 	 * @param targetFloor The floor to move towards
 	 */
 	public void moveTowards(Simulator simulator, int targetFloor) {
+		if (this.commandListener != null) {
+			this.commandListener.movedTowards(this, targetFloor);
+		}
+		
 		if (this.floor != targetFloor) {
 			Direction dir = Direction.getDirection(this.floor, targetFloor);
 			
@@ -429,17 +744,81 @@ public class ElevatorCar {
 		}
 	}
 	
+	/**
+	 * Sets the listener for the commands given to the elevator car
+	 * @param commandListener The listener, or null
+	 */
+	public void setCommandListener(CommandListener commandListener) {
+		this.commandListener = commandListener;
+	}
+	
+	/**
+	 * Sets the state of the elevator car to the state of an elevator car in another simulator.
+	 * The stops for hall calls are not mirrored.
+	 * @param floor The floor
+	 * @param direction The direction
+	 * @param state The state
+	 * @param destinationFloor The destination floor
+	 * @param passengers The passengers in the elevator car
+	 */
+	public void mirror(int floor, Direction direction, State state, int destinationFloor, List<Passenger> passengers) {
+		this.floor = floor;
+		this.direction = direction;
+		this.state = state;
+		this.destinationFloor = destinationFloor;
+		this.passengers.clear();
+		this.passengers.addAll(passengers);
+		this.upStops.clear();
+		this.downStops.clear();
+		this.carCalls.clear();
+		
+		for (Passenger passenger : passengers) {
+			this.carCalls.set(passenger.getDestinationFloor());
+		}
+	}
+	
+	/**
+	 * Sets the state of the elevator car to the state of an elevator car in another simulator, including the
+	 * times of the movements. The stops for hall calls are not mirrored.
+	 * @param floor The floor
+	 * @param direction The direction
+	 * @param state The state
+	 * @param destinationFloor The destination floor
+	 * @param passengers The passengers in the elevator car
+	 * @param lastMovement The time when the elevator car last passed a floor
+	 * @param stopStartTime The time when the elevator car started to slow down
+	 * @param startStartTime The time when the elevator car started to accelerate
+	 * @param doorStartTime The time when the doors last started to close
+	 * @param turnStartTime The time when the elevator car started to turn
+	 */
+	public void mirror(int floor, Direction direction, State state, int destinationFloor, List<Passenger> passengers,
+		long lastMovement, long stopStartTime, long startStartTime, long doorStartTime, long turnStartTime) {
+		this.mirror(floor, direction, state, destinationFloor, passengers);
+		this.lastMovement = lastMovement;
+		this.stopStartTime = stopStartTime;
+		this.startStartTime = startStartTime;
+		this.intervalEnterStart = doorStartTime;
+		this.turnStartTime = turnStartTime;
+	}
+	
 	/**
 	 * Resets the elevator car
 	 */
 	public void reset() {
 		this.state = State.IDLE;
-		this.stopAtNext = false;
 		this.direction = Direction.NONE;
 		this.passengers.clear();
+		this.carCalls.clear();
+		this.upStops.clear();
+		this.downStops.clear();
 		this.numPassengers = 0;
 		this.lastMovement = 0;
-		this.floor = 0;
+		this.floor = this.startFloor;
 		this.intervalEnterStart = 0;
+		this.stopStartTime = 0;
+		this.startStartTime = 0;
+		this.turnStartTime = 0;
+		this.boardWaitTime = 0.0;
+		this.prevDirection = null;
 	}
 }
@@ -0,0 +1,547 @@
+package elevatorsimulator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import elevatorsimulator.schedulers.LongestQueueFirst;
+import elevatorsimulator.schedulers.ThreePassageGroupElevator;
+import elevatorsimulator.schedulers.Zoning;
+
+/**
+ * Searches for the handling capacity of schedulers, which is the arrival rate where the wait times blow up.
+ * The arrival ratios of the traffic profile of the scenario are scaled by a factor, and each probe simulates a factor
+ * with the same seeds. A probe is saturated when too many of the wait times are over 60 s, or when the number of waiting
+ * passengers grows above a limit, which also stops the run. The search first expands the range until its upper end
+ * is saturated, and then narrows the range where the saturation starts. Each round probes one factor per thread
+ * in parallel, and the runs of the factors above a factor that is known to be saturated are cancelled.
+ * The probes of each search form the capacity curve of the scheduler.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class HandlingCapacitySearch {
+	private final Scenario scenario;
+	private final SimulatorSettings settings;
+	private final int numRuns;
+	private final List<SchedulerCreator> schedulerCreators = new ArrayList<SchedulerCreator>();
+	
+	private double maxPercentageOver60s = 5.0;
+	private int maxWaitingPassengers = 500;
+	private double lowFactor = 0.5;
+	private double highFactor = 2.0;
+	private double tolerance = 0.02;
+	private int maxExpansions = 8;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private MetricsServer metrics;
+	
+	/**
+	 * Represents the result of a probe
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static class Probe {
+		private final double factor;
+		private final double arrivalRatio;
+		private final StatsInterval stats;
+		private final boolean saturated;
+		private final boolean stopped;
+		
+		/**
+		 * Creates a new probe
+		 * @param factor The factor of the arrival ratios
+		 * @param arrivalRatio The peak arrival ratio in the HC% metric
+		 * @param stats The statistics of the finished runs, or null if all runs were stopped
+		 * @param saturated Indicates if the probe is saturated
+		 * @param stopped Indicates if a run was stopped because of the number of waiting passengers
+		 */
+		public Probe(double factor, double arrivalRatio, StatsInterval stats, boolean saturated, boolean stopped) {
+			this.factor = factor;
+			this.arrivalRatio = arrivalRatio;
+			this.stats = stats;
+			this.saturated = saturated;
+			this.stopped = stopped;
+		}
+		
+		/**
+		 * Returns the factor of the arrival ratios
+		 */
+		public double getFactor() {
+			return factor;
+		}
+		
+		/**
+		 * Returns the peak arrival ratio in the HC% metric
+		 */
+		public double getArrivalRatio() {
+			return arrivalRatio;
+		}
+		
+		/**
+		 * Returns the statistics of the finished runs, or null if all runs were stopped
+		 */
+		public StatsInterval getStats() {
+			return stats;
+		}
+		
+		/**
+		 * Indicates if the probe is saturated
+		 */
+		public boolean isSaturated() {
+			return saturated;
+		}
+		
+		/**
+		 * Indicates if a run was stopped because of the number of waiting passengers
+		 */
+		public boolean isStopped() {
+			return stopped;
+		}
+	}
+	
+	/**
+	 * Represents the result of a search
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static class Result {
+		private final String name;
+		private final double capacityFactor;
+		private final double capacity;
+		private final List<Probe> probes;
+		
+		/**
+		 * Creates a new result
+		 * @param name The name of the simulation
+		 * @param capacityFactor The highest factor that was not saturated, or 0 if none
+		 * @param capacity The handling capacity, as the peak arrival ratio in the HC% metric
+		 * @param probes The probes, ordered by factor
+		 */
+		public Result(String name, double capacityFactor, double capacity, List<Probe> probes) {
+			this.name = name;
+			this.capacityFactor = capacityFactor;
+			this.capacity = capacity;
+			this.probes = probes;
+		}
+		
+		/**
+		 * Returns the name of the simulation
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Returns the highest factor that was not saturated, or 0 if none
+		 */
+		public double getCapacityFactor() {
+			return capacityFactor;
+		}
+		
+		/**
+		 * Returns the handling capacity, as the peak arrival ratio in the HC% metric
+		 */
+		public double getCapacity() {
+			return capacity;
+		}
+		
+		/**
+		 * Returns the probes, which form the capacity curve
+		 */
+		public List<Probe> getProbes() {
+			return probes;
+		}
+	}
+	
+	/**
+	 * Represents a run of a probe
+	 */
+	private class Run implements Callable<StatsInterval> {
+		private final Scenario scenario;
+		private final SchedulerCreator schedulerCreator;
+		private final long seed;
+		
+		public Run(Scenario scenario, SchedulerCreator schedulerCreator, long seed) {
+			this.scenario = scenario;
+			this.schedulerCreator = schedulerCreator;
+			this.seed = seed;
+		}
+		
+		/**
+		 * Runs the simulation
+		 * @return The statistics, or null if the run was stopped because of the number of waiting passengers
+		 */
+		@Override
+		public StatsInterval call() {
+			Simulator simulator = new Simulator(this.scenario, settings, this.schedulerCreator, this.seed);
+			simulator.setExportStats(false);
+			
+			try {
+				if (!SimulatorRunner.runToCompletion(simulator, maxWaitingPassengers)) {
+					return null;
+				}
+			} finally {
+				if (metrics != null) {
+					metrics.add("capacity_search_runs_done_total", 1);
+					metrics.addSimulatedTime(simulator.getClock().timeNowSec());
+				}
+			}
+			
+			return simulator.getStats().getGlobalInterval();
+		}
+	}
+	
+	/**
+	 * Creates a new search
+	 * @param scenario The scenario, whose traffic profile is scaled
+	 * @param settings The settings to use
+	 * @param numRuns The number of runs for each probe
+	 */
+	public HandlingCapacitySearch(Scenario scenario, SimulatorSettings settings, int numRuns) {
+		this.scenario = scenario;
+		this.settings = settings;
+		this.numRuns = numRuns;
+	}
+	
+	/**
+	 * Adds a scheduler to search the capacity for
+	 * @param schedulerCreator The scheduler creator
+	 */
+	public void addScheduler(SchedulerCreator schedulerCreator) {
+		this.schedulerCreators.add(schedulerCreator);
+	}
+	
+	/**
+	 * Sets the criterion for when a probe is saturated
+	 * @param maxPercentageOver60s The maximum % of the wait times over 60 s. 5 % means that the 95th percentile is at most 60 s.
+	 * @param maxWaitingPassengers The maximum number of waiting passengers, above which a run is stopped
+	 */
+	public void setCriterion(double maxPercentageOver60s, int maxWaitingPassengers) {
+		this.maxPercentageOver60s = maxPercentageOver60s;
+		this.maxWaitingPassengers = maxWaitingPassengers;
+	}
+	
+	/**
+	 * Sets the initial range of the factor
+	 * @param lowFactor The lower end
+	 * @param highFactor The upper end, which is doubled until saturated
+	 */
+	public void setRange(double lowFactor, double highFactor) {
+		if (lowFactor <= 0 || highFactor <= lowFactor) {
+			throw new IllegalArgumentException("The range must satisfy 0 < low < high.");
+		}
+		
+		this.lowFactor = lowFactor;
+		this.highFactor = highFactor;
+	}
+	
+	/**
+	 * Sets the relative tolerance, where the search stops when the width of the range is below the tolerance times its upper end
+	 * @param tolerance The tolerance
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+	
+	/**
+	 * Sets the number of threads, which is also the number of factors probed in each round
+	 * @param numThreads The number of threads
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+	
+	/**
+	 * Sets the server that the progress of the search is published to, as the searches of the schedulers finish
+	 * @param metrics The metrics server, or null to not publish the progress
+	 */
+	public void setMetricsServer(MetricsServer metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Probes the given factors in parallel. As the saturation grows with the factor,
+	 * the runs of the factors above a saturated factor are cancelled, and those factors are marked as saturated.
+	 * @param executor The executor
+	 * @param schedulerCreator The scheduler creator
+	 * @param factors The factors, in increasing order
+	 */
+	private Probe[] probe(ExecutorService executor, SchedulerCreator schedulerCreator, double[] factors) {
+		long[] seeds = SimulatorRunner.dataRunSeeds(this.numRuns);
+		TrafficProfile trafficProfile = this.scenario.getTrafficProfile();
+		CompletionService<StatsInterval> completionService = new ExecutorCompletionService<StatsInterval>(executor);
+		List<List<Future<StatsInterval>>> futures = new ArrayList<List<Future<StatsInterval>>>();
+		Map<Future<StatsInterval>, Integer> futureProbes = new HashMap<Future<StatsInterval>, Integer>();
+		
+		for (int i = 0; i < factors.length; i++) {
+			Scenario probeScenario = this.scenario.withTrafficProfile(
+				this.scenario.getName() + "-x" + factors[i],
+				trafficProfile.scale(factors[i]));
+			
+			List<Future<StatsInterval>> probeFutures = new ArrayList<Future<StatsInterval>>();
+			for (long seed : seeds) {
+				Future<StatsInterval> future = completionService.submit(new Run(probeScenario, schedulerCreator, seed));
+				probeFutures.add(future);
+				futureProbes.put(future, i);
+			}
+			
+			futures.add(probeFutures);
+		}
+		
+		StatsInterval[] stats = new StatsInterval[factors.length];
+		boolean[] stopped = new boolean[factors.length];
+		int firstStopped = factors.length;
+		
+		try {
+			for (int done = 0; done < futureProbes.size(); done++) {
+				Future<StatsInterval> future = completionService.take();
+				if (future.isCancelled()) {
+					continue;
+				}
+				
+				int probe = futureProbes.get(future);
+				StatsInterval runStats = future.get();
+				
+				if (runStats == null) {
+					stopped[probe] = true;
+					
+					//The factors above are saturated as well
+					if (probe < firstStopped) {
+						firstStopped = probe;
+						for (int i = probe; i < factors.length; i++) {
+							for (Future<StatsInterval> probeFuture : futures.get(i)) {
+								probeFuture.cancel(true);
+							}
+						}
+					}
+				} else {
+					if (stats[probe] == null) {
+						stats[probe] = StatsInterval.newTimeInterval(0, runStats.getElevatorCarDistribution().length);
+					}
+					
+					stats[probe].add(runStats, 0);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (Future<StatsInterval> future : futureProbes.keySet()) {
+				future.cancel(true);
+			}
+		}
+		
+		double peakArrivalRatio = trafficProfile.peakArrivalRatio();
+		Probe[] probes = new Probe[factors.length];
+		for (int i = 0; i < factors.length; i++) {
+			boolean saturated =
+				i >= firstStopped
+				|| (stats[i] != null && stats[i].percentageOver60s() > this.maxPercentageOver60s);
+			
+			probes[i] = new Probe(factors[i], factors[i] * peakArrivalRatio * 100, stats[i], saturated, stopped[i]);
+		}
+		
+		return probes;
+	}
+	
+	/**
+	 * Searches for the handling capacity of the given scheduler
+	 * @param executor The executor
+	 * @param schedulerCreator The scheduler creator
+	 */
+	private Result search(ExecutorService executor, SchedulerCreator schedulerCreator) {
+		String name = new Simulator(this.scenario, this.settings, schedulerCreator, 0).getSimulationName();
+		List<Probe> curve = new ArrayList<Probe>();
+		
+		double low = this.lowFactor;
+		double high = this.highFactor;
+		Probe[] ends = this.probe(executor, schedulerCreator, new double[] { low, high });
+		curve.addAll(Arrays.asList(ends));
+		
+		if (ends[0].isSaturated()) {
+			return this.result(name, 0, curve);
+		}
+		
+		//Expand the range until its upper end is saturated
+		for (int i = 0; !ends[1].isSaturated(); i++) {
+			if (i == this.maxExpansions) {
+				return this.result(name, high, curve);
+			}
+			
+			low = high;
+			high *= 2;
+			ends = this.probe(executor, schedulerCreator, new double[] { high });
+			ends = new Probe[] { null, ends[0] };
+			curve.add(ends[1]);
+		}
+		
+		//Narrow the range, by probing evenly spaced factors within the range in each round
+		int numProbes = Math.max(1, this.numThreads);
+		while (high - low > this.tolerance * high) {
+			double[] factors = new double[numProbes];
+			for (int i = 0; i < numProbes; i++) {
+				factors[i] = low + (high - low) * (i + 1) / (numProbes + 1);
+			}
+			
+			Probe[] probes = this.probe(executor, schedulerCreator, factors);
+			curve.addAll(Arrays.asList(probes));
+			
+			double newLow = low;
+			double newHigh = high;
+			for (Probe probe : probes) {
+				if (probe.isSaturated()) {
+					newHigh = probe.getFactor();
+					break;
+				}
+				
+				newLow = probe.getFactor();
+			}
+			
+			low = newLow;
+			high = newHigh;
+		}
+		
+		return this.result(name, low, curve);
+	}
+	
+	/**
+	 * Creates the result of a search
+	 * @param name The name of the simulation
+	 * @param capacityFactor The highest factor that was not saturated
+	 * @param curve The probes
+	 */
+	private Result result(String name, double capacityFactor, List<Probe> curve) {
+		Collections.sort(curve, new Comparator<Probe>() {
+			@Override
+			public int compare(Probe x, Probe y) {
+				return Double.compare(x.getFactor(), y.getFactor());
+			}
+		});
+		
+		double capacity = capacityFactor * this.scenario.getTrafficProfile().peakArrivalRatio() * 100;
+		return new Result(name, capacityFactor, capacity, curve);
+	}
+	
+	/**
+	 * Searches for the handling capacity of each scheduler
+	 * @return The results
+	 */
+	public List<Result> run() {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.numThreads));
+		List<Result> results = new ArrayList<Result>();
+		
+		if (this.metrics != null) {
+			this.metrics.set("capacity_search_schedulers_done", 0);
+			this.metrics.set("capacity_search_schedulers_total", this.schedulerCreators.size());
+		}
+		
+		try {
+			for (SchedulerCreator schedulerCreator : this.schedulerCreators) {
+				Result result = this.search(executor, schedulerCreator);
+				System.out.println(new Date() + ": " + result.getName() + ": handling capacity " + result.getCapacity()
+					+ " HC% (factor " + result.getCapacityFactor() + ", " + result.getProbes().size() + " probes).");
+				results.add(result);
+				
+				if (this.metrics != null) {
+					this.metrics.set("capacity_search_schedulers_done", results.size());
+					this.metrics.set(MetricsServer.labeled("handling_capacity_percent", "simulation", result.getName()), result.getCapacity());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Exports the capacity curve of the given result
+	 * @param result The result
+	 */
+	public static void exportCurve(Result result) {
+		try {
+			File dataDir = new File("data");
+			if (!dataDir.exists()) {
+				dataDir.mkdir();
+			}
+			
+			BufferedWriter writer = new BufferedWriter(new FileWriter("data/" + result.getName() + "-Capacity.csv"));
+			writer.write("Factor;HC%;Number served passengers;Average wait time;Average squared wait time;Wait times over 60 sec;Saturated;Stopped\n");
+			
+			for (Probe probe : result.getProbes()) {
+				StatsInterval stats = probe.getStats();
+				writer.write(probe.getFactor() + ";");
+				writer.write(probe.getArrivalRatio() + ";");
+				writer.write((stats != null ? stats.getNumExists() : 0) + ";");
+				writer.write((stats != null ? stats.averageWaitTime() : Double.NaN) + ";");
+				writer.write((stats != null ? stats.averageSquaredWaitTime() : Double.NaN) + ";");
+				writer.write((stats != null ? stats.percentageOver60s() : Double.NaN) + ";");
+				writer.write(probe.isSaturated() + ";");
+				writer.write(probe.isStopped() + ";");
+				writer.write("\n");
+			}
+			
+			writer.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		//Probes one hour of the morning peak, repeated
+		TrafficProfile upPeak = new TrafficProfile(new TrafficProfile.Interval[] {
+			new TrafficProfile.Interval(0.1, 0.85, 0.05)
+		});
+		
+		HandlingCapacitySearch search = new HandlingCapacitySearch(
+			Scenarios.createMediumBuilding(3).withTrafficProfile("MediumBuilding-3-UpPeak", upPeak),
+			new SimulatorSettings(0.01, 60 * 60),
+			10);
+		
+		search.addScheduler(new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new LongestQueueFirst(building);
+			}
+		});
+		
+		search.addScheduler(new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new Zoning(building.getElevatorCars().length, building);
+			}
+		});
+		
+		search.addScheduler(new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new ThreePassageGroupElevator(building);
+			}
+		});
+		
+		if (args.length > 0) {
+			search.setMetricsServer(new MetricsServer(Integer.parseInt(args[0])));
+		}
+		
+		for (Result result : search.run()) {
+			exportCurve(result);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package elevatorsimulator;
+
+/**
+ * Represents a histogram of latencies in nanoseconds. The buckets grow exponentially, where each power of two
+ * is divided into 16 buckets, which gives a relative error of at most 6.25% with a fixed amount of memory.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int NUM_SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * NUM_SUB_BUCKETS;
+	
+	private final long[] counts = new long[NUM_BUCKETS];
+	private long count;
+	private long total;
+	private long min = Long.MAX_VALUE;
+	private long max;
+	
+	/**
+	 * Returns the bucket for the given value
+	 * @param value The value
+	 */
+	private static int bucket(long value) {
+		if (value < NUM_SUB_BUCKETS) {
+			return (int)value;
+		}
+		
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int shift = highestBit - SUB_BUCKET_BITS;
+		return (shift + 1) * NUM_SUB_BUCKETS + (int)((value >>> shift) & (NUM_SUB_BUCKETS - 1));
+	}
+	
+	/**
+	 * Returns the lowest value in the given bucket
+	 * @param bucket The bucket
+	 */
+	private static long lowestValue(int bucket) {
+		if (bucket < NUM_SUB_BUCKETS) {
+			return bucket;
+		}
+		
+		int shift = bucket / NUM_SUB_BUCKETS - 1;
+		return (long)(NUM_SUB_BUCKETS + bucket % NUM_SUB_BUCKETS) << shift;
+	}
+	
+	/**
+	 * Records the given latency
+	 * @param latency The latency in nanoseconds. Negative values are recorded as zero.
+	 */
+	public void record(long latency) {
+		latency = Math.max(0, latency);
+		this.counts[bucket(latency)]++;
+		this.count++;
+		this.total += latency;
+		this.min = Math.min(this.min, latency);
+		this.max = Math.max(this.max, latency);
+	}
+	
+	/**
+	 * Returns the number of recorded latencies
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the smallest recorded latency
+	 */
+	public long getMin() {
+		return this.count > 0 ? this.min : 0;
+	}
+	
+	/**
+	 * Returns the largest recorded latency
+	 */
+	public long getMax() {
+		return max;
+	}
+	
+	/**
+	 * Returns the mean latency
+	 */
+	public double getMean() {
+		return this.count > 0 ? this.total / (double)this.count : 0;
+	}
+	
+	/**
+	 * Returns the latency that the given percentage of the recorded latencies are less than or equal to.
+	 * The latency is the upper bound of its bucket, but never larger than the largest recorded latency.
+	 * @param percentile The percentile, between 0 and 100
+	 */
+	public long getPercentile(double percentile) {
+		if (this.count == 0) {
+			return 0;
+		}
+		
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100.0 * this.count));
+		long seen = 0;
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+			seen += this.counts[bucket];
+			if (seen >= rank) {
+				if (bucket + 1 == NUM_BUCKETS) {
+					return this.max;
+				}
+				
+				return Math.min(this.max, lowestValue(bucket + 1) - 1);
+			}
+		}
+		
+		return this.max;
+	}
+	
+	/**
+	 * Resets the histogram
+	 */
+	public void reset() {
+		for (int i = 0; i < this.counts.length; i++) {
+			this.counts[i] = 0;
+		}
+		
+		this.count = 0;
+		this.total = 0;
+		this.min = Long.MAX_VALUE;
+		this.max = 0;
+	}
+	
+	/**
+	 * Prints the histogram
+	 * @param name The name of the histogram
+	 */
+	public void printStats(String name) {
+		System.out.println(name + ": "
+			+ "mean " + microseconds(this.getMean()) + " us, "
+			+ "p50 " + microseconds(this.getPercentile(50)) + " us, "
+			+ "p99 " + microseconds(this.getPercentile(99)) + " us, "
+			+ "p99.9 " + microseconds(this.getPercentile(99.9)) + " us, "
+			+ "max " + microseconds(this.getMax()) + " us "
+			+ "(" + this.count + " samples)");
+	}
+	
+	/**
+	 * Returns the given nanoseconds as microseconds, rounded to one decimal
+	 * @param nanoseconds The nanoseconds
+	 */
+	private static double microseconds(double nanoseconds) {
+		return Math.round(nanoseconds / 100.0) / 10.0;
+	}
+}
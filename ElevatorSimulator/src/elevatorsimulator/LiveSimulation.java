@@ -0,0 +1,183 @@
+package elevatorsimulator;
+
+import java.util.Date;
+import java.util.concurrent.locks.LockSupport;
+
+import elevatorsimulator.schedulers.ThreePassageGroupElevator;
+
+/**
+ * Runs a simulator in live mode, where the simulated time is paced against the wall time.
+ * Each time step has a deadline computed from the start of the run, which means that a run that falls behind
+ * catches up by running the steps back to back, without the delay accumulating as drift.
+ * The time spent in each step (the latency) and how late each step started (the jitter) are recorded in histograms.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class LiveSimulation {
+	private final Simulator simulator;
+	private final double speedFactor;
+	private final double tickPeriod;
+	private long spinTime = 100000;
+	
+	private final LatencyHistogram tickLatency = new LatencyHistogram();
+	private final LatencyHistogram tickJitter = new LatencyHistogram();
+	private long numLateTicks = 0;
+	private volatile boolean stopped = false;
+	
+	/**
+	 * Creates a new live simulation
+	 * @param simulator The simulator
+	 * @param speedFactor The number of simulated seconds per second of wall time
+	 */
+	public LiveSimulation(Simulator simulator, double speedFactor) {
+		if (speedFactor <= 0) {
+			throw new IllegalArgumentException("The speed factor must be > 0.");
+		}
+		
+		this.simulator = simulator;
+		this.speedFactor = speedFactor;
+		this.tickPeriod = simulator.getSettings().getTimeStep() * SimulatorClock.NANOSECONDS_PER_SECOND / speedFactor;
+	}
+	
+	/**
+	 * Returns the simulator
+	 */
+	public Simulator getSimulator() {
+		return simulator;
+	}
+	
+	/**
+	 * Returns the speed factor
+	 */
+	public double getSpeedFactor() {
+		return speedFactor;
+	}
+	
+	/**
+	 * Returns the amount of wall time between the time steps, in nanoseconds
+	 */
+	public double getTickPeriod() {
+		return tickPeriod;
+	}
+	
+	/**
+	 * Sets the amount of time before a deadline that the simulation busy waits instead of sleeping.
+	 * Sleeping is not precise enough for short time steps, while busy waiting uses a processor.
+	 * @param spinTime The time in nanoseconds
+	 */
+	public void setSpinTime(long spinTime) {
+		this.spinTime = spinTime;
+	}
+	
+	/**
+	 * Returns the histogram for the time spent in each time step, in nanoseconds
+	 */
+	public LatencyHistogram getTickLatency() {
+		return tickLatency;
+	}
+	
+	/**
+	 * Returns the histogram for how late each time step started compared to its deadline, in nanoseconds
+	 */
+	public LatencyHistogram getTickJitter() {
+		return tickJitter;
+	}
+	
+	/**
+	 * Returns the number of time steps that started more than a tick period after their deadline
+	 */
+	public long getNumLateTicks() {
+		return numLateTicks;
+	}
+	
+	/**
+	 * Stops the simulation. Can be called from any thread.
+	 */
+	public void stop() {
+		this.stopped = true;
+	}
+	
+	/**
+	 * Waits until the given deadline
+	 * @param deadline The deadline, in the time of System.nanoTime
+	 */
+	private void waitUntil(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		while (remaining > this.spinTime) {
+			LockSupport.parkNanos(remaining - this.spinTime);
+			remaining = deadline - System.nanoTime();
+		}
+		
+		while (System.nanoTime() - deadline < 0) {
+			//Busy wait
+		}
+	}
+	
+	/**
+	 * Runs the simulation until it is finished or stopped
+	 */
+	public void run() {
+		System.out.println(new Date() + ": Live simulation started (speed factor " + this.speedFactor + ").");
+		
+		this.stopped = false;
+		this.tickLatency.reset();
+		this.tickJitter.reset();
+		this.numLateTicks = 0;
+		this.simulator.start();
+		
+		long startTime = System.nanoTime();
+		long tick = 0;
+		boolean running = true;
+		
+		while (running && !this.stopped) {
+			//The deadline is computed from the start time to not accumulate rounding errors
+			long deadline = startTime + (long)(tick * this.tickPeriod);
+			this.waitUntil(deadline);
+			
+			long tickStart = System.nanoTime();
+			running = this.simulator.advance();
+			long tickEnd = System.nanoTime();
+			
+			long lateness = tickStart - deadline;
+			this.tickJitter.record(lateness);
+			this.tickLatency.record(tickEnd - tickStart);
+			
+			if (lateness > this.tickPeriod) {
+				this.numLateTicks++;
+			}
+			
+			tick++;
+		}
+		
+		System.out.println(new Date() + ": Live simulation " + (this.stopped ? "stopped." : "finished."));
+		System.out.println("--------------------" + this.simulator.getControlSystem().getSchedulerName() + "--------------------");
+		this.simulator.printStats();
+		this.printStats();
+	}
+	
+	/**
+	 * Prints the tick statistics
+	 */
+	public void printStats() {
+		this.tickLatency.printStats("Tick latency");
+		this.tickJitter.printStats("Tick jitter");
+		System.out.println("Late ticks: " + this.numLateTicks);
+	}
+	
+	public static void main(String[] args) {
+		SchedulerCreator creator = new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new ThreePassageGroupElevator(building);
+			}
+		};
+		
+		Simulator simulator = new Simulator(
+			Scenarios.createMediumBuilding(2),
+			new SimulatorSettings(0.01, 24 * 60 * 60),
+			creator);
+		
+		//Simulates a day in 2.4 minutes
+		new LiveSimulation(simulator, 600).run();
+	}
+}
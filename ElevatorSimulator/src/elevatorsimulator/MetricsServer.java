@@ -0,0 +1,216 @@
+package elevatorsimulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Publishes live metrics of long-running simulations over HTTP, in the plain-text format of Prometheus.
+ * The server only listens on the loopback address, and serves the metrics at /metrics on daemon threads,
+ * which means that it does not keep a finished job running.
+ * The metrics are kept in a lock-free map, so publishing never blocks the simulation threads.
+ * Besides the published metrics, each scrape contains the uptime, the heap use and the simulated seconds per wall second.
+ * The simulated seconds per wall second are measured since the previous scrape, which means that they show the current rate.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class MetricsServer implements Closeable {
+	/**
+	 * The prefix of the names of the metrics
+	 */
+	public static final String PREFIX = "elevatorsimulator_";
+	
+	private static final String SIMULATED_SECONDS = "simulated_seconds_total";
+	
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, Double> metrics = new ConcurrentSkipListMap<String, Double>();
+	private final long startTime = System.nanoTime();
+	private long lastScrapeTime = this.startTime;
+	private double lastSimulatedSeconds = 0;
+	
+	/**
+	 * Creates and starts a new metrics server
+	 * @param port The port to listen on, or 0 for any free port
+	 * @throws IOException If the server could not be started
+	 */
+	public MetricsServer(int port) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "MetricsServer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		this.server.setExecutor(this.executor);
+		this.server.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+					exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+					exchange.sendResponseHeaders(200, body.length);
+					
+					OutputStream output = exchange.getResponseBody();
+					output.write(body);
+					output.close();
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		
+		//The dispatcher thread of the server inherits the daemon status of the thread that starts it
+		Future<?> started = this.executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				server.start();
+			}
+		});
+		
+		try {
+			started.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.close();
+			throw new IOException("Interrupted while starting the metrics server.", e);
+		} catch (ExecutionException e) {
+			this.close();
+			throw new IOException("Could not start the metrics server.", e.getCause());
+		}
+	}
+	
+	/**
+	 * Returns the port that the server listens on
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+	
+	/**
+	 * Returns the name of the given metric with the given label
+	 * @param name The name of the metric, without the prefix
+	 * @param label The name of the label
+	 * @param value The value of the label
+	 */
+	public static String labeled(String name, String label, String value) {
+		String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+		return name + "{" + label + "=\"" + escaped + "\"}";
+	}
+	
+	/**
+	 * Sets the value of the given metric
+	 * @param name The name of the metric, without the prefix
+	 * @param value The value
+	 */
+	public void set(String name, double value) {
+		this.metrics.put(PREFIX + name, value);
+	}
+	
+	/**
+	 * Adds the given amount to the given metric, which starts at zero
+	 * @param name The name of the metric, without the prefix
+	 * @param amount The amount
+	 */
+	public void add(String name, double amount) {
+		String key = PREFIX + name;
+		
+		while (true) {
+			Double current = this.metrics.get(key);
+			if (current == null) {
+				if (this.metrics.putIfAbsent(key, amount) == null) {
+					return;
+				}
+			} else if (this.metrics.replace(key, current, current + amount)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Adds the given simulated time, which is used for the simulated seconds per wall second
+	 * @param seconds The simulated time (in seconds)
+	 */
+	public void addSimulatedTime(double seconds) {
+		this.add(SIMULATED_SECONDS, seconds);
+	}
+	
+	/**
+	 * Returns the current metrics in the plain-text format
+	 */
+	public synchronized String scrape() {
+		StringBuilder builder = new StringBuilder();
+		
+		for (Map.Entry<String, Double> metric : this.metrics.entrySet()) {
+			appendMetric(builder, metric.getKey(), metric.getValue());
+		}
+		
+		long now = System.nanoTime();
+		double uptime = (now - this.startTime) / 1E9;
+		double interval = (now - this.lastScrapeTime) / 1E9;
+		Double simulatedSeconds = this.metrics.get(PREFIX + SIMULATED_SECONDS);
+		double simulatedSecondsNow = simulatedSeconds != null ? simulatedSeconds : 0;
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		
+		appendMetric(builder, PREFIX + "uptime_seconds", uptime);
+		appendMetric(builder, PREFIX + "simulated_seconds_per_second",
+			interval > 0 ? (simulatedSecondsNow - this.lastSimulatedSeconds) / interval : 0);
+		appendMetric(builder, PREFIX + "heap_used_bytes", heap.getUsed());
+		appendMetric(builder, PREFIX + "heap_committed_bytes", heap.getCommitted());
+		appendMetric(builder, PREFIX + "heap_max_bytes", heap.getMax());
+		
+		this.lastScrapeTime = now;
+		this.lastSimulatedSeconds = simulatedSecondsNow;
+		return builder.toString();
+	}
+	
+	/**
+	 * Appends the given metric
+	 * @param builder The builder
+	 * @param name The name of the metric
+	 * @param value The value
+	 */
+	private static void appendMetric(StringBuilder builder, String name, double value) {
+		builder.append(name).append(' ');
+		
+		if (Double.isNaN(value)) {
+			builder.append("NaN");
+		} else if (Double.isInfinite(value)) {
+			builder.append(value > 0 ? "+Inf" : "-Inf");
+		} else if (value == Math.rint(value) && Math.abs(value) < 1E15) {
+			builder.append((long)value);
+		} else {
+			builder.append(value);
+		}
+		
+		builder.append('\n');
+	}
+	
+	/**
+	 * Stops the server
+	 */
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.executor.shutdown();
+	}
+}
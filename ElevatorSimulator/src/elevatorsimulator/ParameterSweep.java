@@ -0,0 +1,686 @@
+package elevatorsimulator;
+
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import elevatorsimulator.schedulers.LongestQueueFirst;
+import elevatorsimulator.schedulers.RoundRobin;
+import elevatorsimulator.schedulers.ThreePassageGroupElevator;
+import elevatorsimulator.schedulers.Zoning;
+
+/**
+ * Runs a sweep over the parameters of a building design. The ranges of the parameters are expanded into points,
+ * where each point is simulated with the same seeds as the SimulatorRunner. The runs are executed on a pool of workers,
+ * and the result of each run is cached on disk, keyed by a hash of the configuration and the seed.
+ * This means that a sweep that overlaps an earlier sweep only simulates the new runs.
+ * The key also contains the behaviour version of the simulator, which means that results from an older simulator are never reused.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class ParameterSweep {
+	private static final int CACHE_VERSION = 2;
+	
+	private final Scenario scenario;
+	private final SimulatorSettings settings;
+	private final int numRuns;
+	private final File cacheDir;
+	
+	private int[] numElevatorCars;
+	private int[] capacities;
+	private double[] floorTimes;
+	private double[] stopTimes;
+	private double[] startTimes;
+	private double[] doorTimes;
+	private int[] numZones = new int[] { 1 };
+	
+	private final Map<String, SchedulerFactory> schedulers = new LinkedHashMap<String, SchedulerFactory>();
+	private final Map<String, Boolean> zonedSchedulers = new LinkedHashMap<String, Boolean>();
+	
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private MetricsServer metrics;
+	
+	/**
+	 * Creates schedulers for the points of a sweep
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static interface SchedulerFactory {
+		/**
+		 * Creates a new scheduler for the given building
+		 * @param building The building
+		 * @param point The point that is simulated
+		 */
+		SchedulingAlgorithm createScheduler(Building building, Point point);
+	}
+	
+	/**
+	 * Represents a point in a sweep
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static class Point {
+		private final String schedulerName;
+		private final int numElevatorCars;
+		private final ElevatorCarConfiguration elevatorCarConfiguration;
+		private final int numZones;
+		
+		/**
+		 * Creates a new point
+		 * @param schedulerName The name of the scheduler
+		 * @param numElevatorCars The number of elevator cars
+		 * @param elevatorCarConfiguration The configuration for the elevator cars
+		 * @param numZones The number of zones, or 0 if the scheduler does not use zones
+		 */
+		public Point(String schedulerName, int numElevatorCars, ElevatorCarConfiguration elevatorCarConfiguration, int numZones) {
+			this.schedulerName = schedulerName;
+			this.numElevatorCars = numElevatorCars;
+			this.elevatorCarConfiguration = elevatorCarConfiguration;
+			this.numZones = numZones;
+		}
+		
+		/**
+		 * Returns the name of the scheduler
+		 */
+		public String getSchedulerName() {
+			return schedulerName;
+		}
+		
+		/**
+		 * Returns the number of elevator cars
+		 */
+		public int getNumElevatorCars() {
+			return numElevatorCars;
+		}
+		
+		/**
+		 * Returns the configuration for the elevator cars
+		 */
+		public ElevatorCarConfiguration getElevatorCarConfiguration() {
+			return elevatorCarConfiguration;
+		}
+		
+		/**
+		 * Returns the number of zones, or 0 if the scheduler does not use zones
+		 */
+		public int getNumZones() {
+			return numZones;
+		}
+		
+		@Override
+		public String toString() {
+			ElevatorCarConfiguration config = this.elevatorCarConfiguration;
+			return this.schedulerName
+				+ ";" + this.numElevatorCars
+				+ ";" + config.getCapacity()
+				+ ";" + config.getFloorTime()
+				+ ";" + config.getStopTime()
+				+ ";" + config.getStartTime()
+				+ ";" + config.getDoorTime()
+				+ ";" + this.numZones;
+		}
+	}
+	
+	/**
+	 * Represents the result of a point
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static class Result {
+		private final Point point;
+		private final StatsInterval stats;
+		private final int numCachedRuns;
+		
+		/**
+		 * Creates a new result
+		 * @param point The point
+		 * @param stats The average statistics of the runs
+		 * @param numCachedRuns The number of runs that were read from the cache
+		 */
+		public Result(Point point, StatsInterval stats, int numCachedRuns) {
+			this.point = point;
+			this.stats = stats;
+			this.numCachedRuns = numCachedRuns;
+		}
+		
+		/**
+		 * Returns the point
+		 */
+		public Point getPoint() {
+			return point;
+		}
+		
+		/**
+		 * Returns the average statistics of the runs
+		 */
+		public StatsInterval getStats() {
+			return stats;
+		}
+		
+		/**
+		 * Returns the number of runs that were read from the cache
+		 */
+		public int getNumCachedRuns() {
+			return numCachedRuns;
+		}
+	}
+	
+	/**
+	 * Represents a run of a point
+	 */
+	private class Run implements Callable<StatsInterval> {
+		private final Point point;
+		private final long seed;
+		private final File cacheFile;
+		private final String key;
+		
+		public Run(Point point, long seed) {
+			this.point = point;
+			this.seed = seed;
+			this.key = cacheKey(point, seed);
+			this.cacheFile = new File(cacheDir, hash(this.key) + ".bin");
+		}
+		
+		@Override
+		public StatsInterval call() throws IOException {
+			final Point point = this.point;
+			final SchedulerFactory factory = schedulers.get(point.getSchedulerName());
+			Scenario pointScenario = scenario.withElevatorCars(
+				scenario.getName() + "-" + point.getSchedulerName() + "-" + point.getNumElevatorCars(),
+				point.getNumElevatorCars(),
+				point.getElevatorCarConfiguration());
+			
+			Simulator simulator = new Simulator(pointScenario, settings, new SchedulerCreator() {
+				@Override
+				public SchedulingAlgorithm createScheduler(Building building) {
+					return factory.createScheduler(building, point);
+				}
+			}, this.seed);
+			
+			simulator.setExportStats(false);
+			boolean finished = SimulatorRunner.runToCompletion(simulator);
+			
+			if (metrics != null) {
+				metrics.addSimulatedTime(simulator.getClock().timeNowSec());
+			}
+			
+			//The statistics of an interrupted run are not cached
+			if (!finished) {
+				return null;
+			}
+			
+			StatsInterval stats = simulator.getStats().getGlobalInterval();
+			writeCache(this.cacheFile, this.key, stats);
+			return stats;
+		}
+	}
+	
+	/**
+	 * Creates a new parameter sweep. The parameters that are not set use the values of the given scenario.
+	 * @param scenario The scenario that defines the floors and the traffic of the building
+	 * @param settings The settings to use
+	 * @param numRuns The number of runs for each point
+	 * @param cacheDir The directory of the cache
+	 */
+	public ParameterSweep(Scenario scenario, SimulatorSettings settings, int numRuns, File cacheDir) {
+		if (scenario.hasBanks()) {
+			throw new IllegalArgumentException("Scenarios with elevator banks cannot be swept.");
+		}
+		
+		this.scenario = scenario;
+		this.settings = settings;
+		this.numRuns = numRuns;
+		this.cacheDir = cacheDir;
+		
+		ElevatorCarConfiguration config = scenario.getElevatorCarConfiguration();
+		this.numElevatorCars = new int[] { scenario.getNumElevatorCars() };
+		this.capacities = new int[] { config.getCapacity() };
+		this.floorTimes = new double[] { config.getFloorTime() };
+		this.stopTimes = new double[] { config.getStopTime() };
+		this.startTimes = new double[] { config.getStartTime() };
+		this.doorTimes = new double[] { config.getDoorTime() };
+	}
+	
+	/**
+	 * Returns the values from the given start to the given end (inclusive)
+	 * @param start The start
+	 * @param end The end
+	 * @param step The step between the values
+	 */
+	public static int[] range(int start, int end, int step) {
+		int[] values = new int[Math.max(0, (end - start) / step + 1)];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = start + i * step;
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Sets the number of elevator cars to sweep
+	 */
+	public void setNumElevatorCars(int... numElevatorCars) {
+		this.numElevatorCars = numElevatorCars;
+	}
+	
+	/**
+	 * Sets the capacities to sweep
+	 */
+	public void setCapacities(int... capacities) {
+		this.capacities = capacities;
+	}
+	
+	/**
+	 * Sets the floor times to sweep
+	 */
+	public void setFloorTimes(double... floorTimes) {
+		this.floorTimes = floorTimes;
+	}
+	
+	/**
+	 * Sets the stop times to sweep
+	 */
+	public void setStopTimes(double... stopTimes) {
+		this.stopTimes = stopTimes;
+	}
+	
+	/**
+	 * Sets the start times to sweep
+	 */
+	public void setStartTimes(double... startTimes) {
+		this.startTimes = startTimes;
+	}
+	
+	/**
+	 * Sets the door times to sweep
+	 */
+	public void setDoorTimes(double... doorTimes) {
+		this.doorTimes = doorTimes;
+	}
+	
+	/**
+	 * Sets the number of zones to sweep. Only used for the zoned schedulers, where each zone has the same number of
+	 * elevator cars. This means that the numbers of zones that do not divide the number of elevator cars are skipped.
+	 */
+	public void setNumZones(int... numZones) {
+		this.numZones = numZones;
+	}
+	
+	/**
+	 * Sets the number of worker threads
+	 * @param numThreads The number of threads
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+	
+	/**
+	 * Sets the server that the progress of the sweep is published to, as the runs finish
+	 * @param metrics The metrics server, or null to not publish the progress
+	 */
+	public void setMetricsServer(MetricsServer metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Publishes the progress of the sweep
+	 * @param numPointsDone The number of points whose runs are all done
+	 * @param numPoints The number of points
+	 * @param numRunsDone The number of simulated runs
+	 * @param numRuns The number of runs to simulate
+	 */
+	private void publish(int numPointsDone, int numPoints, int numRunsDone, int numRuns) {
+		if (this.metrics != null) {
+			this.metrics.set("sweep_points_done", numPointsDone);
+			this.metrics.set("sweep_points_total", numPoints);
+			this.metrics.set("sweep_runs_done", numRunsDone);
+			this.metrics.set("sweep_runs_total", numRuns);
+		}
+	}
+	
+	/**
+	 * Adds a scheduler to sweep
+	 * @param name The name of the scheduler, which is part of the cache key
+	 * @param factory The factory for the scheduler
+	 */
+	public void addScheduler(String name, SchedulerFactory factory) {
+		this.schedulers.put(name, factory);
+		this.zonedSchedulers.put(name, false);
+	}
+	
+	/**
+	 * Adds a scheduler that is swept over the number of zones
+	 * @param name The name of the scheduler, which is part of the cache key
+	 * @param factory The factory for the scheduler
+	 */
+	public void addZonedScheduler(String name, SchedulerFactory factory) {
+		this.schedulers.put(name, factory);
+		this.zonedSchedulers.put(name, true);
+	}
+	
+	/**
+	 * Expands the ranges into the points of the sweep
+	 */
+	public List<Point> points() {
+		List<Point> points = new ArrayList<Point>();
+		
+		for (String schedulerName : this.schedulers.keySet()) {
+			int[] schedulerZones = this.zonedSchedulers.get(schedulerName) ? this.numZones : new int[] { 0 };
+			
+			for (int numElevatorCars : this.numElevatorCars) {
+				for (int capacity : this.capacities) {
+					for (double floorTime : this.floorTimes) {
+						for (double stopTime : this.stopTimes) {
+							for (double startTime : this.startTimes) {
+								for (double doorTime : this.doorTimes) {
+									ElevatorCarConfiguration config = new ElevatorCarConfiguration(
+										capacity, floorTime, stopTime, startTime, doorTime);
+									
+									for (int numZones : schedulerZones) {
+										if (numZones == 0 || numElevatorCars % numZones == 0) {
+											points.add(new Point(schedulerName, numElevatorCars, config, numZones));
+										}
+									}
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		return points;
+	}
+	
+	/**
+	 * Returns the key of the given run in the cache. The key contains everything that defines the result of the run.
+	 * @param point The point
+	 * @param seed The seed
+	 */
+	private String cacheKey(Point point, long seed) {
+		StringBuilder key = new StringBuilder();
+		key.append(CACHE_VERSION).append('|');
+		key.append(Simulator.BEHAVIOUR_VERSION).append('|');
+		key.append(this.scenario.getName()).append('|');
+		key.append(Arrays.toString(this.scenario.getFloorResidents())).append('|');
+		
+		TrafficProfile trafficProfile = this.scenario.getTrafficProfile();
+		key.append(trafficProfile.length()).append('|');
+		for (int i = 0; i < trafficProfile.numIntervals(); i++) {
+			TrafficProfile.Interval interval = trafficProfile.getInterval(i);
+			key.append(interval.getAverageArrivalRatio()).append(',')
+				.append(interval.getUpRate()).append(',')
+				.append(interval.getDownRate()).append(' ');
+		}
+		
+		key.append('|').append(this.settings.getTimeStep());
+		key.append('|').append(this.settings.getSimulationTimeInSec());
+		key.append('|').append(point);
+		key.append('|').append(seed);
+		return key.toString();
+	}
+	
+	/**
+	 * Returns the SHA-256 hash of the given key, in hex
+	 * @param key The key
+	 */
+	private static String hash(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Reads the cached result of a run
+	 * @param cacheFile The cache file
+	 * @param key The key of the run
+	 * @return The result, or null if not cached
+	 */
+	private static StatsInterval readCache(File cacheFile, String key) {
+		if (!cacheFile.exists()) {
+			return null;
+		}
+		
+		try (DataInputStream input = new DataInputStream(new FileInputStream(cacheFile))) {
+			//The key is stored to detect collisions
+			if (!input.readUTF().equals(key)) {
+				return null;
+			}
+			
+			return StatsInterval.readFrom(input);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes the result of a run to the cache. The result is first written to a temporary file,
+	 * which means that a sweep that is interrupted does not leave partial results.
+	 * @param cacheFile The cache file
+	 * @param key The key of the run
+	 * @param stats The result
+	 */
+	private static void writeCache(File cacheFile, String key, StatsInterval stats) throws IOException {
+		File tempFile = new File(cacheFile.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(tempFile))) {
+			output.writeUTF(key);
+			stats.writeTo(output);
+		}
+		
+		if (!tempFile.renameTo(cacheFile)) {
+			tempFile.delete();
+		}
+	}
+	
+	/**
+	 * Runs the sweep. The runs that are not cached are simulated on the workers.
+	 * @return The results of the points
+	 */
+	public List<Result> run() throws InterruptedException {
+		if (!this.cacheDir.exists() && !this.cacheDir.mkdirs()) {
+			throw new IllegalStateException("Could not create the cache directory: " + this.cacheDir + ".");
+		}
+		
+		List<Point> points = this.points();
+		long[] seeds = SimulatorRunner.dataRunSeeds(this.numRuns);
+		
+		//The result of each point depends on the results of its runs
+		StatsInterval[][] runStats = new StatsInterval[points.size()][seeds.length];
+		int[] numCachedRuns = new int[points.size()];
+		int[] numRunsLeft = new int[points.size()];
+		int numPointsDone = 0;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(this.numThreads);
+		CompletionService<StatsInterval> completionService = new ExecutorCompletionService<StatsInterval>(executor);
+		Map<Future<StatsInterval>, int[]> runIndices = new LinkedHashMap<Future<StatsInterval>, int[]>();
+		
+		try {
+			for (int i = 0; i < points.size(); i++) {
+				for (int j = 0; j < seeds.length; j++) {
+					Run run = new Run(points.get(i), seeds[j]);
+					StatsInterval cached = readCache(run.cacheFile, run.key);
+					
+					if (cached != null) {
+						runStats[i][j] = cached;
+						numCachedRuns[i]++;
+					} else {
+						runIndices.put(completionService.submit(run), new int[] { i, j });
+						numRunsLeft[i]++;
+					}
+				}
+				
+				if (numRunsLeft[i] == 0) {
+					numPointsDone++;
+				}
+			}
+			
+			int numRunsToSimulate = runIndices.size();
+			System.out.println(new Date() + ": Sweep started: " + points.size() + " points, "
+				+ numRunsToSimulate + " of " + (points.size() * seeds.length) + " runs to simulate.");
+			this.publish(numPointsDone, points.size(), 0, numRunsToSimulate);
+			
+			for (int done = 1; done <= numRunsToSimulate; done++) {
+				Future<StatsInterval> future = completionService.take();
+				int[] index = runIndices.get(future);
+				
+				try {
+					runStats[index[0]][index[1]] = future.get();
+				} catch (ExecutionException e) {
+					throw new RuntimeException("The run of " + points.get(index[0]) + " failed.", e.getCause());
+				}
+				
+				numRunsLeft[index[0]]--;
+				if (numRunsLeft[index[0]] == 0) {
+					numPointsDone++;
+				}
+				
+				this.publish(numPointsDone, points.size(), done, numRunsToSimulate);
+				
+				if (done % 100 == 0 || done == numRunsToSimulate) {
+					System.out.println(new Date() + ": " + done + "/" + numRunsToSimulate + " runs simulated.");
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		List<Result> results = new ArrayList<Result>();
+		for (int i = 0; i < points.size(); i++) {
+			results.add(new Result(points.get(i), StatsInterval.average(Arrays.asList(runStats[i])), numCachedRuns[i]));
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Prints the given results
+	 * @param results The results
+	 */
+	public static void printResults(List<Result> results) {
+		System.out.println("Scheduler;Cars;Capacity;Floor time;Stop time;Start time;Door time;Zones;Average wait time;Average ride time;Wait times over 60 sec");
+		for (Result result : results) {
+			StatsInterval stats = result.getStats();
+			System.out.println(result.getPoint()
+				+ ";" + stats.averageWaitTime()
+				+ ";" + stats.averageRideTime()
+				+ ";" + stats.percentageOver60s());
+		}
+	}
+	
+	/**
+	 * Exports the given results
+	 * @param fileName The name of the file to export to
+	 * @param results The results
+	 */
+	public static void exportResults(String fileName, List<Result> results) {
+		try {
+			File dataDir = new File("data");
+			if (!dataDir.exists()) {
+				dataDir.mkdir();
+			}
+			
+			BufferedWriter writer = new BufferedWriter(new FileWriter("data/" + fileName + ".csv"));
+			writer.write("Scheduler;Number of elevator cars;Capacity;Floor time;Stop time;Start time;Door time;Number of zones;");
+			writer.write("Number generated passengers;");
+			writer.write("Number served passengers;");
+			writer.write("Average wait time;");
+			writer.write("Average squared wait time;");
+			writer.write("Average ride time;");
+			writer.write("Wait times over 60 sec;");
+			writer.write("\n");
+			
+			for (Result result : results) {
+				StatsInterval stats = result.getStats();
+				writer.write(result.getPoint() + ";");
+				writer.write(stats.getNumGenerated() + ";");
+				writer.write(stats.getNumExists() + ";");
+				writer.write(stats.averageWaitTime() + ";");
+				writer.write(stats.averageSquaredWaitTime() + ";");
+				writer.write(stats.averageRideTime() + ";");
+				writer.write(stats.percentageOver60s() + ";");
+				writer.write("\n");
+			}
+			
+			writer.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	public static void main(String[] args) throws InterruptedException, IOException {
+		ParameterSweep sweep = new ParameterSweep(
+			Scenarios.createMediumBuilding(2),
+			new SimulatorSettings(0.01, 24 * 60 * 60),
+			10,
+			new File("data/sweep-cache"));
+		
+		sweep.setNumElevatorCars(range(2, 4, 1));
+		sweep.setCapacities(8, 12);
+		sweep.setNumZones(range(1, 4, 1));
+		
+		sweep.addScheduler("LQF", new SchedulerFactory() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building, Point point) {
+				return new LongestQueueFirst(building);
+			}
+		});
+		
+		sweep.addScheduler("TPGE", new SchedulerFactory() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building, Point point) {
+				return new ThreePassageGroupElevator(building);
+			}
+		});
+		
+		sweep.addScheduler("RR", new SchedulerFactory() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building, Point point) {
+				return new RoundRobin(building, false);
+			}
+		});
+		
+		sweep.addZonedScheduler("Zoning", new SchedulerFactory() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building, Point point) {
+				return new Zoning(point.getNumZones(), building);
+			}
+		});
+		
+		if (args.length > 0) {
+			sweep.setMetricsServer(new MetricsServer(Integer.parseInt(args[0])));
+		}
+		
+		List<Result> results = sweep.run();
+		printResults(results);
+		exportResults("Sweep", results);
+	}
+}
@@ -8,14 +8,20 @@ import java.text.DecimalFormat;
  */
 public class Passenger {
 	private final long id;
-	private final int arrivalFloor;
-	private final int destinationFloor;
+	private final int originFloor;
+	private final int finalDestinationFloor;
+	private int arrivalFloor;
+	private int destinationFloor;
 	private final int capacity;
 	private boolean boarded;
 	
-	private final long timeOfArrival;
+	private long timeOfArrival;
 	private long timeOfRideStarted;
 	
+	private int numTransfers;
+	private long previousWaitTime;
+	private long previousRideTime;
+	
 	private static final DecimalFormat statsFormat = new DecimalFormat("#.###");
 	
 	/**
@@ -27,13 +33,49 @@ public class Passenger {
 	 * @param clock The simulator clock
 	 */
 	public Passenger(long id, int arrivalFloor, int destinationFloor, int capacity, SimulatorClock clock) {
+		this(id, arrivalFloor, destinationFloor, destinationFloor, capacity, clock);
+	}
+	
+	/**
+	 * Creates a new passenger whose journey may consist of several rides
+	 * @param id The id of the passenger
+	 * @param arrivalFloor The floor the passenger arrived on
+	 * @param destinationFloor The destination floor of the first ride
+	 * @param finalDestinationFloor The destination floor of the journey
+	 * @parma capacity How much capacity the passenger effect
+	 * @param clock The simulator clock
+	 */
+	public Passenger(long id, int arrivalFloor, int destinationFloor, int finalDestinationFloor, int capacity, SimulatorClock clock) {
 		this.id = id;
+		this.originFloor = arrivalFloor;
+		this.finalDestinationFloor = finalDestinationFloor;
 		this.arrivalFloor = arrivalFloor;
 		this.destinationFloor = destinationFloor;		
 		this.capacity = capacity;
 		this.timeOfArrival = clock.timeNow();
 	}
 	
+	/**
+	 * Creates a passenger that mirrors a passenger in another simulator
+	 * @param id The id of the passenger
+	 * @param originFloor The floor where the journey started
+	 * @param arrivalFloor The floor the passenger arrived on
+	 * @param destinationFloor The destination floor of the current ride
+	 * @param finalDestinationFloor The destination floor of the journey
+	 * @parma capacity How much capacity the passenger effect
+	 * @param timeOfArrival The time of arrival
+	 */
+	public Passenger(long id, int originFloor, int arrivalFloor, int destinationFloor, int finalDestinationFloor, int capacity,
+		long timeOfArrival) {
+		this.id = id;
+		this.originFloor = originFloor;
+		this.finalDestinationFloor = finalDestinationFloor;
+		this.arrivalFloor = arrivalFloor;
+		this.destinationFloor = destinationFloor;
+		this.capacity = capacity;
+		this.timeOfArrival = timeOfArrival;
+	}
+	
 	/**
 	 * Returns the id
 	 */
@@ -42,14 +84,42 @@ public class Passenger {
 	}
 	
 	/**
-	 * Returns the arrival floor
+	 * Returns the floor where the journey started
+	 */
+	public int getOriginFloor() {
+		return originFloor;
+	}
+	
+	/**
+	 * Returns the destination floor of the journey
+	 */
+	public int getFinalDestinationFloor() {
+		return finalDestinationFloor;
+	}
+	
+	/**
+	 * Indicates if the current ride ends at a transfer floor
+	 */
+	public boolean isTransferring() {
+		return this.destinationFloor != this.finalDestinationFloor;
+	}
+	
+	/**
+	 * Returns the number of transfers made
+	 */
+	public int getNumTransfers() {
+		return numTransfers;
+	}
+	
+	/**
+	 * Returns the arrival floor of the current ride
 	 */
 	public int getArrivalFloor() {
 		return arrivalFloor;
 	}
 	
 	/**
-	 * Returns the destination floor
+	 * Returns the destination floor of the current ride
 	 */
 	public int getDestinationFloor() {
 		return destinationFloor;
@@ -106,23 +176,38 @@ public class Passenger {
 	}
 	
 	/**
-	 * Calculates the wait time
+	 * Transfers the passenger at the destination of the current ride to the next ride
+	 * @param destinationFloor The destination floor of the next ride
+	 * @param clock The simulator clock
+	 */
+	public void transfer(int destinationFloor, SimulatorClock clock) {
+		this.previousWaitTime = this.waitTime(clock);
+		this.previousRideTime = this.rideTime(clock);
+		this.arrivalFloor = this.destinationFloor;
+		this.destinationFloor = destinationFloor;
+		this.timeOfArrival = clock.timeNow();
+		this.boarded = false;
+		this.numTransfers++;
+	}
+	
+	/**
+	 * Calculates the wait time, including the wait times of the previous rides
 	 * @param clock The simulator clock
 	 */
 	public long waitTime(SimulatorClock clock) {
 		if (this.boarded) {
-			return clock.durationFromRealTime(this.timeOfRideStarted - this.timeOfArrival);
+			return this.previousWaitTime + clock.durationFromRealTime(this.timeOfRideStarted - this.timeOfArrival);
 		} else {
-			return clock.durationFromRealTime(clock.timeNow() - this.timeOfArrival);
+			return this.previousWaitTime + clock.durationFromRealTime(clock.timeNow() - this.timeOfArrival);
 		}
 	}
 	
 	/**
-	 * Calculates the ride time
+	 * Calculates the ride time, including the ride times of the previous rides
 	 * @param clock The simulator clock
 	 */
 	public long rideTime(SimulatorClock clock) {
-		return clock.durationFromRealTime(clock.timeNow() - this.timeOfRideStarted);
+		return this.previousRideTime + clock.durationFromRealTime(clock.timeNow() - this.timeOfRideStarted);
 	}
 	
 	/**
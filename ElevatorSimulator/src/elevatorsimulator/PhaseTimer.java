@@ -0,0 +1,172 @@
+package elevatorsimulator;
+
+/**
+ * Measures the wall time and the number of calls of the phases of a time step, and of the callbacks of the schedulers.
+ * The callbacks are made inside the phases, so their time is also included in the phase they are made in:
+ * the arrivals in the arrival phase, the boardings in the floor phase, and the exits, idle and turned events
+ * in the elevator car phase.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class PhaseTimer {
+	/**
+	 * The measured phases
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static enum Phase {
+		FLOORS("Floor updates"),
+		ARRIVALS("Arrival generation"),
+		ELEVATOR_CARS("Elevator car updates"),
+		SCHEDULER_UPDATE("Scheduler updates"),
+		STATS("Statistics updates"),
+		PASSENGER_ARRIVED("Scheduler passengerArrived"),
+		PASSENGER_BOARDED("Scheduler passengerBoarded"),
+		PASSENGER_EXITED("Scheduler passengerExited"),
+		ON_IDLE("Scheduler onIdle"),
+		ON_TURNED("Scheduler onTurned");
+		
+		private final String name;
+		
+		private Phase(String name) {
+			this.name = name;
+		}
+		
+		/**
+		 * Returns the name of the phase
+		 */
+		public String getName() {
+			return name;
+		}
+	}
+	
+	private final long[] totalTimes = new long[Phase.values().length];
+	private final long[] numCalls = new long[Phase.values().length];
+	private long numSteps;
+	private long totalStepTime;
+	private long simulatedTime;
+	
+	/**
+	 * Records a call of the given phase that started at the given time
+	 * @param phase The phase
+	 * @param startTime The value of System.nanoTime when the call started
+	 * @return The value of System.nanoTime when the call ended, which can start the next phase
+	 */
+	public long record(Phase phase, long startTime) {
+		long endTime = System.nanoTime();
+		this.totalTimes[phase.ordinal()] += endTime - startTime;
+		this.numCalls[phase.ordinal()]++;
+		return endTime;
+	}
+	
+	/**
+	 * Records a time step
+	 * @param startTime The value of System.nanoTime when the step started
+	 * @param endTime The value of System.nanoTime when the step ended
+	 * @param duration The simulated duration of the step (in nanoseconds)
+	 */
+	public void recordStep(long startTime, long endTime, long duration) {
+		this.numSteps++;
+		this.totalStepTime += endTime - startTime;
+		this.simulatedTime += duration;
+	}
+	
+	/**
+	 * Adds the times of the given timer to this timer
+	 * @param other The other timer
+	 */
+	public void add(PhaseTimer other) {
+		for (int i = 0; i < this.totalTimes.length; i++) {
+			this.totalTimes[i] += other.totalTimes[i];
+			this.numCalls[i] += other.numCalls[i];
+		}
+		
+		this.numSteps += other.numSteps;
+		this.totalStepTime += other.totalStepTime;
+		this.simulatedTime += other.simulatedTime;
+	}
+	
+	/**
+	 * Returns the total time of the given phase (in nanoseconds)
+	 * @param phase The phase
+	 */
+	public long getTotalTime(Phase phase) {
+		return this.totalTimes[phase.ordinal()];
+	}
+	
+	/**
+	 * Returns the number of calls of the given phase
+	 * @param phase The phase
+	 */
+	public long getNumCalls(Phase phase) {
+		return this.numCalls[phase.ordinal()];
+	}
+	
+	/**
+	 * Returns the number of time steps
+	 */
+	public long getNumSteps() {
+		return this.numSteps;
+	}
+	
+	/**
+	 * Returns the total wall time of the time steps (in nanoseconds)
+	 */
+	public long getTotalStepTime() {
+		return this.totalStepTime;
+	}
+	
+	/**
+	 * Returns the number of simulated seconds per wall second
+	 */
+	public double simulationSpeed() {
+		if (this.totalStepTime == 0) {
+			return 0;
+		}
+		
+		return this.simulatedTime / (double)this.totalStepTime;
+	}
+	
+	/**
+	 * Resets the timer
+	 */
+	public void reset() {
+		for (int i = 0; i < this.totalTimes.length; i++) {
+			this.totalTimes[i] = 0;
+			this.numCalls[i] = 0;
+		}
+		
+		this.numSteps = 0;
+		this.totalStepTime = 0;
+		this.simulatedTime = 0;
+	}
+	
+	/**
+	 * Prints the times of the phases
+	 */
+	public void printStats() {
+		System.out.println("----Phase times----");
+		System.out.println("Time steps: " + this.numSteps + ", " + milliseconds(this.totalStepTime) + " ms");
+		System.out.println("Simulated seconds per wall second: " + this.simulationSpeed());
+		
+		for (Phase phase : Phase.values()) {
+			long totalTime = this.totalTimes[phase.ordinal()];
+			long calls = this.numCalls[phase.ordinal()];
+			double share = this.totalStepTime > 0 ? 100.0 * totalTime / this.totalStepTime : 0;
+			
+			System.out.println(phase.getName() + ": "
+				+ totalTime + " ns, "
+				+ calls + " calls, "
+				+ (calls > 0 ? totalTime / calls : 0) + " ns/call, "
+				+ Math.round(share * 10.0) / 10.0 + "%");
+		}
+	}
+	
+	/**
+	 * Returns the given nanoseconds as milliseconds, rounded to one decimal
+	 * @param nanoseconds The nanoseconds
+	 */
+	private static double milliseconds(long nanoseconds) {
+		return Math.round(nanoseconds / 100000.0) / 10.0;
+	}
+}
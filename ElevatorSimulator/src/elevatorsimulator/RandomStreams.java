@@ -0,0 +1,95 @@
+package elevatorsimulator;
+
+import java.util.Random;
+
+/**
+ * Contains the random streams of the traffic. The arrival times, the origin floors and the destination floors are drawn
+ * from separate streams, which means that runs with the same seed get the same passengers, no matter what else draws
+ * random numbers during the runs. Comparing schedulers with the same seeds then uses common random numbers.
+ * In antithetic mode, each uniform value u is replaced by its mirror 1 - u, which gives the antithetic run of the same seed.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class RandomStreams {
+	private final Random arrivalTimes;
+	private final Random originFloors;
+	private final Random destinationFloors;
+	private final long seed;
+	private final boolean antithetic;
+	
+	/**
+	 * The distance between two adjacent values of Random.nextDouble
+	 */
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+	
+	/**
+	 * Creates new random streams
+	 * @param seed The seed
+	 * @param antithetic Indicates if the values are antithetic
+	 */
+	public RandomStreams(long seed, boolean antithetic) {
+		this.arrivalTimes = new Random(streamSeed(seed, 0));
+		this.originFloors = new Random(streamSeed(seed, 1));
+		this.destinationFloors = new Random(streamSeed(seed, 2));
+		this.seed = seed;
+		this.antithetic = antithetic;
+	}
+	
+	/**
+	 * Returns the seed of the given stream. Consecutive streams get uncorrelated seeds.
+	 * @param seed The seed
+	 * @param stream The index of the stream
+	 */
+	public static long streamSeed(long seed, int stream) {
+		long streamSeed = seed + 0x9E3779B97F4A7C15L * (stream + 1);
+		streamSeed = (streamSeed ^ (streamSeed >>> 33)) * 0xFF51AFD7ED558CCDL;
+		streamSeed = (streamSeed ^ (streamSeed >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return streamSeed ^ (streamSeed >>> 33);
+	}
+	
+	/**
+	 * Returns the seed of the streams
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Indicates if the values are antithetic
+	 */
+	public boolean isAntithetic() {
+		return antithetic;
+	}
+	
+	/**
+	 * Returns the next uniform value in [0, 1) from the given stream
+	 * @param random The stream
+	 */
+	private double next(Random random) {
+		double value = random.nextDouble();
+		
+		//Mirrors the value within the values that nextDouble can return, which keeps it in [0, 1)
+		return this.antithetic ? 1.0 - value - DOUBLE_UNIT : value;
+	}
+	
+	/**
+	 * Returns the next uniform value for the arrival times
+	 */
+	public double nextArrivalTime() {
+		return this.next(this.arrivalTimes);
+	}
+	
+	/**
+	 * Returns the next uniform value for the origin floors
+	 */
+	public double nextOriginFloor() {
+		return this.next(this.originFloors);
+	}
+	
+	/**
+	 * Returns the next uniform value for the destination floors
+	 */
+	public double nextDestinationFloor() {
+		return this.next(this.destinationFloors);
+	}
+}
@@ -0,0 +1,209 @@
+package elevatorsimulator;
+
+/**
+ * Computes the mean and the variance of a stream of observations, using Welford's method.
+ * The confidence interval of the mean uses the Student's t-distribution.
+ * Its quantiles are exact up to 30 degrees of freedom, and approximated above that.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class RunningStatistic {
+	private long count = 0;
+	private double mean = 0.0;
+	private double sumSquaredDeviations = 0.0;
+	
+	/**
+	 * The largest number of degrees of freedom where the quantiles of the t-distribution are computed exactly
+	 */
+	private static final int MAX_EXACT_DEGREES_OF_FREEDOM = 30;
+	
+	/**
+	 * The number of bisection steps of the exact quantiles
+	 */
+	private static final int NUM_BISECTION_STEPS = 100;
+	
+	/**
+	 * Adds the given observation
+	 * @param value The value
+	 */
+	public void add(double value) {
+		this.count++;
+		double delta = value - this.mean;
+		this.mean += delta / this.count;
+		this.sumSquaredDeviations += delta * (value - this.mean);
+	}
+	
+	/**
+	 * Returns the number of observations
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Returns the mean of the observations
+	 */
+	public double getMean() {
+		return mean;
+	}
+	
+	/**
+	 * Returns the sample variance of the observations
+	 */
+	public double getVariance() {
+		return this.count > 1 ? this.sumSquaredDeviations / (this.count - 1) : Double.NaN;
+	}
+	
+	/**
+	 * Returns the standard error of the mean
+	 */
+	public double getStandardError() {
+		return Math.sqrt(this.getVariance() / this.count);
+	}
+	
+	/**
+	 * Returns the half-width of the confidence interval of the mean
+	 * @param confidence The confidence level, such as 0.95
+	 */
+	public double halfWidth(double confidence) {
+		if (this.count < 2) {
+			return Double.POSITIVE_INFINITY;
+		}
+		
+		return studentQuantile(1.0 - (1.0 - confidence) / 2.0, this.count - 1) * this.getStandardError();
+	}
+	
+	/**
+	 * Resets the statistic
+	 */
+	public void reset() {
+		this.count = 0;
+		this.mean = 0.0;
+		this.sumSquaredDeviations = 0.0;
+	}
+	
+	/**
+	 * Returns the quantile of the standard normal distribution, using Acklam's approximation (relative error below 1.2e-9)
+	 * @param p The probability, in (0, 1)
+	 */
+	public static double normalQuantile(double p) {
+		if (p <= 0.0 || p >= 1.0) {
+			throw new IllegalArgumentException("The probability must be in (0, 1).");
+		}
+		
+		final double[] a = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+			1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+		final double[] b = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+			6.680131188771972e+01, -1.328068155288572e+01 };
+		final double[] c = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+			-2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+		final double[] d = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+			3.754408661907416e+00 };
+		
+		if (p < 0.02425) {
+			double q = Math.sqrt(-2 * Math.log(p));
+			return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+				/ ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+		} else if (p > 1 - 0.02425) {
+			return -normalQuantile(1 - p);
+		} else {
+			double q = p - 0.5;
+			double r = q * q;
+			return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+				/ (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+		}
+	}
+	
+	/**
+	 * Returns the probability that the absolute value of a t-distributed variable is below sqrt(n) * tan(theta),
+	 * using the finite series for integer degrees of freedom (Abramowitz and Stegun 26.7.3 and 26.7.4)
+	 * @param theta The angle, in [0, pi / 2)
+	 * @param degreesOfFreedom The degrees of freedom
+	 */
+	private static double studentCentralProbability(double theta, int degreesOfFreedom) {
+		double sin = Math.sin(theta);
+		double cos = Math.cos(theta);
+		double cos2 = cos * cos;
+		
+		if (degreesOfFreedom % 2 == 1) {
+			double sum = 0.0;
+			if (degreesOfFreedom > 1) {
+				double term = 1.0;
+				sum = 1.0;
+				for (int k = 2; k <= degreesOfFreedom - 3; k += 2) {
+					term *= cos2 * k / (k + 1);
+					sum += term;
+				}
+			}
+			
+			return 2.0 / Math.PI * (theta + sin * cos * sum);
+		} else {
+			double term = 1.0;
+			double sum = 1.0;
+			for (int k = 1; k <= degreesOfFreedom - 3; k += 2) {
+				term *= cos2 * k / (k + 1);
+				sum += term;
+			}
+			
+			return sin * sum;
+		}
+	}
+	
+	/**
+	 * Returns the exact quantile of the Student's t-distribution, by bisection on the central probability
+	 * @param p The probability, in (0, 1)
+	 * @param degreesOfFreedom The degrees of freedom
+	 */
+	private static double exactStudentQuantile(double p, int degreesOfFreedom) {
+		if (p < 0.5) {
+			return -exactStudentQuantile(1.0 - p, degreesOfFreedom);
+		}
+		
+		double centralProbability = 2.0 * p - 1.0;
+		double low = 0.0;
+		double high = Math.PI / 2;
+		for (int i = 0; i < NUM_BISECTION_STEPS; i++) {
+			double theta = (low + high) / 2;
+			if (studentCentralProbability(theta, degreesOfFreedom) < centralProbability) {
+				low = theta;
+			} else {
+				high = theta;
+			}
+		}
+		
+		return Math.sqrt(degreesOfFreedom) * Math.tan((low + high) / 2);
+	}
+	
+	/**
+	 * Returns the quantile of the Student's t-distribution. Up to 30 degrees of freedom, the quantile is exact.
+	 * Above that, the Cornish-Fisher expansion around the normal quantile is used.
+	 * @param p The probability, in (0, 1)
+	 * @param degreesOfFreedom The degrees of freedom, at least 1
+	 */
+	public static double studentQuantile(double p, long degreesOfFreedom) {
+		if (p <= 0.0 || p >= 1.0) {
+			throw new IllegalArgumentException("The probability must be in (0, 1).");
+		}
+		
+		if (degreesOfFreedom < 1) {
+			throw new IllegalArgumentException("The degrees of freedom must be at least 1.");
+		}
+		
+		if (degreesOfFreedom <= MAX_EXACT_DEGREES_OF_FREEDOM) {
+			return exactStudentQuantile(p, (int)degreesOfFreedom);
+		}
+		
+		double z = normalQuantile(p);
+		double n = degreesOfFreedom;
+		double z3 = z * z * z;
+		double z5 = z3 * z * z;
+		double z7 = z5 * z * z;
+		double z9 = z7 * z * z;
+		
+		return z
+			+ (z3 + z) / (4 * n)
+			+ (5 * z5 + 16 * z3 + 3 * z) / (96 * n * n)
+			+ (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * n * n * n)
+			+ (79 * z9 + 776 * z7 + 1482 * z5 - 1920 * z3 - 945 * z) / (92160 * n * n * n * n);
+	}
+}
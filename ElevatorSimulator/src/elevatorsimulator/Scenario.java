@@ -10,8 +10,10 @@ public class Scenario {
 	private final int numElevatorCars;
 	private final int[] floorResidents;
 	private final TrafficProfile trafficProfile;
+	private final CompiledTrafficProfile compiledTrafficProfile;
 	
 	private final ElevatorCarConfiguration elevatorCarConfiguration;
+	private final ElevatorBankConfiguration[] bankConfigurations;
 	
 	/**
 	 * Creates a new scenario
@@ -27,8 +29,65 @@ public class Scenario {
 		this.elevatorCarConfiguration = elevatorCarConfiguration;
 		this.floorResidents = floorResidents;
 		this.trafficProfile = trafficProfile;
+		this.compiledTrafficProfile = new CompiledTrafficProfile(trafficProfile, floorResidents);
+		this.bankConfigurations = null;
 	}
+	
+	/**
+	 * Creates a new scenario where the elevator cars are divided into banks
+	 * @param name The name of the scenario
+	 * @param bankConfigurations The configurations of the banks
+	 * @param floorResidents The residents on each floor
+	 * @param trafficProfile The traffic profile
+	 */
+	public Scenario(String name, ElevatorBankConfiguration[] bankConfigurations, int[] floorResidents, TrafficProfile trafficProfile) {
+		int numElevatorCars = 0;
+		for (ElevatorBankConfiguration bankConfiguration : bankConfigurations) {
+			numElevatorCars += bankConfiguration.getNumElevatorCars();
+		}
 		
+		this.name = name;
+		this.numElevatorCars = numElevatorCars;
+		this.elevatorCarConfiguration = bankConfigurations[0].getElevatorCarConfiguration();
+		this.floorResidents = floorResidents;
+		this.trafficProfile = trafficProfile;
+		this.compiledTrafficProfile = new CompiledTrafficProfile(trafficProfile, floorResidents);
+		this.bankConfigurations = bankConfigurations;
+	}
+		
+	/**
+	 * Creates a new scenario from the given scenario with other elevator cars
+	 * @param name The name of the scenario
+	 * @param scenario The scenario
+	 * @param numElevatorCars The number of elevator cars
+	 * @param elevatorCarConfiguration The configuration for the elevator car
+	 */
+	private Scenario(String name, Scenario scenario, int numElevatorCars, ElevatorCarConfiguration elevatorCarConfiguration) {
+		this.name = name;
+		this.numElevatorCars = numElevatorCars;
+		this.elevatorCarConfiguration = elevatorCarConfiguration;
+		this.floorResidents = scenario.floorResidents;
+		this.trafficProfile = scenario.trafficProfile;
+		this.compiledTrafficProfile = scenario.compiledTrafficProfile;
+		this.bankConfigurations = null;
+	}
+	
+	/**
+	 * Creates a new scenario from the given scenario with another traffic profile
+	 * @param name The name of the scenario
+	 * @param scenario The scenario
+	 * @param trafficProfile The traffic profile
+	 */
+	private Scenario(String name, Scenario scenario, TrafficProfile trafficProfile) {
+		this.name = name;
+		this.numElevatorCars = scenario.numElevatorCars;
+		this.elevatorCarConfiguration = scenario.elevatorCarConfiguration;
+		this.floorResidents = scenario.floorResidents;
+		this.trafficProfile = trafficProfile;
+		this.compiledTrafficProfile = new CompiledTrafficProfile(trafficProfile, scenario.floorResidents);
+		this.bankConfigurations = scenario.bankConfigurations;
+	}
+	
 	/**
 	 * Returns the size of the building
 	 */
@@ -36,6 +95,67 @@ public class Scenario {
 		return this.name;
 	}
 	
+	/**
+	 * Returns the number of elevator cars
+	 */
+	public int getNumElevatorCars() {
+		return this.numElevatorCars;
+	}
+	
+	/**
+	 * Returns the configuration for the elevator cars. For a scenario with banks, this is the configuration of the first bank.
+	 */
+	public ElevatorCarConfiguration getElevatorCarConfiguration() {
+		return this.elevatorCarConfiguration;
+	}
+	
+	/**
+	 * Returns the number of residents on each floor
+	 */
+	public int[] getFloorResidents() {
+		return this.floorResidents.clone();
+	}
+	
+	/**
+	 * Indicates if the elevator cars are divided into banks
+	 */
+	public boolean hasBanks() {
+		return this.bankConfigurations != null;
+	}
+	
+	/**
+	 * Creates a scenario with the same floors and traffic, but with one bank of the given elevator cars
+	 * @param name The name of the new scenario
+	 * @param numElevatorCars The number of elevator cars
+	 * @param elevatorCarConfiguration The configuration for the elevator cars
+	 */
+	public Scenario withElevatorCars(String name, int numElevatorCars, ElevatorCarConfiguration elevatorCarConfiguration) {
+		return new Scenario(name, this, numElevatorCars, elevatorCarConfiguration);
+	}
+	
+	/**
+	 * Creates a scenario with the same building, but with the given traffic profile
+	 * @param name The name of the new scenario
+	 * @param trafficProfile The traffic profile
+	 */
+	public Scenario withTrafficProfile(String name, TrafficProfile trafficProfile) {
+		return new Scenario(name, this, trafficProfile);
+	}
+	
+	/**
+	 * Returns the traffic profile
+	 */
+	public TrafficProfile getTrafficProfile() {
+		return this.trafficProfile;
+	}
+	
+	/**
+	 * Returns the traffic profile compiled for the floors of the scenario. It is shared by all buildings of the scenario.
+	 */
+	public CompiledTrafficProfile getCompiledTrafficProfile() {
+		return this.compiledTrafficProfile;
+	}
+	
 	/**
 	 * Creates a new building
 	 */
@@ -43,9 +163,13 @@ public class Scenario {
 		Floor[] floors = new Floor[this.floorResidents.length];
 		for (int i = 0; i < floors.length; i++) {
 			int numResidents = this.floorResidents[i];
-			floors[i] = new Floor(i, numResidents, this.trafficProfile);
+			floors[i] = new Floor(i, numResidents);
+		}
+		
+		if (this.bankConfigurations != null) {
+			return new Building(floors, this.bankConfigurations, this.compiledTrafficProfile);
 		}
 		
-		return new Building(floors, this.numElevatorCars, 0, this.elevatorCarConfiguration);
+		return new Building(floors, this.numElevatorCars, 0, this.elevatorCarConfiguration, this.compiledTrafficProfile);
 	}
 }
@@ -63,4 +63,67 @@ public class Scenarios {
 			},
 			TrafficProfiles.WEEK_DAY_PROFILE);
 	}
-}
+	
+	/**
+	 * Creates a skyscraper with 16 elevator cars in each local bank and 8 in each express shuttle, which is 64 cars.
+	 * With the week day profile, this is below saturation for the longest queue first and three passage schedulers, whose hall queues drain after each peak.
+	 */
+	public static Scenario createSkyscraper() {
+		return createSkyscraper(16, 8);
+	}
+	
+	/**
+	 * Creates a skyscraper with 120 floors, divided into three zones of 40 floors. The low zone is served from the lobby,
+	 * and the mid and high zones from sky lobbies on floor 40 and 80, which are reached with express shuttles from the lobby.
+	 * @param numLocalElevatorCars The number of elevator cars in each local bank
+	 * @param numShuttleElevatorCars The number of elevator cars in each express shuttle
+	 */
+	public static Scenario createSkyscraper(int numLocalElevatorCars, int numShuttleElevatorCars) {
+		int numFloors = 120;
+		int zoneSize = 40;
+		
+		int[] floorResidents = new int[numFloors];
+		for (int floor = 1; floor < numFloors; floor++) {
+			//The sky lobbies have no residents
+			if (floor % zoneSize != 0) {
+				floorResidents[floor] = 60 + 5 * (floor % 4);
+			}
+		}
+		
+		ElevatorCarConfiguration shuttleConfiguration = new ElevatorCarConfiguration(20, 0.5, 3.0, 3.0, 1.5);
+		
+		ElevatorBankConfiguration[] banks = new ElevatorBankConfiguration[] {
+			new ElevatorBankConfiguration(
+				"Low",
+				ElevatorBankConfiguration.floorRange(0, zoneSize - 1),
+				numLocalElevatorCars,
+				ElevatorCarConfiguration.defaultConfiguration()),
+			new ElevatorBankConfiguration(
+				"Shuttle-" + zoneSize,
+				new int[] { Building.LOBBY, zoneSize },
+				numShuttleElevatorCars,
+				shuttleConfiguration),
+			new ElevatorBankConfiguration(
+				"Mid",
+				ElevatorBankConfiguration.floorRange(zoneSize, 2 * zoneSize - 1),
+				numLocalElevatorCars,
+				ElevatorCarConfiguration.defaultConfiguration()),
+			new ElevatorBankConfiguration(
+				"Shuttle-" + 2 * zoneSize,
+				new int[] { Building.LOBBY, 2 * zoneSize },
+				numShuttleElevatorCars,
+				shuttleConfiguration),
+			new ElevatorBankConfiguration(
+				"High",
+				ElevatorBankConfiguration.floorRange(2 * zoneSize, numFloors - 1),
+				numLocalElevatorCars,
+				ElevatorCarConfiguration.defaultConfiguration())
+		};
+		
+		return new Scenario(
+			"Skyscraper-" + (3 * numLocalElevatorCars + 2 * numShuttleElevatorCars),
+			banks,
+			floorResidents,
+			TrafficProfiles.WEEK_DAY_PROFILE);
+	}
+}
\ No newline at end of file
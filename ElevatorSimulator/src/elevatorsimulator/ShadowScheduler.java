@@ -0,0 +1,17 @@
+package elevatorsimulator;
+
+/**
+ * Represents a scheduling algorithm that can follow the events while another scheduler is active.
+ * In shadow mode, the scheduler receives the passenger events and the onTurned event, but is not updated
+ * and does not receive the onIdle event. Its handlers of those events only keep its state up to date, and never
+ * command an elevator car. As the state is up to date, switching to the scheduler does not require changedTo.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public interface ShadowScheduler extends SchedulingAlgorithm {
+	/**
+	 * Sets if the scheduler is in shadow mode
+	 * @param shadow Indicates if the scheduler is in shadow mode
+	 */
+	public void setShadow(boolean shadow);
+}
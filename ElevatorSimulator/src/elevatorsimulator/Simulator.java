@@ -9,14 +9,24 @@ import elevatorsimulator.schedulers.*;
  *
  */
 public class Simulator {
+	/**
+	 * The version of the behaviour of the simulator, which is part of the keys of cached results.
+	 * Must be increased by every change that changes the results of a run, such as the random draws, the elevator cars or the schedulers.
+	 */
+	public static final int BEHAVIOUR_VERSION = 3;
+	
 	private final String scenarioName;
 	private final SimulatorSettings settings;
 	private final SimulatorClock clock;
 	
 	private Random random;
+	private RandomStreams randomStreams;
+	private final boolean antithetic;
 	
 	private final SimulatorStats stats;
 	private boolean exportStats = true;
+	private boolean recordEvents = true;
+	private PhaseTimer phaseTimer;
 	
 	private final Building building;
 	private final ControlSystem controlSystem;
@@ -44,20 +54,54 @@ public class Simulator {
 	 * @param randSeed The random seed
 	 */
 	public Simulator(Scenario scenario, SimulatorSettings settings, SchedulerCreator schedulerCreator, long randSeed) {		
+		this(scenario, settings, schedulerCreator, randSeed, false);
+	}
+	
+	/**
+	 * Creates a new simulator
+	 * @param scenario The scenario
+	 * @param settings The settings
+	 * @param scheduler The scheduler
+	 * @param randSeed The random seed
+	 * @param antithetic Indicates if the traffic is antithetic to the traffic of the seed
+	 */
+	public Simulator(Scenario scenario, SimulatorSettings settings, SchedulerCreator schedulerCreator, long randSeed, boolean antithetic) {
 		if (randSeed == -1) {
 			randSeed = System.currentTimeMillis();
 		}
 		
 		this.random = new Random(randSeed);
+		this.randomStreams = new RandomStreams(randSeed, antithetic);
+		this.antithetic = antithetic;
 		
 		this.scenarioName = scenario.getName();
 		this.settings = settings;
 		this.clock = new SimulatorClock(settings.getTimeStep());
 		this.building = scenario.createBuilding();
-		this.controlSystem = new ControlSystem(this, schedulerCreator.createScheduler(this.building));
+		this.controlSystem = new ControlSystem(this, this.createSchedulers(schedulerCreator));
 		this.stats = new SimulatorStats(this);
 	}
 	
+	/**
+	 * Creates a scheduler for each bank in the building. With one bank, the scheduler is created for the whole building,
+	 * otherwise for a view of each bank.
+	 * @param schedulerCreator The scheduler creator
+	 */
+	private SchedulingAlgorithm[] createSchedulers(SchedulerCreator schedulerCreator) {
+		ElevatorBank[] banks = this.building.getBanks();
+		SchedulingAlgorithm[] schedulers = new SchedulingAlgorithm[banks.length];
+		
+		if (banks.length == 1) {
+			schedulers[0] = schedulerCreator.createScheduler(this.building);
+		} else {
+			for (int i = 0; i < banks.length; i++) {
+				schedulers[i] = schedulerCreator.createScheduler(this.building.createBankView(banks[i]));
+			}
+		}
+		
+		return schedulers;
+	}
+	
 	/**
 	 * Returns the name of the simulation
 	 */
@@ -65,6 +109,13 @@ public class Simulator {
 		return this.scenarioName + "-" + this.controlSystem.getSchedulerName();
 	}
 	
+	/**
+	 * Returns the settings
+	 */
+	public SimulatorSettings getSettings() {
+		return settings;
+	}
+	
 	/**
 	 * Returns the simulator clock
 	 */
@@ -86,6 +137,13 @@ public class Simulator {
 		return random;
 	}
 	
+	/**
+	 * Returns the random streams of the traffic
+	 */
+	public RandomStreams getRandomStreams() {
+		return randomStreams;
+	}
+	
 	/**
 	 * Returns the building
 	 */
@@ -115,16 +173,79 @@ public class Simulator {
 		this.exportStats = exportStats;
 	}
 
+	/**
+	 * Indicates if the simulator emits flight recorder events
+	 */
+	public boolean isRecordEvents() {
+		return recordEvents;
+	}
+	
+	/**
+	 * Sets if the simulator emits flight recorder events. Internal simulations, such as rollouts, should not.
+	 * @param recordEvents The record events state
+	 */
+	public void setRecordEvents(boolean recordEvents) {
+		this.recordEvents = recordEvents;
+	}
+	
+	/**
+	 * Returns the timer of the phases, or null if the phases are not timed
+	 */
+	public PhaseTimer getPhaseTimer() {
+		return phaseTimer;
+	}
+	
+	/**
+	 * Sets if the phases of the time steps and the callbacks of the schedulers are timed.
+	 * The times are printed with the statistics. Timing reads the clock several times per time step,
+	 * which slows down the simulation, while the cost without timing is one check per time step and callback.
+	 * @param timePhases Indicates if the phases are timed
+	 */
+	public void setTimePhases(boolean timePhases) {
+		if (timePhases && this.phaseTimer == null) {
+			this.phaseTimer = new PhaseTimer();
+		} else if (!timePhases) {
+			this.phaseTimer = null;
+		}
+	}
+	
 	/**
 	 * Moves the simulation forward one time step
 	 * @param duration The elapsed time since the last time step
 	 */
 	public void moveForward(long duration) {
+		if (this.phaseTimer != null) {
+			this.moveForwardTimed(duration);
+			return;
+		}
+		
 		this.building.update(this, duration);
 		this.controlSystem.update(duration);
 		this.stats.update();
 	}
 	
+	/**
+	 * Moves the simulation forward one time step, and times each phase
+	 * @param duration The elapsed time since the last time step
+	 */
+	private void moveForwardTimed(long duration) {
+		PhaseTimer timer = this.phaseTimer;
+		long startTime = System.nanoTime();
+		
+		this.building.updateFloors(this, duration);
+		long time = timer.record(PhaseTimer.Phase.FLOORS, startTime);
+		this.building.updateArrivals(this);
+		time = timer.record(PhaseTimer.Phase.ARRIVALS, time);
+		this.building.updateElevatorCars(this);
+		time = timer.record(PhaseTimer.Phase.ELEVATOR_CARS, time);
+		this.controlSystem.update(duration);
+		time = timer.record(PhaseTimer.Phase.SCHEDULER_UPDATE, time);
+		this.stats.update();
+		time = timer.record(PhaseTimer.Phase.STATS, time);
+		
+		timer.recordStep(startTime, time, duration);
+	}
+	
 	/**
 	 * Logs the given line
 	 * @param line The line
@@ -170,10 +291,28 @@ public class Simulator {
 	 * @param passenger The passenger
 	 */
 	public void passengerExited(ElevatorCar elevatorCar, Passenger passenger) {
+		if (passenger.isTransferring()) {
+			this.controlSystem.passengerExited(elevatorCar, passenger);
+			this.passengerTransferred(passenger);
+			return;
+		}
+		
 		this.stats.passengerExited(elevatorCar, passenger);
 		this.controlSystem.passengerExited(elevatorCar, passenger);
 	}
 	
+	/**
+	 * Starts the next ride for the given passenger that has exited at a transfer floor
+	 * @param passenger The passenger
+	 */
+	private void passengerTransferred(Passenger passenger) {
+		int floor = passenger.getDestinationFloor();
+		passenger.transfer(this.building.nextStop(floor, passenger.getFinalDestinationFloor()), this.clock);
+		this.building.getFloors()[floor].getWaitingQueue().add(passenger);
+		this.controlSystem.handleHallCall(passenger);
+		this.log("Passenger #" + passenger.getId() + " transferred at floor " + floor + ".");
+	}
+	
 	/**
 	 * Indicates if new arrivals can be generated
 	 */
@@ -253,16 +392,21 @@ public class Simulator {
 	 */
 	public void reset(long seed) {
 		if (seed == -1) {
-			this.random = new Random();
-		} else {
-			this.random = new Random(seed);
+			seed = new Random().nextLong();
 		}
 		
+		this.random = new Random(seed);
+		this.randomStreams = new RandomStreams(seed, this.antithetic);
+		
 		this.controlSystem.reset();
 		this.building.reset();
 		this.clock.reset();
 		this.stats.reset();
 		this.run = false;
+		
+		if (this.phaseTimer != null) {
+			this.phaseTimer.reset();
+		}
 	}
 	
 	/**
@@ -294,6 +438,10 @@ public class Simulator {
 	public void printStats() {
 		this.stats.printStats();
 		
+		if (this.phaseTimer != null) {
+			this.phaseTimer.printStats();
+		}
+		
 		if (this.isExportStats()) {
 			this.stats.exportStats(this.getSimulationName());
 		}
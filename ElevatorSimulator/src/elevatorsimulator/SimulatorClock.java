@@ -96,6 +96,14 @@ public class SimulatorClock {
 		return (hour < 10 ? "0" + hour : hour) + ":" + (min < 10 ? "0" + min : min) + ":" + (sec < 10 ? "0" + sec : sec);
 	}
 	
+	/**
+	 * Sets the current time. Used by clocks that mirror the clock of another simulator.
+	 * @param timeInSec The time in seconds
+	 */
+	public void setTime(double timeInSec) {
+		this.simulatedTime = timeInSec;
+	}
+	
 	/**
 	 * Resets the clock
 	 */
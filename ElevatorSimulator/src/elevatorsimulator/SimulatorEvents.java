@@ -0,0 +1,386 @@
+package elevatorsimulator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Contains the Java Flight Recorder events of the simulator, and the methods that emit them.
+ * The events are only filled in and committed when a recording with the event enabled is running, for example with
+ * -XX:StartFlightRecording=filename=simulator.jfr. Each event has the simulated time, besides the wall time of JFR,
+ * which relates the simulation to the GC and CPU samples of the same recording.
+ * The events are emitted at a high rate, so they are recorded without stack traces.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public final class SimulatorEvents {
+	private SimulatorEvents() {
+	
+	}
+	
+	/**
+	 * A passenger has made a hall call
+	 */
+	@Name("elevatorsimulator.PassengerArrived")
+	@Label("Passenger Arrived")
+	@Category({ "Elevator Simulator", "Passengers" })
+	@Description("A passenger has made a hall call")
+	@StackTrace(false)
+	public static class PassengerArrived extends Event {
+		@Label("Simulated Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long simulatedTime;
+		
+		@Label("Passenger Id")
+		public long passengerId;
+		
+		@Label("Arrival Floor")
+		public int arrivalFloor;
+		
+		@Label("Destination Floor")
+		public int destinationFloor;
+		
+		@Label("Transfers")
+		public int numTransfers;
+	}
+	
+	/**
+	 * A scheduler has assigned a hall call to an elevator car
+	 */
+	@Name("elevatorsimulator.PassengerAssigned")
+	@Label("Passenger Assigned")
+	@Category({ "Elevator Simulator", "Scheduling" })
+	@Description("A scheduler has assigned a hall call to an elevator car")
+	@StackTrace(false)
+	public static class PassengerAssigned extends Event {
+		@Label("Simulated Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long simulatedTime;
+		
+		@Label("Passenger Id")
+		public long passengerId;
+		
+		@Label("Elevator Car Id")
+		public int elevatorCarId;
+		
+		@Label("Arrival Floor")
+		public int arrivalFloor;
+		
+		@Label("Elevator Car Floor")
+		public int elevatorCarFloor;
+		
+		@Label("Scheduler")
+		public String scheduler;
+		
+		@Label("Shadow")
+		@Description("Indicates if the scheduler was in shadow mode, in which case the assignment is not acted upon")
+		public boolean shadow;
+	}
+	
+	/**
+	 * A passenger has boarded an elevator car
+	 */
+	@Name("elevatorsimulator.PassengerBoarded")
+	@Label("Passenger Boarded")
+	@Category({ "Elevator Simulator", "Passengers" })
+	@Description("A passenger has boarded an elevator car")
+	@StackTrace(false)
+	public static class PassengerBoarded extends Event {
+		@Label("Simulated Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long simulatedTime;
+		
+		@Label("Passenger Id")
+		public long passengerId;
+		
+		@Label("Elevator Car Id")
+		public int elevatorCarId;
+		
+		@Label("Floor")
+		public int floor;
+		
+		@Label("Destination Floor")
+		public int destinationFloor;
+		
+		@Label("Wait Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long waitTime;
+	}
+	
+	/**
+	 * A passenger has exited an elevator car
+	 */
+	@Name("elevatorsimulator.PassengerExited")
+	@Label("Passenger Exited")
+	@Category({ "Elevator Simulator", "Passengers" })
+	@Description("A passenger has exited an elevator car")
+	@StackTrace(false)
+	public static class PassengerExited extends Event {
+		@Label("Simulated Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long simulatedTime;
+		
+		@Label("Passenger Id")
+		public long passengerId;
+		
+		@Label("Elevator Car Id")
+		public int elevatorCarId;
+		
+		@Label("Floor")
+		public int floor;
+		
+		@Label("Ride Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long rideTime;
+		
+		@Label("Transferring")
+		public boolean transferring;
+	}
+	
+	/**
+	 * An elevator car has changed state
+	 */
+	@Name("elevatorsimulator.ElevatorStateChanged")
+	@Label("Elevator Car State Changed")
+	@Category({ "Elevator Simulator", "Elevator Cars" })
+	@Description("An elevator car has changed state")
+	@StackTrace(false)
+	public static class ElevatorStateChanged extends Event {
+		@Label("Simulated Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long simulatedTime;
+		
+		@Label("Elevator Car Id")
+		public int elevatorCarId;
+		
+		@Label("Previous State")
+		public String previousState;
+		
+		@Label("State")
+		public String state;
+		
+		@Label("Floor")
+		public int floor;
+		
+		@Label("Direction")
+		public String direction;
+		
+		@Label("Passengers")
+		public int numPassengers;
+	}
+	
+	/**
+	 * The active scheduler has been switched
+	 */
+	@Name("elevatorsimulator.SchedulerSwitched")
+	@Label("Scheduler Switched")
+	@Category({ "Elevator Simulator", "Scheduling" })
+	@Description("The active scheduler has been switched")
+	@StackTrace(false)
+	public static class SchedulerSwitched extends Event {
+		@Label("Simulated Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long simulatedTime;
+		
+		@Label("Previous Scheduler")
+		public String previousScheduler;
+		
+		@Label("Scheduler")
+		public String scheduler;
+		
+		@Label("Rebuilt")
+		@Description("Indicates if the state of the scheduler was rebuilt, instead of kept in shadow mode")
+		public boolean rebuilt;
+	}
+	
+	/**
+	 * A learning agent has been updated
+	 */
+	@Name("elevatorsimulator.AgentUpdated")
+	@Label("Agent Updated")
+	@Category({ "Elevator Simulator", "Reinforcement Learning" })
+	@Description("A learning agent has been updated with the reward of its last action")
+	@StackTrace(false)
+	public static class AgentUpdated extends Event {
+		@Label("Simulated Time")
+		@Timespan(Timespan.NANOSECONDS)
+		public long simulatedTime;
+		
+		@Label("Action")
+		public String action;
+		
+		@Label("Reward")
+		public double reward;
+		
+		@Label("Terminal")
+		public boolean terminal;
+	}
+	
+	/**
+	 * Emits the event for the arrival of the given passenger
+	 * @param simulator The simulator
+	 * @param passenger The passenger
+	 */
+	public static void passengerArrived(Simulator simulator, Passenger passenger) {
+		if (!simulator.isRecordEvents()) {
+			return;
+		}
+		
+		PassengerArrived event = new PassengerArrived();
+		if (event.isEnabled()) {
+			event.simulatedTime = simulator.getClock().simulatedTime();
+			event.passengerId = passenger.getId();
+			event.arrivalFloor = passenger.getArrivalFloor();
+			event.destinationFloor = passenger.getDestinationFloor();
+			event.numTransfers = passenger.getNumTransfers();
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Emits the event for the assignment of the call of the given passenger to the given elevator car
+	 * @param simulator The simulator
+	 * @param passenger The passenger
+	 * @param elevatorCar The elevator car
+	 * @param scheduler The scheduler that assigned the call
+	 * @param shadow Indicates if the scheduler is in shadow mode
+	 */
+	public static void passengerAssigned(Simulator simulator, Passenger passenger, ElevatorCar elevatorCar, SchedulingAlgorithm scheduler,
+		boolean shadow) {
+		if (!simulator.isRecordEvents()) {
+			return;
+		}
+		
+		PassengerAssigned event = new PassengerAssigned();
+		if (event.isEnabled()) {
+			event.simulatedTime = simulator.getClock().simulatedTime();
+			event.passengerId = passenger.getId();
+			event.elevatorCarId = elevatorCar.getId();
+			event.arrivalFloor = passenger.getArrivalFloor();
+			event.elevatorCarFloor = elevatorCar.getFloor();
+			event.scheduler = scheduler.toString();
+			event.shadow = shadow;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Emits the event for the boarding of the given passenger
+	 * @param simulator The simulator
+	 * @param elevatorCar The elevator car
+	 * @param passenger The passenger
+	 */
+	public static void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+		if (!simulator.isRecordEvents()) {
+			return;
+		}
+		
+		PassengerBoarded event = new PassengerBoarded();
+		if (event.isEnabled()) {
+			event.simulatedTime = simulator.getClock().simulatedTime();
+			event.passengerId = passenger.getId();
+			event.elevatorCarId = elevatorCar.getId();
+			event.floor = passenger.getArrivalFloor();
+			event.destinationFloor = passenger.getDestinationFloor();
+			event.waitTime = passenger.waitTime(simulator.getClock());
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Emits the event for the exit of the given passenger
+	 * @param simulator The simulator
+	 * @param elevatorCar The elevator car
+	 * @param passenger The passenger
+	 */
+	public static void passengerExited(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+		if (!simulator.isRecordEvents()) {
+			return;
+		}
+		
+		PassengerExited event = new PassengerExited();
+		if (event.isEnabled()) {
+			event.simulatedTime = simulator.getClock().simulatedTime();
+			event.passengerId = passenger.getId();
+			event.elevatorCarId = elevatorCar.getId();
+			event.floor = elevatorCar.getFloor();
+			event.rideTime = passenger.rideTime(simulator.getClock());
+			event.transferring = passenger.isTransferring();
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Emits the event for a change of the state of the given elevator car
+	 * @param simulator The simulator
+	 * @param elevatorCar The elevator car, which is in its new state
+	 * @param previousState The previous state
+	 */
+	public static void elevatorStateChanged(Simulator simulator, ElevatorCar elevatorCar, ElevatorCar.State previousState) {
+		if (!simulator.isRecordEvents()) {
+			return;
+		}
+		
+		ElevatorStateChanged event = new ElevatorStateChanged();
+		if (event.isEnabled()) {
+			event.simulatedTime = simulator.getClock().simulatedTime();
+			event.elevatorCarId = elevatorCar.getId();
+			event.previousState = previousState.toString();
+			event.state = elevatorCar.getState().toString();
+			event.floor = elevatorCar.getFloor();
+			event.direction = elevatorCar.getDirection().toString();
+			event.numPassengers = elevatorCar.getPassengers().size();
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Emits the event for a switch of the active scheduler
+	 * @param simulator The simulator
+	 * @param previousScheduler The previous scheduler
+	 * @param scheduler The new scheduler
+	 * @param rebuilt Indicates if the state of the new scheduler was rebuilt
+	 */
+	public static void schedulerSwitched(Simulator simulator, SchedulingAlgorithm previousScheduler, SchedulingAlgorithm scheduler,
+		boolean rebuilt) {
+		if (!simulator.isRecordEvents()) {
+			return;
+		}
+		
+		SchedulerSwitched event = new SchedulerSwitched();
+		if (event.isEnabled()) {
+			event.simulatedTime = simulator.getClock().simulatedTime();
+			event.previousScheduler = previousScheduler.toString();
+			event.scheduler = scheduler.toString();
+			event.rebuilt = rebuilt;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Emits the event for an update of a learning agent
+	 * @param simulator The simulator
+	 * @param actionType The enum of the actions, which is only used for the name of the action when the event is recorded
+	 * @param action The ordinal of the last action
+	 * @param reward The reward of the action
+	 * @param terminal Indicates if the state is terminal
+	 */
+	public static void agentUpdated(Simulator simulator, Class<? extends Enum<?>> actionType, int action, double reward, boolean terminal) {
+		if (!simulator.isRecordEvents()) {
+			return;
+		}
+		
+		AgentUpdated event = new AgentUpdated();
+		if (event.isEnabled()) {
+			event.simulatedTime = simulator.getClock().simulatedTime();
+			event.action = actionType.getEnumConstants()[action].toString();
+			event.reward = reward;
+			event.terminal = terminal;
+			event.commit();
+		}
+	}
+}
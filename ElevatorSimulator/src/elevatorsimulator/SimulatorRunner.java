@@ -1,8 +1,21 @@
 package elevatorsimulator;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import elevatorsimulator.schedulers.*;
 
@@ -16,13 +29,21 @@ public class SimulatorRunner {
 	private final SimulatorSettings settings;
 	private final List<Scenario> scenarios;
 	private final List<SchedulerCreator> schedulerCreators;
+	private boolean antithetic = false;
+	
+	private double relativePrecision = 0;
+	private double confidence = 0.95;
+	private int minRuns = 3;
+	private int numThreads = 1;
+	private boolean timePhases = false;
+	private MetricsServer metrics;
 	
 	public final static int NUM_DATA_RUNS = 1000;
 	public final static long DATA_RUN_SEED = 1337 * 4711;
 	
 	/**
 	 * Creates a new simulator runner
-	 * @param numRuns The number of runs
+	 * @param numRuns The (maximum) number of runs
 	 * @param settings The settings to use
 	 * @param scenarios The scenarios
 	 * @param schedulerCreators The schedulers to use
@@ -35,52 +56,409 @@ public class SimulatorRunner {
 	}
 		
 	/**
-	 * Runs the simulator with the specified scenarios, schedulers and traffic profiles
+	 * Sets if the runs are made in antithetic pairs. The two runs of a pair use the same seed,
+	 * where the traffic of the second run is antithetic to the traffic of the first run.
+	 * As all schedulers get the same traffic for the same seed, the schedulers are then compared with common random numbers.
+	 * @param antithetic The antithetic state
 	 */
-	public void run() {
+	public void setAntithetic(boolean antithetic) {
+		this.antithetic = antithetic;
+	}
+	
+	/**
+	 * Sets the rule for stopping the runs of a scheduler before the maximum number of runs.
+	 * The runs of a scheduler stop when the half-width of the confidence interval of both the average wait time
+	 * and the average squared wait time is within the given relative precision of their means.
+	 * In antithetic mode, each pair of runs is one observation.
+	 * @param relativePrecision The relative precision, such as 0.01 for 1%. 0 to always do the maximum number of runs.
+	 * @param confidence The confidence level, such as 0.95
+	 * @param minRuns The minimum number of runs, at least 3
+	 */
+	public void setStoppingRule(double relativePrecision, double confidence, int minRuns) {
+		if (confidence <= 0 || confidence >= 1) {
+			throw new IllegalArgumentException("The confidence level must be in (0, 1).");
+		}
+		
+		if (minRuns < 3) {
+			throw new IllegalArgumentException("The minimum number of runs must be at least 3.");
+		}
+		
+		this.relativePrecision = relativePrecision;
+		this.confidence = confidence;
+		this.minRuns = minRuns;
+	}
+	
+	/**
+	 * Sets the number of threads that the runs are executed on. With more than one thread, the runs are executed
+	 * in parallel, with one run in flight per thread, and the runs in flight when the stopping rule is met are cancelled.
+	 * The results are the same as with one thread, as the finished runs are added in order.
+	 * @param numThreads The number of threads
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+	
+	/**
+	 * Sets if the phases of the runs are timed. The summed times of the runs of each scheduler are printed with its results.
+	 * @param timePhases Indicates if the phases are timed
+	 */
+	public void setTimePhases(boolean timePhases) {
+		this.timePhases = timePhases;
+	}
+	
+	/**
+	 * Sets the server that the progress of the runs is published to, as the runs finish
+	 * @param metrics The metrics server, or null to not publish the progress
+	 */
+	public void setMetricsServer(MetricsServer metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Contains the results of a finished run
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	private static class RunResult {
+		private final int run;
+		private final String name;
+		private final double simulatedTime;
+		private final StatsInterval stats;
+		private final List<StatsInterval> hourStats;
+		private final PhaseTimer phaseTimer;
+		
+		/**
+		 * Creates the result of the given finished run
+		 * @param run The index of the run
+		 * @param simulator The simulator of the run
+		 */
+		public RunResult(int run, Simulator simulator) {
+			this.run = run;
+			this.name = simulator.getSimulationName();
+			this.simulatedTime = simulator.getClock().timeNowSec();
+			this.stats = simulator.getStats().getGlobalInterval();
+			this.hourStats = simulator.getStats().getStatsIntervals();
+			this.phaseTimer = simulator.getPhaseTimer();
+		}
+	}
+	
+	/**
+	 * Contains the finished runs of a scheduler in a scenario
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	private class Runs {
+		private final List<StatsInterval> stats = new ArrayList<StatsInterval>();
+		private final List<List<StatsInterval>> hourStats = new ArrayList<List<StatsInterval>>();
+		private final RunningStatistic waitTime = new RunningStatistic();
+		private final RunningStatistic squaredWaitTime = new RunningStatistic();
+		private final PhaseTimer phaseTimer = new PhaseTimer();
+		private String name = "";
+		
+		/**
+		 * Adds the given finished run, and prints its result
+		 * @param result The result of the run
+		 * @return True if the stopping rule is met
+		 */
+		public boolean add(RunResult result) {
+			StatsInterval globalStats = result.stats;
+			this.stats.add(globalStats);
+			this.hourStats.add(result.hourStats);
+			
+			if (result.phaseTimer != null) {
+				this.phaseTimer.add(result.phaseTimer);
+			}
+			
+			if (this.name == "") {
+				this.name = result.name;
+			}
+			
+			System.out.println(this.name + " run " + (result.run + 1) + ": average wait time " + globalStats.averageWaitTime()
+				+ " s, average squared wait time " + globalStats.averageSquaredWaitTime() + " s^2.");
+			
+			if (antithetic) {
+				if (this.stats.size() % 2 == 0) {
+					StatsInterval pairStats = this.stats.get(this.stats.size() - 2);
+					this.waitTime.add((pairStats.averageWaitTime() + globalStats.averageWaitTime()) / 2);
+					this.squaredWaitTime.add((pairStats.averageSquaredWaitTime() + globalStats.averageSquaredWaitTime()) / 2);
+				}
+			} else {
+				this.waitTime.add(globalStats.averageWaitTime());
+				this.squaredWaitTime.add(globalStats.averageSquaredWaitTime());
+			}
+			
+			if (metrics != null) {
+				this.publish(result);
+			}
+			
+			return this.converged();
+		}
+		
+		/**
+		 * Publishes the progress after the given finished run
+		 * @param result The result of the run
+		 */
+		private void publish(RunResult result) {
+			metrics.add("runs_done_total", 1);
+			metrics.addSimulatedTime(result.simulatedTime);
+			metrics.set(MetricsServer.labeled("runs_done", "simulation", this.name), this.stats.size());
+			metrics.set(MetricsServer.labeled("average_wait_time_seconds", "simulation", this.name), this.waitTime.getMean());
+			metrics.set(MetricsServer.labeled("average_squared_wait_time_seconds_squared", "simulation", this.name), this.squaredWaitTime.getMean());
+			metrics.set(MetricsServer.labeled("converged", "simulation", this.name), this.converged() ? 1 : 0);
+		}
+		
+		/**
+		 * Indicates if the stopping rule is met
+		 */
+		private boolean converged() {
+			if (relativePrecision <= 0 || this.stats.size() < minRuns || (antithetic && this.stats.size() % 2 != 0)) {
+				return false;
+			}
+			
+			return
+				this.waitTime.halfWidth(confidence) <= relativePrecision * Math.abs(this.waitTime.getMean())
+				&& this.squaredWaitTime.halfWidth(confidence) <= relativePrecision * Math.abs(this.squaredWaitTime.getMean());
+		}
+		
+		/**
+		 * Prints the confidence intervals
+		 */
+		public void printStats() {
+			System.out.println(this.name + ": " + this.stats.size() + " runs" + (this.converged() ? "" : " (not converged)") + ".");
+			System.out.println("Average wait time: " + this.waitTime.getMean() + " +- " + this.waitTime.halfWidth(confidence) + " s");
+			System.out.println("Average squared wait time: " + this.squaredWaitTime.getMean()
+				+ " +- " + this.squaredWaitTime.halfWidth(confidence) + " s^2");
+			
+			if (timePhases) {
+				this.phaseTimer.printStats();
+			}
+		}
+	}
+	
+	/**
+	 * Creates the simulator for the given run
+	 * @param scenario The scenario
+	 * @param schedulerCreator The scheduler creator
+	 * @param randSeeds The seeds of the runs
+	 * @param run The index of the run
+	 */
+	private Simulator createSimulator(Scenario scenario, SchedulerCreator schedulerCreator, long[] randSeeds, int run) {
+		Simulator simulator;
+		if (this.antithetic) {
+			simulator = new Simulator(scenario, this.settings, schedulerCreator, randSeeds[run / 2], run % 2 == 1);
+		} else {
+			simulator = new Simulator(scenario, this.settings, schedulerCreator, randSeeds[run]);
+		}
+		
+		simulator.setExportStats(false);
+		simulator.setTimePhases(this.timePhases);
+		return simulator;
+	}
+	
+	/**
+	 * Returns the seeds of the given number of data runs. The seeds are the same for every scenario and scheduler,
+	 * and the first seeds do not depend on the number of runs.
+	 * @param numRuns The number of runs
+	 */
+	public static long[] dataRunSeeds(int numRuns) {
 		Random seedGenerator = new Random(DATA_RUN_SEED);
+		long[] seeds = new long[numRuns];
+		for (int i = 0; i < numRuns; i++) {
+			seeds[i] = seedGenerator.nextLong();
+		}
+		
+		return seeds;
+	}
+	
+	/**
+	 * Runs the given simulator until it has finished, without printing its statistics.
+	 * The run stops early if the thread is interrupted.
+	 * @param simulator The simulator
+	 * @return True if the run finished, false if it was interrupted
+	 */
+	public static boolean runToCompletion(Simulator simulator) {
+		return runToCompletion(simulator, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Runs the given simulator until it has finished, without printing its statistics.
+	 * The run stops early if the thread is interrupted, or if more than the given number of passengers are waiting.
+	 * @param simulator The simulator
+	 * @param maxWaitingPassengers The largest number of waiting passengers
+	 * @return True if the run finished, false if it was stopped
+	 */
+	public static boolean runToCompletion(Simulator simulator, int maxWaitingPassengers) {
+		Queue<Passenger> hallQueue = simulator.getControlSystem().getHallQueue();
+		simulator.start();
+		
+		while (simulator.advance()) {
+			if (Thread.currentThread().isInterrupted() || hallQueue.size() > maxWaitingPassengers) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Executes the given run
+	 * @param scenario The scenario
+	 * @param schedulerCreator The scheduler creator
+	 * @param randSeeds The seeds of the runs
+	 * @param run The index of the run
+	 * @return The result, or null if the run was interrupted
+	 */
+	private RunResult execute(Scenario scenario, SchedulerCreator schedulerCreator, long[] randSeeds, int run) {
+		Simulator simulator = this.createSimulator(scenario, schedulerCreator, randSeeds, run);
+		if (!runToCompletion(simulator)) {
+			return null;
+		}
+		
+		return new RunResult(run, simulator);
+	}
+	
+	/**
+	 * Executes the runs of the given scheduler one at a time
+	 * @param scenario The scenario
+	 * @param schedulerCreator The scheduler creator
+	 * @param randSeeds The seeds of the runs
+	 */
+	private Runs runSerial(Scenario scenario, SchedulerCreator schedulerCreator, long[] randSeeds) {
+		Runs runs = new Runs();
 		
-		long[] randSeeds = new long[this.numRuns];
 		for (int i = 0; i < this.numRuns; i++) {
-			randSeeds[i] = seedGenerator.nextLong();
+			if (runs.add(this.execute(scenario, schedulerCreator, randSeeds, i))) {
+				break;
+			}
 		}
 		
-		for (Scenario scenario : this.scenarios) {
-			System.out.println("----------------Running scenario " + scenario.getName() +  "----------------");
-						
-			for (SchedulerCreator schedulerCreator : this.schedulerCreators) {
-				List<StatsInterval> stats = new ArrayList<StatsInterval>();
-				List<List<StatsInterval>> hourStats = new ArrayList<List<StatsInterval>>();
-				String name = "";
+		return runs;
+	}
+	
+	/**
+	 * Submits the given run to the given completion service
+	 * @param completion The completion service
+	 * @param scenario The scenario
+	 * @param schedulerCreator The scheduler creator
+	 * @param randSeeds The seeds of the runs
+	 * @param run The index of the run
+	 */
+	private Future<RunResult> submit(CompletionService<RunResult> completion, final Scenario scenario,
+		final SchedulerCreator schedulerCreator, final long[] randSeeds, final int run) {
+		return completion.submit(new Callable<RunResult>() {
+			@Override
+			public RunResult call() {
+				return execute(scenario, schedulerCreator, randSeeds, run);
+			}
+		});
+	}
+	
+	/**
+	 * Executes the runs of the given scheduler on the given executor, with one run in flight per thread.
+	 * A new run is submitted when a run finishes, until the stopping rule is met.
+	 * @param executor The executor
+	 * @param scenario The scenario
+	 * @param schedulerCreator The scheduler creator
+	 * @param randSeeds The seeds of the runs
+	 */
+	private Runs runParallel(ExecutorService executor, Scenario scenario, SchedulerCreator schedulerCreator, long[] randSeeds) {
+		Runs runs = new Runs();
+		CompletionService<RunResult> completion = new ExecutorCompletionService<RunResult>(executor);
+		Set<Future<RunResult>> inFlight = new HashSet<Future<RunResult>>();
+		Map<Integer, RunResult> finished = new HashMap<Integer, RunResult>();
+		int nextRun = 0;
+		int nextAdded = 0;
+		
+		try {
+			while (nextRun < this.numRuns && inFlight.size() < this.numThreads) {
+				inFlight.add(this.submit(completion, scenario, schedulerCreator, randSeeds, nextRun++));
+			}
+			
+			while (!inFlight.isEmpty()) {
+				Future<RunResult> future = completion.take();
+				inFlight.remove(future);
+				RunResult result = future.get();
+				finished.put(result.run, result);
 				
-				for (int i = 0; i < this.numRuns; i++) {
-					Simulator simulator = new Simulator(scenario, this.settings, schedulerCreator, randSeeds[i]);
-					simulator.setExportStats(false);
-					simulator.run();
-					stats.add(simulator.getStats().getGlobalInterval());
-					hourStats.add(simulator.getStats().getStatsIntervals());
-					
-					if (name == "") {
-						name = simulator.getSimulationName();
+				//The runs are added in order, which makes the stopping point the same as for serial execution
+				while (finished.containsKey(nextAdded)) {
+					if (runs.add(finished.remove(nextAdded++))) {
+						return runs;
 					}
 				}
 				
-				List<StatsInterval> averageStats = new ArrayList<StatsInterval>();
-				averageStats.add(StatsInterval.average(stats));
-				StatsInterval.exportStats(name, averageStats, SimulatorStats.INTERVAL_LENGTH_SEC);
+				if (nextRun < this.numRuns) {
+					inFlight.add(this.submit(completion, scenario, schedulerCreator, randSeeds, nextRun++));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (Future<RunResult> future : inFlight) {
+				future.cancel(true);
+			}
+		}
+		
+		return runs;
+	}
+	
+	/**
+	 * Runs the simulator with the specified scenarios, schedulers and traffic profiles
+	 */
+	public void run() {
+		long[] randSeeds = dataRunSeeds(this.numRuns);
+		
+		ExecutorService executor = this.numThreads > 1 ? Executors.newFixedThreadPool(this.numThreads) : null;
+		
+		if (this.metrics != null) {
+			this.metrics.set("runs_max", this.numRuns);
+			this.metrics.set("simulations", this.scenarios.size() * this.schedulerCreators.size());
+		}
+		
+		try {
+			for (Scenario scenario : this.scenarios) {
+				System.out.println("----------------Running scenario " + scenario.getName() +  "----------------");
+				
+				for (SchedulerCreator schedulerCreator : this.schedulerCreators) {
+					Runs runs = executor != null
+						? this.runParallel(executor, scenario, schedulerCreator, randSeeds)
+						: this.runSerial(scenario, schedulerCreator, randSeeds);
+					
+					runs.printStats();
+					
+					List<StatsInterval> averageStats = new ArrayList<StatsInterval>();
+					averageStats.add(StatsInterval.average(runs.stats));
+					StatsInterval.exportStats(runs.name, averageStats, SimulatorStats.INTERVAL_LENGTH_SEC);
+					
+					List<StatsInterval> averageHourStats = StatsInterval.averageHours(runs.hourStats);
+					StatsInterval.exportStats(runs.name + "-Hour", averageHourStats, SimulatorStats.INTERVAL_LENGTH_SEC);
+					
+					if (this.metrics != null) {
+						this.metrics.add("simulations_done_total", 1);
+					}
+				}
 				
-				List<StatsInterval> averageHourStats = StatsInterval.averageHours(hourStats);			
-				StatsInterval.exportStats(name + "-Hour", averageHourStats, SimulatorStats.INTERVAL_LENGTH_SEC);
+				System.out.println("----------------End scenario----------------");
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
 			}
-			
-			System.out.println("----------------End scenario----------------");
 		}
 	}
 	
-	public static void main(String[] args) {
+	/**
+	 * Runs the simulator. If a port is given as argument, the progress is published on a metrics server on that port.
+	 * @param args The arguments
+	 */
+	public static void main(String[] args) throws IOException {
 		List<Scenario> scenarios = new ArrayList<Scenario>();
 		
-		scenarios.add(Scenarios.createMediumBuilding(2));
+		final Scenario mediumBuilding = Scenarios.createMediumBuilding(2);
+		scenarios.add(mediumBuilding);
 //		scenarios.add(Scenarios.createMediumBuilding(3));
 //		scenarios.add(Scenarios.createLargeBuilding(3));
 //		scenarios.add(Scenarios.createLargeBuilding(4));
@@ -90,7 +468,7 @@ public class SimulatorRunner {
 			@Override
 			
 			public SchedulingAlgorithm createScheduler(Building building) {
-				return new LongestQueueFirst(); 
+				return new LongestQueueFirst(building); 
 			}
 		});
 		
@@ -123,8 +501,43 @@ public class SimulatorRunner {
 			}
 		});
 		
+		schedulerCreators.add(new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				//A time budget of one millisecond per decision
+				return new LearnedDispatcher(building, 1000000);
+			}
+		});
+		
+		schedulerCreators.add(new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new BatchedAssignment(building);
+			}
+		});
+		
+		schedulerCreators.add(new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				//The rollouts are simulated in the medium building, and run in the calling thread as the runs use all cores
+				return new RolloutDispatcher(building, mediumBuilding, new SchedulerCreator() {
+					@Override
+					public SchedulingAlgorithm createScheduler(Building building) {
+						return new ThreePassageGroupElevator(building);
+					}
+				}, null);
+			}
+		});
+		
 		SimulatorSettings settings = new SimulatorSettings(0.01, 24 * 60 * 60);	
 		SimulatorRunner runner = new SimulatorRunner(NUM_DATA_RUNS, settings, scenarios, schedulerCreators);
+		runner.setStoppingRule(0.01, 0.95, 30);
+		runner.setNumThreads(Runtime.getRuntime().availableProcessors());
+		
+		if (args.length > 0) {
+			runner.setMetricsServer(new MetricsServer(Integer.parseInt(args[0])));
+		}
+		
 		runner.run();
 	}
 }
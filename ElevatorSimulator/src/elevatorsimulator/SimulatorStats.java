@@ -1,6 +1,7 @@
 package elevatorsimulator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -10,7 +11,6 @@ import java.util.List;
  */
 public class SimulatorStats {
 	private final SimulatorClock clock;
-	private final Simulator simulator;
 	private final long numResidents;
 	
 	private StatsInterval globalInterval;
@@ -36,13 +36,31 @@ public class SimulatorStats {
 	 * @param simulator The simulator
 	 */
 	public SimulatorStats(Simulator simulator) {
-		this.simulator = simulator;
-		this.clock = simulator.getClock();
-		int numFloors = simulator.getBuilding().getFloors().length;
-		this.numResidents = simulator.getBuilding().getTotalNumberOfResidents();
+		this(simulator.getClock(), new Building[] { simulator.getBuilding() });
+	}
+	
+	/**
+	 * Holds the combined statistics for the given buildings. The floors and elevator cars are numbered
+	 * in the order of the buildings.
+	 * @param clock The clock
+	 * @param buildings The buildings
+	 */
+	public SimulatorStats(SimulatorClock clock, Building[] buildings) {
+		this.clock = clock;
+		
+		int numFloors = 0;
+		long numResidents = 0;
+		List<ElevatorCar> elevatorCars = new ArrayList<ElevatorCar>();
+		for (Building building : buildings) {
+			numFloors += building.getFloors().length;
+			numResidents += building.getTotalNumberOfResidents();
+			elevatorCars.addAll(Arrays.asList(building.getElevatorCars()));
+		}
+		
+		this.numResidents = numResidents;
 		this.passengerFloorArrivals = new int[numFloors];
 		this.passengerFloorExits = new int[numFloors];
-		this.elevatorCars = simulator.getBuilding().getElevatorCars();
+		this.elevatorCars = elevatorCars.toArray(new ElevatorCar[elevatorCars.size()]);
 		
 		this.globalInterval = StatsInterval.newTimeInterval(0, this.elevatorCars.length);
 		this.pollInterval = StatsInterval.newPollInterval(0, this.elevatorCars.length);
@@ -58,7 +76,7 @@ public class SimulatorStats {
 		this.updateGeneratedPassenger(this.currentStatsInterval, passenger);
 		this.updateGeneratedPassenger(this.pollInterval, passenger);
 		this.passengerFloorArrivals[passenger.getArrivalFloor()]++;
-		this.passengerFloorExits[passenger.getDestinationFloor()]++;
+		this.passengerFloorExits[passenger.getFinalDestinationFloor()]++;
 	}
 	
 	/**
@@ -69,7 +87,7 @@ public class SimulatorStats {
 	private void updateGeneratedPassenger(StatsInterval statsInterval, Passenger passenger) {
 		statsInterval.increaseNumGenerated();
 		
-		if (passenger.getArrivalFloor() != 0 && passenger.getDestinationFloor() != 0) {
+		if (passenger.getArrivalFloor() != 0 && passenger.getFinalDestinationFloor() != 0) {
 			statsInterval.increaseNumInterfloors();
 		}
 		
@@ -77,7 +95,7 @@ public class SimulatorStats {
 			statsInterval.increaseNumUp();
 		}
 		
-		if (passenger.getDestinationFloor() == 0) {
+		if (passenger.getFinalDestinationFloor() == 0) {
 			statsInterval.increaseNumDown();
 		}
 	}
@@ -217,7 +235,7 @@ public class SimulatorStats {
 	 * Updates the statistics
 	 */
 	public void update() {
-		double timeNow = this.simulator.getClock().timeNowSec();
+		double timeNow = this.clock.timeNowSec();
 		double duration = timeNow - this.currentStatsInterval.getStartTime();
 		if (duration >= INTERVAL_LENGTH_SEC) {
 			this.statsIntervals.add(this.currentStatsInterval);
@@ -225,6 +243,59 @@ public class SimulatorStats {
 		}
 	}
 	
+	/**
+	 * Adds the given interval of the given stats, as a combined interval. The stats must be for the buildings
+	 * that these stats were created for, in the same order.
+	 * @param buildingStats The stats for each building
+	 * @param interval The index of the interval
+	 * @return True if any of the stats had the interval
+	 */
+	public boolean combineInterval(SimulatorStats[] buildingStats, int interval) {
+		StatsInterval combinedInterval = null;
+		int elevatorCarOffset = 0;
+		
+		for (SimulatorStats stats : buildingStats) {
+			if (interval < stats.statsIntervals.size()) {
+				StatsInterval statsInterval = stats.statsIntervals.get(interval);
+				if (combinedInterval == null) {
+					combinedInterval = StatsInterval.newTimeInterval(statsInterval.getStartTime(), this.elevatorCars.length);
+				}
+				
+				combinedInterval.add(statsInterval, elevatorCarOffset);
+			}
+			
+			elevatorCarOffset += stats.elevatorCars.length;
+		}
+		
+		if (combinedInterval == null) {
+			return false;
+		}
+		
+		this.statsIntervals.add(combinedInterval);
+		return true;
+	}
+	
+	/**
+	 * Sets the global statistics to the combination of the given stats. The stats must be for the buildings
+	 * that these stats were created for, in the same order.
+	 * @param buildingStats The stats for each building
+	 */
+	public void combineGlobal(SimulatorStats[] buildingStats) {
+		this.globalInterval = StatsInterval.newTimeInterval(0, this.elevatorCars.length);
+		int elevatorCarOffset = 0;
+		int floorOffset = 0;
+		
+		for (SimulatorStats stats : buildingStats) {
+			this.globalInterval.add(stats.globalInterval, elevatorCarOffset);
+			elevatorCarOffset += stats.elevatorCars.length;
+			
+			int numFloors = stats.passengerFloorArrivals.length;
+			System.arraycopy(stats.passengerFloorArrivals, 0, this.passengerFloorArrivals, floorOffset, numFloors);
+			System.arraycopy(stats.passengerFloorExits, 0, this.passengerFloorExits, floorOffset, numFloors);
+			floorOffset += numFloors;
+		}
+	}
+	
 	/**
 	 * Marks that the simulation is finished
 	 */
@@ -1,8 +1,11 @@
 package elevatorsimulator;
 
 import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -266,6 +269,90 @@ public class StatsInterval {
 		this.elevatorCarDistribution[elevatorCarId]++;
 	}
 	
+	/**
+	 * Adds the given interval to this interval
+	 * @param interval The interval
+	 * @param elevatorCarOffset The index in this interval of the first elevator car in the given interval
+	 */
+	public void add(StatsInterval interval, int elevatorCarOffset) {
+		this.numGenerated += interval.numGenerated;
+		this.numExists += interval.numExists;
+		this.numUp += interval.numUp;
+		this.numDown += interval.numDown;
+		this.numInterfloors += interval.numInterfloors;
+		this.totalWaitTime += interval.totalWaitTime;
+		this.totalSquaredWaitTime += interval.totalSquaredWaitTime;
+		this.totalRideTime += interval.totalRideTime;
+		this.numWaitsOver60s += interval.numWaitsOver60s;
+		this.longestWaitTime = Math.max(this.longestWaitTime, interval.longestWaitTime);
+		
+		for (int i = 0; i < interval.elevatorCarDistribution.length; i++) {
+			this.elevatorCarDistribution[elevatorCarOffset + i] += interval.elevatorCarDistribution[i];
+		}
+	}
+	
+	/**
+	 * Writes the interval to the given output
+	 * @param output The output
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		output.writeDouble(this.startTime);
+		output.writeInt(this.num);
+		output.writeLong(this.numGenerated);
+		output.writeLong(this.numExists);
+		output.writeLong(this.numUp);
+		output.writeLong(this.numDown);
+		output.writeLong(this.numInterfloors);
+		output.writeDouble(this.totalWaitTime);
+		output.writeDouble(this.totalSquaredWaitTime);
+		output.writeDouble(this.totalRideTime);
+		output.writeLong(this.numWaitsOver60s);
+		output.writeDouble(this.longestWaitTime);
+		output.writeInt(this.elevatorCarDistribution.length);
+		
+		for (int served : this.elevatorCarDistribution) {
+			output.writeInt(served);
+		}
+	}
+	
+	/**
+	 * Reads an interval written by writeTo from the given input
+	 * @param input The input
+	 */
+	public static StatsInterval readFrom(DataInput input) throws IOException {
+		double startTime = input.readDouble();
+		int num = input.readInt();
+		long[] counts = new long[5];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = input.readLong();
+		}
+		
+		double totalWaitTime = input.readDouble();
+		double totalSquaredWaitTime = input.readDouble();
+		double totalRideTime = input.readDouble();
+		long numWaitsOver60s = input.readLong();
+		double longestWaitTime = input.readDouble();
+		int numElevators = input.readInt();
+		
+		StatsInterval interval = num != -1 ? new StatsInterval(num, numElevators) : new StatsInterval(startTime, numElevators);
+		interval.numGenerated = counts[0];
+		interval.numExists = counts[1];
+		interval.numUp = counts[2];
+		interval.numDown = counts[3];
+		interval.numInterfloors = counts[4];
+		interval.totalWaitTime = totalWaitTime;
+		interval.totalSquaredWaitTime = totalSquaredWaitTime;
+		interval.totalRideTime = totalRideTime;
+		interval.numWaitsOver60s = numWaitsOver60s;
+		interval.longestWaitTime = longestWaitTime;
+		
+		for (int i = 0; i < numElevators; i++) {
+			interval.elevatorCarDistribution[i] = input.readInt();
+		}
+		
+		return interval;
+	}
+	
 	/**
 	 * Averages the given intervals and returns a new interval
 	 * @param intervals The intervals
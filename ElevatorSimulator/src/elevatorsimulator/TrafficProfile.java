@@ -51,6 +51,14 @@ public class TrafficProfile {
 			return downRate;
 		}	
 		
+		/**
+		 * Returns a copy of the interval where the arrival ratio is scaled by the given factor
+		 * @param factor The factor
+		 */
+		public Interval scale(double factor) {
+			return new Interval((this.averageArrivalRatio / 2) * factor, this.upRate, this.downRate);
+		}
+		
 		/**
 		 * Returns the interfloor rate
 		 */
@@ -64,17 +72,27 @@ public class TrafficProfile {
 		 * @param floor The floor
 		 */
 		public double averageNumberOfArrivals(Building building, Floor floor) {
-			if (floor.getFloorNumber() == Building.LOBBY) {
+			return this.averageNumberOfArrivals(building.getTotalNumberOfResidents(), floor.getFloorNumber(), floor.getNumResidents());
+		}
+		
+		/**
+		 * Calculates the average number of arrival for a floor
+		 * @param totalNumResidents The total number of residents in the building
+		 * @param floorNumber The floor number
+		 * @param floorNumResidents The number of residents on the floor
+		 */
+		public double averageNumberOfArrivals(int totalNumResidents, int floorNumber, int floorNumResidents) {
+			if (floorNumber == Building.LOBBY) {
 				return 
-					building.getTotalNumberOfResidents()
+					totalNumResidents
 					* this.averageArrivalRatio
 					* this.upRate;
 			} else {
 				return 
-					building.getTotalNumberOfResidents()
+					totalNumResidents
 					* this.averageArrivalRatio
 					* (this.getInterfloorRate() + this.getDownRate()) 
-					* (floor.getNumResidents() / (double)building.getTotalNumberOfResidents());
+					* (floorNumResidents / (double)totalNumResidents);
 			}
 		}
 		
@@ -85,13 +103,31 @@ public class TrafficProfile {
 		 * @param destinationFloor The destination floor
 		 */
 		public double destinationFloorProbability(Building building, Floor arrivalFloor, Floor destinationFloor) {
-			if (arrivalFloor.getFloorNumber() == Building.LOBBY) {
-				return destinationFloor.getNumResidents() / (double)building.getTotalNumberOfResidents();
-			} else if (destinationFloor.getFloorNumber() == Building.LOBBY) {
+			return this.destinationFloorProbability(
+				building.getTotalNumberOfResidents(),
+				arrivalFloor.getFloorNumber(),
+				arrivalFloor.getNumResidents(),
+				destinationFloor.getFloorNumber(),
+				destinationFloor.getNumResidents());
+		}
+		
+		/**
+		 * Returns the probability that a new destination is the given floor
+		 * @param totalNumResidents The total number of residents in the building
+		 * @param arrivalFloor The arrival floor
+		 * @param arrivalFloorNumResidents The number of residents on the arrival floor
+		 * @param destinationFloor The destination floor
+		 * @param destinationFloorNumResidents The number of residents on the destination floor
+		 */
+		public double destinationFloorProbability(int totalNumResidents, int arrivalFloor, int arrivalFloorNumResidents,
+			int destinationFloor, int destinationFloorNumResidents) {
+			if (arrivalFloor == Building.LOBBY) {
+				return destinationFloorNumResidents / (double)totalNumResidents;
+			} else if (destinationFloor == Building.LOBBY) {
 				return this.getDownRate() + this.getUpRate();
 			} else {
 				return 
-					(destinationFloor.getNumResidents() / (double)(building.getTotalNumberOfResidents() - arrivalFloor.getNumResidents()))
+					(destinationFloorNumResidents / (double)(totalNumResidents - arrivalFloorNumResidents))
 					* getInterfloorRate();
 			}
 		}
@@ -105,6 +141,31 @@ public class TrafficProfile {
 		this.arrivalRates = arrivalRates;
 	}
 	
+	/**
+	 * Returns a copy of the profile where the arrival ratio of each interval is scaled by the given factor
+	 * @param factor The factor
+	 */
+	public TrafficProfile scale(double factor) {
+		Interval[] arrivalRates = new Interval[this.arrivalRates.length];
+		for (int i = 0; i < arrivalRates.length; i++) {
+			arrivalRates[i] = this.arrivalRates[i].scale(factor);
+		}
+		
+		return new TrafficProfile(arrivalRates);
+	}
+	
+	/**
+	 * Returns the highest arrival ratio of the intervals, in the HC% metric
+	 */
+	public double peakArrivalRatio() {
+		double peak = 0.0;
+		for (Interval interval : this.arrivalRates) {
+			peak = Math.max(peak, interval.getAverageArrivalRatio() / 2);
+		}
+		
+		return peak;
+	}
+	
 	/**
 	 * Returns the length of the interval in minutes
 	 */
@@ -119,11 +180,32 @@ public class TrafficProfile {
 		return this.intervalLengthInMin * 60 * SimulatorClock.NANOSECONDS_PER_SECOND;
 	}
 	
+	/**
+	 * Returns the number of intervals
+	 */
+	public int numIntervals() {
+		return this.arrivalRates.length;
+	}
+	
+	/**
+	 * Returns the interval with the given index
+	 * @param index The index of the interval
+	 */
+	public Interval getInterval(int index) {
+		return this.arrivalRates[index];
+	}
+	
+	/**
+	 * Returns the index of the interval at the given time
+	 */
+	public int intervalIndex(long time) {
+		return (int)((time / this.length()) % this.arrivalRates.length);
+	}
+	
 	/**
 	 * Returns data for the interval at the given time
 	 */
 	public Interval getIntervalData(long time) {
-		int intervalIndex = (int)((time / this.length()) % this.arrivalRates.length);
-		return this.arrivalRates[intervalIndex];
+		return this.arrivalRates[this.intervalIndex(time)];
 	}
 }
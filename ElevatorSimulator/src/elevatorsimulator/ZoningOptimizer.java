@@ -0,0 +1,402 @@
+package elevatorsimulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import elevatorsimulator.schedulers.Zoning;
+
+/**
+ * Searches offline for the zones of the zoning scheduler that give the lowest average wait time for a scenario.
+ * The search is a simulated annealing over the sizes of the zones, starting from zones of equal size.
+ * A neighbour moves one floor over a boundary between two zones, or moves one elevator car to another zone.
+ * Each step simulates a batch of neighbours in parallel, and moves to the best of them if it is better,
+ * or with a probability that falls with the temperature if it is worse. All configurations are simulated
+ * with the same seeds, which makes the differences between them due to the zones and not the passengers.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class ZoningOptimizer {
+	private final Scenario scenario;
+	private final SimulatorSettings settings;
+	private final int numZones;
+	private final int numRuns;
+	private final Map<Zoning.Configuration, Double> scores = new HashMap<Zoning.Configuration, Double>();
+	
+	private int numIterations = 30;
+	private int numNeighbours = Runtime.getRuntime().availableProcessors();
+	private double initialTemperature = 1.0;
+	private double coolingRate = 0.9;
+	private long seed = 1337;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Represents the result of a search
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static class Result {
+		private final Zoning.Configuration configuration;
+		private final double averageWaitTime;
+		private final Zoning.Configuration equalConfiguration;
+		private final double equalAverageWaitTime;
+		private final int numEvaluations;
+		
+		/**
+		 * Creates a new result
+		 * @param configuration The best configuration
+		 * @param averageWaitTime The average wait time of the best configuration
+		 * @param equalConfiguration The configuration with zones of equal size
+		 * @param equalAverageWaitTime The average wait time of the configuration with zones of equal size
+		 * @param numEvaluations The number of simulated configurations
+		 */
+		public Result(Zoning.Configuration configuration, double averageWaitTime,
+			Zoning.Configuration equalConfiguration, double equalAverageWaitTime, int numEvaluations) {
+			this.configuration = configuration;
+			this.averageWaitTime = averageWaitTime;
+			this.equalConfiguration = equalConfiguration;
+			this.equalAverageWaitTime = equalAverageWaitTime;
+			this.numEvaluations = numEvaluations;
+		}
+		
+		/**
+		 * Returns the best configuration
+		 */
+		public Zoning.Configuration getConfiguration() {
+			return configuration;
+		}
+		
+		/**
+		 * Returns the average wait time of the best configuration
+		 */
+		public double getAverageWaitTime() {
+			return averageWaitTime;
+		}
+		
+		/**
+		 * Returns the configuration with zones of equal size
+		 */
+		public Zoning.Configuration getEqualConfiguration() {
+			return equalConfiguration;
+		}
+		
+		/**
+		 * Returns the average wait time of the configuration with zones of equal size
+		 */
+		public double getEqualAverageWaitTime() {
+			return equalAverageWaitTime;
+		}
+		
+		/**
+		 * Returns the number of simulated configurations
+		 */
+		public int getNumEvaluations() {
+			return numEvaluations;
+		}
+		
+		/**
+		 * Returns a scheduler creator for the zoning scheduler with the best configuration
+		 */
+		public SchedulerCreator getSchedulerCreator() {
+			return new SchedulerCreator() {
+				@Override
+				public SchedulingAlgorithm createScheduler(Building building) {
+					return new Zoning(configuration, building);
+				}
+			};
+		}
+	}
+	
+	/**
+	 * Represents a run of a configuration
+	 */
+	private class Run implements Callable<StatsInterval> {
+		private final Zoning.Configuration configuration;
+		private final long seed;
+		
+		public Run(Zoning.Configuration configuration, long seed) {
+			this.configuration = configuration;
+			this.seed = seed;
+		}
+		
+		/**
+		 * Runs the simulation
+		 * @return The statistics, or null if the run was interrupted
+		 */
+		@Override
+		public StatsInterval call() {
+			final Zoning.Configuration configuration = this.configuration;
+			Simulator simulator = new Simulator(scenario, settings, new SchedulerCreator() {
+				@Override
+				public SchedulingAlgorithm createScheduler(Building building) {
+					return new Zoning(configuration, building);
+				}
+			}, this.seed);
+			
+			simulator.setExportStats(false);
+			if (!SimulatorRunner.runToCompletion(simulator)) {
+				return null;
+			}
+			
+			return simulator.getStats().getGlobalInterval();
+		}
+	}
+	
+	/**
+	 * Creates a new optimizer
+	 * @param scenario The scenario, which must not have several elevator banks
+	 * @param settings The settings of the runs
+	 * @param numZones The number of zones
+	 * @param numRuns The number of runs for each configuration
+	 */
+	public ZoningOptimizer(Scenario scenario, SimulatorSettings settings, int numZones, int numRuns) {
+		if (scenario.hasBanks()) {
+			throw new IllegalArgumentException("The scenario must not have several elevator banks.");
+		}
+		
+		this.scenario = scenario;
+		this.settings = settings;
+		this.numZones = numZones;
+		this.numRuns = numRuns;
+	}
+	
+	/**
+	 * Sets the number of steps of the search
+	 * @param numIterations The number of steps
+	 */
+	public void setNumIterations(int numIterations) {
+		this.numIterations = numIterations;
+	}
+	
+	/**
+	 * Sets the number of neighbours that are simulated in each step
+	 * @param numNeighbours The number of neighbours
+	 */
+	public void setNumNeighbours(int numNeighbours) {
+		this.numNeighbours = numNeighbours;
+	}
+	
+	/**
+	 * Sets the temperature schedule
+	 * @param initialTemperature The initial temperature, in seconds of average wait time
+	 * @param coolingRate The factor that the temperature is multiplied with after each step
+	 */
+	public void setTemperature(double initialTemperature, double coolingRate) {
+		if (initialTemperature <= 0 || coolingRate <= 0 || coolingRate >= 1) {
+			throw new IllegalArgumentException("The temperature must be > 0 and the cooling rate must satisfy 0 < rate < 1.");
+		}
+		
+		this.initialTemperature = initialTemperature;
+		this.coolingRate = coolingRate;
+	}
+	
+	/**
+	 * Sets the seed of the search, which chooses the neighbours and whether worse neighbours are accepted
+	 * @param seed The seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+	
+	/**
+	 * Sets the number of threads
+	 * @param numThreads The number of threads
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+	
+	/**
+	 * Returns a random neighbour of the given configuration, or null if it has none
+	 * @param random The random generator
+	 * @param configuration The configuration
+	 */
+	private static Zoning.Configuration neighbour(Random random, Zoning.Configuration configuration) {
+		int numZones = configuration.getNumZones();
+		if (numZones < 2) {
+			return null;
+		}
+		
+		for (int attempt = 0; attempt < 100; attempt++) {
+			int[] zoneFloors = configuration.getZoneFloors();
+			int[] zoneElevatorCars = configuration.getZoneElevatorCars();
+			
+			if (random.nextBoolean()) {
+				//Move a floor over the boundary above the zone
+				int zone = random.nextInt(numZones - 1);
+				int from = random.nextBoolean() ? zone : zone + 1;
+				int to = from == zone ? zone + 1 : zone;
+				
+				if (zoneFloors[from] > 1) {
+					zoneFloors[from]--;
+					zoneFloors[to]++;
+					return new Zoning.Configuration(zoneFloors, zoneElevatorCars);
+				}
+			} else {
+				//Move an elevator car to another zone
+				int from = random.nextInt(numZones);
+				int to = (from + 1 + random.nextInt(numZones - 1)) % numZones;
+				
+				if (zoneElevatorCars[from] > 1) {
+					zoneElevatorCars[from]--;
+					zoneElevatorCars[to]++;
+					return new Zoning.Configuration(zoneFloors, zoneElevatorCars);
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Simulates the given configurations in parallel, and returns their average wait times.
+	 * The configurations that have been simulated before are not simulated again.
+	 * @param executor The executor
+	 * @param configurations The configurations
+	 */
+	private double[] evaluate(ExecutorService executor, List<Zoning.Configuration> configurations) {
+		long[] seeds = SimulatorRunner.dataRunSeeds(this.numRuns);
+		Map<Zoning.Configuration, List<Future<StatsInterval>>> futures = new HashMap<Zoning.Configuration, List<Future<StatsInterval>>>();
+		
+		for (Zoning.Configuration configuration : configurations) {
+			if (this.scores.containsKey(configuration) || futures.containsKey(configuration)) {
+				continue;
+			}
+			
+			List<Future<StatsInterval>> runFutures = new ArrayList<Future<StatsInterval>>();
+			for (long seed : seeds) {
+				runFutures.add(executor.submit(new Run(configuration, seed)));
+			}
+			
+			futures.put(configuration, runFutures);
+		}
+		
+		try {
+			for (Map.Entry<Zoning.Configuration, List<Future<StatsInterval>>> entry : futures.entrySet()) {
+				StatsInterval stats = null;
+				for (Future<StatsInterval> future : entry.getValue()) {
+					StatsInterval runStats = future.get();
+					if (stats == null) {
+						stats = StatsInterval.newTimeInterval(0, runStats.getElevatorCarDistribution().length);
+					}
+					
+					stats.add(runStats, 0);
+				}
+				
+				this.scores.put(entry.getKey(), stats.averageWaitTime());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (List<Future<StatsInterval>> runFutures : futures.values()) {
+				for (Future<StatsInterval> future : runFutures) {
+					future.cancel(true);
+				}
+			}
+		}
+		
+		double[] averageWaitTimes = new double[configurations.size()];
+		for (int i = 0; i < averageWaitTimes.length; i++) {
+			averageWaitTimes[i] = this.scores.get(configurations.get(i));
+		}
+		
+		return averageWaitTimes;
+	}
+	
+	/**
+	 * Searches for the best configuration
+	 * @param executor The executor
+	 */
+	private Result search(ExecutorService executor) {
+		Random random = new Random(this.seed);
+		Zoning.Configuration equalConfiguration = Zoning.Configuration.equalZones(this.numZones, this.scenario.createBuilding());
+		double equalAverageWaitTime = this.evaluate(executor, Collections.singletonList(equalConfiguration))[0];
+		
+		Zoning.Configuration current = equalConfiguration;
+		double currentAverageWaitTime = equalAverageWaitTime;
+		Zoning.Configuration best = current;
+		double bestAverageWaitTime = currentAverageWaitTime;
+		double temperature = this.initialTemperature;
+		
+		for (int iteration = 0; iteration < this.numIterations; iteration++) {
+			List<Zoning.Configuration> neighbours = new ArrayList<Zoning.Configuration>();
+			for (int i = 0; i < this.numNeighbours; i++) {
+				Zoning.Configuration neighbour = neighbour(random, current);
+				if (neighbour != null && !neighbours.contains(neighbour)) {
+					neighbours.add(neighbour);
+				}
+			}
+			
+			if (neighbours.isEmpty()) {
+				break;
+			}
+			
+			double[] averageWaitTimes = this.evaluate(executor, neighbours);
+			int bestNeighbour = 0;
+			for (int i = 1; i < averageWaitTimes.length; i++) {
+				if (averageWaitTimes[i] < averageWaitTimes[bestNeighbour]) {
+					bestNeighbour = i;
+				}
+			}
+			
+			double delta = averageWaitTimes[bestNeighbour] - currentAverageWaitTime;
+			if (delta < 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+				current = neighbours.get(bestNeighbour);
+				currentAverageWaitTime = averageWaitTimes[bestNeighbour];
+			}
+			
+			if (currentAverageWaitTime < bestAverageWaitTime) {
+				best = current;
+				bestAverageWaitTime = currentAverageWaitTime;
+			}
+			
+			temperature *= this.coolingRate;
+		}
+		
+		return new Result(best, bestAverageWaitTime, equalConfiguration, equalAverageWaitTime, this.scores.size());
+	}
+	
+	/**
+	 * Searches for the best configuration of the zones
+	 * @return The result
+	 */
+	public Result run() {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.numThreads));
+		
+		try {
+			Result result = this.search(executor);
+			System.out.println(new Date() + ": " + this.scenario.getName() + ": best zones " + result.getConfiguration()
+				+ " with average wait time " + result.getAverageWaitTime() + " s (equal zones "
+				+ result.getEqualConfiguration() + ": " + result.getEqualAverageWaitTime() + " s, "
+				+ result.getNumEvaluations() + " configurations).");
+			return result;
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	public static void main(String[] args) {
+		//Optimizes the zones for one hour of the morning peak
+		TrafficProfile upPeak = new TrafficProfile(new TrafficProfile.Interval[] {
+			new TrafficProfile.Interval(0.1, 0.85, 0.05)
+		});
+		
+		Scenario scenario = Scenarios.createMediumBuilding(3).withTrafficProfile("MediumBuilding-3-UpPeak", upPeak);
+		SimulatorSettings settings = new SimulatorSettings(0.01, 60 * 60);
+		ZoningOptimizer optimizer = new ZoningOptimizer(scenario, settings, 2, 5);
+		optimizer.setNumIterations(15);
+		optimizer.run();
+	}
+}
@@ -1,11 +1,15 @@
 package elevatorsimulator.reinforcementlearning;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import elevatorsimulator.SimulatorEvents;
 import marl.agents.Agent;
+import marl.agents.learning.LearningAlgorithm;
 import marl.agents.learning.qlearning.*;
+import marl.ext.tilecoding.TileCodeLearning;
 import marl.utility.Config;
 
 /**
@@ -18,7 +22,10 @@ public class ElevatorSystemAgent extends Agent<ElevatorSystemEnvironment> {
 	private int action;
 	private ElevatorSystemState currentState;
 	private ElevatorSystemState prevState;
-	private BoltzmannQLearning<ElevatorSystemState> learning;
+	private Learner learner;
+	private LearningAlgorithm<ElevatorSystemState> learning;
+	private BoltzmannQLearning<ElevatorSystemState> qLearning;
+	private TileCodeLearning<ElevatorSystemState> tileCodeLearning;
 	
 	private int[] actionDistribution = new int[Action.values().length];
 	private final List<Action> actions = new ArrayList<Action>();
@@ -31,12 +38,28 @@ public class ElevatorSystemAgent extends Agent<ElevatorSystemEnvironment> {
 		UP_PEAK_GROUP_ELEVATOR
 	}
 	
+	/**
+	 * The learning algorithm used by the agent
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public enum Learner {
+		BOLTZMANN_Q_LEARNING,
+		TILE_CODING
+	}
+	
 	/**
 	 * Creates a new elevator system agent
 	 * @param config The config
 	 */
 	public ElevatorSystemAgent(Config config) {
 		this.config = config;
+		
+		if (config.hasParam("learner")) {
+			this.learner = Learner.valueOf(config.getString("learner"));
+		} else {
+			this.learner = Learner.BOLTZMANN_Q_LEARNING;
+		}
 	}
 	
 	/**
@@ -62,33 +85,61 @@ public class ElevatorSystemAgent extends Agent<ElevatorSystemEnvironment> {
 	}
 	
 	/**
-	 * Returns the size of the state space
+	 * Returns the learning algorithm used by the agent
+	 */
+	public Learner getLearner() {
+		return this.learner;
+	}
+	
+	/**
+	 * Returns the size of the state space. When tile coding is used, this is the fixed number of tiles.
 	 */
 	public int getStateSpace() {
-		return this.learning.table().size();
+		if (this.learner == Learner.TILE_CODING) {
+			return this.tileCodeLearning.getNoTiles();
+		}
+		
+		return this.qLearning.table().size();
 	}
 	
 	/**
-	 * Returns the state usage
+	 * Returns the state usage. This is only tracked for the Q-learning table.
 	 */
 	public Map<Integer, Integer> stateUsage() {
-		return this.learning.table().stateUsage();
+		if (this.learner == Learner.TILE_CODING) {
+			return new HashMap<Integer, Integer>();
+		}
+		
+		return this.qLearning.table().stateUsage();
 	}
 	
 	@Override
 	public void initialise() {
-		this.learning = new BoltzmannQLearning<>(this.config);
+		if (this.learner == Learner.BOLTZMANN_Q_LEARNING) {
+			this.qLearning = new BoltzmannQLearning<>(this.config);
+			this.learning = this.qLearning;
+		}
 	}
 	
 	@Override
 	public void add(ElevatorSystemEnvironment env) {
 		super.add(env);
+		
+		//The tile coding needs the feature ranges of the environment, and is kept between episodes
+		if (this.learner == Learner.TILE_CODING && this.tileCodeLearning == null) {
+			this.tileCodeLearning = new TileCodeLearning<>(this.config, env);
+			this.learning = this.tileCodeLearning;
+		}
+		
 		this.learning.inform(Action.values().length);
 	}
 
 	@Override
 	public void reset(int episodeNo) {
 //		this.learning.decreaseEpsilon(episodeNo);
+		if (this.learner == Learner.TILE_CODING) {
+			this.tileCodeLearning.decreaseEpsilon(episodeNo);
+		}
 		
 		this.currentState = new ElevatorSystemState();
 		this.prevState = new ElevatorSystemState();
@@ -116,6 +167,8 @@ public class ElevatorSystemAgent extends Agent<ElevatorSystemEnvironment> {
 		} else {
 			this.learning.update(this.currentState, null, this.action, reward);
 		}
+		
+		SimulatorEvents.agentUpdated(this.environment.getSimulator(), Action.class, this.action, reward, terminal);
 	}
 
 	@Override
@@ -4,13 +4,23 @@ import java.util.Queue;
 
 import elevatorsimulator.*;
 import elevatorsimulator.schedulers.ReinforcementLearning;
-import marl.environments.Environment;
+import marl.ext.tilecoding.TileCodingEnvironment;
 
-public class ElevatorSystemEnvironment implements Environment<ElevatorSystemState, ElevatorSystemAgent> {
+public class ElevatorSystemEnvironment implements TileCodingEnvironment<ElevatorSystemState, ElevatorSystemAgent> {
 	private int time;
 	private Tuple<ElevatorSystemEnvironment, ElevatorSystemState, ElevatorSystemAgent> tuple;
 	private final Simulator simulator;
 	
+	/**
+	 * The maximum ratio of the residents that arrives during one learning interval
+	 */
+	private static final double MAX_ARRIVAL_RATIO = 0.1;
+	
+	/**
+	 * The maximum number of waiting passengers per elevator car
+	 */
+	private static final int MAX_QUEUE_LENGTH_PER_CAR = 10;
+	
 	/**
 	 * Creates a new elevator system environment
 	 * @param simulator The simulator
@@ -19,6 +29,13 @@ public class ElevatorSystemEnvironment implements Environment<ElevatorSystemStat
 		this.simulator = simulator;
 	}
 	
+	/**
+	 * Returns the simulator
+	 */
+	public Simulator getSimulator() {
+		return this.simulator;
+	}
+	
 	@Override
 	public void initialise() {
 		this.tuple = new Tuple<ElevatorSystemEnvironment, ElevatorSystemState, ElevatorSystemAgent>();
@@ -52,6 +69,28 @@ public class ElevatorSystemEnvironment implements Environment<ElevatorSystemStat
 		return ElevatorSystemAgent.Action.values().length;
 	}
 
+	@Override
+	public int getNumFeatures() {
+		return ElevatorSystemState.Feature.values().length;
+	}
+
+	@Override
+	public double getMinimumValue(int feature) {
+		return 0;
+	}
+
+	@Override
+	public double getMaximumValue(int feature) {
+		switch (ElevatorSystemState.Feature.values()[feature]) {
+		case TOTAL_PASSENGERS:
+			return MAX_ARRIVAL_RATIO * this.simulator.getBuilding().getTotalNumberOfResidents();
+		case QUEUE_LENGTH:
+			return MAX_QUEUE_LENGTH_PER_CAR * this.simulator.getBuilding().getElevatorCars().length;
+		default:
+			return 1;
+		}
+	}
+
 	@Override
 	public boolean inTerminalState() {
 		return !this.simulator.canGenerateArrivals();
@@ -110,7 +149,7 @@ public class ElevatorSystemEnvironment implements Environment<ElevatorSystemStat
 	 * Rewards the last state
 	 */
 	public void rewardLastState() {
-		this.tuple.state.update(this.simulator.getStats().getPollInterval());
+		this.tuple.state.update(this.simulator);
 		double reward = calculateReward();
 		this.tuple.agent.update(reward, false);
 		this.tuple.addReward(reward);		
@@ -118,7 +157,7 @@ public class ElevatorSystemEnvironment implements Environment<ElevatorSystemStat
 
 	@Override
 	public void incrementTime() {
-		this.tuple.state.update(this.simulator.getStats().getPollInterval());
+		this.tuple.state.update(this.simulator);
 		double reward = calculateReward();
 		this.tuple.agent.update(reward, false);
 		this.tuple.addReward(reward);		
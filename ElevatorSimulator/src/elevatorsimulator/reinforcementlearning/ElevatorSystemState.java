@@ -3,25 +3,45 @@ package elevatorsimulator.reinforcementlearning;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 
+import elevatorsimulator.ElevatorCar;
+import elevatorsimulator.Simulator;
 import elevatorsimulator.StatsInterval;
-import marl.environments.State;
+import marl.ext.tilecoding.TileCodingState;
 
 /**
  * Represents the state for the elevator system
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  *
  */
-public class ElevatorSystemState implements State<ElevatorSystemState> {
+public class ElevatorSystemState implements TileCodingState<ElevatorSystemState> {
 	private int intervalNum;
 	private int totalPassengers;
 	private double up;
 	private double down;
 	private double interfloor;
+	private int queueLength;
+	private double carLoad;
 	
 	private static final double RATE_EPSILON = 0.1;
 	private static final int TOTAL_EPSILON = 100;
 	
 	private final static Type STATE_TYPE = Type.TRAFFIC;
+	
+	/**
+	 * The continuous features used for tile coding
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static enum Feature {
+		TOTAL_PASSENGERS,
+		UP,
+		DOWN,
+		QUEUE_LENGTH,
+		CAR_LOAD
+	}
+	
+	private final static Feature[] FEATURES = Feature.values();
+	
 	/**
 	 * The type of the state
 	 * @author Anton Jansson and Kristoffer Uggla Lingvall
@@ -41,6 +61,8 @@ public class ElevatorSystemState implements State<ElevatorSystemState> {
 		this.up = 0;
 		this.down = 0;
 		this.interfloor = 0;
+		this.queueLength = 0;
+		this.carLoad = 0;
 	}
 		
 	/**
@@ -78,6 +100,37 @@ public class ElevatorSystemState implements State<ElevatorSystemState> {
 		return interfloor;
 	}
 	
+	/**
+	 * Returns the number of passengers waiting for an elevator car
+	 */
+	public int getQueueLength() {
+		return queueLength;
+	}
+	
+	/**
+	 * Returns the average load of the elevator cars, as a fraction of their capacity
+	 */
+	public double getCarLoad() {
+		return carLoad;
+	}
+	
+	/**
+	 * Updates the state using the given simulator
+	 * @param simulator The simulator
+	 */
+	public void update(Simulator simulator) {
+		this.update(simulator.getStats().getPollInterval());
+		this.queueLength = simulator.getControlSystem().getHallQueue().size();
+		
+		double totalLoad = 0;
+		ElevatorCar[] elevatorCars = simulator.getBuilding().getElevatorCars();
+		for (ElevatorCar elevatorCar : elevatorCars) {
+			totalLoad += elevatorCar.getPassengers().size() / (double)elevatorCar.getConfiguration().getCapacity();
+		}
+		
+		this.carLoad = totalLoad / elevatorCars.length;
+	}
+	
 	/**
 	 * Updates the state using the given interval
 	 * @param interval The interval
@@ -110,6 +163,27 @@ public class ElevatorSystemState implements State<ElevatorSystemState> {
 			this.down = other.down;
 			this.interfloor = other.interfloor;
 		}
+		
+		this.queueLength = other.queueLength;
+		this.carLoad = other.carLoad;
+	}
+	
+	@Override
+	public double getFeature(int featureNo) {
+		switch (FEATURES[featureNo]) {
+		case TOTAL_PASSENGERS:
+			return this.totalPassengers;
+		case UP:
+			return this.up;
+		case DOWN:
+			return this.down;
+		case QUEUE_LENGTH:
+			return this.queueLength;
+		case CAR_LOAD:
+			return this.carLoad;
+		default:
+			return 0;
+		}
 	}
 	
 	private static double round(double value, int places) {
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Random;
 
 import elevatorsimulator.Building;
+import elevatorsimulator.MetricsServer;
 import elevatorsimulator.Scenarios;
 import elevatorsimulator.SchedulerCreator;
 import elevatorsimulator.SchedulingAlgorithm;
@@ -107,7 +108,33 @@ public class RLSimulator {
 		}
 	}
 	
+	/**
+	 * Publishes the progress of the learning after the given episode
+	 * @param metrics The metrics server
+	 * @param agent The agent
+	 * @param simulator The simulator of the episode
+	 * @param env The environment of the episode
+	 */
+	private static void publishEpisode(MetricsServer metrics, ElevatorSystemAgent agent, Simulator simulator, ElevatorSystemEnvironment env) {
+		metrics.add("episodes_done_total", 1);
+		metrics.set("average_squared_wait_time_seconds_squared", simulator.getStats().averageSquaredWaitTime());
+		metrics.set("episode_reward", env.totalReward());
+		metrics.set("state_space", agent.getStateSpace());
+		
+		for (int i = 0; i < agent.getActionDistribution().length; i++) {
+			String scheduler = ElevatorSystemAgent.Action.values()[i].toString();
+			metrics.set(MetricsServer.labeled("scheduler_intervals", "scheduler", scheduler), agent.getActionDistribution()[i]);
+			metrics.add(MetricsServer.labeled("scheduler_intervals_total", "scheduler", scheduler), agent.getActionDistribution()[i]);
+		}
+	}
+	
+	/**
+	 * Runs the learning. If a port is given as argument, the progress is published on a metrics server on that port.
+	 * @param args The arguments
+	 */
 	public static void main(String[] args) throws IOException {
+		MetricsServer metrics = args.length > 0 ? new MetricsServer(Integer.parseInt(args[0])) : null;
+		
 		Config config = new Config();
 		config.readFile("src/elevatorsimulator/reinforcementlearning/config.ini");
 		
@@ -124,7 +151,7 @@ public class RLSimulator {
 			@Override
 			public SchedulingAlgorithm createScheduler(Building building) {
 				List<SchedulingAlgorithm> schedulers = new ArrayList<SchedulingAlgorithm>();
-				schedulers.add(new LongestQueueFirst());
+				schedulers.add(new LongestQueueFirst(building));
 				schedulers.add(new Zoning(building.getElevatorCars().length, building));
 				schedulers.add(new RoundRobin(building, false));
 				schedulers.add(new ThreePassageGroupElevator(building));
@@ -150,6 +177,10 @@ public class RLSimulator {
 		
 		//Increase the number of episodes so we get #trained episodes=maxEpisodes
 		maxEpisodes += dataRuns;
+		
+		if (metrics != null) {
+			metrics.set("episodes_max", maxEpisodes);
+		}
 	    
 	    System.out.println("Starting Experiment");
 	    long start = System.currentTimeMillis();
@@ -200,6 +231,7 @@ public class RLSimulator {
             
             long lastInterval = 0;
             SimulatorClock clock = simulator.getClock();
+            double lastPublished = 0;
             List<Long> exited = new ArrayList<Long>();
                       
             //For the first interval
@@ -211,6 +243,12 @@ public class RLSimulator {
 	            	exited.add(simulator.getStats().getPollInterval().getNumExists());
 	            	simulator.getStats().resetPollInterval();
 	            	lastInterval = clock.timeNow();
+	            	
+	            	if (metrics != null) {
+	            		metrics.set("episode_average_squared_wait_time_seconds_squared", simulator.getStats().averageSquaredWaitTime());
+	            		metrics.addSimulatedTime(clock.timeNowSec() - lastPublished);
+	            		lastPublished = clock.timeNowSec();
+	            	}
             	}
             }          
             
@@ -230,6 +268,11 @@ public class RLSimulator {
             
             aswtStats.add(simulator.getStats().averageSquaredWaitTime());
             
+            if (metrics != null) {
+            	metrics.addSimulatedTime(clock.timeNowSec() - lastPublished);
+            	publishEpisode(metrics, agent, simulator, env);
+            }
+            
             for (int i = 0; i < agent.getActionDistribution().length; i++) {
         		System.out.println("\t" + ElevatorSystemAgent.Action.values()[i] + ": " + agent.getActionDistribution()[i]);
         	}
@@ -124,7 +124,7 @@ public class RLSimulatorOld {
 			@Override
 			public SchedulingAlgorithm createScheduler(Building building) {
 				List<SchedulingAlgorithm> schedulers = new ArrayList<SchedulingAlgorithm>();
-				schedulers.add(new LongestQueueFirst());
+				schedulers.add(new LongestQueueFirst(building));
 				schedulers.add(new Zoning(building.getElevatorCars().length, building));
 				schedulers.add(new RoundRobin(building, false));
 				schedulers.add(new ThreePassageGroupElevator(building));
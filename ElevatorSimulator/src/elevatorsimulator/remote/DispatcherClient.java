@@ -0,0 +1,333 @@
+package elevatorsimulator.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import elevatorsimulator.Building;
+import elevatorsimulator.ChangeDrivenScheduler;
+import elevatorsimulator.LatencyHistogram;
+import elevatorsimulator.Scenario;
+import elevatorsimulator.Scenarios;
+import elevatorsimulator.SchedulerCreator;
+import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorSettings;
+
+/**
+ * Represents a connection to a dispatcher server. The requests are written and the responses read by an I/O thread
+ * with non-blocking I/O, which lets several requests be in flight at the same time. The time from sending a request
+ * until its response has been received is recorded for each type of request.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class DispatcherClient implements Closeable {
+	private final SocketChannel channel;
+	private final Selector selector;
+	private final Thread ioThread;
+	
+	private final AtomicInteger nextRequestId = new AtomicInteger();
+	private final Queue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final Map<Integer, Call> pendingCalls = new ConcurrentHashMap<Integer, Call>();
+	private final LatencyHistogram[] latencies = new LatencyHistogram[DispatcherProtocol.NUM_REQUEST_TYPES];
+	private final EnumSet<ChangeDrivenScheduler.Event> updateEvents;
+	
+	private volatile IOException failure;
+	private volatile boolean closed = false;
+	
+	/**
+	 * Represents a request that has been sent
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static class Call {
+		private final int requestId;
+		private final int type;
+		private final long sendTime;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private ByteBuffer response;
+		private String error;
+		
+		private Call(int requestId, int type) {
+			this.requestId = requestId;
+			this.type = type;
+			this.sendTime = System.nanoTime();
+		}
+		
+		/**
+		 * Waits for the response
+		 * @return The body of the response
+		 */
+		public ByteBuffer await() throws IOException {
+			try {
+				this.done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for the dispatcher.", e);
+			}
+			
+			if (this.error != null) {
+				throw new IOException("Request " + this.requestId + " (" + DispatcherProtocol.requestName(this.type)
+					+ ") failed: " + this.error);
+			}
+			
+			return this.response;
+		}
+	}
+	
+	/**
+	 * Connects to the dispatcher server at the given address and opens a session for the given scenario
+	 * @param address The address of the server
+	 * @param scenarioName The name of the scenario
+	 */
+	public DispatcherClient(SocketAddress address, String scenarioName) throws IOException {
+		for (int i = 0; i < this.latencies.length; i++) {
+			this.latencies[i] = new LatencyHistogram();
+		}
+		
+		this.channel = SocketChannel.open(DispatcherProtocol.protocolFamily(address));
+		this.channel.connect(address);
+		this.channel.configureBlocking(false);
+		if (this.channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+			this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		}
+		
+		this.selector = Selector.open();
+		this.ioThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runIO();
+			}
+		}, "Dispatcher client I/O");
+		this.ioThread.setDaemon(true);
+		this.ioThread.start();
+		
+		int requestId = this.nextRequestId();
+		DispatcherProtocol.FrameWriter writer = new DispatcherProtocol.FrameWriter(256);
+		writer.begin(DispatcherProtocol.HELLO, requestId).putString(scenarioName).end();
+		ByteBuffer response = this.send(requestId, DispatcherProtocol.HELLO, writer.copy()).await();
+		this.updateEvents = DispatcherProtocol.events(response.getInt());
+	}
+	
+	/**
+	 * Returns the events after which the hosted scheduler must be updated
+	 */
+	public EnumSet<ChangeDrivenScheduler.Event> getUpdateEvents() {
+		return EnumSet.copyOf(this.updateEvents);
+	}
+	
+	/**
+	 * Returns a new request id
+	 */
+	public int nextRequestId() {
+		return this.nextRequestId.getAndIncrement();
+	}
+	
+	/**
+	 * Sends the given request
+	 * @param requestId The id of the request
+	 * @param type The type of the request
+	 * @param frame The frame of the request, in read mode. Must not be changed after the call.
+	 */
+	public Call send(int requestId, int type, ByteBuffer frame) {
+		Call call = new Call(requestId, type);
+		
+		//The call must be registered before the response can be received
+		this.pendingCalls.put(requestId, call);
+		this.outgoing.add(frame);
+		this.selector.wakeup();
+		
+		//Fail the call if the I/O thread stopped before it could see the call
+		if ((this.failure != null || this.closed) && this.pendingCalls.remove(requestId) != null) {
+			call.error = this.failure != null ? this.failure.toString() : "The client was closed.";
+			call.done.countDown();
+		}
+		
+		return call;
+	}
+	
+	/**
+	 * Returns the latencies of the given type of request, in nanoseconds. Only safe to read when the client is closed.
+	 * @param type The request type
+	 */
+	public LatencyHistogram getLatency(int type) {
+		return this.latencies[type];
+	}
+	
+	/**
+	 * Returns the number of requests waiting for a response
+	 */
+	public int getNumPendingCalls() {
+		return this.pendingCalls.size();
+	}
+	
+	/**
+	 * Writes the outgoing requests and reads the responses until the client is closed
+	 */
+	private void runIO() {
+		ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+		
+		try {
+			SelectionKey key = this.channel.register(this.selector, SelectionKey.OP_READ);
+			
+			while (!this.closed) {
+				this.selector.select();
+				this.selector.selectedKeys().clear();
+				
+				ByteBuffer frame;
+				while ((frame = this.outgoing.peek()) != null) {
+					this.channel.write(frame);
+					if (frame.hasRemaining()) {
+						break;
+					}
+					
+					this.outgoing.poll();
+				}
+				
+				key.interestOps(this.outgoing.isEmpty()
+					? SelectionKey.OP_READ
+					: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				
+				if (this.channel.read(readBuffer) < 0) {
+					throw new IOException("The connection was closed by the dispatcher.");
+				}
+				
+				readBuffer.flip();
+				int frameLength;
+				while ((frameLength = DispatcherProtocol.completeFrameLength(readBuffer)) != -1) {
+					int frameEnd = readBuffer.position() + frameLength;
+					readBuffer.getInt();
+					byte type = readBuffer.get();
+					int requestId = readBuffer.getInt();
+					
+					ByteBuffer body = ByteBuffer.allocate(frameEnd - readBuffer.position());
+					int limit = readBuffer.limit();
+					readBuffer.limit(frameEnd);
+					body.put(readBuffer);
+					body.flip();
+					readBuffer.limit(limit);
+					
+					this.complete(requestId, type, body);
+				}
+				
+				readBuffer.compact();
+				
+				//Grow the buffer if a frame does not fit
+				if (!readBuffer.hasRemaining()) {
+					ByteBuffer newBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+					readBuffer.flip();
+					newBuffer.put(readBuffer);
+					readBuffer = newBuffer;
+				}
+			}
+		} catch (IOException e) {
+			if (!this.closed) {
+				this.failure = e;
+			}
+		} finally {
+			this.failPendingCalls();
+			
+			try {
+				this.channel.close();
+				this.selector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Completes the call for the given response
+	 * @param requestId The id of the request
+	 * @param type The type of the response
+	 * @param body The body of the response
+	 */
+	private void complete(int requestId, byte type, ByteBuffer body) throws IOException {
+		Call call = this.pendingCalls.remove(requestId);
+		if (call == null) {
+			throw new IOException("Received a response for an unknown request: " + requestId + ".");
+		}
+		
+		if (type == DispatcherProtocol.ERROR) {
+			call.error = DispatcherProtocol.readString(body);
+		} else {
+			call.response = body;
+			this.latencies[call.type].record(System.nanoTime() - call.sendTime);
+		}
+		
+		call.done.countDown();
+	}
+	
+	/**
+	 * Fails the calls that are waiting for a response
+	 */
+	private void failPendingCalls() {
+		String error = this.failure != null ? this.failure.toString() : "The client was closed.";
+		for (Call call : this.pendingCalls.values()) {
+			call.error = error;
+			call.done.countDown();
+		}
+		
+		this.pendingCalls.clear();
+	}
+	
+	/**
+	 * Closes the connection
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.selector.wakeup();
+		
+		try {
+			this.ioThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Prints the latencies
+	 */
+	public void printStats() {
+		for (int type = 0; type < this.latencies.length; type++) {
+			if (this.latencies[type].getCount() > 0) {
+				this.latencies[type].printStats("Latency (" + DispatcherProtocol.requestName(type) + ")");
+			}
+		}
+	}
+	
+	/**
+	 * Simulates the medium building with the dispatcher at the given address (default: 127.0.0.1:7070)
+	 */
+	public static void main(String[] args) throws IOException {
+		Scenario scenario = Scenarios.createMediumBuilding(2);
+		final DispatcherClient client = new DispatcherClient(
+			DispatcherProtocol.parseAddress(args.length > 0 ? args[0] : "127.0.0.1:7070"),
+			scenario.getName());
+		
+		SchedulerCreator creator = new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new RemoteScheduler(client, building);
+			}
+		};
+		
+		Simulator simulator = new Simulator(scenario, new SimulatorSettings(0.01, 24 * 60 * 60), creator);
+		simulator.run();
+		client.close();
+		client.printStats();
+	}
+}
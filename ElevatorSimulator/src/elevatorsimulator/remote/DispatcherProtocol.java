@@ -0,0 +1,489 @@
+package elevatorsimulator.remote;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.EnumSet;
+
+import elevatorsimulator.ChangeDrivenScheduler;
+import elevatorsimulator.Direction;
+import elevatorsimulator.ElevatorCar;
+import elevatorsimulator.Passenger;
+
+/**
+ * Defines the binary protocol between a remote scheduler and a dispatcher server.
+ * All messages are frames of the form [length: int][type: byte][request id: int][body], in big-endian byte order,
+ * where the length is the number of bytes after the length field.
+ *
+ * The body of a request is [bank: short][time: double][elevator car: short][passenger]?[elevator cars][hall calls],
+ * where the passenger is only present for the passenger events and the elevator car is -1 when not used.
+ * Only the state that has changed since the previous request of the bank is sent, and an update is only sent after
+ * one of the update events of the hosted scheduler. The elevator cars are [count: short]
+ * followed by [index: short][floor: short][direction: byte][state: byte][destination: short]
+ * [last movement: long][stop start: long][start start: long][door start: long][turn start: long]
+ * [passengers: short][passenger]* for each changed car, where the times are in nanoseconds of simulated time.
+ * The hall calls are [removed: int][id: long]* followed by [added: int][passenger]*, where the added calls
+ * are in the order of the hall queue.
+ * A passenger is [id: long][origin: short][arrival: short][destination: short][final destination: short]
+ * [capacity: byte][time of arrival: long].
+ *
+ * The body of a response is [count: short] followed by [command: byte][elevator car: short][floor: short]
+ * [direction: byte] for each command, where the floor and the direction are only used by the commands for stops.
+ * The stops are not part of the mirrored state, since the hosted scheduler gives all of them. A string is [length: short][UTF-8 bytes], which is also the body of an error.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public final class DispatcherProtocol {
+	/**
+	 * Opens a session, where the server creates its mirror of the building. The body is [scenario name: string],
+	 * and the body of the response is [update events: int], the bit mask of the events after which the hosted scheduler
+	 * must be updated.
+	 */
+	public static final byte HELLO = 0;
+	
+	/**
+	 * Request for the passengerArrived event
+	 */
+	public static final byte PASSENGER_ARRIVED = 1;
+	
+	/**
+	 * Request for the passengerBoarded event
+	 */
+	public static final byte PASSENGER_BOARDED = 2;
+	
+	/**
+	 * Request for the passengerExited event
+	 */
+	public static final byte PASSENGER_EXITED = 3;
+	
+	/**
+	 * Request for the update event
+	 */
+	public static final byte UPDATE = 4;
+	
+	/**
+	 * Request for the onIdle event
+	 */
+	public static final byte IDLE = 5;
+	
+	/**
+	 * Request for the onTurned event
+	 */
+	public static final byte TURNED = 6;
+	
+	/**
+	 * Request for the changedTo event
+	 */
+	public static final byte CHANGED_TO = 7;
+	
+	/**
+	 * The number of request types
+	 */
+	public static final int NUM_REQUEST_TYPES = 8;
+	
+	/**
+	 * A response with the commands for the elevator cars
+	 */
+	public static final byte RESPONSE = 64;
+	
+	/**
+	 * A response for a request that failed
+	 */
+	public static final byte ERROR = 65;
+	
+	/**
+	 * Command to move an elevator car towards a floor
+	 */
+	public static final byte MOVE_TOWARDS = 1;
+	
+	/**
+	 * Command to add a stop for a hall call to an elevator car
+	 */
+	public static final byte ADD_STOP = 2;
+	
+	/**
+	 * Command to remove a stop for a hall call from an elevator car
+	 */
+	public static final byte REMOVE_STOP = 3;
+	
+	/**
+	 * Command to remove all stops for hall calls from an elevator car
+	 */
+	public static final byte CLEAR_HALL_STOPS = 4;
+	
+	/**
+	 * The size of the header of a frame, after the length field
+	 */
+	public static final int HEADER_SIZE = 5;
+	
+	/**
+	 * The largest allowed frame
+	 */
+	public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Direction[] DIRECTIONS = Direction.values();
+	private static final ElevatorCar.State[] STATES = ElevatorCar.State.values();
+	private static final ChangeDrivenScheduler.Event[] EVENTS = ChangeDrivenScheduler.Event.values();
+	
+	private DispatcherProtocol() {
+	
+	}
+	
+	/**
+	 * Returns the name of the given request type
+	 * @param type The type
+	 */
+	public static String requestName(int type) {
+		switch (type) {
+		case HELLO:
+			return "Hello";
+		case PASSENGER_ARRIVED:
+			return "Passenger arrived";
+		case PASSENGER_BOARDED:
+			return "Passenger boarded";
+		case PASSENGER_EXITED:
+			return "Passenger exited";
+		case UPDATE:
+			return "Update";
+		case IDLE:
+			return "Idle";
+		case TURNED:
+			return "Turned";
+		case CHANGED_TO:
+			return "Changed to";
+		default:
+			return "Unknown (" + type + ")";
+		}
+	}
+	
+	/**
+	 * Indicates if the given request type carries a passenger
+	 * @param type The type
+	 */
+	public static boolean hasPassenger(int type) {
+		return type == PASSENGER_ARRIVED || type == PASSENGER_BOARDED || type == PASSENGER_EXITED;
+	}
+	
+	/**
+	 * Returns the protocol family for the given address, which is either a TCP or a Unix domain socket address
+	 * @param address The address
+	 */
+	public static ProtocolFamily protocolFamily(SocketAddress address) {
+		if (address instanceof InetSocketAddress) {
+			return ((InetSocketAddress)address).getAddress() instanceof Inet6Address
+				? StandardProtocolFamily.INET6
+				: StandardProtocolFamily.INET;
+		}
+		
+		return StandardProtocolFamily.UNIX;
+	}
+	
+	/**
+	 * Parses the given address, which is either 'unix:<path>' for a Unix domain socket, or '[host:]port' for TCP
+	 * @param address The address
+	 */
+	public static SocketAddress parseAddress(String address) {
+		if (address.startsWith("unix:")) {
+			return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+		}
+		
+		int separator = address.lastIndexOf(':');
+		if (separator == -1) {
+			return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+		}
+		
+		return new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+	}
+	
+	/**
+	 * Returns the length of the first frame in the given buffer, including the length field,
+	 * or -1 if the buffer does not contain a complete frame
+	 * @param buffer The buffer, in read mode
+	 */
+	public static int completeFrameLength(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < 4) {
+			return -1;
+		}
+		
+		int length = buffer.getInt(buffer.position());
+		if (length < HEADER_SIZE || length > MAX_FRAME_SIZE) {
+			throw new IOException("Invalid frame length: " + length + ".");
+		}
+		
+		if (buffer.remaining() < 4 + length) {
+			return -1;
+		}
+		
+		return 4 + length;
+	}
+	
+	/**
+	 * Reads a passenger
+	 * @param buffer The buffer
+	 * @param passenger The passenger with the same id that has been read before, or null
+	 * @return The given passenger if it is unchanged, otherwise a new passenger
+	 */
+	public static Passenger readPassenger(ByteBuffer buffer, Passenger passenger) {
+		long id = buffer.getLong();
+		int originFloor = buffer.getShort();
+		int arrivalFloor = buffer.getShort();
+		int destinationFloor = buffer.getShort();
+		int finalDestinationFloor = buffer.getShort();
+		int capacity = buffer.get();
+		long timeOfArrival = buffer.getLong();
+		
+		if (passenger != null
+			&& passenger.getArrivalFloor() == arrivalFloor
+			&& passenger.getDestinationFloor() == destinationFloor
+			&& passenger.getTimeOfArrival() == timeOfArrival) {
+			return passenger;
+		}
+		
+		return new Passenger(
+			id,
+			originFloor,
+			arrivalFloor,
+			destinationFloor,
+			finalDestinationFloor,
+			capacity,
+			timeOfArrival);
+	}
+	
+	/**
+	 * Returns the direction with the given ordinal
+	 * @param ordinal The ordinal
+	 */
+	public static Direction direction(int ordinal) {
+		return DIRECTIONS[ordinal];
+	}
+	
+	/**
+	 * Returns the given update events as a bit mask
+	 * @param events The events
+	 */
+	public static int eventMask(EnumSet<ChangeDrivenScheduler.Event> events) {
+		int mask = 0;
+		for (ChangeDrivenScheduler.Event event : events) {
+			mask |= 1 << event.ordinal();
+		}
+		
+		return mask;
+	}
+	
+	/**
+	 * Returns the update events in the given bit mask
+	 * @param mask The bit mask
+	 */
+	public static EnumSet<ChangeDrivenScheduler.Event> events(int mask) {
+		EnumSet<ChangeDrivenScheduler.Event> events = EnumSet.noneOf(ChangeDrivenScheduler.Event.class);
+		for (ChangeDrivenScheduler.Event event : EVENTS) {
+			if ((mask & (1 << event.ordinal())) != 0) {
+				events.add(event);
+			}
+		}
+		
+		return events;
+	}
+	
+	/**
+	 * Returns the state with the given ordinal
+	 * @param ordinal The ordinal
+	 */
+	public static ElevatorCar.State state(int ordinal) {
+		return STATES[ordinal];
+	}
+	
+	/**
+	 * Reads a string
+	 * @param buffer The buffer
+	 */
+	public static String readString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+	
+	/**
+	 * Writes frames into a buffer that grows when needed
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static class FrameWriter {
+		private ByteBuffer buffer;
+		private int frameStart;
+		
+		/**
+		 * Creates a new frame writer
+		 * @param capacity The initial capacity
+		 */
+		public FrameWriter(int capacity) {
+			this.buffer = ByteBuffer.allocate(capacity);
+		}
+		
+		/**
+		 * Makes sure that the given number of bytes can be written
+		 * @param size The number of bytes
+		 */
+		private void ensureCapacity(int size) {
+			if (this.buffer.remaining() < size) {
+				ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, this.buffer.position() + size));
+				this.buffer.flip();
+				newBuffer.put(this.buffer);
+				this.buffer = newBuffer;
+			}
+		}
+		
+		/**
+		 * Begins a new frame
+		 * @param type The type of the message
+		 * @param requestId The request id
+		 */
+		public FrameWriter begin(byte type, int requestId) {
+			this.ensureCapacity(4 + HEADER_SIZE);
+			this.frameStart = this.buffer.position();
+			this.buffer.putInt(0);
+			this.buffer.put(type);
+			this.buffer.putInt(requestId);
+			return this;
+		}
+		
+		/**
+		 * Ends the current frame by writing its length
+		 */
+		public FrameWriter end() {
+			this.buffer.putInt(this.frameStart, this.buffer.position() - this.frameStart - 4);
+			return this;
+		}
+		
+		/**
+		 * Writes the given byte
+		 * @param value The value
+		 */
+		public FrameWriter putByte(int value) {
+			this.ensureCapacity(1);
+			this.buffer.put((byte)value);
+			return this;
+		}
+		
+		/**
+		 * Writes the given short
+		 * @param value The value
+		 */
+		public FrameWriter putShort(int value) {
+			this.ensureCapacity(2);
+			this.buffer.putShort((short)value);
+			return this;
+		}
+		
+		/**
+		 * Writes the given int
+		 * @param value The value
+		 */
+		public FrameWriter putInt(int value) {
+			this.ensureCapacity(4);
+			this.buffer.putInt(value);
+			return this;
+		}
+		
+		/**
+		 * Writes the given long
+		 * @param value The value
+		 */
+		public FrameWriter putLong(long value) {
+			this.ensureCapacity(8);
+			this.buffer.putLong(value);
+			return this;
+		}
+		
+		/**
+		 * Writes the given double
+		 * @param value The value
+		 */
+		public FrameWriter putDouble(double value) {
+			this.ensureCapacity(8);
+			this.buffer.putDouble(value);
+			return this;
+		}
+		
+		/**
+		 * Writes the given string
+		 * @param value The string
+		 */
+		public FrameWriter putString(String value) {
+			byte[] bytes = (value != null ? value : "").getBytes(UTF8);
+			int length = Math.min(bytes.length, 0xFFFF);
+			this.putShort(length);
+			this.ensureCapacity(length);
+			this.buffer.put(bytes, 0, length);
+			return this;
+		}
+		
+		/**
+		 * Writes the given passenger
+		 * @param passenger The passenger
+		 */
+		public FrameWriter putPassenger(Passenger passenger) {
+			return this
+				.putLong(passenger.getId())
+				.putShort(passenger.getOriginFloor())
+				.putShort(passenger.getArrivalFloor())
+				.putShort(passenger.getDestinationFloor())
+				.putShort(passenger.getFinalDestinationFloor())
+				.putByte(passenger.getCapacity())
+				.putLong(passenger.getTimeOfArrival());
+		}
+		
+		/**
+		 * Writes the given elevator car, including its passengers
+		 * @param elevatorCar The elevator car
+		 */
+		public FrameWriter putElevatorCar(ElevatorCar elevatorCar) {
+			this.putShort(elevatorCar.getIndex());
+			this.putShort(elevatorCar.getFloor());
+			this.putByte(elevatorCar.getDirection().ordinal());
+			this.putByte(elevatorCar.getState().ordinal());
+			this.putShort(elevatorCar.getDestinationFloor());
+			this.putLong(elevatorCar.getLastMovementTime());
+			this.putLong(elevatorCar.getStopStartTime());
+			this.putLong(elevatorCar.getStartStartTime());
+			this.putLong(elevatorCar.getDoorStartTime());
+			this.putLong(elevatorCar.getTurnStartTime());
+			this.putShort(elevatorCar.getPassengers().size());
+			
+			for (Passenger passenger : elevatorCar.getPassengers()) {
+				this.putPassenger(passenger);
+			}
+			
+			return this;
+		}
+		
+		/**
+		 * Returns a copy of the written frames, in read mode, and clears the writer
+		 */
+		public ByteBuffer copy() {
+			this.buffer.flip();
+			ByteBuffer copy = ByteBuffer.allocate(this.buffer.remaining());
+			copy.put(this.buffer);
+			copy.flip();
+			this.buffer.clear();
+			return copy;
+		}
+		
+		/**
+		 * Returns the buffer with the written frames, in write mode. Written bytes can be removed by
+		 * flipping the buffer, reading from it and compacting it.
+		 */
+		public ByteBuffer buffer() {
+			return this.buffer;
+		}
+	}
+}
@@ -0,0 +1,602 @@
+package elevatorsimulator.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import elevatorsimulator.Building;
+import elevatorsimulator.ChangeDrivenScheduler;
+import elevatorsimulator.Direction;
+import elevatorsimulator.ElevatorBank;
+import elevatorsimulator.ElevatorCar;
+import elevatorsimulator.Floor;
+import elevatorsimulator.LatencyHistogram;
+import elevatorsimulator.Passenger;
+import elevatorsimulator.Scenario;
+import elevatorsimulator.Scenarios;
+import elevatorsimulator.SchedulerCreator;
+import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorSettings;
+import elevatorsimulator.schedulers.ThreePassageGroupElevator;
+
+/**
+ * Hosts a scheduler behind the dispatcher protocol, over TCP or Unix domain sockets.
+ * Each connection gets its own mirror of the building, whose elevator cars and hall calls are updated with the changes
+ * sent in each request before the scheduler handles the event. The commands that the scheduler gives to the mirrored
+ * elevator cars are sent back in the response. The server uses a single thread with non-blocking I/O, and handles
+ * pipelined requests in the order they are received. The hosted scheduler must be a change-driven scheduler,
+ * since the remote scheduler only sends updates after the events of the scheduler.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class DispatcherServer implements Runnable, Closeable {
+	private final Scenario scenario;
+	private final SimulatorSettings settings;
+	private final SchedulerCreator schedulerCreator;
+	
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private volatile boolean running = true;
+	
+	private final LatencyHistogram[] serviceTimes = new LatencyHistogram[DispatcherProtocol.NUM_REQUEST_TYPES];
+	
+	/**
+	 * Represents a connection to a remote scheduler
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	private class Session implements ElevatorCar.CommandListener {
+		private final SocketChannel channel;
+		private ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+		private final DispatcherProtocol.FrameWriter writer = new DispatcherProtocol.FrameWriter(64 * 1024);
+		
+		private Simulator simulator;
+		private final Map<Long, Passenger> passengers = new HashMap<Long, Passenger>();
+		private final List<Passenger> carPassengers = new ArrayList<Passenger>();
+		private int[] commands = new int[4 * 16];
+		private int numCommands;
+		
+		public Session(SocketChannel channel) {
+			this.channel = channel;
+		}
+		
+		/**
+		 * Adds the given command
+		 * @param command The command
+		 * @param elevatorCar The elevator car
+		 * @param floor The floor
+		 * @param direction The direction
+		 */
+		private void addCommand(int command, ElevatorCar elevatorCar, int floor, Direction direction) {
+			if (4 * (this.numCommands + 1) > this.commands.length) {
+				int[] newCommands = new int[this.commands.length * 2];
+				System.arraycopy(this.commands, 0, newCommands, 0, this.commands.length);
+				this.commands = newCommands;
+			}
+			
+			this.commands[4 * this.numCommands] = command;
+			this.commands[4 * this.numCommands + 1] = elevatorCar.getIndex();
+			this.commands[4 * this.numCommands + 2] = floor;
+			this.commands[4 * this.numCommands + 3] = direction.ordinal();
+			this.numCommands++;
+		}
+		
+		@Override
+		public void movedTowards(ElevatorCar elevatorCar, int targetFloor) {
+			this.addCommand(DispatcherProtocol.MOVE_TOWARDS, elevatorCar, targetFloor, Direction.NONE);
+		}
+		
+		@Override
+		public void stopAdded(ElevatorCar elevatorCar, int floor, Direction direction) {
+			this.addCommand(DispatcherProtocol.ADD_STOP, elevatorCar, floor, direction);
+		}
+		
+		@Override
+		public void stopRemoved(ElevatorCar elevatorCar, int floor, Direction direction) {
+			this.addCommand(DispatcherProtocol.REMOVE_STOP, elevatorCar, floor, direction);
+		}
+		
+		@Override
+		public void hallStopsCleared(ElevatorCar elevatorCar) {
+			this.addCommand(DispatcherProtocol.CLEAR_HALL_STOPS, elevatorCar, -1, Direction.NONE);
+		}
+		
+		/**
+		 * Reads a passenger, reusing the mirror of the passenger if it is unchanged
+		 * @param buffer The buffer
+		 */
+		private Passenger readPassenger(ByteBuffer buffer) {
+			long id = buffer.getLong(buffer.position());
+			Passenger cached = this.passengers.get(id);
+			Passenger passenger = DispatcherProtocol.readPassenger(buffer, cached);
+			
+			if (passenger != cached) {
+				this.passengers.put(id, passenger);
+			}
+			
+			return passenger;
+		}
+	}
+	
+	/**
+	 * Creates a new dispatcher server
+	 * @param address The address to listen on
+	 * @param scenario The scenario of the building that is dispatched
+	 * @param settings The settings
+	 * @param schedulerCreator The creator for the hosted scheduler, which must create change-driven schedulers
+	 */
+	public DispatcherServer(SocketAddress address, Scenario scenario, SimulatorSettings settings,
+		SchedulerCreator schedulerCreator) throws IOException {
+		this.scenario = scenario;
+		this.settings = settings;
+		this.schedulerCreator = schedulerCreator;
+		
+		for (int i = 0; i < this.serviceTimes.length; i++) {
+			this.serviceTimes[i] = new LatencyHistogram();
+		}
+		
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open(DispatcherProtocol.protocolFamily(address));
+		this.serverChannel.bind(address);
+		this.serverChannel.configureBlocking(false);
+		this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+	}
+	
+	/**
+	 * Returns the address the server listens on
+	 */
+	public SocketAddress getLocalAddress() throws IOException {
+		return this.serverChannel.getLocalAddress();
+	}
+	
+	/**
+	 * Returns the time spent handling the given type of request, in nanoseconds.
+	 * Only safe to read when the server is not running.
+	 * @param type The request type
+	 */
+	public LatencyHistogram getServiceTime(int type) {
+		return this.serviceTimes[type];
+	}
+	
+	/**
+	 * Runs the server until it is closed
+	 */
+	@Override
+	public void run() {
+		try {
+			while (this.running) {
+				this.selector.select();
+				
+				Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					
+					try {
+						if (key.isValid() && key.isAcceptable()) {
+							this.accept();
+						}
+						
+						if (key.isValid() && key.isReadable()) {
+							this.read(key);
+						}
+						
+						if (key.isValid() && key.isWritable()) {
+							this.flush(key);
+						}
+					} catch (IOException e) {
+						this.closeConnection(key);
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			for (SelectionKey key : this.selector.keys()) {
+				try {
+					this.closeConnection(key);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			
+			try {
+				this.selector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Stops the server
+	 */
+	@Override
+	public void close() {
+		this.running = false;
+		this.selector.wakeup();
+	}
+	
+	/**
+	 * Closes the given connection, and releases the mirror of its session
+	 * @param key The key of the connection
+	 */
+	private void closeConnection(SelectionKey key) throws IOException {
+		key.cancel();
+		key.channel().close();
+		
+		if (key.attachment() instanceof Session) {
+			Session session = (Session)key.attachment();
+			session.simulator = null;
+			session.passengers.clear();
+			session.carPassengers.clear();
+		}
+	}
+	
+	/**
+	 * Accepts a new connection
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = this.serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		
+		channel.configureBlocking(false);
+		if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		}
+		
+		channel.register(this.selector, SelectionKey.OP_READ, new Session(channel));
+	}
+	
+	/**
+	 * Reads and handles the requests that have been received on the given connection
+	 * @param key The key of the connection
+	 */
+	private void read(SelectionKey key) throws IOException {
+		Session session = (Session)key.attachment();
+		if (session.channel.read(session.readBuffer) < 0) {
+			throw new IOException("The connection was closed.");
+		}
+		
+		ByteBuffer buffer = session.readBuffer;
+		buffer.flip();
+		
+		int frameLength;
+		while ((frameLength = DispatcherProtocol.completeFrameLength(buffer)) != -1) {
+			int frameEnd = buffer.position() + frameLength;
+			int limit = buffer.limit();
+			buffer.limit(frameEnd);
+			buffer.getInt();
+			byte type = buffer.get();
+			int requestId = buffer.getInt();
+			
+			this.handleRequest(session, type, requestId, buffer);
+			
+			buffer.limit(limit);
+			buffer.position(frameEnd);
+		}
+		
+		buffer.compact();
+		
+		//Grow the buffer if a frame does not fit
+		if (!buffer.hasRemaining()) {
+			ByteBuffer newBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+			buffer.flip();
+			newBuffer.put(buffer);
+			session.readBuffer = newBuffer;
+		}
+		
+		this.flush(key);
+	}
+	
+	/**
+	 * Writes the pending responses of the given connection
+	 * @param key The key of the connection
+	 */
+	private void flush(SelectionKey key) throws IOException {
+		Session session = (Session)key.attachment();
+		ByteBuffer buffer = session.writer.buffer();
+		buffer.flip();
+		session.channel.write(buffer);
+		buffer.compact();
+		
+		if (buffer.position() > 0) {
+			key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		} else {
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+	
+	/**
+	 * Handles the given request and writes the response
+	 * @param session The session
+	 * @param type The type of the request
+	 * @param requestId The id of the request
+	 * @param body The body of the request
+	 */
+	private void handleRequest(Session session, byte type, int requestId, ByteBuffer body) {
+		long startTime = System.nanoTime();
+		session.numCommands = 0;
+		
+		try {
+			if (type == DispatcherProtocol.HELLO) {
+				int updateEvents = this.handleHello(session, body);
+				session.writer.begin(DispatcherProtocol.RESPONSE, requestId).putInt(updateEvents).end();
+				this.serviceTimes[type].record(System.nanoTime() - startTime);
+				return;
+			} else if (type > DispatcherProtocol.HELLO && type < DispatcherProtocol.NUM_REQUEST_TYPES) {
+				this.handleEvent(session, type, body);
+			} else {
+				throw new IllegalArgumentException("Unknown request type: " + type + ".");
+			}
+		} catch (RuntimeException e) {
+			session.writer.begin(DispatcherProtocol.ERROR, requestId).putString(e.toString()).end();
+			return;
+		}
+		
+		session.writer.begin(DispatcherProtocol.RESPONSE, requestId);
+		session.writer.putShort(session.numCommands);
+		for (int i = 0; i < session.numCommands; i++) {
+			session.writer
+				.putByte(session.commands[4 * i])
+				.putShort(session.commands[4 * i + 1])
+				.putShort(session.commands[4 * i + 2])
+				.putByte(session.commands[4 * i + 3]);
+		}
+		
+		session.writer.end();
+		this.serviceTimes[type].record(System.nanoTime() - startTime);
+	}
+	
+	/**
+	 * Opens a session by creating the mirror of the building
+	 * @param session The session
+	 * @param body The body of the request
+	 * @return The events after which the scheduler must be updated, as a bit mask
+	 */
+	private int handleHello(Session session, ByteBuffer body) {
+		String scenarioName = DispatcherProtocol.readString(body);
+		if (!scenarioName.equals(this.scenario.getName())) {
+			throw new IllegalArgumentException("The server dispatches the scenario '" + this.scenario.getName()
+				+ "', not '" + scenarioName + "'.");
+		}
+		
+		Simulator simulator = new Simulator(this.scenario, this.settings, this.schedulerCreator, 0);
+		SchedulingAlgorithm scheduler = simulator.getControlSystem().getScheduler();
+		if (!(scheduler instanceof ChangeDrivenScheduler)) {
+			throw new IllegalArgumentException("The scheduler '" + scheduler + "' is updated every time step, "
+				+ "which the server does not support.");
+		}
+		
+		session.simulator = simulator;
+		session.simulator.setExportStats(false);
+		session.passengers.clear();
+		
+		//The commands are recorded from now on, not the ones given when the mirror was created
+		for (ElevatorCar elevatorCar : session.simulator.getBuilding().getElevatorCars()) {
+			elevatorCar.setCommandListener(session);
+		}
+		
+		return DispatcherProtocol.eventMask(((ChangeDrivenScheduler)scheduler).getUpdateEvents());
+	}
+	
+	/**
+	 * Mirrors the state in the given request and lets the scheduler handle the event
+	 * @param session The session
+	 * @param type The type of the event
+	 * @param body The body of the request
+	 */
+	private void handleEvent(Session session, byte type, ByteBuffer body) {
+		Simulator simulator = session.simulator;
+		if (simulator == null) {
+			throw new IllegalStateException("The session has not been opened.");
+		}
+		
+		Building building = simulator.getBuilding();
+		ElevatorBank bank = building.getBanks()[body.getShort()];
+		double time = body.getDouble();
+		int elevatorCarIndex = body.getShort();
+		Passenger passenger = DispatcherProtocol.hasPassenger(type) ? session.readPassenger(body) : null;
+		
+		//Mirror the elevator cars that have changed
+		ElevatorCar[] elevatorCars = bank.getElevatorCars();
+		int numChangedCars = body.getShort();
+		for (int i = 0; i < numChangedCars; i++) {
+			int index = body.getShort();
+			if (index < 0 || index >= elevatorCars.length) {
+				throw new IllegalArgumentException("Unknown elevator car " + index + " for the bank '" + bank.getName() + "'.");
+			}
+			
+			ElevatorCar elevatorCar = elevatorCars[index];
+			int floor = body.getShort();
+			int direction = body.get();
+			int state = body.get();
+			int destinationFloor = body.getShort();
+			long lastMovement = body.getLong();
+			long stopStartTime = body.getLong();
+			long startStartTime = body.getLong();
+			long doorStartTime = body.getLong();
+			long turnStartTime = body.getLong();
+			int numPassengers = body.getShort();
+			
+			session.carPassengers.clear();
+			for (int j = 0; j < numPassengers; j++) {
+				Passenger carPassenger = session.readPassenger(body);
+				if (!carPassenger.hasBoarded()) {
+					carPassenger.board();
+				}
+				
+				session.carPassengers.add(carPassenger);
+			}
+			
+			//The passengers that have left the car at their final destination are forgotten
+			for (Passenger carPassenger : elevatorCar.getPassengers()) {
+				if (!containsPassenger(session.carPassengers, carPassenger.getId())
+					&& carPassenger.getDestinationFloor() == carPassenger.getFinalDestinationFloor()) {
+					session.passengers.remove(carPassenger.getId());
+				}
+			}
+			
+			elevatorCar.mirror(
+				floor,
+				DispatcherProtocol.direction(direction),
+				DispatcherProtocol.state(state),
+				destinationFloor,
+				session.carPassengers,
+				lastMovement,
+				stopStartTime,
+				startStartTime,
+				doorStartTime,
+				turnStartTime);
+		}
+		
+		//Mirror the hall calls that have been removed and added
+		Queue<Passenger> hallQueue = simulator.getControlSystem().getHallQueue(bank);
+		Floor[] floors = building.getFloors();
+		int numRemovedHallCalls = body.getInt();
+		for (int i = 0; i < numRemovedHallCalls; i++) {
+			Passenger hallCall = removeHallCall(hallQueue, body.getLong());
+			floors[hallCall.getArrivalFloor()].getWaitingQueue().remove(hallCall);
+			
+			//A call that was removed without boarding will not be seen again
+			if (!isInElevatorCar(elevatorCars, hallCall.getId())) {
+				session.passengers.remove(hallCall.getId());
+			}
+		}
+		
+		int numAddedHallCalls = body.getInt();
+		for (int i = 0; i < numAddedHallCalls; i++) {
+			Passenger hallCall = session.readPassenger(body);
+			hallQueue.add(hallCall);
+			floors[hallCall.getArrivalFloor()].getWaitingQueue().add(hallCall);
+		}
+		
+		simulator.getClock().setTime(time);
+		
+		SchedulingAlgorithm scheduler = simulator.getControlSystem().getScheduler(bank);
+		ElevatorCar elevatorCar = elevatorCarIndex >= 0 ? elevatorCars[elevatorCarIndex] : null;
+		
+		switch (type) {
+		case DispatcherProtocol.PASSENGER_ARRIVED:
+			scheduler.passengerArrived(simulator, passenger);
+			break;
+		case DispatcherProtocol.PASSENGER_BOARDED:
+			scheduler.passengerBoarded(simulator, elevatorCar, passenger);
+			break;
+		case DispatcherProtocol.PASSENGER_EXITED:
+			scheduler.passengerExited(simulator, elevatorCar, passenger);
+			break;
+		case DispatcherProtocol.UPDATE:
+			scheduler.update(simulator);
+			break;
+		case DispatcherProtocol.IDLE:
+			scheduler.onIdle(simulator, elevatorCar);
+			break;
+		case DispatcherProtocol.TURNED:
+			scheduler.onTurned(simulator, elevatorCar);
+			break;
+		case DispatcherProtocol.CHANGED_TO:
+			scheduler.changedTo(simulator);
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Removes the hall call of the passenger with the given id from the given hall queue
+	 * @param hallQueue The hall queue
+	 * @param id The id of the passenger
+	 * @return The removed passenger
+	 */
+	private static Passenger removeHallCall(Queue<Passenger> hallQueue, long id) {
+		Iterator<Passenger> iterator = hallQueue.iterator();
+		while (iterator.hasNext()) {
+			Passenger passenger = iterator.next();
+			if (passenger.getId() == id) {
+				iterator.remove();
+				return passenger;
+			}
+		}
+		
+		throw new IllegalArgumentException("Unknown hall call: " + id + ".");
+	}
+	
+	/**
+	 * Indicates if the given passengers contain the passenger with the given id
+	 * @param passengers The passengers
+	 * @param id The id of the passenger
+	 */
+	private static boolean containsPassenger(List<Passenger> passengers, long id) {
+		for (Passenger passenger : passengers) {
+			if (passenger.getId() == id) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Indicates if the passenger with the given id is in any of the given elevator cars
+	 * @param elevatorCars The elevator cars
+	 * @param id The id of the passenger
+	 */
+	private static boolean isInElevatorCar(ElevatorCar[] elevatorCars, long id) {
+		for (ElevatorCar elevatorCar : elevatorCars) {
+			if (containsPassenger(elevatorCar.getPassengers(), id)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Prints the service times
+	 */
+	public void printStats() {
+		for (int type = 0; type < this.serviceTimes.length; type++) {
+			if (this.serviceTimes[type].getCount() > 0) {
+				this.serviceTimes[type].printStats("Service time (" + DispatcherProtocol.requestName(type) + ")");
+			}
+		}
+	}
+	
+	/**
+	 * Starts a stand-in dispatcher for the medium building, on the given address (default: 127.0.0.1:7070)
+	 */
+	public static void main(String[] args) throws IOException {
+		SchedulerCreator creator = new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new ThreePassageGroupElevator(building);
+			}
+		};
+		
+		SocketAddress address = DispatcherProtocol.parseAddress(args.length > 0 ? args[0] : "127.0.0.1:7070");
+		DispatcherServer server = new DispatcherServer(
+			address,
+			Scenarios.createMediumBuilding(2),
+			new SimulatorSettings(0.01, 24 * 60 * 60),
+			creator);
+		
+		System.out.println("Dispatcher listening on " + server.getLocalAddress() + ".");
+		server.run();
+	}
+}
@@ -0,0 +1,351 @@
+package elevatorsimulator.remote;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import elevatorsimulator.Building;
+import elevatorsimulator.ChangeDrivenScheduler;
+import elevatorsimulator.Direction;
+import elevatorsimulator.ElevatorCar;
+import elevatorsimulator.ElevatorCar.State;
+import elevatorsimulator.Passenger;
+import elevatorsimulator.Simulator;
+
+/**
+ * A scheduler that lets a dispatcher server handle the events. For each event, the elevator cars and the hall calls
+ * that have changed since the previous event are sent to the server, and the commands in the response are given
+ * to the elevator cars. The hall calls are tracked from the passenger events, and the scheduler is only updated
+ * after the update events of the hosted scheduler.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class RemoteScheduler implements ChangeDrivenScheduler {
+	private final DispatcherClient client;
+	private final Building building;
+	private final int bank;
+	private final DispatcherProtocol.FrameWriter writer = new DispatcherProtocol.FrameWriter(4 * 1024);
+	
+	private boolean pipelineNotifications = false;
+	private final Queue<DispatcherClient.Call> pipelinedCalls = new LinkedList<DispatcherClient.Call>();
+	
+	private final EnumSet<Event> updateEvents;
+	private final SentState[] sentElevatorCars;
+	private final Set<Passenger> sentHallCalls = new HashSet<Passenger>();
+	private final List<Passenger> removedHallCalls = new ArrayList<Passenger>();
+	private final List<Passenger> addedHallCalls = new ArrayList<Passenger>();
+	
+	/**
+	 * The state of an elevator car that was sent to the server
+	 */
+	private static class SentState {
+		private boolean sent = false;
+		private int floor;
+		private Direction direction;
+		private State state;
+		private int destinationFloor;
+		private long lastMovement;
+		private long stopStartTime;
+		private long startStartTime;
+		private long doorStartTime;
+		private long turnStartTime;
+		private int numPassengers;
+		private long numBoarded;
+		
+		/**
+		 * Sets the sent state to the state of the given elevator car
+		 * @param elevatorCar The elevator car
+		 * @return True if the state differs from the previously sent state
+		 */
+		public boolean update(ElevatorCar elevatorCar) {
+			boolean changed = !this.sent
+				|| this.floor != elevatorCar.getFloor()
+				|| this.direction != elevatorCar.getDirection()
+				|| this.state != elevatorCar.getState()
+				|| this.destinationFloor != elevatorCar.getDestinationFloor()
+				|| this.lastMovement != elevatorCar.getLastMovementTime()
+				|| this.stopStartTime != elevatorCar.getStopStartTime()
+				|| this.startStartTime != elevatorCar.getStartStartTime()
+				|| this.doorStartTime != elevatorCar.getDoorStartTime()
+				|| this.turnStartTime != elevatorCar.getTurnStartTime()
+				|| this.numPassengers != elevatorCar.getPassengers().size()
+				|| this.numBoarded != elevatorCar.getNumPassengers();
+			
+			if (changed) {
+				this.sent = true;
+				this.floor = elevatorCar.getFloor();
+				this.direction = elevatorCar.getDirection();
+				this.state = elevatorCar.getState();
+				this.destinationFloor = elevatorCar.getDestinationFloor();
+				this.lastMovement = elevatorCar.getLastMovementTime();
+				this.stopStartTime = elevatorCar.getStopStartTime();
+				this.startStartTime = elevatorCar.getStartStartTime();
+				this.doorStartTime = elevatorCar.getDoorStartTime();
+				this.turnStartTime = elevatorCar.getTurnStartTime();
+				this.numPassengers = elevatorCar.getPassengers().size();
+				this.numBoarded = elevatorCar.getNumPassengers();
+			}
+			
+			return changed;
+		}
+	}
+	
+	/**
+	 * Creates a new remote scheduler
+	 * @param client The client for the dispatcher server
+	 * @param building The building, or the view of the bank, to schedule
+	 */
+	public RemoteScheduler(DispatcherClient client, Building building) {
+		this.client = client;
+		this.building = building;
+		this.bank = building.getBanks()[0].getId();
+		this.updateEvents = client.getUpdateEvents();
+		this.sentElevatorCars = new SentState[building.getElevatorCars().length];
+		
+		for (int i = 0; i < this.sentElevatorCars.length; i++) {
+			this.sentElevatorCars[i] = new SentState();
+		}
+		
+		if (!building.isBankView() && building.getBanks().length > 1) {
+			throw new IllegalArgumentException("A remote scheduler must be created for a view of a bank.");
+		}
+	}
+	
+	/**
+	 * Sets if the passenger boarded and exited events are pipelined. When pipelined, the scheduler does not wait
+	 * for their responses, and their commands are instead given before the next event is handled.
+	 * This removes a round trip for most events, but the dispatcher then sees the state before the commands are given.
+	 * @param pipelineNotifications The pipeline state
+	 */
+	public void setPipelineNotifications(boolean pipelineNotifications) {
+		this.pipelineNotifications = pipelineNotifications;
+	}
+	
+	/**
+	 * Sends the given event
+	 * @param simulator The simulator
+	 * @param type The type of the event
+	 * @param elevatorCar The elevator car, or null
+	 * @param passenger The passenger, or null
+	 */
+	private DispatcherClient.Call send(Simulator simulator, byte type, ElevatorCar elevatorCar, Passenger passenger) {
+		int requestId = this.client.nextRequestId();
+		this.writer.begin(type, requestId);
+		this.writer.putShort(this.bank);
+		this.writer.putDouble(simulator.getClock().timeNowSec());
+		this.writer.putShort(elevatorCar != null ? elevatorCar.getIndex() : -1);
+		
+		if (passenger != null) {
+			this.writer.putPassenger(passenger);
+		}
+		
+		this.putElevatorCars();
+		this.putHallCalls();
+		this.writer.end();
+		return this.client.send(requestId, type, this.writer.copy());
+	}
+	
+	/**
+	 * Writes the elevator cars whose state has changed since they were last sent
+	 */
+	private void putElevatorCars() {
+		ElevatorCar[] elevatorCars = this.building.getElevatorCars();
+		int countPosition = this.writer.buffer().position();
+		int numChanged = 0;
+		this.writer.putShort(0);
+		
+		for (int i = 0; i < elevatorCars.length; i++) {
+			if (this.sentElevatorCars[i].update(elevatorCars[i])) {
+				this.writer.putElevatorCar(elevatorCars[i]);
+				numChanged++;
+			}
+		}
+		
+		this.writer.buffer().putShort(countPosition, (short)numChanged);
+	}
+	
+	/**
+	 * Writes the hall calls that have been removed and added since they were last sent
+	 */
+	private void putHallCalls() {
+		this.writer.putInt(this.removedHallCalls.size());
+		for (Passenger passenger : this.removedHallCalls) {
+			this.writer.putLong(passenger.getId());
+			this.sentHallCalls.remove(passenger);
+		}
+		
+		this.writer.putInt(this.addedHallCalls.size());
+		for (Passenger passenger : this.addedHallCalls) {
+			this.writer.putPassenger(passenger);
+			this.sentHallCalls.add(passenger);
+		}
+		
+		this.removedHallCalls.clear();
+		this.addedHallCalls.clear();
+	}
+	
+	/**
+	 * Finds the hall calls that have changed while the scheduler was not in use, by comparing the sent hall calls
+	 * with the hall queue
+	 * @param simulator The simulator
+	 */
+	private void findChangedHallCalls(Simulator simulator) {
+		Queue<Passenger> hallQueue = simulator.getControlSystem().getHallQueue(this.building);
+		Set<Passenger> currentHallCalls = new HashSet<Passenger>(hallQueue);
+		this.removedHallCalls.clear();
+		this.addedHallCalls.clear();
+		
+		for (Passenger passenger : this.sentHallCalls) {
+			if (!currentHallCalls.contains(passenger)) {
+				this.removedHallCalls.add(passenger);
+			}
+		}
+		
+		//The added calls keep the order of the hall queue
+		for (Passenger passenger : hallQueue) {
+			if (!this.sentHallCalls.contains(passenger)) {
+				this.addedHallCalls.add(passenger);
+			}
+		}
+	}
+	
+	/**
+	 * Gives the commands in the response of the given call to the elevator cars
+	 * @param simulator The simulator
+	 * @param call The call
+	 */
+	private void applyCommands(Simulator simulator, DispatcherClient.Call call) {
+		ByteBuffer response;
+		try {
+			response = call.await();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		ElevatorCar[] elevatorCars = this.building.getElevatorCars();
+		int numCommands = response.getShort();
+		for (int i = 0; i < numCommands; i++) {
+			byte command = response.get();
+			int index = response.getShort();
+			ElevatorCar elevatorCar = elevatorCars[index];
+			int floor = response.getShort();
+			Direction direction = DispatcherProtocol.direction(response.get());
+			
+			//When pipelined, the command was given to a mirror that was behind, which can make its effect differ
+			if (this.pipelineNotifications) {
+				this.sentElevatorCars[index].sent = false;
+			}
+			
+			switch (command) {
+			case DispatcherProtocol.MOVE_TOWARDS:
+				elevatorCar.moveTowards(simulator, floor);
+				break;
+			case DispatcherProtocol.ADD_STOP:
+				elevatorCar.addStop(floor, direction);
+				break;
+			case DispatcherProtocol.REMOVE_STOP:
+				elevatorCar.removeStop(floor, direction);
+				break;
+			case DispatcherProtocol.CLEAR_HALL_STOPS:
+				elevatorCar.clearHallStops();
+				break;
+			default:
+				throw new IllegalStateException("Unknown command: " + command + ".");
+			}
+		}
+	}
+	
+	/**
+	 * Gives the commands of the pipelined events
+	 * @param simulator The simulator
+	 */
+	private void applyPipelinedCommands(Simulator simulator) {
+		while (!this.pipelinedCalls.isEmpty()) {
+			this.applyCommands(simulator, this.pipelinedCalls.poll());
+		}
+	}
+	
+	/**
+	 * Lets the dispatcher handle the given event, and gives the commands
+	 * @param simulator The simulator
+	 * @param type The type of the event
+	 * @param elevatorCar The elevator car, or null
+	 * @param passenger The passenger, or null
+	 */
+	private void handle(Simulator simulator, byte type, ElevatorCar elevatorCar, Passenger passenger) {
+		this.applyPipelinedCommands(simulator);
+		this.applyCommands(simulator, this.send(simulator, type, elevatorCar, passenger));
+	}
+	
+	/**
+	 * Lets the dispatcher handle the given event, which is pipelined if enabled
+	 * @param simulator The simulator
+	 * @param type The type of the event
+	 * @param elevatorCar The elevator car, or null
+	 * @param passenger The passenger, or null
+	 */
+	private void handleNotification(Simulator simulator, byte type, ElevatorCar elevatorCar, Passenger passenger) {
+		if (this.pipelineNotifications) {
+			this.pipelinedCalls.add(this.send(simulator, type, elevatorCar, passenger));
+		} else {
+			this.handle(simulator, type, elevatorCar, passenger);
+		}
+	}
+	
+	@Override
+	public void passengerArrived(Simulator simulator, Passenger passenger) {
+		this.addedHallCalls.add(passenger);
+		this.handle(simulator, DispatcherProtocol.PASSENGER_ARRIVED, null, passenger);
+	}
+	
+	@Override
+	public void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+		if (!this.addedHallCalls.remove(passenger)) {
+			this.removedHallCalls.add(passenger);
+		}
+		
+		this.handleNotification(simulator, DispatcherProtocol.PASSENGER_BOARDED, elevatorCar, passenger);
+	}
+	
+	@Override
+	public void passengerExited(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+		this.handleNotification(simulator, DispatcherProtocol.PASSENGER_EXITED, elevatorCar, passenger);
+	}
+	
+	@Override
+	public void update(Simulator simulator) {
+		this.handle(simulator, DispatcherProtocol.UPDATE, null, null);
+	}
+	
+	@Override
+	public EnumSet<Event> getUpdateEvents() {
+		return EnumSet.copyOf(this.updateEvents);
+	}
+	
+	@Override
+	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
+		this.handle(simulator, DispatcherProtocol.IDLE, elevatorCar, null);
+	}
+	
+	@Override
+	public void onTurned(Simulator simulator, ElevatorCar elevatorCar) {
+		this.handle(simulator, DispatcherProtocol.TURNED, elevatorCar, null);
+	}
+	
+	@Override
+	public void changedTo(Simulator simulator) {
+		this.findChangedHallCalls(simulator);
+		this.handle(simulator, DispatcherProtocol.CHANGED_TO, null, null);
+	}
+	
+	@Override
+	public String toString() {
+		return "Remote Scheduler";
+	}
+}
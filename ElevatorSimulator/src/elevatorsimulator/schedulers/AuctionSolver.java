@@ -0,0 +1,177 @@
+package elevatorsimulator.schedulers;
+
+/**
+ * Solves the square assignment problem with the auction algorithm, using epsilon scaling.
+ * The persons bid for the objects they are cheapest to assign to, raising the prices until every person has an object.
+ * With integer costs, the final assignment has the minimum total cost. If the deadline is reached,
+ * the assignment of the last finished scaling phase is kept, which is optimal within the epsilon of that phase.
+ * The arrays are reused between the problems, and only grow when a larger problem is solved.
+ * Assignments that are not allowed are given the finite cost INFEASIBLE_COST, as infinite costs are not supported.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class AuctionSolver {
+	private int size;
+	private double[] costs = new double[0];
+	private double[] prices = new double[0];
+	private int[] personToObject = new int[0];
+	private int[] objectToPerson = new int[0];
+	private int[] unassigned = new int[0];
+	private int[] solution = new int[0];
+	
+	private long numBids;
+	
+	/**
+	 * The cost of an assignment that is not allowed. It is only chosen when no assignment without it exists.
+	 */
+	public static final double INFEASIBLE_COST = 1E9;
+	
+	/**
+	 * The number of bids between the checks of the deadline
+	 */
+	private static final int DEADLINE_CHECK_INTERVAL = 256;
+	
+	/**
+	 * The factor that epsilon is reduced with in each scaling phase
+	 */
+	private static final double EPSILON_FACTOR = 5.0;
+	
+	/**
+	 * Prepares the solver for a problem of the given size, and returns the cost matrix to fill.
+	 * The cost of assigning person i to object j is at index i * size + j.
+	 * @param size The number of persons and objects
+	 */
+	public double[] prepare(int size) {
+		this.size = size;
+		
+		if (this.personToObject.length < size) {
+			this.costs = new double[size * size];
+			this.prices = new double[size];
+			this.personToObject = new int[size];
+			this.objectToPerson = new int[size];
+			this.unassigned = new int[size];
+			this.solution = new int[size];
+		}
+		
+		return this.costs;
+	}
+	
+	/**
+	 * Solves the assignment problem for the prepared cost matrix
+	 * @param deadline The value of System.nanoTime when the solver stops
+	 * @return True if all persons were assigned, false if the deadline was reached first
+	 */
+	public boolean solve(long deadline) {
+		int n = this.size;
+		double maxCost = 0.0;
+		
+		for (int i = 0; i < n * n; i++) {
+			maxCost = Math.max(maxCost, Math.abs(this.costs[i]));
+		}
+		
+		//With integer costs, a final epsilon below 1 / n gives an optimal assignment
+		double finalEpsilon = 1.0 / (n + 1);
+		double epsilon = Math.max(maxCost / EPSILON_FACTOR, finalEpsilon);
+		
+		for (int j = 0; j < n; j++) {
+			this.prices[j] = 0.0;
+		}
+		
+		boolean finishedPhase = false;
+		while (true) {
+			if (!this.auction(epsilon, deadline)) {
+				//Without a finished phase, the partial assignment is used
+				if (!finishedPhase) {
+					System.arraycopy(this.personToObject, 0, this.solution, 0, n);
+				}
+
+				return false;
+			}
+
+			System.arraycopy(this.personToObject, 0, this.solution, 0, n);
+			finishedPhase = true;
+
+			if (epsilon <= finalEpsilon) {
+				return true;
+			}
+			
+			epsilon = Math.max(epsilon / EPSILON_FACTOR, finalEpsilon);
+		}
+	}
+	
+	/**
+	 * Runs one auction with the given epsilon, starting from the current prices
+	 * @param epsilon The minimum price increase of a bid
+	 * @param deadline The value of System.nanoTime when the auction stops
+	 * @return True if all persons were assigned
+	 */
+	private boolean auction(double epsilon, long deadline) {
+		int n = this.size;
+		int numUnassigned = 0;
+		
+		for (int i = 0; i < n; i++) {
+			this.personToObject[i] = -1;
+			this.objectToPerson[i] = -1;
+			this.unassigned[numUnassigned++] = n - 1 - i;
+		}
+		
+		while (numUnassigned > 0) {
+			int person = this.unassigned[--numUnassigned];
+			int offset = person * n;
+			
+			//Find the best and the second best object, including their prices
+			int bestObject = -1;
+			double bestValue = Double.POSITIVE_INFINITY;
+			double secondValue = Double.POSITIVE_INFINITY;
+			
+			for (int j = 0; j < n; j++) {
+				double value = this.costs[offset + j] + this.prices[j];
+				
+				if (value < bestValue) {
+					secondValue = bestValue;
+					bestValue = value;
+					bestObject = j;
+				} else if (value < secondValue) {
+					secondValue = value;
+				}
+			}
+			
+			if (secondValue == Double.POSITIVE_INFINITY) {
+				secondValue = bestValue;
+			}
+			
+			this.prices[bestObject] += secondValue - bestValue + epsilon;
+			
+			int previousPerson = this.objectToPerson[bestObject];
+			if (previousPerson != -1) {
+				this.personToObject[previousPerson] = -1;
+				this.unassigned[numUnassigned++] = previousPerson;
+			}
+			
+			this.objectToPerson[bestObject] = person;
+			this.personToObject[person] = bestObject;
+			this.numBids++;
+			
+			if (this.numBids % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the object assigned to the given person, or -1 if the person was not assigned
+	 * @param person The person
+	 */
+	public int getAssignment(int person) {
+		return this.solution[person];
+	}
+	
+	/**
+	 * Returns the total number of bids made by the solver
+	 */
+	public long getNumBids() {
+		return this.numBids;
+	}
+}
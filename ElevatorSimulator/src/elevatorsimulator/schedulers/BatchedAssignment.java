@@ -0,0 +1,360 @@
+package elevatorsimulator.schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import elevatorsimulator.Building;
+import elevatorsimulator.Direction;
+import elevatorsimulator.ElevatorCar;
+import elevatorsimulator.ElevatorCar.State;
+import elevatorsimulator.ElevatorCarConfiguration;
+import elevatorsimulator.Passenger;
+import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorClock;
+import elevatorsimulator.SimulatorEvents;
+
+/**
+ * Implements a scheduler that collects the hall calls over a short window, and then assigns all waiting calls
+ * to the elevator cars jointly, minimizing the total estimated wait time with an auction solver.
+ * Each car has a number of slots, where each earlier slot that is used adds one stop to the cost of the later slots.
+ * If the solver does not finish within the time budget, the calls it did not assign go to their cheapest car.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class BatchedAssignment implements SchedulingAlgorithm {
+	private final Building building;
+	private final List<ElevatorData> elevators = new ArrayList<ElevatorData>();
+	private final List<Passenger> calls = new ArrayList<Passenger>();
+	private final AuctionSolver solver = new AuctionSolver();
+	
+	private final double window;
+	private final long timeBudget;
+	private boolean hasNewCalls = false;
+	private long windowStart;
+	
+	private long numBatches;
+	private long totalSolveTime;
+	private long maxSolveTime;
+	private long numOverBudget;
+	
+	/**
+	 * The number of cost units per second. The costs are rounded to integers, which makes the auction optimal.
+	 */
+	private static final double COST_UNITS_PER_SECOND = 10.0;
+	
+	/**
+	 * Contains data about an elevator
+	 */
+	private static class ElevatorData {
+		public final ElevatorCar elevatorCar;
+		public final List<Passenger> hallCalls = new ArrayList<Passenger>();
+		
+		public ElevatorData(ElevatorCar elevatorCar) {
+			this.elevatorCar = elevatorCar;
+		}
+	}
+	
+	/**
+	 * Creates a new batched assignment scheduler
+	 * @param building The building
+	 * @param window The time to collect new calls before they are assigned (in seconds)
+	 * @param timeBudget The time budget for one assignment (in nanoseconds)
+	 */
+	public BatchedAssignment(Building building, double window, long timeBudget) {
+		for (ElevatorCar elevatorCar : building.getElevatorCars()) {
+			this.elevators.add(new ElevatorData(elevatorCar));
+		}
+		
+		this.building = building;
+		this.window = window;
+		this.timeBudget = timeBudget;
+	}
+	
+	/**
+	 * Creates a new batched assignment scheduler, with a window of one second and a time budget of 25 milliseconds.
+	 * The budget covers a batch of 300 calls for 64 elevator cars, which takes about 20 ms on one core.
+	 * Larger buildings, or slower machines, need a larger budget to avoid that the calls go to their cheapest car.
+	 * @param building The building
+	 */
+	public BatchedAssignment(Building building) {
+		this(building, 1.0, 25000000);
+	}
+	
+	/**
+	 * Returns the number of assignments made
+	 */
+	public long getNumBatches() {
+		return this.numBatches;
+	}
+	
+	/**
+	 * Returns the average time of an assignment (in nanoseconds)
+	 */
+	public double getAverageSolveTime() {
+		if (this.numBatches == 0) {
+			return 0;
+		}
+		
+		return this.totalSolveTime / (double)this.numBatches;
+	}
+	
+	/**
+	 * Returns the longest time of an assignment (in nanoseconds)
+	 */
+	public long getMaxSolveTime() {
+		return this.maxSolveTime;
+	}
+	
+	/**
+	 * Returns the number of assignments where the solver did not finish within the time budget
+	 */
+	public long getNumOverBudget() {
+		return this.numOverBudget;
+	}
+	
+	/**
+	 * Returns the time of one stop
+	 * @param configuration The elevator car configuration
+	 */
+	private static double stopTime(ElevatorCarConfiguration configuration) {
+		return configuration.getStartTime() + configuration.getStopTime() + configuration.getDoorTime();
+	}
+	
+	/**
+	 * Estimates the time until the given elevator car can pick up the given call, without the assigned calls.
+	 * The estimate is based on the position, direction and load of the car.
+	 * @param elevatorCar The elevator car
+	 * @param passenger The passenger that made the call
+	 */
+	private static double travelTime(ElevatorCar elevatorCar, Passenger passenger) {
+		ElevatorCarConfiguration configuration = elevatorCar.getConfiguration();
+		int floor = elevatorCar.nextFloor();
+		int callFloor = passenger.getArrivalFloor();
+		Direction carDir = elevatorCar.getDirection();
+		Direction towardsCall = Direction.getDirection(floor, callFloor);
+		double time;
+		
+		if (elevatorCar.getState() == State.IDLE || carDir == Direction.NONE) {
+			time = Math.abs(floor - callFloor) * configuration.getFloorTime();
+			
+			if (floor != callFloor) {
+				time += configuration.getStartTime() + configuration.getStopTime();
+			}
+		} else if ((carDir == towardsCall || towardsCall == Direction.NONE) && carDir == passenger.getDirection()) {
+			//On the way
+			time = Math.abs(floor - callFloor) * configuration.getFloorTime();
+		} else {
+			//The car first travels to its destination and turns there
+			int turnFloor = elevatorCar.getDestinationFloor();
+			int distance = Math.abs(floor - turnFloor) + Math.abs(turnFloor - callFloor);
+			time = distance * configuration.getFloorTime() + stopTime(configuration);
+		}
+		
+		//Each passenger in the car may cause a stop before the call is reached
+		time += elevatorCar.getPassengers().size() * stopTime(configuration) / 2;
+		
+		if (!elevatorCar.canPickupPassenger(passenger)) {
+			time += stopTime(configuration) * configuration.getCapacity();
+		}
+		
+		return time;
+	}
+	
+	/**
+	 * Assigns all waiting calls to the elevator cars
+	 * @param simulator The simulator
+	 */
+	private void assignCalls(Simulator simulator) {
+		long start = System.nanoTime();
+		
+		int numCalls = this.calls.size();
+		int numCars = this.elevators.size();
+		
+		//The number of slots makes room for all calls, and leaves at least one free slot per car
+		int numSlots = numCalls / numCars + 2;
+		int size = numCars * numSlots;
+		double[] costs = this.solver.prepare(size);
+		
+		for (int i = 0; i < numCalls; i++) {
+			Passenger passenger = this.calls.get(i);
+			int offset = i * size;
+			
+			for (int car = 0; car < numCars; car++) {
+				ElevatorCar elevatorCar = this.elevators.get(car).elevatorCar;
+				double baseCost = travelTime(elevatorCar, passenger);
+				double slotCost = stopTime(elevatorCar.getConfiguration());
+				
+				for (int slot = 0; slot < numSlots; slot++) {
+					costs[offset + car * numSlots + slot] = Math.rint((baseCost + slot * slotCost) * COST_UNITS_PER_SECOND);
+				}
+			}
+		}
+		
+		//The remaining persons are dummies that take the unused slots
+		for (int i = numCalls * size; i < size * size; i++) {
+			costs[i] = 0.0;
+		}
+		
+		boolean finished = this.solver.solve(start + this.timeBudget);
+		
+		for (ElevatorData elevatorData : this.elevators) {
+			elevatorData.hallCalls.clear();
+			elevatorData.elevatorCar.clearHallStops();
+		}
+		
+		for (int i = 0; i < numCalls; i++) {
+			Passenger passenger = this.calls.get(i);
+			int slot = this.solver.getAssignment(i);
+			int car = slot != -1 ? slot / numSlots : this.cheapestCar(passenger);
+			ElevatorData elevatorData = this.elevators.get(car);
+			elevatorData.hallCalls.add(passenger);
+			elevatorData.elevatorCar.addStop(passenger.getArrivalFloor(), passenger.getDirection());
+			SimulatorEvents.passengerAssigned(simulator, passenger, elevatorData.elevatorCar, this, false);
+		}
+		
+		long duration = System.nanoTime() - start;
+		this.numBatches++;
+		this.totalSolveTime += duration;
+		this.maxSolveTime = Math.max(this.maxSolveTime, duration);
+		
+		if (!finished) {
+			this.numOverBudget++;
+		}
+	}
+	
+	/**
+	 * Returns the index of the elevator car with the lowest travel time to the given call
+	 * @param passenger The passenger that made the call
+	 */
+	private int cheapestCar(Passenger passenger) {
+		int bestCar = 0;
+		double bestTime = Double.MAX_VALUE;
+		
+		for (int car = 0; car < this.elevators.size(); car++) {
+			double time = travelTime(this.elevators.get(car).elevatorCar, passenger);
+			
+			if (time < bestTime) {
+				bestTime = time;
+				bestCar = car;
+			}
+		}
+		
+		return bestCar;
+	}
+	
+	@Override
+	public void passengerArrived(Simulator simulator, Passenger passenger) {
+		this.calls.add(passenger);
+		
+		if (!this.hasNewCalls) {
+			this.hasNewCalls = true;
+			this.windowStart = simulator.getClock().timeNow();
+		}
+	}
+	
+	@Override
+	public void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+		if (this.calls.remove(passenger)) {
+			for (ElevatorData elevatorData : this.elevators) {
+				if (elevatorData.hallCalls.remove(passenger)) {
+					this.updateStops(elevatorData);
+					break;
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void passengerExited(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+	
+	}
+	
+	@Override
+	public void update(Simulator simulator) {
+		SimulatorClock clock = simulator.getClock();
+		
+		if (this.hasNewCalls && clock.elapsedSinceRealTime(this.windowStart) >= clock.secondsToTime(this.window)) {
+			this.hasNewCalls = false;
+			
+			if (!this.calls.isEmpty()) {
+				this.assignCalls(simulator);
+			}
+		}
+		
+		for (ElevatorData elevatorData : this.elevators) {
+			ElevatorCar elevatorCar = elevatorData.elevatorCar;
+			
+			//The moving elevator cars stop for their calls by the stops
+			if (elevatorCar.getState() == State.IDLE) {
+				int targetFloor = this.closestCallFloor(elevatorData);
+				
+				if (targetFloor != -1) {
+					elevatorCar.moveTowards(simulator, targetFloor);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Sets the stops of the elevator car to the floors of its calls
+	 * @param elevatorData The elevator data
+	 */
+	private void updateStops(ElevatorData elevatorData) {
+		ElevatorCar elevatorCar = elevatorData.elevatorCar;
+		elevatorCar.clearHallStops();
+		
+		for (Passenger passenger : elevatorData.hallCalls) {
+			elevatorCar.addStop(passenger.getArrivalFloor(), passenger.getDirection());
+		}
+	}
+	
+	/**
+	 * Returns the floor of the closest call assigned to the given elevator car, or -1 if it has no calls
+	 * @param elevatorData The elevator data
+	 */
+	private int closestCallFloor(ElevatorData elevatorData) {
+		int floor = elevatorData.elevatorCar.getFloor();
+		int closestFloor = -1;
+		
+		for (Passenger passenger : elevatorData.hallCalls) {
+			int callFloor = passenger.getArrivalFloor();
+			
+			if (closestFloor == -1 || Math.abs(callFloor - floor) < Math.abs(closestFloor - floor)) {
+				closestFloor = callFloor;
+			}
+		}
+		
+		return closestFloor;
+	}
+	
+	@Override
+	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
+	
+	}
+	
+	@Override
+	public void onTurned(Simulator simulator, ElevatorCar elevatorCar) {
+	
+	}
+	
+	@Override
+	public void changedTo(Simulator simulator) {
+		//Assign the waiting passengers in the next update
+		this.calls.clear();
+		
+		for (ElevatorData elevatorData : this.elevators) {
+			elevatorData.hallCalls.clear();
+			elevatorData.elevatorCar.clearHallStops();
+		}
+		
+		for (Passenger passenger : simulator.getControlSystem().getHallQueue(this.building)) {
+			this.passengerArrived(simulator, passenger);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "Batched Assignment";
+	}
+}
@@ -0,0 +1,455 @@
+package elevatorsimulator.schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+import elevatorsimulator.Building;
+import elevatorsimulator.ChangeDrivenScheduler;
+import elevatorsimulator.Direction;
+import elevatorsimulator.ElevatorCar;
+import elevatorsimulator.ElevatorCar.State;
+import elevatorsimulator.ElevatorCarConfiguration;
+import elevatorsimulator.Passenger;
+import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorClock;
+import elevatorsimulator.SimulatorEvents;
+
+/**
+ * Implements a scheduler that assigns each hall call to an elevator car using a learned value function.
+ * The value function is a linear model over a few features of the car and the call that predicts the wait time,
+ * and is learned from the wait times observed when the passengers board. If evaluating the cars exceeds the time budget
+ * of a decision, the call is instead assigned to the nearest car.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class LearnedDispatcher implements ChangeDrivenScheduler {
+	/**
+	 * The features of a car and a call
+	 */
+	private static final int BIAS = 0;
+	private static final int DISTANCE = 1;
+	private static final int ON_THE_WAY = 2;
+	private static final int REVERSAL = 3;
+	private static final int LOAD = 4;
+	private static final int ASSIGNED_CALLS = 5;
+	private static final int IDLE = 6;
+	private static final int NUM_FEATURES = 7;
+
+	private final Building building;
+	private final List<ElevatorData> elevators = new ArrayList<ElevatorData>();
+	private final List<Assignment> assignments = new ArrayList<Assignment>();
+	private final List<Assignment> freeAssignments = new ArrayList<Assignment>();
+	private final int numFloors;
+
+	private final double[] weights;
+	private final double[] features;
+	private final Random random;
+	private double learningRate = 0.01;
+	private double explorationRate = 0.0;
+	private boolean learning = true;
+
+	private final long decisionBudget;
+	private long numDecisions;
+	private long totalDecisionTime;
+	private long maxDecisionTime;
+	private long numOverBudget;
+
+	/**
+	 * Contains data about an elevator
+	 */
+	private static class ElevatorData {
+		public final ElevatorCar elevatorCar;
+		public final Queue<Passenger> hallCalls = new ArrayDeque<Passenger>();
+
+		public ElevatorData(ElevatorCar elevatorCar) {
+			this.elevatorCar = elevatorCar;
+		}
+	}
+
+	/**
+	 * Represents the assignment of a hall call to an elevator car.
+	 * The assignments are pooled, so that a decision does not allocate.
+	 */
+	private static class Assignment {
+		public Passenger passenger;
+		public ElevatorData elevatorData;
+		public final double[] features = new double[NUM_FEATURES];
+	}
+
+	/**
+	 * Creates a new learned dispatcher with initial weights estimated from the elevator car configuration
+	 * @param building The building
+	 * @param decisionBudget The time budget for one decision (in nanoseconds)
+	 */
+	public LearnedDispatcher(Building building, long decisionBudget) {
+		this(building, initialWeights(building), decisionBudget);
+	}
+
+	/**
+	 * Creates a new learned dispatcher using the given weights. The weights are updated in place when learning,
+	 * so the same array can be shared by the schedulers of consecutive simulations.
+	 * @param building The building
+	 * @param weights The weights of the value function
+	 * @param decisionBudget The time budget for one decision (in nanoseconds)
+	 */
+	public LearnedDispatcher(Building building, double[] weights, long decisionBudget) {
+		if (weights.length != NUM_FEATURES) {
+			throw new IllegalArgumentException("The number of weights must be " + NUM_FEATURES + ".");
+		}
+
+		for (ElevatorCar elevatorCar : building.getElevatorCars()) {
+			this.elevators.add(new ElevatorData(elevatorCar));
+		}
+
+		this.building = building;
+		this.numFloors = building.numFloors();
+		this.weights = weights;
+		this.features = new double[building.getElevatorCars().length * NUM_FEATURES];
+		this.random = new Random(building.getElevatorCars().length * 31L + this.numFloors);
+		this.decisionBudget = decisionBudget;
+	}
+
+	/**
+	 * Returns initial weights for the given building, estimating the wait time from the travel and stop times
+	 * @param building The building
+	 */
+	public static double[] initialWeights(Building building) {
+		ElevatorCarConfiguration configuration = building.getElevatorCars()[0].getConfiguration();
+		double stopTime = configuration.getStartTime() + configuration.getStopTime() + configuration.getDoorTime();
+
+		double[] weights = new double[NUM_FEATURES];
+		weights[BIAS] = stopTime;
+		weights[DISTANCE] = configuration.getFloorTime() * building.numFloors();
+		weights[ON_THE_WAY] = 0;
+		weights[REVERSAL] = configuration.getFloorTime() * building.numFloors();
+		weights[LOAD] = stopTime * configuration.getCapacity() / 2;
+		weights[ASSIGNED_CALLS] = stopTime * configuration.getCapacity();
+		weights[IDLE] = -configuration.getStartTime();
+		return weights;
+	}
+
+	/**
+	 * Returns the weights of the value function
+	 */
+	public double[] getWeights() {
+		return this.weights;
+	}
+
+	/**
+	 * Sets if the weights are learned from the observed wait times
+	 * @param learning The learning state
+	 */
+	public void setLearning(boolean learning) {
+		this.learning = learning;
+	}
+
+	/**
+	 * Sets the learning rate
+	 * @param learningRate The learning rate
+	 */
+	public void setLearningRate(double learningRate) {
+		this.learningRate = learningRate;
+	}
+
+	/**
+	 * Sets the probability that a random car is assigned while learning
+	 * @param explorationRate The exploration rate
+	 */
+	public void setExplorationRate(double explorationRate) {
+		this.explorationRate = explorationRate;
+	}
+
+	/**
+	 * Returns the number of decisions made
+	 */
+	public long getNumDecisions() {
+		return this.numDecisions;
+	}
+
+	/**
+	 * Returns the average time of a decision (in nanoseconds)
+	 */
+	public double getAverageDecisionTime() {
+		if (this.numDecisions == 0) {
+			return 0;
+		}
+
+		return this.totalDecisionTime / (double)this.numDecisions;
+	}
+
+	/**
+	 * Returns the longest time of a decision (in nanoseconds)
+	 */
+	public long getMaxDecisionTime() {
+		return this.maxDecisionTime;
+	}
+
+	/**
+	 * Returns the number of decisions that exceeded the time budget, and fell back to the nearest car
+	 */
+	public long getNumOverBudget() {
+		return this.numOverBudget;
+	}
+
+	/**
+	 * Computes the features for the given elevator car and call
+	 * @param elevatorData The elevator data
+	 * @param passenger The passenger that made the call
+	 * @param offset The offset in the feature array
+	 */
+	private void computeFeatures(ElevatorData elevatorData, Passenger passenger, int offset) {
+		ElevatorCar elevatorCar = elevatorData.elevatorCar;
+		int floor = elevatorCar.nextFloor();
+		int callFloor = passenger.getArrivalFloor();
+		Direction carDir = elevatorCar.getDirection();
+		Direction towardsCall = Direction.getDirection(floor, callFloor);
+		double capacity = elevatorCar.getConfiguration().getCapacity();
+
+		boolean onTheWay =
+			carDir == Direction.NONE
+			|| (carDir == towardsCall && carDir == passenger.getDirection())
+			|| (towardsCall == Direction.NONE && carDir == passenger.getDirection());
+
+		this.features[offset + BIAS] = 1.0;
+		this.features[offset + DISTANCE] = Math.abs(floor - callFloor) / (double)this.numFloors;
+		this.features[offset + ON_THE_WAY] = onTheWay ? 1.0 : 0.0;
+		this.features[offset + REVERSAL] = onTheWay ? 0.0 : 1.0;
+		this.features[offset + LOAD] = elevatorCar.getPassengers().size() / capacity;
+		this.features[offset + ASSIGNED_CALLS] = elevatorData.hallCalls.size() / capacity;
+		this.features[offset + IDLE] = elevatorCar.getState() == State.IDLE ? 1.0 : 0.0;
+	}
+
+	/**
+	 * Predicts the wait time using the features at the given offset
+	 * @param features The features
+	 * @param offset The offset
+	 */
+	private double predict(double[] features, int offset) {
+		double value = 0.0;
+		for (int i = 0; i < NUM_FEATURES; i++) {
+			value += this.weights[i] * features[offset + i];
+		}
+
+		return value;
+	}
+
+	/**
+	 * Updates the weights towards the given observed wait time, using normalized least mean squares
+	 * @param features The features when the call was assigned
+	 * @param waitTime The observed wait time (in seconds)
+	 */
+	private void learn(double[] features, double waitTime) {
+		double norm = 0.0;
+		for (int i = 0; i < NUM_FEATURES; i++) {
+			norm += features[i] * features[i];
+		}
+
+		double error = waitTime - this.predict(features, 0);
+		double step = this.learningRate * error / norm;
+
+		for (int i = 0; i < NUM_FEATURES; i++) {
+			this.weights[i] += step * features[i];
+		}
+	}
+
+	/**
+	 * Returns an assignment from the pool, or a new assignment if the pool is empty
+	 */
+	private Assignment newAssignment() {
+		int numFree = this.freeAssignments.size();
+		if (numFree > 0) {
+			return this.freeAssignments.remove(numFree - 1);
+		}
+
+		return new Assignment();
+	}
+
+	/**
+	 * Removes the assignment of the given passenger, and returns it to the pool.
+	 * The returned assignment is valid until the next assignment is made.
+	 * @param passenger The passenger
+	 * @return The assignment, or null if the passenger has no assignment
+	 */
+	private Assignment removeAssignment(Passenger passenger) {
+		int numAssignments = this.assignments.size();
+		for (int i = 0; i < numAssignments; i++) {
+			Assignment assignment = this.assignments.get(i);
+			if (assignment.passenger == passenger) {
+				//The order of the assignments does not matter, so the last one takes its place
+				this.assignments.set(i, this.assignments.get(numAssignments - 1));
+				this.assignments.remove(numAssignments - 1);
+
+				assignment.passenger = null;
+				this.freeAssignments.add(assignment);
+				return assignment;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Sets the stops of the elevator car to the floors of its hall calls
+	 * @param elevatorData The elevator data
+	 */
+	private void updateStops(ElevatorData elevatorData) {
+		ElevatorCar elevatorCar = elevatorData.elevatorCar;
+		elevatorCar.clearHallStops();
+
+		for (Passenger passenger : elevatorData.hallCalls) {
+			elevatorCar.addStop(passenger.getArrivalFloor(), passenger.getDirection());
+		}
+	}
+
+	/**
+	 * Returns the index of the elevator car nearest to the given call
+	 * @param passenger The passenger that made the call
+	 */
+	private int nearestElevator(Passenger passenger) {
+		int nearestElevator = 0;
+		int nearestDistance = Integer.MAX_VALUE;
+
+		for (int i = 0; i < this.elevators.size(); i++) {
+			int distance = Math.abs(this.elevators.get(i).elevatorCar.nextFloor() - passenger.getArrivalFloor());
+			if (distance < nearestDistance) {
+				nearestDistance = distance;
+				nearestElevator = i;
+			}
+		}
+
+		return nearestElevator;
+	}
+
+	@Override
+	public void passengerArrived(Simulator simulator, Passenger passenger) {
+		long start = System.nanoTime();
+
+		int bestElevator = 0;
+		double bestValue = Double.MAX_VALUE;
+		boolean overBudget = false;
+
+		for (int i = 0; i < this.elevators.size(); i++) {
+			ElevatorData elevatorData = this.elevators.get(i);
+			int offset = i * NUM_FEATURES;
+			this.computeFeatures(elevatorData, passenger, offset);
+
+			double value = this.predict(this.features, offset);
+			if (value < bestValue) {
+				bestValue = value;
+				bestElevator = i;
+			}
+
+			if (System.nanoTime() - start > this.decisionBudget) {
+				overBudget = i < this.elevators.size() - 1;
+				break;
+			}
+		}
+
+		if (overBudget) {
+			bestElevator = this.nearestElevator(passenger);
+			this.computeFeatures(this.elevators.get(bestElevator), passenger, bestElevator * NUM_FEATURES);
+		} else if (this.learning && this.explorationRate > 0 && this.random.nextDouble() < this.explorationRate) {
+			bestElevator = this.random.nextInt(this.elevators.size());
+		}
+
+		long duration = System.nanoTime() - start;
+		this.numDecisions++;
+		this.totalDecisionTime += duration;
+		this.maxDecisionTime = Math.max(this.maxDecisionTime, duration);
+
+		if (overBudget) {
+			this.numOverBudget++;
+		}
+
+		ElevatorData elevatorData = this.elevators.get(bestElevator);
+		Assignment assignment = this.newAssignment();
+		assignment.passenger = passenger;
+		assignment.elevatorData = elevatorData;
+		System.arraycopy(this.features, bestElevator * NUM_FEATURES, assignment.features, 0, NUM_FEATURES);
+		elevatorData.hallCalls.add(passenger);
+		elevatorData.elevatorCar.addStop(passenger.getArrivalFloor(), passenger.getDirection());
+		this.assignments.add(assignment);
+		SimulatorEvents.passengerAssigned(simulator, passenger, elevatorData.elevatorCar, this, false);
+	}
+
+	@Override
+	public void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+		Assignment assignment = this.removeAssignment(passenger);
+
+		if (assignment != null) {
+			assignment.elevatorData.hallCalls.remove(passenger);
+			this.updateStops(assignment.elevatorData);
+
+			if (this.learning) {
+				//The wait time of this ride only, the passenger may have transferred from another bank
+				SimulatorClock clock = simulator.getClock();
+				double waitTime = clock.asSecond(clock.elapsedSinceRealTime(passenger.getTimeOfArrival()));
+				this.learn(assignment.features, waitTime);
+			}
+		}
+	}
+
+	@Override
+	public void passengerExited(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+
+	}
+
+	@Override
+	public void update(Simulator simulator) {
+		for (ElevatorData elevatorData : this.elevators) {
+			ElevatorCar elevatorCar = elevatorData.elevatorCar;
+
+			//The moving elevator cars stop for their calls by the stops
+			if (elevatorCar.getState() == State.IDLE) {
+				if (!elevatorData.hallCalls.isEmpty()) {
+					elevatorCar.moveTowards(simulator, elevatorData.hallCalls.peek().getArrivalFloor());
+				}
+			}
+		}
+	}
+
+	@Override
+	public EnumSet<Event> getUpdateEvents() {
+		return EnumSet.of(Event.HALL_CALL, Event.BOARDING, Event.STATE_CHANGED);
+	}
+	
+	@Override
+	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
+
+	}
+
+	@Override
+	public void onTurned(Simulator simulator, ElevatorCar elevatorCar) {
+
+	}
+
+	@Override
+	public void changedTo(Simulator simulator) {
+		//Clear the assignments
+		for (ElevatorData elevatorData : this.elevators) {
+			elevatorData.hallCalls.clear();
+			elevatorData.elevatorCar.clearHallStops();
+		}
+
+		for (Assignment assignment : this.assignments) {
+			assignment.passenger = null;
+			this.freeAssignments.add(assignment);
+		}
+
+		this.assignments.clear();
+
+		//Assign the waiting passengers
+		for (Passenger passenger : simulator.getControlSystem().getHallQueue(this.building)) {
+			this.passengerArrived(simulator, passenger);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Learned Dispatcher";
+	}
+}
@@ -1,12 +1,15 @@
 package elevatorsimulator.schedulers;
 
+import java.util.EnumSet;
 import java.util.Queue;
 
+import elevatorsimulator.Building;
+import elevatorsimulator.ChangeDrivenScheduler;
 import elevatorsimulator.Direction;
 import elevatorsimulator.ElevatorCar;
 import elevatorsimulator.ElevatorCar.State;
 import elevatorsimulator.Passenger;
-import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.ShadowScheduler;
 import elevatorsimulator.Simulator;
 
 /**
@@ -14,7 +17,17 @@ import elevatorsimulator.Simulator;
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  *
  */
-public class LongestQueueFirst implements SchedulingAlgorithm {
+public class LongestQueueFirst implements ChangeDrivenScheduler, ShadowScheduler {
+	private final Building building;
+	
+	/**
+	 * Creates a new instance of the 'LongestQueueFirst' class
+	 * @param building The building
+	 */
+	public LongestQueueFirst(Building building) {
+		this.building = building;
+	}
+	
 	@Override
 	public void passengerArrived(Simulator simulator, Passenger passenger) {
 		
@@ -38,7 +51,7 @@ public class LongestQueueFirst implements SchedulingAlgorithm {
 	
 	@Override
 	public void update(Simulator simulator) {
-		Queue<Passenger> hallCallQueue = simulator.getControlSystem().getHallQueue();
+		Queue<Passenger> hallCallQueue = simulator.getControlSystem().getHallQueue(this.building);
 		
 		if (!hallCallQueue.isEmpty()) {			
 			for (Passenger passenger : hallCallQueue) {
@@ -46,7 +59,7 @@ public class LongestQueueFirst implements SchedulingAlgorithm {
 				int minDeltaFloor = 0;
 				HandleType type = HandleType.NONE;
 				
-				for (ElevatorCar elevator : simulator.getBuilding().getElevatorCars()) {
+				for (ElevatorCar elevator : this.building.getElevatorCars()) {
 					if (!elevator.canPickupPassenger(passenger)) {
 						continue;
 					}
@@ -94,7 +107,7 @@ public class LongestQueueFirst implements SchedulingAlgorithm {
 						closestElevator.moveTowards(simulator, passenger.getArrivalFloor());
 						break;
 					case STOP:
-						closestElevator.stopElevatorAtNextFloor();
+						closestElevator.addStop(passenger.getArrivalFloor(), passenger.getDirection());
 						break;
 					default:
 						break;
@@ -104,6 +117,11 @@ public class LongestQueueFirst implements SchedulingAlgorithm {
 		}
 	}
 
+	@Override
+	public EnumSet<Event> getUpdateEvents() {
+		return EnumSet.of(Event.HALL_CALL, Event.STATE_CHANGED, Event.FLOOR_PASSED);
+	}
+	
 	@Override
 	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
 
@@ -114,6 +132,16 @@ public class LongestQueueFirst implements SchedulingAlgorithm {
 
 	}
 	
+	@Override
+	public void setShadow(boolean shadow) {
+		//The scheduler has no state, but the stops it has given are removed when it becomes inactive
+		if (shadow) {
+			for (ElevatorCar elevator : this.building.getElevatorCars()) {
+				elevator.clearHallStops();
+			}
+		}
+	}
+	
 	@Override
 	public String toString() {
 		return "Longest Queue First";
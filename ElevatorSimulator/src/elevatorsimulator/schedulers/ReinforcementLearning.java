@@ -6,15 +6,20 @@ import java.util.List;
 import elevatorsimulator.ElevatorCar;
 import elevatorsimulator.Passenger;
 import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.ShadowScheduler;
 import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorEvents;
 
 /**
- * Represents a scheduler that uses Reinforcement learning
+ * Represents a scheduler that uses Reinforcement learning.
+ * The inactive schedulers that support shadow mode follow the events, which makes switching to them free.
+ * The other schedulers rebuild their state when switched to.
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  *
  */
 public class ReinforcementLearning implements SchedulingAlgorithm {
 	private final List<SchedulingAlgorithm> schedulers = new ArrayList<SchedulingAlgorithm>();
+	private final List<ShadowScheduler> shadowSchedulers = new ArrayList<ShadowScheduler>();
 	private int activeScheduler;
 	
 	/**
@@ -23,6 +28,18 @@ public class ReinforcementLearning implements SchedulingAlgorithm {
 	 */
 	public ReinforcementLearning(List<SchedulingAlgorithm> schedulers) {
 		this.schedulers.addAll(schedulers);
+		
+		for (int i = 0; i < this.schedulers.size(); i++) {
+			if (this.schedulers.get(i) instanceof ShadowScheduler) {
+				ShadowScheduler scheduler = (ShadowScheduler)this.schedulers.get(i);
+				scheduler.setShadow(scheduler != this.activeScheduler());
+				
+				//The same scheduler can be given more than once
+				if (!this.shadowSchedulers.contains(scheduler)) {
+					this.shadowSchedulers.add(scheduler);
+				}
+			}
+		}
 	}
 	
 	private SchedulingAlgorithm activeScheduler() {
@@ -35,18 +52,30 @@ public class ReinforcementLearning implements SchedulingAlgorithm {
 	 * @param scheduler The scheduler
 	 */
 	public void switchTo(Simulator simulator, int scheduler) {
-		boolean hasSwitched = false;
-		
-		if (this.activeScheduler != scheduler) {
-			//The strategy has switched
-			hasSwitched = true;
+		if (this.activeScheduler == scheduler) {
+			return;
 		}
 		
+		//The strategy has switched
+		SchedulingAlgorithm previous = this.activeScheduler();
 		this.activeScheduler = scheduler;
+		SchedulingAlgorithm next = this.activeScheduler();
+		
+		if (previous == next) {
+			return;
+		}
+		
+		if (previous instanceof ShadowScheduler) {
+			((ShadowScheduler)previous).setShadow(true);
+		}
 		
-		if (hasSwitched) {
-			this.activeScheduler().changedTo(simulator);
+		if (next instanceof ShadowScheduler) {
+			((ShadowScheduler)next).setShadow(false);
+		} else {
+			next.changedTo(simulator);
 		}
+		
+		SimulatorEvents.schedulerSwitched(simulator, previous, next, !(next instanceof ShadowScheduler));
 	}
 	
 	@Override
@@ -56,32 +85,60 @@ public class ReinforcementLearning implements SchedulingAlgorithm {
 	
 	@Override
 	public void passengerArrived(Simulator simulator, Passenger passenger) {
-		this.schedulers.get(this.activeScheduler).passengerArrived(simulator, passenger);
+		SchedulingAlgorithm active = this.activeScheduler();
+		active.passengerArrived(simulator, passenger);
+		
+		for (ShadowScheduler scheduler : this.shadowSchedulers) {
+			if (scheduler != active) {
+				scheduler.passengerArrived(simulator, passenger);
+			}
+		}
 	}
 	
 	@Override
 	public void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar,	Passenger passenger) {
-		this.schedulers.get(this.activeScheduler).passengerBoarded(simulator, elevatorCar, passenger);
+		SchedulingAlgorithm active = this.activeScheduler();
+		active.passengerBoarded(simulator, elevatorCar, passenger);
+		
+		for (ShadowScheduler scheduler : this.shadowSchedulers) {
+			if (scheduler != active) {
+				scheduler.passengerBoarded(simulator, elevatorCar, passenger);
+			}
+		}
 	}
 	
 	@Override
 	public void passengerExited(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
-		this.schedulers.get(this.activeScheduler).passengerExited(simulator, elevatorCar, passenger);
+		SchedulingAlgorithm active = this.activeScheduler();
+		active.passengerExited(simulator, elevatorCar, passenger);
+		
+		for (ShadowScheduler scheduler : this.shadowSchedulers) {
+			if (scheduler != active) {
+				scheduler.passengerExited(simulator, elevatorCar, passenger);
+			}
+		}
 	}
 
 	@Override
 	public void update(Simulator simulator) {
-		this.schedulers.get(this.activeScheduler).update(simulator);
+		this.activeScheduler().update(simulator);
 	}
 
 	@Override
 	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
-		this.schedulers.get(this.activeScheduler).onIdle(simulator, elevatorCar);
+		this.activeScheduler().onIdle(simulator, elevatorCar);
 	}
 	
 	@Override
 	public void onTurned(Simulator simulator, ElevatorCar elevatorCar) {
-		this.schedulers.get(this.activeScheduler).onTurned(simulator, elevatorCar);
+		SchedulingAlgorithm active = this.activeScheduler();
+		active.onTurned(simulator, elevatorCar);
+		
+		for (ShadowScheduler scheduler : this.shadowSchedulers) {
+			if (scheduler != active) {
+				scheduler.onTurned(simulator, elevatorCar);
+			}
+		}
 	}
 	
 	@Override
@@ -0,0 +1,491 @@
+package elevatorsimulator.schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import elevatorsimulator.AssigningScheduler;
+import elevatorsimulator.Building;
+import elevatorsimulator.Direction;
+import elevatorsimulator.ElevatorCar;
+import elevatorsimulator.ElevatorCar.State;
+import elevatorsimulator.Floor;
+import elevatorsimulator.Passenger;
+import elevatorsimulator.RandomStreams;
+import elevatorsimulator.Scenario;
+import elevatorsimulator.SchedulerCreator;
+import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorEvents;
+import elevatorsimulator.SimulatorSettings;
+
+/**
+ * Implements a scheduler that chooses the elevator car for each new hall call by Monte-Carlo rollouts.
+ * For each candidate car, the next minutes are simulated from the current state with the call assigned to the car,
+ * future arrivals sampled from the traffic profile and a base scheduler serving all other calls.
+ * The car with the lowest total wait time over the rollouts is chosen, and the base scheduler then serves the call.
+ * All candidates are evaluated with the same sampled arrivals, and the rollouts run in parallel on the given executor.
+ * When the time budget of a decision runs out, the rounds of rollouts finished for all candidates are used,
+ * and if there are none, the base scheduler chooses the car.
+ * The timers of the elevator cars are not mirrored, so in a rollout each car finishes its current action directly.
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class RolloutDispatcher implements SchedulingAlgorithm {
+	private final Building building;
+	private final Scenario scenario;
+	private final SchedulerCreator baseCreator;
+	private final AssigningScheduler base;
+	private final ExecutorService executor;
+	private final Queue<Simulator> rolloutSimulators = new ConcurrentLinkedQueue<Simulator>();
+	
+	private double horizon = 120.0;
+	private int numRollouts = 8;
+	private double timeStep = 0.1;
+	private long decisionBudget = 50000000;
+	
+	private long numDecisions;
+	private long totalDecisionTime;
+	private long maxDecisionTime;
+	private long numOverBudget;
+	
+	/**
+	 * The number of time steps between the checks of the deadline in a rollout
+	 */
+	private static final int DEADLINE_CHECK_INTERVAL = 64;
+	
+	/**
+	 * The state of the building when a call was made, which the rollouts start from
+	 */
+	private static class Snapshot {
+		public final double time;
+		public final double simulationTime;
+		public final int[] floors;
+		public final Direction[] directions;
+		public final State[] states;
+		public final int[] destinationFloors;
+		public final List<List<Passenger>> carPassengers = new ArrayList<List<Passenger>>();
+		public final List<Passenger> hallCalls = new ArrayList<Passenger>();
+		public final Passenger call;
+		
+		/**
+		 * Takes a snapshot of the given simulator. The passengers are copied, and the copies are never changed.
+		 * @param simulator The simulator
+		 * @param building The building
+		 * @param call The passenger that made the new call
+		 */
+		public Snapshot(Simulator simulator, Building building, Passenger call) {
+			ElevatorCar[] elevatorCars = building.getElevatorCars();
+			this.time = simulator.getClock().timeNowSec();
+			this.simulationTime = simulator.getSettings().getSimulationTimeInSec();
+			this.floors = new int[elevatorCars.length];
+			this.directions = new Direction[elevatorCars.length];
+			this.states = new State[elevatorCars.length];
+			this.destinationFloors = new int[elevatorCars.length];
+			
+			for (int i = 0; i < elevatorCars.length; i++) {
+				ElevatorCar elevatorCar = elevatorCars[i];
+				this.floors[i] = elevatorCar.getFloor();
+				this.directions[i] = elevatorCar.getDirection();
+				this.states[i] = elevatorCar.getState();
+				this.destinationFloors[i] = elevatorCar.getDestinationFloor();
+				this.carPassengers.add(copyAll(elevatorCar.getPassengers()));
+			}
+			
+			for (Passenger passenger : simulator.getControlSystem().getHallQueue(building)) {
+				if (passenger != call) {
+					this.hallCalls.add(copy(passenger));
+				}
+			}
+			
+			this.call = copy(call);
+		}
+	}
+	
+	/**
+	 * Creates a new rollout dispatcher
+	 * @param building The building
+	 * @param scenario The scenario of the building, which the rollouts are simulated in. It must have one bank.
+	 * @param baseCreator Creates the base scheduler, which must assign each call to one elevator car
+	 * @param executor The executor that runs the rollouts, or null to run them in the calling thread
+	 */
+	public RolloutDispatcher(Building building, Scenario scenario, SchedulerCreator baseCreator, ExecutorService executor) {
+		if (scenario.hasBanks()) {
+			throw new IllegalArgumentException("The rollout dispatcher only supports buildings with one bank.");
+		}
+		
+		SchedulingAlgorithm base = baseCreator.createScheduler(building);
+		if (!(base instanceof AssigningScheduler)) {
+			throw new IllegalArgumentException("The base scheduler must assign each call to one elevator car.");
+		}
+		
+		Building scenarioBuilding = scenario.createBuilding();
+		if (scenarioBuilding.numFloors() != building.numFloors()
+			|| scenarioBuilding.getElevatorCars().length != building.getElevatorCars().length) {
+			throw new IllegalArgumentException("The scenario does not match the building.");
+		}
+		
+		this.building = building;
+		this.scenario = scenario;
+		this.baseCreator = baseCreator;
+		this.base = (AssigningScheduler)base;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Sets the simulated time of a rollout
+	 * @param horizon The horizon (in seconds)
+	 */
+	public void setHorizon(double horizon) {
+		this.horizon = horizon;
+	}
+	
+	/**
+	 * Sets the number of rollouts for each candidate car
+	 * @param numRollouts The number of rollouts
+	 */
+	public void setNumRollouts(int numRollouts) {
+		this.numRollouts = numRollouts;
+	}
+	
+	/**
+	 * Sets the time step of the rollouts. This is larger than the time step of the simulator, to make the rollouts fast.
+	 * @param timeStep The time step (in seconds)
+	 */
+	public void setTimeStep(double timeStep) {
+		this.timeStep = timeStep;
+	}
+	
+	/**
+	 * Sets the time budget for one decision
+	 * @param decisionBudget The time budget (in nanoseconds)
+	 */
+	public void setDecisionBudget(long decisionBudget) {
+		this.decisionBudget = decisionBudget;
+	}
+	
+	/**
+	 * Returns the number of decisions made
+	 */
+	public long getNumDecisions() {
+		return this.numDecisions;
+	}
+	
+	/**
+	 * Returns the average time of a decision (in nanoseconds)
+	 */
+	public double getAverageDecisionTime() {
+		if (this.numDecisions == 0) {
+			return 0;
+		}
+		
+		return this.totalDecisionTime / (double)this.numDecisions;
+	}
+	
+	/**
+	 * Returns the longest time of a decision (in nanoseconds)
+	 */
+	public long getMaxDecisionTime() {
+		return this.maxDecisionTime;
+	}
+	
+	/**
+	 * Returns the number of decisions where not all rollouts finished within the time budget
+	 */
+	public long getNumOverBudget() {
+		return this.numOverBudget;
+	}
+	
+	/**
+	 * Copies the given passenger
+	 * @param passenger The passenger
+	 */
+	private static Passenger copy(Passenger passenger) {
+		Passenger copy = new Passenger(
+			passenger.getId(),
+			passenger.getOriginFloor(),
+			passenger.getArrivalFloor(),
+			passenger.getDestinationFloor(),
+			passenger.getFinalDestinationFloor(),
+			passenger.getCapacity(),
+			passenger.getTimeOfArrival());
+		
+		if (passenger.hasBoarded()) {
+			copy.board();
+		}
+		
+		return copy;
+	}
+	
+	/**
+	 * Copies the given passengers
+	 * @param passengers The passengers
+	 */
+	private static List<Passenger> copyAll(List<Passenger> passengers) {
+		List<Passenger> copies = new ArrayList<Passenger>(passengers.size());
+		for (Passenger passenger : passengers) {
+			copies.add(copy(passenger));
+		}
+		
+		return copies;
+	}
+	
+	/**
+	 * Runs one rollout from the given snapshot
+	 * @param snapshot The snapshot
+	 * @param candidate The index of the elevator car that the call is assigned to
+	 * @param seed The seed of the future arrivals
+	 * @param deadline The value of System.nanoTime when the rollout is abandoned
+	 * @return The total wait time of the hall calls during the rollout (in seconds), or NaN if abandoned
+	 */
+	private double rollout(Snapshot snapshot, int candidate, long seed, long deadline) {
+		Simulator simulator = this.rolloutSimulators.poll();
+		if (simulator == null) {
+			SimulatorSettings settings = new SimulatorSettings(this.timeStep, snapshot.simulationTime);
+			simulator = new Simulator(this.scenario, settings, this.baseCreator, seed);
+			simulator.setExportStats(false);
+			simulator.setRecordEvents(false);
+		}
+		
+		try {
+			simulator.reset(seed);
+			simulator.getClock().setTime(snapshot.time);
+			
+			Building building = simulator.getBuilding();
+			ElevatorCar[] elevatorCars = building.getElevatorCars();
+			for (int i = 0; i < elevatorCars.length; i++) {
+				elevatorCars[i].mirror(
+					snapshot.floors[i],
+					snapshot.directions[i],
+					snapshot.states[i],
+					snapshot.destinationFloors[i],
+					copyAll(snapshot.carPassengers.get(i)));
+			}
+			
+			Queue<Passenger> hallQueue = simulator.getControlSystem().getHallQueue();
+			Floor[] floors = building.getFloors();
+			for (Passenger hallCall : snapshot.hallCalls) {
+				Passenger passenger = copy(hallCall);
+				hallQueue.add(passenger);
+				floors[passenger.getArrivalFloor()].getWaitingQueue().add(passenger);
+			}
+			
+			AssigningScheduler scheduler = (AssigningScheduler)simulator.getControlSystem().getScheduler();
+			scheduler.changedTo(simulator);
+			
+			Passenger call = copy(snapshot.call);
+			hallQueue.add(call);
+			floors[call.getArrivalFloor()].getWaitingQueue().add(call);
+			scheduler.assignCall(simulator, call, elevatorCars[candidate]);
+			
+			//The total wait time is the integral of the number of waiting passengers
+			int numSteps = (int)Math.ceil(this.horizon / this.timeStep);
+			double waitingSteps = 0;
+			
+			simulator.start();
+			for (int step = 0; step < numSteps; step++) {
+				if (!simulator.advance()) {
+					break;
+				}
+				
+				waitingSteps += hallQueue.size();
+				
+				if (step % DEADLINE_CHECK_INTERVAL == 0
+					&& (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted())) {
+					return Double.NaN;
+				}
+			}
+			
+			return waitingSteps * this.timeStep;
+		} finally {
+			this.rolloutSimulators.add(simulator);
+		}
+	}
+	
+	/**
+	 * Runs the rollouts of all candidates, until all have finished or the deadline is reached
+	 * @param snapshot The snapshot
+	 * @param numCandidates The number of candidate cars
+	 * @param decisionSeed The seed of the decision, which the seeds of the rounds are derived from
+	 * @param deadline The value of System.nanoTime when the decision must be made
+	 * @return The wait time of each rollout, by round and candidate. NaN for the rollouts that did not finish.
+	 */
+	private double[][] runRollouts(final Snapshot snapshot, int numCandidates, long decisionSeed, final long deadline) {
+		double[][] waitTimes = new double[this.numRollouts][numCandidates];
+		long[] seeds = new long[this.numRollouts];
+		
+		for (int round = 0; round < this.numRollouts; round++) {
+			seeds[round] = RandomStreams.streamSeed(decisionSeed, round);
+			
+			for (int candidate = 0; candidate < numCandidates; candidate++) {
+				waitTimes[round][candidate] = Double.NaN;
+			}
+		}
+		
+		if (this.executor == null) {
+			for (int round = 0; round < this.numRollouts; round++) {
+				for (int candidate = 0; candidate < numCandidates; candidate++) {
+					if (System.nanoTime() >= deadline) {
+						return waitTimes;
+					}
+					
+					waitTimes[round][candidate] = this.rollout(snapshot, candidate, seeds[round], deadline);
+				}
+			}
+			
+			return waitTimes;
+		}
+		
+		//The rollouts are submitted round by round, which makes the first rounds finish first
+		CompletionService<double[]> completionService = new ExecutorCompletionService<double[]>(this.executor);
+		List<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+		
+		for (int round = 0; round < this.numRollouts; round++) {
+			for (int candidate = 0; candidate < numCandidates; candidate++) {
+				final int rolloutRound = round;
+				final int rolloutCandidate = candidate;
+				final long seed = seeds[round];
+				
+				futures.add(completionService.submit(new Callable<double[]>() {
+					@Override
+					public double[] call() {
+						double waitTime = rollout(snapshot, rolloutCandidate, seed, deadline);
+						return new double[] { rolloutRound, rolloutCandidate, waitTime };
+					}
+				}));
+			}
+		}
+		
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				long timeLeft = deadline - System.nanoTime();
+				Future<double[]> future = completionService.poll(Math.max(timeLeft, 0), TimeUnit.NANOSECONDS);
+				
+				if (future == null) {
+					break;
+				}
+				
+				double[] result = future.get();
+				waitTimes[(int)result[0]][(int)result[1]] = result[2];
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (Future<double[]> future : futures) {
+				future.cancel(true);
+			}
+		}
+		
+		return waitTimes;
+	}
+	
+	@Override
+	public void passengerArrived(Simulator simulator, Passenger passenger) {
+		long start = System.nanoTime();
+		ElevatorCar[] elevatorCars = this.building.getElevatorCars();
+		
+		if (elevatorCars.length == 1) {
+			this.base.assignCall(simulator, passenger, elevatorCars[0]);
+			SimulatorEvents.passengerAssigned(simulator, passenger, elevatorCars[0], this, false);
+			return;
+		}
+		
+		//The future arrivals depend on the seed of the run, which keeps the replications of a runner independent
+		long decisionSeed = RandomStreams.streamSeed(simulator.getRandomStreams().getSeed(), (int)this.numDecisions);
+		Snapshot snapshot = new Snapshot(simulator, this.building, passenger);
+		double[][] waitTimes = this.runRollouts(snapshot, elevatorCars.length, decisionSeed, start + this.decisionBudget);
+		
+		//Only the rounds where all candidates finished are compared, as the candidates share the arrivals of a round
+		double[] totalWaitTimes = new double[elevatorCars.length];
+		boolean allFinished = true;
+		int numFinishedRounds = 0;
+		
+		for (double[] round : waitTimes) {
+			boolean finished = true;
+			for (double waitTime : round) {
+				if (Double.isNaN(waitTime)) {
+					finished = false;
+				}
+			}
+			
+			if (finished) {
+				for (int candidate = 0; candidate < round.length; candidate++) {
+					totalWaitTimes[candidate] += round[candidate];
+				}
+				
+				numFinishedRounds++;
+			} else {
+				allFinished = false;
+			}
+		}
+		
+		if (numFinishedRounds > 0) {
+			int bestCandidate = 0;
+			for (int candidate = 1; candidate < totalWaitTimes.length; candidate++) {
+				if (totalWaitTimes[candidate] < totalWaitTimes[bestCandidate]) {
+					bestCandidate = candidate;
+				}
+			}
+			
+			this.base.assignCall(simulator, passenger, elevatorCars[bestCandidate]);
+			SimulatorEvents.passengerAssigned(simulator, passenger, elevatorCars[bestCandidate], this, false);
+		} else {
+			this.base.passengerArrived(simulator, passenger);
+		}
+		
+		long duration = System.nanoTime() - start;
+		this.numDecisions++;
+		this.totalDecisionTime += duration;
+		this.maxDecisionTime = Math.max(this.maxDecisionTime, duration);
+		
+		if (!allFinished) {
+			this.numOverBudget++;
+		}
+	}
+	
+	@Override
+	public void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+		this.base.passengerBoarded(simulator, elevatorCar, passenger);
+	}
+	
+	@Override
+	public void passengerExited(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+		this.base.passengerExited(simulator, elevatorCar, passenger);
+	}
+	
+	@Override
+	public void update(Simulator simulator) {
+		this.base.update(simulator);
+	}
+	
+	@Override
+	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
+		this.base.onIdle(simulator, elevatorCar);
+	}
+	
+	@Override
+	public void onTurned(Simulator simulator, ElevatorCar elevatorCar) {
+		this.base.onTurned(simulator, elevatorCar);
+	}
+	
+	@Override
+	public void changedTo(Simulator simulator) {
+		this.base.changedTo(simulator);
+	}
+	
+	@Override
+	public String toString() {
+		return "Rollout (" + this.base.toString() + ")";
+	}
+}
@@ -1,6 +1,7 @@
 package elevatorsimulator.schedulers;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -8,8 +9,9 @@ import java.util.Queue;
 import elevatorsimulator.Building;
 import elevatorsimulator.ElevatorCar;
 import elevatorsimulator.Passenger;
-import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.ShadowScheduler;
 import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorEvents;
 import elevatorsimulator.ElevatorCar.State;
 
 /**
@@ -17,10 +19,12 @@ import elevatorsimulator.ElevatorCar.State;
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  *
  */
-public class RoundRobin implements SchedulingAlgorithm {
+public class RoundRobin implements ShadowScheduler {
+	private final Building building;
 	private List<ElevatorData> elevators = new ArrayList<ElevatorData>();
 	private int nextElevator = 0;
 	private boolean isUpPeak = false;
+	private boolean isShadow = false;
 	
 	/**
 	 * Contains data about an elevator
@@ -40,6 +44,8 @@ public class RoundRobin implements SchedulingAlgorithm {
 	 * @param isUpPeak Indicates if the up-peak variant is used
 	 */
 	public RoundRobin(Building building, boolean isUpPeak) {
+		this.building = building;
+		
 		for (ElevatorCar elevator : building.getElevatorCars()) {
 			this.elevators.add(new ElevatorData(elevator));
 		}
@@ -49,13 +55,22 @@ public class RoundRobin implements SchedulingAlgorithm {
 		
 	@Override
 	public void passengerArrived(Simulator simulator, Passenger passenger) {
-		this.elevators.get(this.nextElevator).queue.add(passenger);
+		ElevatorData elevator = this.elevators.get(this.nextElevator);
+		elevator.queue.add(passenger);
+		SimulatorEvents.passengerAssigned(simulator, passenger, elevator.elevator, this, this.isShadow);
 		this.nextElevator = (nextElevator + 1) % this.elevators.size();
 	}
 	
 	@Override
 	public void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar,	Passenger passenger) {
-		
+		//Without updates, the queues are not emptied by the elevator cars
+		if (this.isShadow) {
+			for (ElevatorData elevator : this.elevators) {
+				if (elevator.queue.remove(passenger)) {
+					break;
+				}
+			}
+		}
 	}
 	
 	@Override
@@ -84,8 +99,8 @@ public class RoundRobin implements SchedulingAlgorithm {
 
 	@Override
 	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
-		if (this.isUpPeak && this.elevators.get(elevatorCar.getId()).queue.isEmpty()) {
-			elevatorCar.moveTowards(simulator, 0);
+		if (this.isUpPeak && this.elevators.get(elevatorCar.getIndex()).queue.isEmpty()) {
+			elevatorCar.moveTowards(simulator, this.building.getLobby());
 		}
 	}
 	
@@ -94,6 +109,24 @@ public class RoundRobin implements SchedulingAlgorithm {
 
 	}
 	
+	@Override
+	public void setShadow(boolean shadow) {
+		//The queues keep the passengers that boarded other elevator cars while active, which are removed here
+		if (shadow && !this.isShadow) {
+			for (ElevatorData elevator : this.elevators) {
+				Iterator<Passenger> passengers = elevator.queue.iterator();
+				
+				while (passengers.hasNext()) {
+					if (passengers.next().hasBoarded()) {
+						passengers.remove();
+					}
+				}
+			}
+		}
+		
+		this.isShadow = shadow;
+	}
+	
 	@Override
 	public void changedTo(Simulator simulator) {
 		//Clear queues
@@ -102,7 +135,7 @@ public class RoundRobin implements SchedulingAlgorithm {
 		}
 		
 		//Add to queues
-		for (Passenger passenger : simulator.getControlSystem().getHallQueue()) {
+		for (Passenger passenger : simulator.getControlSystem().getHallQueue(this.building)) {
 			this.passengerArrived(simulator, passenger);
 		}
 	}
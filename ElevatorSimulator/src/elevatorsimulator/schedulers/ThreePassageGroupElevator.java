@@ -1,6 +1,7 @@
 package elevatorsimulator.schedulers;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -9,22 +10,27 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
+import elevatorsimulator.AssigningScheduler;
 import elevatorsimulator.Building;
+import elevatorsimulator.ChangeDrivenScheduler;
 import elevatorsimulator.Direction;
 import elevatorsimulator.ElevatorCar;
 import elevatorsimulator.ElevatorCarConfiguration;
 import elevatorsimulator.Passenger;
-import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.ShadowScheduler;
 import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorEvents;
 import elevatorsimulator.ElevatorCar.State;
 
 /**
  * Implements the 'Three passage group elevator' scheduling algorithm
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  */
-public class ThreePassageGroupElevator implements SchedulingAlgorithm {
+public class ThreePassageGroupElevator implements ChangeDrivenScheduler, AssigningScheduler, ShadowScheduler {
+	private final Building building;
 	private List<ElevatorData> elevators = new ArrayList<ElevatorData>();
 	private Map<ElevatorCar, ElevatorData> elevatorToData = new HashMap<>();
+	private boolean isShadow = false;
 	
 	/**
 	 * The passage type
@@ -114,6 +120,8 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 	 * @param building The building
 	 */
 	public ThreePassageGroupElevator(Building building) {
+		this.building = building;
+		
 		for (ElevatorCar elevator : building.getElevatorCars()) {
 			ElevatorData elevatorData = new ElevatorData(elevator);
 			this.elevators.add(elevatorData);
@@ -154,6 +162,38 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 		return null;
 	}
 	
+	/**
+	 * Sets the stops of the elevator car to the floors of its P1 hall calls, unless in shadow mode
+	 * @param elevatorData The elevator data
+	 */
+	private void updateStops(ElevatorData elevatorData) {
+		if (this.isShadow) {
+			return;
+		}
+		
+		ElevatorCar elevatorCar = elevatorData.elevatorCar;
+		elevatorCar.clearHallStops();
+		
+		for (PassengerCall hallCall : elevatorData.hallCalls) {
+			if (hallCall.type == PassageType.P1) {
+				elevatorCar.addStop(hallCall.passenger.getArrivalFloor(), hallCall.passenger.getDirection());
+			}
+		}
+	}
+	
+	/**
+	 * Adds the given hall call to the given elevator car, and a stop if it is a P1 call
+	 * @param elevatorData The elevator data
+	 * @param hallCall The hall call
+	 */
+	private void addHallCall(ElevatorData elevatorData, PassengerCall hallCall) {
+		elevatorData.hallCalls.add(hallCall);
+		
+		if (hallCall.type == PassageType.P1 && !this.isShadow) {
+			elevatorData.elevatorCar.addStop(hallCall.passenger.getArrivalFloor(), hallCall.passenger.getDirection());
+		}
+	}
+	
 	/**
 	 * Finds the hall call for the given passenger
 	 * @param elevatorData The elevator data
@@ -245,7 +285,7 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 	private Set<Passenger> getCarCalls(Simulator simulator, int minFloor, int maxFloor) {
 		Set<Passenger> carCalls = new HashSet<>();
 		
-		for (ElevatorCar elevatorCar : simulator.getBuilding().getElevatorCars()) {
+		for (ElevatorCar elevatorCar : this.building.getElevatorCars()) {
 			for (Passenger passenger : elevatorCar.getPassengers()) {
 				if (passenger.getDestinationFloor() > minFloor && passenger.getDestinationFloor() < maxFloor) {
 					carCalls.add(passenger);
@@ -290,7 +330,7 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 	private int calculateNkPass(Simulator simulator, Passenger passengerToHandle) {
 		int nkPass = 0;
 		
-		for (Passenger passenger : simulator.getControlSystem().getHallQueue()) {
+		for (Passenger passenger : simulator.getControlSystem().getHallQueue(this.building)) {
 			if (passenger.getArrivalFloor() == passengerToHandle.getArrivalFloor()
 				&& passenger.getDirection() == passengerToHandle.getDirection()) {
 				nkPass++;
@@ -387,7 +427,7 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 		int k = passengerToHandle.getArrivalFloor();
 		int j = passengerToHandle.getDestinationFloor();
 		int nkPass = this.calculateNkPass(simulator, passengerToHandle);
-		Tuple fi = this.calculateFi(simulator.getBuilding(), elevatorFloor, elevatorDir);
+		Tuple fi = this.calculateFi(this.building, elevatorFloor, elevatorDir);
 		int fik = fi.first;
 		int fiActual = fi.second;
 		double Pik = this.calculatePik(nkPass, fik);
@@ -1018,7 +1058,14 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 			}
 		}
 		
-		bestElevatorData.hallCalls.add(new PassengerCall(bestType, passenger));
+		this.addHallCall(bestElevatorData, new PassengerCall(bestType, passenger));
+		SimulatorEvents.passengerAssigned(simulator, passenger, bestElevatorData.elevatorCar, this, this.isShadow);
+	}
+	
+	@Override
+	public void assignCall(Simulator simulator, Passenger passenger, ElevatorCar elevatorCar) {
+		PassageType type = this.getType(elevatorCar, passenger);
+		this.addHallCall(this.elevatorToData.get(elevatorCar), new PassengerCall(type, passenger));
 	}
 	
 	@Override
@@ -1037,6 +1084,7 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 		}
 		
 		callData.elevatorData.hallCalls.remove(callData.call);
+		this.updateStops(callData.elevatorData);
 		elevatorData.carCalls.add(callData.call);
 	}
 	
@@ -1055,25 +1103,8 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 		for (ElevatorData elevatorData : this.elevators) {
 			ElevatorCar elevatorCar = elevatorData.elevatorCar;	
 			
-			if (elevatorCar.getState() == State.MOVING) {
-				boolean stopAtNext = false;
-				
-				for (PassengerCall hallCall : elevatorData.hallCalls) {
-					Passenger passenger = hallCall.passenger;
-					PassageType type = hallCall.type;
-					
-					if (type == PassageType.P1) {
-						if (passenger.getArrivalFloor() == elevatorCar.nextFloor()) {
-							stopAtNext = true;
-							break;
-						}
-					}
-				}
-				
-				if (stopAtNext) {
-					elevatorCar.stopElevatorAtNextFloor();
-				}
-			} else if (elevatorCar.getState() == State.IDLE) {						
+			//The moving elevator cars stop for their P1 calls by the stops
+			if (elevatorCar.getState() == State.IDLE) {						
 				Passenger toHandle = null;
 				if (!elevatorData.hallCalls.isEmpty()) {
 					toHandle = elevatorData.hallCalls.peek().passenger;
@@ -1085,6 +1116,11 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 			}
 		}
 	}
+	
+	@Override
+	public EnumSet<Event> getUpdateEvents() {
+		return EnumSet.of(Event.HALL_CALL, Event.BOARDING, Event.STATE_CHANGED);
+	}
 
 	@Override
 	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
@@ -1098,6 +1134,25 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 		for (PassengerCall hallCall : elevatorData.hallCalls) {
 			hallCall.type = this.getType(elevatorCar, hallCall.passenger);
 		}
+		
+		this.updateStops(elevatorData);
+	}
+	
+	@Override
+	public void setShadow(boolean shadow) {
+		//The calls only depend on the passenger events, and the passage types are updated when the elevator cars turn.
+		//The stops are only given while active.
+		if (shadow && !this.isShadow) {
+			for (ElevatorData elevatorData : this.elevators) {
+				elevatorData.elevatorCar.clearHallStops();
+			}
+		}
+		
+		this.isShadow = shadow;
+		
+		for (ElevatorData elevatorData : this.elevators) {
+			this.updateStops(elevatorData);
+		}
 	}
 	
 	/**
@@ -1110,6 +1165,7 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 		for (ElevatorData elevatorData : this.elevators) {
 			elevatorData.carCalls.clear();
 			elevatorData.hallCalls.clear();
+			elevatorData.elevatorCar.clearHallStops();
 		}
 		
 		//Add for passenger insides elevators
@@ -1120,7 +1176,7 @@ public class ThreePassageGroupElevator implements SchedulingAlgorithm {
 		}
 		
 		//Add for passengers waiting
-		for (Passenger passenger : simulator.getControlSystem().getHallQueue()) {
+		for (Passenger passenger : simulator.getControlSystem().getHallQueue(this.building)) {
 			this.passengerArrived(simulator, passenger);
 		}
 	}
@@ -1,27 +1,39 @@
 package elevatorsimulator.schedulers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import elevatorsimulator.Building;
+import elevatorsimulator.ChangeDrivenScheduler;
 import elevatorsimulator.ElevatorCar;
 import elevatorsimulator.ElevatorCar.State;
 import elevatorsimulator.Direction;
 import elevatorsimulator.Floor;
 import elevatorsimulator.Passenger;
-import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.ShadowScheduler;
 import elevatorsimulator.Simulator;
 
 /**
- * Implements the 'Zoning' scheduling algorithm
+ * Implements the 'Zoning' scheduling algorithm.
+ * Each zone keeps the floors with waiting calls as bit sets, which are updated when passengers arrive and board,
+ * and the zones are dispatched independently of each other.
  * @author Anton Jansson and Kristoffer Uggla Lingvall
  *
  */
-public class Zoning implements SchedulingAlgorithm {
-	private final int numZones;
+public class Zoning implements ChangeDrivenScheduler, ShadowScheduler {
+	private final Building building;
+	private final Configuration configuration;
 	private final List<Zone> zones;
 	private final Zone[] floorToZone;
 	private final Zone[] elevatorToZone;
+	private final int[] numUpCalls;
+	private final int[] numDownCalls;
 	
 	/**
 	 * Represents a zone
@@ -31,68 +43,233 @@ public class Zoning implements SchedulingAlgorithm {
 	private static class Zone {
 		public final List<Floor> floors;
 		public final List<ElevatorCar> elevatorCars;
+		public final Set<Passenger> calls = new LinkedHashSet<Passenger>();
+		public final BitSet upCalls = new BitSet();
+		public final BitSet downCalls = new BitSet();
 		
 		public Zone(List<Floor> floors, List<ElevatorCar> elevatorCars) {
 			this.floors = floors;
 			this.elevatorCars = elevatorCars;
 		}
-				
-		public int bottomFloor() {
-			return this.floors.get(0).getFloorNumber();
+		
+		/**
+		 * Indicates if there is a call in the given direction at the given floor
+		 * @param floor The floor
+		 * @param direction The direction
+		 */
+		public boolean hasCall(int floor, Direction direction) {
+			if (direction == Direction.UP) {
+				return this.upCalls.get(floor);
+			} else if (direction == Direction.DOWN) {
+				return this.downCalls.get(floor);
+			} else {
+				return false;
+			}
 		}
 		
+		/**
+		 * Returns the top floor with a call, or -1 if there are no calls
+		 */
+		public int topCallFloor() {
+			return Math.max(this.upCalls.length(), this.downCalls.length()) - 1;
+		}
+				
 		public int middleFloor() {
 			return this.floors.get(this.floors.size() / 2).getFloorNumber();
 		}
+	}
+	
+	/**
+	 * Represents how the served floors and the elevator cars are split into zones.
+	 * The zones consist of consecutive served floors from the bottom, and consecutive elevator cars by index.
+	 * @author Anton Jansson and Kristoffer Uggla Lingvall
+	 *
+	 */
+	public static class Configuration {
+		private final int[] zoneFloors;
+		private final int[] zoneElevatorCars;
+		
+		/**
+		 * Creates a new configuration
+		 * @param zoneFloors The number of served floors in each zone
+		 * @param zoneElevatorCars The number of elevator cars in each zone
+		 */
+		public Configuration(int[] zoneFloors, int[] zoneElevatorCars) {
+			if (zoneFloors.length == 0 || zoneFloors.length != zoneElevatorCars.length) {
+				throw new IllegalArgumentException("There must be a number of floors and elevator cars for each zone.");
+			}
+			
+			for (int zone = 0; zone < zoneFloors.length; zone++) {
+				if (zoneFloors[zone] < 1 || zoneElevatorCars[zone] < 1) {
+					throw new IllegalArgumentException("Each zone must have at least one floor and one elevator car.");
+				}
+			}
+			
+			this.zoneFloors = zoneFloors.clone();
+			this.zoneElevatorCars = zoneElevatorCars.clone();
+		}
+		
+		/**
+		 * Creates the configuration with the given number of zones of equal size.
+		 * When the elevator cars cannot be split evenly, the lower zones get one more elevator car.
+		 * @param numZones The number of zones
+		 * @param building The building
+		 */
+		public static Configuration equalZones(int numZones, Building building) {
+			int numServedFloors = building.getServedFloors().length;
+			int numElevatorCars = building.getElevatorCars().length;
+			
+			if (numZones > numServedFloors) {
+				throw new IllegalArgumentException("The number of zones must be <= the number of served floors.");
+			}
+			
+			if (numZones > numElevatorCars) {
+				throw new IllegalArgumentException("The number of zones must be <= the number of elevator cars.");
+			}
+			
+			int[] zoneFloors = new int[numZones];
+			int[] zoneElevatorCars = new int[numZones];
+			int floorsPerZone = numServedFloors / numZones;
+			double spillPerFloor = (numServedFloors / (double)numZones) - floorsPerZone;
+			double totalSpill = 0;
+			
+			for (int zone = 0; zone < numZones; zone++) {
+				zoneFloors[zone] = floorsPerZone;
+				zoneElevatorCars[zone] = numElevatorCars / numZones + (zone < numElevatorCars % numZones ? 1 : 0);
+				
+				totalSpill += spillPerFloor;
+				if (totalSpill >= 1.0 - 0.00001) {
+					totalSpill = Math.max(0, totalSpill - 1.0);
+					zoneFloors[zone]++;
+				}
+			}
+			
+			return new Configuration(zoneFloors, zoneElevatorCars);
+		}
 		
-		public int topFloor() {
-			return this.floors.get(this.floors.size() - 1).getFloorNumber();
+		/**
+		 * Returns the number of zones
+		 */
+		public int getNumZones() {
+			return this.zoneFloors.length;
+		}
+		
+		/**
+		 * Returns the number of served floors in the given zone
+		 * @param zone The zone
+		 */
+		public int getNumFloors(int zone) {
+			return this.zoneFloors[zone];
+		}
+		
+		/**
+		 * Returns the number of elevator cars in the given zone
+		 * @param zone The zone
+		 */
+		public int getNumElevatorCars(int zone) {
+			return this.zoneElevatorCars[zone];
+		}
+		
+		/**
+		 * Returns the number of served floors in each zone
+		 */
+		public int[] getZoneFloors() {
+			return this.zoneFloors.clone();
+		}
+		
+		/**
+		 * Returns the number of elevator cars in each zone
+		 */
+		public int[] getZoneElevatorCars() {
+			return this.zoneElevatorCars.clone();
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * Arrays.hashCode(this.zoneFloors) + Arrays.hashCode(this.zoneElevatorCars);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			
+			if (!(obj instanceof Configuration)) {
+				return false;
+			}
+			
+			Configuration other = (Configuration)obj;
+			return Arrays.equals(this.zoneFloors, other.zoneFloors) && Arrays.equals(this.zoneElevatorCars, other.zoneElevatorCars);
+		}
+		
+		@Override
+		public String toString() {
+			return "{ floors: " + Arrays.toString(this.zoneFloors) + ", cars: " + Arrays.toString(this.zoneElevatorCars) + " }";
 		}
 	}
 	
 	/**
-	 * Creates a new instance of the Zoning class
+	 * Creates a new instance of the Zoning class, with zones of equal size
 	 * @param numZones The number of zones
 	 * @param building The building
 	 */
 	public Zoning(int numZones, Building building) {
-		this.numZones = numZones;
+		this(Configuration.equalZones(numZones, building), building);
+	}
+	
+	/**
+	 * Creates a new instance of the Zoning class, with the given zones
+	 * @param configuration The configuration of the zones
+	 * @param building The building
+	 */
+	public Zoning(Configuration configuration, Building building) {
+		Floor[] servedFloors = building.getServedFloors();
+		ElevatorCar[] elevatorCars = building.getElevatorCars();
+		
+		int numFloors = 0;
+		int numElevatorCars = 0;
+		for (int zone = 0; zone < configuration.getNumZones(); zone++) {
+			numFloors += configuration.getNumFloors(zone);
+			numElevatorCars += configuration.getNumElevatorCars(zone);
+		}
+		
+		if (numFloors != servedFloors.length || numElevatorCars != elevatorCars.length) {
+			throw new IllegalArgumentException("The zones must contain all served floors and all elevator cars.");
+		}
+		
+		this.building = building;
+		this.configuration = configuration;
 		this.zones = new ArrayList<Zoning.Zone>();
 		this.floorToZone = new Zone[building.getFloors().length];
-		this.elevatorToZone = new Zone[building.getElevatorCars().length];
+		this.elevatorToZone = new Zone[elevatorCars.length];
+		this.numUpCalls = new int[building.getFloors().length];
+		this.numDownCalls = new int[building.getFloors().length];
 		
-		int floorsPerZone = building.getFloors().length / this.numZones;
-		double spillPerFloor = (building.getFloors().length / (double)this.numZones) - floorsPerZone;
-
-		double totalSpill = 0;
 		int handledFloors = 0;
-				
-		for (int zone = 0; zone < numZones; zone++) {
+		int handledElevatorCars = 0;
+
+		for (int zone = 0; zone < configuration.getNumZones(); zone++) {
 			List<ElevatorCar> zoneElevators = new ArrayList<ElevatorCar>();
 			List<Floor> zoneFloors = new ArrayList<Floor>();
 			
-			int elevatorsPerZone = building.getElevatorCars().length / this.numZones;
-			
-			totalSpill += spillPerFloor;
 			int minFloor = handledFloors;
-			int maxFloor = handledFloors + floorsPerZone - 1;
-						
-			if (totalSpill >= 1.0 - 0.00001) {
-				totalSpill = Math.max(0, totalSpill - 1.0);
-				maxFloor++;
-			}
-								
-			for (ElevatorCar elevator : building.getElevatorCars()) {
-				if (elevator.getId() >= zone * elevatorsPerZone && elevator.getId() < (zone + 1) * elevatorsPerZone) {
+			int maxFloor = handledFloors + configuration.getNumFloors(zone) - 1;
+			int minElevator = handledElevatorCars;
+			int maxElevator = handledElevatorCars + configuration.getNumElevatorCars(zone) - 1;
+			
+			for (ElevatorCar elevator : elevatorCars) {
+				if (elevator.getIndex() >= minElevator && elevator.getIndex() <= maxElevator) {
 					zoneElevators.add(elevator);
 				}
 			}
-								
+			
 			for (int floor = minFloor; floor <= maxFloor; floor++) {
-				zoneFloors.add(building.getFloors()[floor]);
-			}		
-					
+				zoneFloors.add(servedFloors[floor]);
+			}
+			
 			handledFloors += maxFloor - minFloor + 1;
+			handledElevatorCars += maxElevator - minElevator + 1;
 			this.zones.add(new Zone(zoneFloors, zoneElevators));
 			
 			for (Floor floor : zoneFloors) {
@@ -100,17 +277,24 @@ public class Zoning implements SchedulingAlgorithm {
 			}	
 			
 			for (ElevatorCar elevator : zoneElevators) {
-				this.elevatorToZone[elevator.getId()] = this.zones.get(this.zones.size() - 1);
+				this.elevatorToZone[elevator.getIndex()] = this.zones.get(this.zones.size() - 1);
 			}
 		} 
 	}
 	
+	/**
+	 * Returns the configuration of the zones
+	 */
+	public Configuration getConfiguration() {
+		return this.configuration;
+	}
+	
 	/**
 	 * Returns the zone for the given elevator car
 	 * @param elevatorCar The elevator car
 	 */
 	private Zone getZone(ElevatorCar elevatorCar) {
-		return this.elevatorToZone[elevatorCar.getId()];
+		return this.elevatorToZone[elevatorCar.getIndex()];
 	}
 	
 	/**
@@ -123,12 +307,37 @@ public class Zoning implements SchedulingAlgorithm {
 	
 	@Override
 	public void passengerArrived(Simulator simulator, Passenger passenger) {
+		int floor = passenger.getArrivalFloor();
+		Zone zone = this.getZone(floor);
+		zone.calls.add(passenger);
 
+		if (passenger.getDirection() == Direction.UP) {
+			this.numUpCalls[floor]++;
+			zone.upCalls.set(floor);
+		} else {
+			this.numDownCalls[floor]++;
+			zone.downCalls.set(floor);
+		}
 	}
 	
 	@Override
 	public void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar,	Passenger passenger) {
+		int floor = passenger.getArrivalFloor();
+		Zone zone = this.getZone(floor);
+		
+		if (!zone.calls.remove(passenger)) {
+			return;
+		}
 		
+		if (passenger.getDirection() == Direction.UP) {
+			if (--this.numUpCalls[floor] == 0) {
+				zone.upCalls.clear(floor);
+			}
+		} else {
+			if (--this.numDownCalls[floor] == 0) {
+				zone.downCalls.clear(floor);
+			}
+		}
 	}
 
 	@Override
@@ -137,66 +346,84 @@ public class Zoning implements SchedulingAlgorithm {
 	}
 	
 	@Override
-	public void update(Simulator simulator) {		
-		for (Passenger passenger : simulator.getControlSystem().getHallQueue()) {
-			for (ElevatorCar elevator : this.getZone(passenger.getArrivalFloor()).elevatorCars) {
-				//Check if to dispatch the elevator
-				if (elevator.getState() == State.IDLE && elevator.canPickupPassenger(passenger)) {
-					elevator.moveTowards(simulator, passenger.getArrivalFloor());
-					break;
+	public void update(Simulator simulator) {
+		for (Zone zone : this.zones) {
+			if (!zone.calls.isEmpty()) {
+				this.dispatch(simulator, zone);
+			}
+		}
+	}
+	
+	/**
+	 * Dispatches the elevator cars of the given zone
+	 * @param simulator The simulator
+	 * @param zone The zone
+	 */
+	private void dispatch(Simulator simulator, Zone zone) {
+		Iterator<Passenger> calls = null;
+		
+		for (int i = 0; i < zone.elevatorCars.size(); i++) {
+			ElevatorCar elevator = zone.elevatorCars.get(i);
+			
+			//Check if to stop at the next floor, unless an earlier elevator already stops for the calls there
+			if (elevator.getState() == State.MOVING) {
+				if (zone.hasCall(elevator.nextFloor(), elevator.getDirection()) && !this.stopsEarlier(zone, i)
+					&& elevator.canPickupPassenger()) {
+					elevator.addStop(elevator.nextFloor(), elevator.getDirection());
+				}
+			}
+			
+			//Dispatch the idle elevators to the oldest calls. The calls on the floor of the elevator are picked up directly.
+			if (elevator.getState() == State.IDLE) {
+				if (calls == null) {
+					calls = zone.calls.iterator();
 				}
 				
-				//Check if to stop at the next floor
-				if (elevator.getState() == State.MOVING) {
-					Direction dir = Direction.getDirection(passenger.getArrivalFloor(), passenger.getDestinationFloor());
+				while (calls.hasNext()) {
+					Passenger passenger = calls.next();
 					
-					if (elevator.getDirection() == dir) {						
-						if (elevator.nextFloor() == passenger.getArrivalFloor()) {
-							elevator.stopElevatorAtNextFloor();
-							break;
-						}
+					if (passenger.getArrivalFloor() != elevator.getFloor() && elevator.canPickupPassenger(passenger)) {
+						elevator.moveTowards(simulator, passenger.getArrivalFloor());
+						break;
 					}
 				}
 			}
 		}
 	}
 
+	/**
+	 * Indicates if an elevator before the given elevator in the zone stops at the same floor in the same direction
+	 * @param zone The zone
+	 * @param index The index of the elevator in the zone
+	 */
+	private boolean stopsEarlier(Zone zone, int index) {
+		ElevatorCar elevator = zone.elevatorCars.get(index);
+		
+		for (int i = 0; i < index; i++) {
+			ElevatorCar other = zone.elevatorCars.get(i);
+			
+			if (other.getState() == State.MOVING
+				&& other.nextFloor() == elevator.nextFloor()
+				&& other.getDirection() == elevator.getDirection()) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public EnumSet<Event> getUpdateEvents() {
+		return EnumSet.of(Event.HALL_CALL, Event.STATE_CHANGED, Event.FLOOR_PASSED);
+	}
+	
 	@Override
 	public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {		
 		Zone zone = this.getZone(elevatorCar);
 		
-		int targetFloor = -1;
-		
-		for (Floor floor : zone.floors) {					
-			if (!floor.getWaitingQueue().isEmpty()) {		
-				if (targetFloor == -1) {
-					targetFloor = floor.getFloorNumber();
-					continue;
-				}
-								
-				int delta = Math.abs(floor.getFloorNumber() - elevatorCar.getFloor());				
-				int bestDelta = Math.abs(targetFloor - elevatorCar.getFloor());
-						
-				if (elevatorCar.getFloor() < zone.bottomFloor()) {
-					//Below the zone
-					if (delta > bestDelta) {
-						bestDelta = delta;
-						targetFloor = floor.getFloorNumber();
-					}
-				} else if (elevatorCar.getFloor() > zone.topFloor()) {
-					//Over the zone
-					if (delta < bestDelta) {
-						bestDelta = delta;
-						targetFloor = floor.getFloorNumber();
-					}
-				} else {
-					//Inside the zone
-					if (floor.getFloorNumber() > targetFloor) {
-						targetFloor = floor.getFloorNumber();
-					}
-				}
-			}
-		}
+		//Below the zone, this is the farthest floor with calls, over the zone the closest,
+		//and inside the zone the calls are handled from the top.
+		int targetFloor = zone.topCallFloor();
 		
 		if (targetFloor == -1) {
 			targetFloor = zone.middleFloor();
@@ -210,9 +437,33 @@ public class Zoning implements SchedulingAlgorithm {
 
 	}
 	
+	@Override
+	public void setShadow(boolean shadow) {
+		//The calls of the zones only depend on the passenger events, but the stops are removed when inactive
+		if (shadow) {
+			for (ElevatorCar elevator : this.building.getElevatorCars()) {
+				elevator.clearHallStops();
+			}
+		}
+	}
+	
 	@Override
 	public void changedTo(Simulator simulator) {
+		//Rebuild the calls of the zones
+		for (Zone zone : this.zones) {
+			zone.calls.clear();
+			zone.upCalls.clear();
+			zone.downCalls.clear();
+		}
 
+		for (int floor = 0; floor < this.numUpCalls.length; floor++) {
+			this.numUpCalls[floor] = 0;
+			this.numDownCalls[floor] = 0;
+		}
+		
+		for (Passenger passenger : simulator.getControlSystem().getHallQueue(this.building)) {
+			this.passengerArrived(simulator, passenger);
+		}
 	}
 
 	@Override
@@ -0,0 +1,106 @@
+package tests;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import elevatorsimulator.ArrivalProcess;
+import elevatorsimulator.Building;
+import elevatorsimulator.Floor;
+import elevatorsimulator.Scenario;
+import elevatorsimulator.Scenarios;
+import elevatorsimulator.SchedulerCreator;
+import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorSettings;
+import elevatorsimulator.TrafficProfile;
+import elevatorsimulator.schedulers.LongestQueueFirst;
+
+/**
+ * Unit test for the ArrivalProcess class
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class TestArrivalProcess {
+	private static final int NUM_CYCLES = 12;
+	
+	/**
+	 * Creates a simulator for the given traffic profile
+	 * @param trafficProfile The traffic profile
+	 * @param simulationTimeInSec The simulation time
+	 * @param seed The seed
+	 */
+	private static Simulator createSimulator(TrafficProfile trafficProfile, int simulationTimeInSec, long seed) {
+		Scenario scenario = Scenarios.createMediumBuilding(3).withTrafficProfile("ArrivalTest", trafficProfile);
+		Simulator simulator = new Simulator(scenario, new SimulatorSettings(0.01, simulationTimeInSec), new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new LongestQueueFirst(building);
+			}
+		}, seed);
+		
+		simulator.setExportStats(false);
+		simulator.setRecordEvents(false);
+		return simulator;
+	}
+	
+	@Test
+	public void testArrivalCounts() {
+		//A cycle of one hour, where the rate is constant within each interval of ten minutes
+		TrafficProfile trafficProfile = new TrafficProfile(new TrafficProfile.Interval[] {
+			new TrafficProfile.Interval(0.0, 0.0, 0.0),
+			new TrafficProfile.Interval(0.02, 0.8, 0.1),
+			new TrafficProfile.Interval(0.1, 0.4, 0.4),
+			new TrafficProfile.Interval(0.0, 0.0, 0.0),
+			new TrafficProfile.Interval(0.05, 0.1, 0.8),
+			new TrafficProfile.Interval(0.15, 0.3, 0.3)
+		});
+		
+		int numIntervals = trafficProfile.numIntervals();
+		double intervalLength = trafficProfile.lengthInMinutes() * 60;
+		//The simulation ends after the cycles, as no arrivals are generated at the end of the simulation
+		Simulator simulator = createSimulator(trafficProfile, (int)((NUM_CYCLES * numIntervals + 1) * intervalLength), 42);
+		Building building = simulator.getBuilding();
+		ArrivalProcess arrivalProcess = building.getArrivalProcess();
+		
+		//The expected counts of the per-floor generators that the process replaced
+		double[] expectedCounts = new double[numIntervals];
+		for (int i = 0; i < numIntervals; i++) {
+			for (Floor floor : building.getFloors()) {
+				expectedCounts[i] += trafficProfile.getInterval(i).averageNumberOfArrivals(building, floor) * NUM_CYCLES;
+			}
+		}
+		
+		//Samples the first arrival from the start, and then jumps to the end of each interval,
+		//which generates the arrivals of the interval
+		assertEquals(0, arrivalProcess.update(simulator));
+		int[] counts = new int[numIntervals];
+		for (int n = 0; n < NUM_CYCLES * numIntervals; n++) {
+			simulator.getClock().setTime((n + 1) * intervalLength);
+			int numArrivals = arrivalProcess.update(simulator);
+			counts[n % numIntervals] += numArrivals;
+			
+			if (trafficProfile.getInterval(n % numIntervals).getAverageArrivalRatio() == 0) {
+				assertEquals("Arrivals in an interval without traffic.", 0, numArrivals);
+			}
+		}
+		
+		for (int i = 0; i < numIntervals; i++) {
+			//The count of a Poisson process has the variance of its mean
+			assertEquals("Interval " + i, expectedCounts[i], counts[i], 4 * Math.sqrt(expectedCounts[i]) + 1);
+		}
+	}
+	
+	@Test
+	public void testNoTraffic() {
+		TrafficProfile trafficProfile = new TrafficProfile(new TrafficProfile.Interval[] {
+			new TrafficProfile.Interval(0.0, 0.0, 0.0)
+		});
+		
+		Simulator simulator = createSimulator(trafficProfile, 60 * 60, 42);
+		ArrivalProcess arrivalProcess = simulator.getBuilding().getArrivalProcess();
+		simulator.getClock().setTime(30 * 60);
+		
+		assertEquals(0, arrivalProcess.update(simulator));
+		assertEquals(Long.MAX_VALUE, arrivalProcess.getNextArrivalTime());
+	}
+}
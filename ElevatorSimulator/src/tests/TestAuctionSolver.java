@@ -0,0 +1,130 @@
+package tests;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elevatorsimulator.schedulers.AuctionSolver;
+
+/**
+ * Unit test for the AuctionSolver class, which is compared against the optimum found by brute force
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class TestAuctionSolver {
+	private static final int NUM_PROBLEMS = 20;
+	private static final int MAX_COST = 100;
+	
+	/**
+	 * Returns the lowest total cost of all assignments, by trying every permutation
+	 * @param costs The cost matrix
+	 * @param size The size of the problem
+	 * @param person The first person that is not assigned
+	 * @param used The objects that are assigned
+	 */
+	private static double bruteForce(double[] costs, int size, int person, boolean[] used) {
+		if (person == size) {
+			return 0.0;
+		}
+		
+		double best = Double.POSITIVE_INFINITY;
+		for (int j = 0; j < size; j++) {
+			if (!used[j]) {
+				used[j] = true;
+				best = Math.min(best, costs[person * size + j] + bruteForce(costs, size, person + 1, used));
+				used[j] = false;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Solves the given problem and returns the total cost of the assignment
+	 * @param solver The solver
+	 * @param costs The cost matrix
+	 * @param size The size of the problem
+	 */
+	private static double solve(AuctionSolver solver, double[] costs, int size) {
+		System.arraycopy(costs, 0, solver.prepare(size), 0, size * size);
+		assertTrue(solver.solve(Long.MAX_VALUE));
+		
+		boolean[] used = new boolean[size];
+		double total = 0.0;
+		for (int i = 0; i < size; i++) {
+			int object = solver.getAssignment(i);
+			assertTrue("Person " + i + " is not assigned.", object >= 0 && object < size);
+			assertFalse("Object " + object + " is assigned twice.", used[object]);
+			used[object] = true;
+			total += costs[i * size + object];
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Creates a random cost matrix
+	 * @param random The random generator
+	 * @param size The size of the problem
+	 */
+	private static double[] randomCosts(Random random, int size) {
+		double[] costs = new double[size * size];
+		for (int i = 0; i < size * size; i++) {
+			costs[i] = random.nextInt(MAX_COST + 1);
+		}
+		
+		return costs;
+	}
+	
+	@Test
+	public void testRandomCosts() {
+		Random random = new Random(1);
+		AuctionSolver solver = new AuctionSolver();
+		
+		for (int n = 0; n < NUM_PROBLEMS; n++) {
+			//The size varies, which makes the solver reuse its arrays for smaller problems
+			int size = 1 + random.nextInt(7);
+			double[] costs = randomCosts(random, size);
+			assertEquals("Problem " + n, bruteForce(costs, size, 0, new boolean[size]), solve(solver, costs, size), 0.0);
+		}
+	}
+	
+	@Test
+	public void testInfeasibleSlots() {
+		Random random = new Random(2);
+		AuctionSolver solver = new AuctionSolver();
+		int size = 6;
+		
+		for (int n = 0; n < NUM_PROBLEMS; n++) {
+			double[] costs = randomCosts(random, size);
+			
+			//About half of the slots are infeasible, but the diagonal is kept feasible so that a feasible assignment exists
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j < size; j++) {
+					if (i != j && random.nextBoolean()) {
+						costs[i * size + j] = AuctionSolver.INFEASIBLE_COST;
+					}
+				}
+			}
+			
+			double optimum = bruteForce(costs, size, 0, new boolean[size]);
+			assertTrue(optimum < AuctionSolver.INFEASIBLE_COST);
+			assertEquals("Problem " + n, optimum, solve(solver, costs, size), 0.0);
+		}
+	}
+	
+	@Test
+	public void testUnavoidableInfeasibleSlot() {
+		//Both persons can only take the first object, which forces the more expensive one into the infeasible slot
+		double[] costs = new double[] {
+			3, AuctionSolver.INFEASIBLE_COST,
+			5, AuctionSolver.INFEASIBLE_COST
+		};
+		
+		AuctionSolver solver = new AuctionSolver();
+		assertEquals(bruteForce(costs, 2, 0, new boolean[2]), solve(solver, costs, 2), 0.0);
+		assertEquals(0, solver.getAssignment(0));
+		assertEquals(1, solver.getAssignment(1));
+	}
+}
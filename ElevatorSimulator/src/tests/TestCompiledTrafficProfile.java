@@ -0,0 +1,125 @@
+package tests;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elevatorsimulator.Building;
+import elevatorsimulator.CompiledTrafficProfile;
+import elevatorsimulator.Floor;
+import elevatorsimulator.RandomValueGenerator;
+import elevatorsimulator.Scenario;
+import elevatorsimulator.Scenarios;
+import elevatorsimulator.TrafficProfile;
+
+/**
+ * Unit test for the CompiledTrafficProfile class, which is compared against the per-floor generators that it replaced
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class TestCompiledTrafficProfile {
+	private static final int NUM_SAMPLES = 200000;
+	
+	/**
+	 * The intervals of the week day profile that are tested: night, morning peak, lunch and evening peak
+	 */
+	private static final int[] INTERVALS = { 2, 50, 72, 102 };
+	
+	private final Scenario scenario = Scenarios.createMediumBuilding(3);
+	private final Building building = this.scenario.createBuilding();
+	private final CompiledTrafficProfile compiled = this.scenario.getCompiledTrafficProfile();
+	
+	/**
+	 * Asserts that the given count is within four standard deviations of a binomial count with the given probability
+	 * @param probability The probability
+	 * @param count The count
+	 * @param numSamples The number of samples
+	 */
+	private static void assertFrequency(double probability, int count, int numSamples) {
+		double expected = probability * numSamples;
+		double deviation = Math.sqrt(numSamples * probability * (1 - probability));
+		assertEquals(expected, count, 4 * deviation + 1);
+	}
+	
+	@Test
+	public void testArrivalRates() {
+		TrafficProfile trafficProfile = this.compiled.getTrafficProfile();
+		double lengthInMinutes = trafficProfile.lengthInMinutes();
+		
+		for (int i = 0; i < this.compiled.getNumIntervals(); i++) {
+			TrafficProfile.Interval interval = trafficProfile.getInterval(i);
+			double totalArrivalRate = 0.0;
+			
+			for (Floor floor : this.building.getFloors()) {
+				double arrivalRate = interval.averageNumberOfArrivals(this.building, floor) / lengthInMinutes;
+				assertEquals(arrivalRate, this.compiled.arrivalRate(i, floor.getFloorNumber()), 1E-9);
+				totalArrivalRate += arrivalRate;
+			}
+			
+			assertEquals(totalArrivalRate, this.compiled.totalArrivalRate(i), 1E-9);
+		}
+	}
+	
+	@Test
+	public void testOriginFrequencies() {
+		Floor[] floors = this.building.getFloors();
+		Random random = new Random(1);
+		
+		for (int i : INTERVALS) {
+			TrafficProfile.Interval interval = this.compiled.getTrafficProfile().getInterval(i);
+			
+			//The floors had independent Poisson processes, which means that the origin of an arrival is weighted by the rates
+			double totalArrivals = 0.0;
+			for (Floor floor : floors) {
+				totalArrivals += interval.averageNumberOfArrivals(this.building, floor);
+			}
+			
+			int[] counts = new int[floors.length];
+			for (int n = 0; n < NUM_SAMPLES; n++) {
+				counts[this.compiled.sampleOrigin(i, random.nextDouble())]++;
+			}
+			
+			for (Floor floor : floors) {
+				double probability = interval.averageNumberOfArrivals(this.building, floor) / totalArrivals;
+				assertFrequency(probability, counts[floor.getFloorNumber()], NUM_SAMPLES);
+			}
+		}
+	}
+	
+	@Test
+	public void testDestinationFrequencies() {
+		Floor[] floors = this.building.getFloors();
+		Random random = new Random(2);
+		
+		for (int i : INTERVALS) {
+			TrafficProfile.Interval interval = this.compiled.getTrafficProfile().getInterval(i);
+			
+			for (Floor arrivalFloor : floors) {
+				RandomValueGenerator<Integer> generator = new RandomValueGenerator<Integer>(random);
+				for (Floor destinationFloor : floors) {
+					if (destinationFloor != arrivalFloor) {
+						generator.addValue(interval.destinationFloorProbability(this.building, arrivalFloor, destinationFloor),
+							destinationFloor.getFloorNumber());
+					}
+				}
+				
+				int[] oldCounts = new int[floors.length];
+				int[] counts = new int[floors.length];
+				for (int n = 0; n < NUM_SAMPLES; n++) {
+					oldCounts[generator.randomValue()]++;
+					counts[this.compiled.sampleDestination(i, arrivalFloor.getFloorNumber(), random.nextDouble())]++;
+				}
+				
+				assertEquals(0, counts[arrivalFloor.getFloorNumber()]);
+				for (Floor destinationFloor : floors) {
+					if (destinationFloor != arrivalFloor) {
+						double probability = interval.destinationFloorProbability(this.building, arrivalFloor, destinationFloor);
+						assertFrequency(probability, oldCounts[destinationFloor.getFloorNumber()], NUM_SAMPLES);
+						assertFrequency(probability, counts[destinationFloor.getFloorNumber()], NUM_SAMPLES);
+					}
+				}
+			}
+		}
+	}
+}
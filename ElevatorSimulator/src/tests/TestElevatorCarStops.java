@@ -0,0 +1,174 @@
+package tests;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import elevatorsimulator.Building;
+import elevatorsimulator.Direction;
+import elevatorsimulator.ElevatorCar;
+import elevatorsimulator.ElevatorCarConfiguration;
+import elevatorsimulator.Passenger;
+import elevatorsimulator.Scenario;
+import elevatorsimulator.SchedulerCreator;
+import elevatorsimulator.SchedulingAlgorithm;
+import elevatorsimulator.Simulator;
+import elevatorsimulator.SimulatorSettings;
+import elevatorsimulator.TrafficProfile;
+
+/**
+ * Unit test for the stops of the ElevatorCar class
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class TestElevatorCarStops {
+	private static final int MAX_STEPS = 100000;
+	
+	/**
+	 * Creates a simulator for a building with one elevator car, without traffic and with a scheduler that does nothing
+	 */
+	private static Simulator createSimulator() {
+		Scenario scenario = new Scenario(
+			"StopTest",
+			1,
+			ElevatorCarConfiguration.defaultConfiguration(),
+			new int[] { 0, 10, 10, 10, 10, 10, 10, 10, 10, 10 },
+			new TrafficProfile(new TrafficProfile.Interval[] { new TrafficProfile.Interval(0.0, 0.0, 0.0) }));
+		
+		Simulator simulator = new Simulator(scenario, new SimulatorSettings(0.01, 1), new SchedulerCreator() {
+			@Override
+			public SchedulingAlgorithm createScheduler(Building building) {
+				return new SchedulingAlgorithm() {
+					@Override
+					public void passengerArrived(Simulator simulator, Passenger passenger) {
+					
+					}
+					
+					@Override
+					public void passengerBoarded(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+					
+					}
+					
+					@Override
+					public void passengerExited(Simulator simulator, ElevatorCar elevatorCar, Passenger passenger) {
+					
+					}
+					
+					@Override
+					public void update(Simulator simulator) {
+					
+					}
+					
+					@Override
+					public void onIdle(Simulator simulator, ElevatorCar elevatorCar) {
+					
+					}
+					
+					@Override
+					public void onTurned(Simulator simulator, ElevatorCar elevatorCar) {
+					
+					}
+					
+					@Override
+					public void changedTo(Simulator simulator) {
+					
+					}
+				};
+			}
+		}, 1);
+		
+		simulator.setExportStats(false);
+		simulator.setRecordEvents(false);
+		return simulator;
+	}
+	
+	/**
+	 * Adds a waiting passenger
+	 * @param simulator The simulator
+	 * @param id The id of the passenger
+	 * @param arrivalFloor The arrival floor
+	 * @param destinationFloor The destination floor
+	 */
+	private static Passenger addPassenger(Simulator simulator, long id, int arrivalFloor, int destinationFloor) {
+		Passenger passenger = new Passenger(id, arrivalFloor, destinationFloor, 1, simulator.getClock());
+		simulator.getBuilding().getFloors()[arrivalFloor].getWaitingQueue().add(passenger);
+		simulator.getControlSystem().handleHallCall(passenger);
+		return passenger;
+	}
+	
+	/**
+	 * Runs the simulator until all passengers have arrived
+	 * @param simulator The simulator
+	 */
+	private static void runUntilDone(Simulator simulator) {
+		simulator.start();
+		
+		int steps = 0;
+		while (simulator.advance()) {
+			steps++;
+			assertTrue("The passengers were not served.", steps < MAX_STEPS);
+		}
+	}
+	
+	@Test
+	public void testStopInOppositeDirection() {
+		Simulator simulator = createSimulator();
+		ElevatorCar elevatorCar = simulator.getBuilding().getElevatorCars()[0];
+		
+		//Nobody waits for the up stop at floor 5, which makes the car stop there while travelling up
+		addPassenger(simulator, 0, 5, 2);
+		addPassenger(simulator, 1, 8, 0);
+		elevatorCar.addStop(5, Direction.UP);
+		elevatorCar.addStop(5, Direction.DOWN);
+		elevatorCar.addStop(8, Direction.DOWN);
+		assertTrue(elevatorCar.hasStop(5, Direction.UP));
+		assertFalse(elevatorCar.hasStop(5, Direction.NONE));
+		
+		simulator.start();
+		elevatorCar.moveTowards(simulator, 8);
+		assertEquals(8, elevatorCar.getDestinationFloor());
+		
+		runUntilDone(simulator);
+		assertEquals(2, simulator.getStats().getGlobalInterval().getNumExists());
+		assertFalse(elevatorCar.hasHallStops());
+		assertEquals(0, elevatorCar.getFloor());
+	}
+	
+	@Test
+	public void testStopBeyondDestination() {
+		Simulator simulator = createSimulator();
+		ElevatorCar elevatorCar = simulator.getBuilding().getElevatorCars()[0];
+		
+		addPassenger(simulator, 0, 3, 4);
+		addPassenger(simulator, 1, 6, 9);
+		elevatorCar.addStop(3, Direction.UP);
+		elevatorCar.addStop(6, Direction.UP);
+		
+		simulator.start();
+		elevatorCar.moveTowards(simulator, 3);
+		elevatorCar.addStop(7, Direction.UP);
+		assertEquals(7, elevatorCar.getDestinationFloor());
+		elevatorCar.removeStop(7, Direction.UP);
+		assertFalse(elevatorCar.hasStop(7, Direction.UP));
+		
+		runUntilDone(simulator);
+		assertEquals(2, simulator.getStats().getGlobalInterval().getNumExists());
+		assertFalse(elevatorCar.hasHallStops());
+		assertEquals(9, elevatorCar.getFloor());
+	}
+	
+	@Test
+	public void testStopAtCurrentFloor() {
+		Simulator simulator = createSimulator();
+		ElevatorCar elevatorCar = simulator.getBuilding().getElevatorCars()[0];
+		int floor = elevatorCar.getFloor();
+		
+		addPassenger(simulator, 0, floor, 4);
+		elevatorCar.addStop(floor, Direction.UP);
+		assertEquals(ElevatorCar.State.IDLE, elevatorCar.getState());
+		
+		runUntilDone(simulator);
+		assertEquals(1, simulator.getStats().getGlobalInterval().getNumExists());
+		assertFalse(elevatorCar.hasStop(floor, Direction.UP));
+		assertEquals(4, elevatorCar.getFloor());
+	}
+}
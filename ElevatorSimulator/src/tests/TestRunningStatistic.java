@@ -0,0 +1,56 @@
+package tests;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import elevatorsimulator.RunningStatistic;
+
+/**
+ * Unit test for the RunningStatistic class
+ * @author Anton Jansson and Kristoffer Uggla Lingvall
+ *
+ */
+public class TestRunningStatistic {
+	/**
+	 * The degrees of freedom of the tabulated quantiles
+	 */
+	private static final int[] DEGREES_OF_FREEDOM = { 1, 2, 3, 4, 5, 10, 20, 30, 60, 120 };
+	
+	/**
+	 * The tabulated 0.975 quantiles of the t-distribution
+	 */
+	private static final double[] QUANTILES_975 = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.228, 2.086, 2.042, 2.000, 1.980 };
+	
+	/**
+	 * The tabulated 0.995 quantiles of the t-distribution
+	 */
+	private static final double[] QUANTILES_995 = { 63.657, 9.925, 5.841, 4.604, 4.032, 3.169, 2.845, 2.750, 2.660, 2.617 };
+	
+	@Test
+	public void testStudentQuantiles() {
+		for (int i = 0; i < DEGREES_OF_FREEDOM.length; i++) {
+			int degreesOfFreedom = DEGREES_OF_FREEDOM[i];
+			assertEquals("df = " + degreesOfFreedom, QUANTILES_975[i], RunningStatistic.studentQuantile(0.975, degreesOfFreedom), 5E-4);
+			assertEquals("df = " + degreesOfFreedom, QUANTILES_995[i], RunningStatistic.studentQuantile(0.995, degreesOfFreedom), 5E-4);
+			assertEquals(
+				-RunningStatistic.studentQuantile(0.975, degreesOfFreedom),
+				RunningStatistic.studentQuantile(0.025, degreesOfFreedom),
+				1E-9);
+		}
+	}
+	
+	@Test
+	public void testHalfWidth() {
+		RunningStatistic statistic = new RunningStatistic();
+		statistic.add(1.0);
+		assertEquals(Double.POSITIVE_INFINITY, statistic.halfWidth(0.95), 0.0);
+		
+		statistic.add(2.0);
+		statistic.add(3.0);
+		assertEquals(2.0, statistic.getMean(), 1E-12);
+		assertEquals(1.0, statistic.getVariance(), 1E-12);
+		
+		//The standard error is 1 / sqrt(3), with two degrees of freedom
+		assertEquals(4.303 / Math.sqrt(3), statistic.halfWidth(0.95), 5E-4);
+	}
+}
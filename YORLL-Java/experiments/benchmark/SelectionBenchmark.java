@@ -0,0 +1,109 @@
+/**
+ *
+ */
+package experiments.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import marl.agents.selection.Argmax;
+import marl.agents.selection.Boltzmann;
+import marl.agents.selection.EGreedy;
+import marl.utility.Config;
+
+/**
+ * Measures the time and the memory allocated per decision of the action
+ * selection mechanisms, selecting from rows of a flat table in the same way
+ * the learning algorithms do.
+ *
+ * Usage: SelectionBenchmark [numActions] [numDecisions]
+ *
+ * @author pds
+ *
+ */
+public class SelectionBenchmark {
+    private static final int NUM_ROWS = 1024;
+
+    private static interface Kernel {
+        int select(double[] table, int offset, int length);
+    }
+
+    public static void main(String[] args) {
+        int nActions   = args.length > 0 ? Integer.parseInt(args[0]) : 5,
+            nDecisions = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+
+        Config cfg = new Config();
+        cfg.setParam("epsilon", "0.1");
+        cfg.setParam("epsilon_should_decay", "false");
+        cfg.setParam("tau", "1.0");
+        cfg.setParam("tau_should_decay", "false");
+
+        final Random    random    = new Random(42);
+        final EGreedy   eGreedy   = new EGreedy(cfg);
+        final Boltzmann boltzmann = new Boltzmann(cfg);
+        eGreedy.setRandom(random);
+        boltzmann.setRandom(random);
+
+        // a table of action values with some ties and some large values
+        double[] table = new double[NUM_ROWS * nActions];
+        for( int i=0; i<table.length; i++ )
+            table[i] = random.nextInt(4) == 0 ? 0.0 : random.nextGaussian() * 100.0;
+
+        System.out.println("kernel\tns/decision\tbytes/decision");
+        run("argmax", table, nActions, nDecisions, new Kernel() {
+            @Override public int select(double[] table, int offset, int length) {
+                return Argmax.select(table, offset, length, random);
+            }
+        });
+        run("egreedy", table, nActions, nDecisions, new Kernel() {
+            @Override public int select(double[] table, int offset, int length) {
+                return eGreedy.select(table, offset, length);
+            }
+        });
+        run("boltzmann", table, nActions, nDecisions, new Kernel() {
+            @Override public int select(double[] table, int offset, int length) {
+                return boltzmann.select(table, offset, length);
+            }
+        });
+        run("boltzmann (copied row)", table, nActions, nDecisions, new Kernel() {
+            @Override public int select(double[] table, int offset, int length) {
+                double[] row = new double[length];
+                System.arraycopy(table, offset, row, 0, length);
+                return boltzmann.select(row);
+            }
+        });
+    }
+
+    private static void run(String name, double[] table, int nActions, int nDecisions, Kernel kernel) {
+        // warm up so that the measurement is of compiled code
+        long checksum = select(table, nActions, nDecisions / 10, kernel);
+
+        long bytes = allocatedBytes(),
+             time  = System.nanoTime();
+        checksum += select(table, nActions, nDecisions, kernel);
+        time  = System.nanoTime() - time;
+        bytes = allocatedBytes() - bytes;
+
+        System.out.format("%s\t%.1f\t%.2f\t(%d)\n",
+                name, time / (double)nDecisions, bytes / (double)nDecisions, checksum);
+    }
+
+    private static long select(double[] table, int nActions, int nDecisions, Kernel kernel) {
+        long checksum = 0;
+        for( int i=0; i<nDecisions; i++ )
+            checksum += kernel.select(table, (i % NUM_ROWS) * nActions, nActions);
+        return checksum;
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread, or 0 if
+     *         the virtual machine does not support measuring it
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if( bean instanceof com.sun.management.ThreadMXBean )
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+}
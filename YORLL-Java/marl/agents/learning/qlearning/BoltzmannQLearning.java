@@ -27,7 +27,7 @@ public class BoltzmannQLearning<S extends State<S>>
 	@Override
 	public int select(S state)
 	{
-		double[] qValues = qTable.get(state);
+		double[] qValues = qTable.getRow(state);
 		if( evaluationMode )
             return Argmax.select(qValues);
 		else
@@ -55,13 +55,13 @@ public abstract class DiscreteQLearning<S extends State<S>>
     {
         if( !evaluationMode ) {
             // Get the current Q value
-        	double[] curQValues = qTable.get(curState);
+        	double[] curQValues = qTable.getRow(curState);
         	
         	// Get the old and max Q values
             double   oldQ, newQ, maxQ = 0.0;
         	
         	if( newState != null ) {
-                double[] newQValues = qTable.get(newState);
+                double[] newQValues = qTable.getRow(newState);
                 maxQ    = newQValues[Argmax.select(newQValues)];
         	}
         	
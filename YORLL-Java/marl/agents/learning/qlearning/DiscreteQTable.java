@@ -156,13 +156,23 @@ public class DiscreteQTable
         
         // return the state action pairs
 //        return qValues_[hashKey].clone();
+        return getRow(state).clone();
+    }
+    
+    /**
+     * Retrieve the Q-Values of the given State without copying them. The
+     * returned array is the table's own storage, so it must only be read and
+     * it reflects any later updates made with {@link #put(State, int, double)}.
+     */
+    public double[] getRow(State<?> state)
+    {
         int hashCode = state.hashCode();
         QValues qValues = hashTable.get(hashCode);
         if( qValues == null ) {
             qValues = new QValues(nActions_, INITIAL_VALUE);
             hashTable.put(hashCode, qValues);
         }
-        return qValues.values.clone();
+        return qValues.values;
     }
     
     /**
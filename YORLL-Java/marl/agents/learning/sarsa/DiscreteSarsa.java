@@ -61,13 +61,13 @@ public abstract class DiscreteSarsa<S extends State<S>>
 			int action, double reward)
 	{
 	    if( !evaluationMode ) {
-    		double[] curQValues = qTable.get(curState);
+    		double[] curQValues = qTable.getRow(curState);
     
             // Get the old and max Q values
             double   oldQ, newQ, nextQ = 0.0;
     		
     		if( newState != null ) {
-    		    double[] newQValues = qTable.get(newState);
+    		    double[] newQValues = qTable.getRow(newState);
     		    potentialState     = newState;
     		    potentialAction    = _select(newState);
     	        nextQ               = newQValues[potentialAction];
@@ -19,7 +19,7 @@ public class InverseNGreedySarsa<S extends State<S>>
 	@Override
 	public int _select(S state)
 	{
-		double[] qValues = qTable.get(state);
+		double[] qValues = qTable.getRow(state);
 		if( evaluationMode )
             return Argmax.select(qValues);
 		else
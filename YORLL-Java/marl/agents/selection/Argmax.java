@@ -1,5 +1,7 @@
 package marl.agents.selection;
 
+import java.util.Random;
+
 import marl.utility.Rand;
 
 
@@ -29,17 +31,31 @@ public class Argmax
      * @return The argmax action
      */
     public static int select(double[] stateActionPairs)
+    {
+        return select(stateActionPairs, 0, stateActionPairs.length, Rand.INSTANCE.getRandom());
+    }
+    
+    /**
+     * Selects the argument maximum ranked action from a slice of an array,
+     * such as a row of a table, without copying or allocating.
+     * @param values The array holding the action values
+     * @param offset The index of the value of the first action
+     * @param length The number of actions
+     * @param random The random source used to break ties
+     * @return The argmax action, relative to the offset
+     */
+    public static int select(double[] values, int offset, int length, Random random)
     {
         int    nTies      = 1,                    // actually the number of ties plus 1
                bestAction = 0;                    // get the first option and for now
-        double bestValue  = stateActionPairs[0],  // assume it is the best action/value
+        double bestValue  = values[offset],       // assume it is the best action/value
                value;                             // create space for a temp value to be stored
         
         
                                                  // start searching for the argmax action
                                                  // obviously no need to check the first one!
-        for( int i=1; i<stateActionPairs.length; i++ ) {
-            value = stateActionPairs[i];
+        for( int i=1; i<length; i++ ) {
+            value = values[offset + i];
             if( value > bestValue ) {            // if the action is better
                 bestValue  = value;              // store the new best value
                 bestAction = i;                  // and action
@@ -48,7 +64,7 @@ public class Argmax
             else if( value == bestValue ) {      // if the same as the best value
                 nTies++;                         // increment the number of ties
                                                  // randomly decide between them
-                if( (Rand.INSTANCE.nextInt()%nTies) == 0 ) {
+                if( (random.nextInt()%nTies) == 0 ) {
                     bestValue  = value;
                     bestAction = i;
                 }
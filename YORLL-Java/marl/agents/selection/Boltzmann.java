@@ -1,5 +1,7 @@
 package marl.agents.selection;
 
+import java.util.Random;
+
 import marl.utility.Config;
 import marl.utility.Rand;
 
@@ -33,6 +35,8 @@ public class Boltzmann
     
     //
     private double tau;
+    private Random random;                        // null to use Rand.INSTANCE.getRandom()
+    private double[] exponents = new double[0];   // scratch space for the exponentials
 
     /**
      * Constructor for objects of class SoftMax
@@ -95,25 +99,55 @@ public class Boltzmann
     @Override
     public int select(double[] stateActionPairs)
     {
-        double random     = /*Math.random()*/Rand.INSTANCE.nextDouble(),
-               lowerBound = 0.0,
-               upperBound = 0.0;
-        
-        double sumExp     = 0.0;
+        return select(stateActionPairs, 0, stateActionPairs.length);
+    }
+    
+    /**
+     * Selects an action using the SoftMax selection mechanism from a slice of
+     * an array, such as a row of a table, without copying. The exponentials
+     * are shifted by the largest exponent so that they cannot overflow, and
+     * are kept in a scratch buffer that is only reallocated when the number
+     * of actions grows.
+     * @param values The array holding the action values
+     * @param offset The index of the value of the first action
+     * @param length The number of actions
+     * @return The soft max action, relative to the offset
+     */
+    public int select(double[] values, int offset, int length)
+    {
+        if( exponents.length < length )
+            exponents = new double[length];
         
-        for( int i=0; i<stateActionPairs.length; i++ )       // Calculate the sum of the exponientals
-            sumExp += Math.exp(getExponent(stateActionPairs[i]));
+        double maxExp = Double.NEGATIVE_INFINITY;
+        for( int i=0; i<length; i++ ) {                      // Find the largest exponent
+            exponents[i] = getExponent(values[offset + i]);
+            if( exponents[i] > maxExp )
+                maxExp = exponents[i];
+        }
         
-        for( int i=0; i<stateActionPairs.length; i++ ) {     // Select the softmax action
-            lowerBound  = upperBound;                        // and escape the method when found
-            upperBound += Math.exp(getExponent(stateActionPairs[i])) / sumExp;
-            if( random >= lowerBound && random < upperBound )
-                return i;
-            
+        double sumExp = 0.0;
+        for( int i=0; i<length; i++ ) {                      // Calculate the sum of the exponientals
+            exponents[i] = Math.exp(exponents[i] - maxExp);
+            sumExp      += exponents[i];
         }
         
-        return 0;
+        // look up the random source on each call, so that a stream bound to
+        // the current thread by Rand is used
+        Random random = this.random != null ? this.random : Rand.INSTANCE.getRandom();
+        return Rand.randomIndex(exponents, 0, length, sumExp, random);
     }
+    
+    /**
+     * Sets the random source used by this selection mechanism. By default
+     * the random source of the {@link Rand} instance is looked up on each
+     * call, which is the stream bound to the calling thread if there is one.
+     * @param random The random source, or null to use the default
+     */
+    public void setRandom(Random random)
+    {
+        this.random = random;
+    }
+    
     private double getExponent(double value) {
         if( value != 0.0 )
             return value/tau;
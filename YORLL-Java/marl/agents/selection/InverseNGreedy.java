@@ -1,5 +1,7 @@
 package marl.agents.selection;
 
+import java.util.Random;
+
 import marl.utility.Config;
 import marl.utility.Rand;
 
@@ -20,6 +22,7 @@ public class InverseNGreedy
     implements Exploration
 {
 	double   localEpsilon_;            // The value epsilon currently has
+	Random   random_;                  // The random source, null to use Rand.INSTANCE.getRandom()
 
 
 
@@ -40,11 +43,41 @@ public class InverseNGreedy
 	@Override
 	public int select(double[] stateActionPairs)
 	{
+		return select(stateActionPairs, 0, stateActionPairs.length);
+	}
+
+
+	/**
+	 * Selects an action using the E-greedy selection mechanism from a slice
+	 * of an array, such as a row of a table, without copying or allocating.
+	 * @param values The array holding the action values
+	 * @param offset The index of the value of the first action
+	 * @param length The number of actions
+	 * @return The E-greedy action selection, relative to the offset
+	 */
+	public int select(double[] values, int offset, int length)
+	{
+		// look up the random source on each call, so that a stream bound to
+		// the current thread by Rand is used
+		Random random = random_ != null ? random_ : Rand.INSTANCE.getRandom();
+
 		// with epsilon probability choose a random action
-		if( localEpsilon_ > Rand.INSTANCE.nextDouble() )
-			return Rand.INSTANCE.nextInt(stateActionPairs.length);
+		if( localEpsilon_ > random.nextDouble() )
+			return random.nextInt(length);
 		else
-			return Argmax.select(stateActionPairs);
+			return Argmax.select(values, offset, length, random);
+	}
+
+
+	/**
+	 * Sets the random source used by this selection mechanism. By default
+	 * the random source of the {@link Rand} instance is looked up on each
+	 * call, which is the stream bound to the calling thread if there is one.
+	 * @param random The random source, or null to use the default
+	 */
+	public void setRandom(Random random)
+	{
+		random_ = random;
 	}
 
 
@@ -25,6 +25,9 @@ public class ModelTileCodeLearning<S extends TileCodingState<S>> extends
     private int                nTilings_;
     private EGreedy            eGreedy_;    // The Egreedy selection algorithm
     private TileCoding         tileCoding_;
+    private Tile[]             curTiles_,   // the activated tiles, reused between calls
+                               newTiles_;
+    private double[]           values_;     // the values of each action, reused between calls
 
     /**
      * 
@@ -43,6 +46,10 @@ public class ModelTileCodeLearning<S extends TileCodingState<S>> extends
             vTable_ = new DiscreteValueTable(nStates);
         
         eGreedy_ = new EGreedy(cfg);
+        
+        curTiles_ = new Tile[nTilings_];
+        newTiles_ = new Tile[nTilings_];
+        values_   = new double[0];
     }
     
     
@@ -63,10 +70,12 @@ public class ModelTileCodeLearning<S extends TileCodingState<S>> extends
     public int select(S state)
     {
         // get the V(S) values
-        double[] values = new double[numActions];
+        if( values_.length != numActions )
+            values_ = new double[numActions];
+        double[] values = values_;
         
         // get the activated tiles
-        Tile[]   tiles  = new Tile[nTilings_];
+        Tile[]   tiles  = curTiles_;
         // initialise an array for the values
         double   weight;
         
@@ -107,7 +116,7 @@ public class ModelTileCodeLearning<S extends TileCodingState<S>> extends
             
             if( newState != null ) {
                 // calculate the target
-                Tile[] newTiles = new Tile[nTilings_];
+                Tile[] newTiles = newTiles_;
                 tileCoding_.getTiles(newTiles, newState);
                 weight = sumWeights(newTiles);
                 
@@ -115,7 +124,7 @@ public class ModelTileCodeLearning<S extends TileCodingState<S>> extends
             }
             
             // Get all the tiles of the current
-            Tile[] curTiles = new Tile[nTilings_];
+            Tile[] curTiles = curTiles_;
             tileCoding_.getTiles(curTiles, curState);
             weight = sumWeights(curTiles);
             
@@ -10,6 +10,11 @@ import marl.agents.selection.EGreedy;
 import marl.utility.Config;
 
 /**
+ * The weights are stored in a single fixed-size array with one row of action
+ * values per tile, the number of tiles being given by the {@link TileCoding}.
+ * This keeps the memory used by the learner constant no matter how many
+ * states are visited.
+ *
  * @author pds
  * 
  * TODO make sure this is working properly, compare to ModelTileCoding
@@ -18,13 +23,18 @@ import marl.utility.Config;
 public class TileCodeLearning<S extends TileCodingState<S>>
 	extends LearningAlgorithm<S>
 {
-	private DiscreteQTable qTable_;       // the Q table
+	private double[]       weights_;      // the weights, numActions per tile
 	private double         alpha_,        // the learning rate
 						   gamma_;        // the discount factor
 	private int            nTilings_;     // number of tilings
 	private EGreedy        eGreedy_;      // The Egreedy selection algorithm
 	private TileCoding     tileCoding_;   // the tile coding
 
+	private int[]          curTiles_,     // scratch space for the active tiles
+						   newTiles_;
+	private double[]       qValues_,      // scratch space for the summed values
+						   newQ_;         // scratch space for the new states' values
+
 	/**
 	 * 
 	 */
@@ -33,14 +43,13 @@ public class TileCodeLearning<S extends TileCodingState<S>>
 	    alpha_      = cfg.getDouble("alpha");
 	    gamma_      = cfg.getDouble("gamma");
         nTilings_   = cfg.getInt("num_tilings");
-	    int nStates = cfg.getInt("num_states");;
 
         tileCoding_ = new TileCoding(cfg, env);
-	    if( nStates == -1 )
-	        qTable_ = new DiscreteQTable();
-	    else
-	        qTable_ = new DiscreteQTable(nStates);
-	    qTable_.reset();
+        curTiles_   = new int[nTilings_];
+        newTiles_   = new int[nTilings_];
+        newQ_       = new double[nTilings_];
+        weights_    = new double[0];
+        qValues_    = new double[0];
 
 	    eGreedy_ = new EGreedy(cfg);
 	}
@@ -53,28 +62,25 @@ public class TileCodeLearning<S extends TileCodingState<S>>
 	public int select(S state)
 	{
 	    // Get all the tiles of this state representation
-	    Tile[] tiles = new Tile[nTilings_];
-	    tileCoding_.getTiles(tiles, state);
+	    tileCoding_.getTiles(curTiles_, state);
 	    
 	    // initialise a container for the sum of the q values
 	    // and sum them
-	    double[] qValues     = new double[numActions],
-	    	     tileQValues;
 	    for( int k=0; k<numActions; k++ )
-	        qValues[k] = 0;
+	        qValues_[k] = 0;
 
 	    for( int j=0; j<nTilings_; j++ ) {
-	        tileQValues = qTable_.get(tiles[j]);
+	        int offset = curTiles_[j] * numActions;
 	        for( int k=0; k<numActions; k++ )
-	            qValues[k] += tileQValues[k];
+	            qValues_[k] += weights_[offset + k];
 	    }
 		    
 	
 	    // select the best action
 	    if( evaluationMode )
-            return Argmax.select(qValues);
+            return Argmax.select(qValues_);
 	    else
-	        return eGreedy_.select(qValues);
+	        return eGreedy_.select(qValues_);
 	}
 	
 	/**
@@ -87,11 +93,23 @@ public class TileCodeLearning<S extends TileCodingState<S>>
 	}
 	
 	
+	/**
+	 * Allocates the weights the first time the number of actions is given,
+	 * or when it changes, otherwise the learnt weights are kept.
+	 */
 	@Override
 	public void inform(int nActions)
 	{
 	    super.inform(nActions);
-		qTable_.inform(nActions);
+
+	    int size = tileCoding_.getNoTiles() * nActions;
+	    if( weights_.length != size ) {
+	        weights_ = new double[size];
+	        for( int i=0; i<size; i++ )
+	            weights_[i] = DiscreteQTable.INITIAL_VALUE;
+
+	        qValues_     = new double[nActions];
+	    }
 	}
 
 	/* (non-Javadoc)
@@ -104,32 +122,32 @@ public class TileCodeLearning<S extends TileCodingState<S>>
 	{
 	    if( !evaluationMode ) {
             // Get all the tiles for the current state
-            Tile[] curStates = new Tile[nTilings_];
-            tileCoding_.getTiles(curStates, curState);
+            tileCoding_.getTiles(curTiles_, curState);
             
             // get the current Q values
-            double newQ[] = new double[nTilings_];
-            
-            
     	    if( newState != null ) {
         	    // Get all the tiles of the new states
-        	    Tile[] newStates = new Tile[nTilings_];
-        	    tileCoding_.getTiles(newStates, newState);
+        	    tileCoding_.getTiles(newTiles_, newState);
         	    
         	    for( int i=0; i<nTilings_; i++ ) {
-                    // Get the new states' Q values
-                    double[] newQValues = qTable_.get(newStates[i]);
-                             newQ[i]    = newQValues[eGreedy_.select(newQValues)];
+                    // Get the new states' Q values straight from the weights
+                    int offset = newTiles_[i] * numActions;
+                    newQ_[i] = weights_[offset + eGreedy_.select(weights_, offset, numActions)];
         	    }
     	    } else {
     	        for( int i=0; i<nTilings_; i++ )
-    	            newQ[i] = 0.0;
+    	            newQ_[i] = 0.0;
     	    }
     	    
     	    for( int i=0; i<nTilings_; i++ ) {
-    	        double curQ  = qTable_.get(curStates[i])[action];
-    	        double val   = curQ + (( alpha_ * (reward + (gamma_*newQ[i]) - curQ)) / (double)nTilings_);
-    	        qTable_.put(curStates[i], action, val);   // commit the update to the Q table
+    	        int    index = curTiles_[i] * numActions + action;
+    	        double curQ  = weights_[index];
+    	        double val   = curQ + (( alpha_ * (reward + (gamma_*newQ_[i]) - curQ)) / (double)nTilings_);
+
+    	        // Normalise the value and commit the update to the weights
+    	        if( val < DiscreteQTable.MIN_VALUE )  val = DiscreteQTable.MIN_VALUE;
+    	        if( val > DiscreteQTable.MAX_VALUE )  val = DiscreteQTable.MAX_VALUE;
+    	        weights_[index] = val;
     	    }
 	    }
 	}
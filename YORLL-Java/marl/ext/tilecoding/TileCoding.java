@@ -1,7 +1,8 @@
 package marl.ext.tilecoding;
 
+import java.util.Random;
+
 import marl.utility.Config;
-import marl.utility.Rand;
 
 /**
  * Taken from: http://webdocs.cs.ualberta.ca/~sutton/tiles2.html, 23/03/2012
@@ -39,6 +40,7 @@ public class TileCoding
 					 memorySize_;
 	private double[] minimumValues_,
 					 tileSpacings_;
+	private Context  context_;
 	
 	
 	public TileCoding(Config cfg, TileCodingEnvironment<?, ?> env)
@@ -48,6 +50,9 @@ public class TileCoding
 	    nFeatures_     = env.getNumFeatures();
 	    nTilings_      = cfg.getInt("num_tilings");
 	    memorySize_    = (int)Math.pow(nTiles_, nFeatures_) * nTilings_;
+	    // optionally hash the tiles into a smaller, fixed amount of memory
+	    if( cfg.hasParam("tile_memory_size") && cfg.getInt("tile_memory_size") > 0 )
+	        memorySize_ = cfg.getInt("tile_memory_size");
 
         minimumValues_ = new double[nFeatures_];
 	    tileSpacings_  = new double[nFeatures_];
@@ -56,136 +61,208 @@ public class TileCoding
 	        double range             = env.getMaximumValue(i) - minimumValues_[i];
 	        tileSpacings_[i] = range / (double)nTiles_;
 	    }
+	    context_ = newContext();
 	}
 
     /**
      * @return The number of tiles being learnt about
      */
 	public int getNoTiles() {
-	    return (int)(Math.pow(nTiles_, nFeatures_)) * nTilings_;
+	    return memorySize_;
 	}
 	
 	
 	public void getTiles(Tile[] tiles, TileCodingState<?> state)
 	{
-	    // collect up the features into an array
-	    int[]    hashes = new int[nTilings_];
-	    double[] doubles = prepareFeatures(state);
-
 	    // get the tile hashes
-	    GetTiles(hashes, nTilings_, memorySize_, doubles, nFeatures_);
-
-	    // create the tiles
-	    for( int i=0; i<nTilings_; i++ )
-	        tiles[i] = new Tile(hashes[i]);
+	    int[] hashes = context_.tiles;
+	    getTiles(hashes, 0, state, context_);
+
+	    // create the tiles, reusing the ones already given
+	    for( int i=0; i<nTilings_; i++ ) {
+	        if( tiles[i] == null )
+	            tiles[i] = new Tile(hashes[i]);
+	        else
+	            tiles[i].value_ = hashes[i];
+	    }
 	}
 	public void getTiles(int[] tiles, TileCodingState<?> state)
+	{
+	    getTiles(tiles, 0, state, context_);
+	}
+	/**
+	 * Computes the tiles of the given state into the given array, starting at
+	 * the given offset, using the scratch space of the given context.
+	 * @param tiles   The array to hold the returned tile indices
+	 * @param offset  The index of the first tile in the array
+	 * @param state   The state
+	 * @param context The scratch space to use
+	 */
+	public void getTiles(int[] tiles, int offset, TileCodingState<?> state, Context context)
 	{
 	    // collect up the features into an array
-	    double[] doubles = prepareFeatures(state);
+	    prepareFeatures(state, context.doubles);
 
 	    // get the tile hashes
-	    GetTiles(tiles, nTilings_, memorySize_, doubles, nFeatures_);
+	    computeTiles(tiles, offset, context);
+	}
+	/**
+	 * Computes the tiles of a batch of states into one array, the tiles of
+	 * state <code>s</code> being stored from index
+	 * <code>offset + s * num_tilings</code>.
+	 * @param tiles     The array to hold the returned tile indices, at least
+	 *                  <code>offset + numStates * num_tilings</code> long
+	 * @param offset    The index of the first tile in the array
+	 * @param states    The states
+	 * @param numStates The number of states to compute the tiles of
+	 * @param context   The scratch space to use
+	 */
+	public void getTiles(int[] tiles, int offset, TileCodingState<?>[] states, int numStates, Context context)
+	{
+	    for( int s=0; s<numStates; s++ )
+	        getTiles(tiles, offset + s * nTilings_, states[s], context);
 	}
-	protected double[] prepareFeatures(TileCodingState<?> state)
+	protected void prepareFeatures(TileCodingState<?> state, double[] doubles)
 	{
-	    double[] doubles = new double[nFeatures_];
 	    for( int i=0; i<nFeatures_; i++ )
 	        // ( (value - min) / (max - min) ) * ( (max - min) / spacing)
 	        // === (value - min) / spacing
 	        doubles[i] = (state.getFeature(i) - minimumValues_[i]) / tileSpacings_[i];
-
-	    return doubles;
 	}
 	
+	/**
+	 * Creates a new scratch space for computing tiles. A context must only be
+	 * used by one thread at a time; the methods without a context share the
+	 * one belonging to this tile coding.
+	 */
+	public Context newContext()
+	{
+	    return new Context(nFeatures_, nTilings_);
+	}
+	
+	
+	/**
+	 * The reusable scratch space needed while computing the tiles of a state,
+	 * so that no arrays have to be allocated per call.
+	 */
+	public static final class Context
+	{
+	    private final double[] doubles;    // the scaled features
+	    private final int[]    qstate,     // the quantized features
+	                           remainder,  // qstate - base, modulo num_tilings
+	                           step,       // the displacement of the base per tiling, modulo num_tilings
+	                           tiles;      // the tiles of the Tile overload
+	    
+	    private Context(int nFeatures, int nTilings)
+	    {
+	        doubles   = new double[nFeatures];
+	        qstate    = new int[nFeatures];
+	        remainder = new int[nFeatures];
+	        step      = new int[nFeatures];
+	        tiles     = new int[nTilings];
+	        
+	        for( int i=0; i<nFeatures; i++ )
+	            step[i] = (1 + (2 * i)) % nTilings;
+	    }
+	}
 	
 	
 	
 
 
-    private int mod(int n, int k) {return (n >= 0) ? n%k : k-1-((-n-1)%k);}
-    
     /**
-     * @param int tiles[]       provided array contains returned tiles (tile indices) 
-     * @param int num_tilings   number of tile indices to be returned
-     * @param int memory_size   total number of possible tiles
-     * @param double doubles[]    array of doubling point variables
-     * @param int num_doubles    number of doubling point variables
-     * @param int ints[]        array of integer variables 
-     * @param int num_ints      number of integer variables
+     * The tiles are computed as in GetTiles with no integer variables, but
+     * the displacement of each tiling is tracked incrementally per dimension
+     * and the hash table is indexed with masks, leaving the inner loops free
+     * of divisions and calls.
+     * 
+     * @param tiles   provided array contains returned tiles (tile indices)
+     * @param offset  the index of the first tile in the array
+     * @param context the scratch space holding the scaled features
      */
-    private void GetTiles(
-        int tiles[],
-        int num_tilings,
-        int memory_size,
-        double doubles[],
-        int num_doubles,
-        int ints[],
-        int num_ints)
+    private void computeTiles(int[] tiles, int offset, Context context)
     {
-        int i,j;
-        int[] qstate = new int[MAX_NUM_VARS];
-        int[] base   = new int[MAX_NUM_VARS];
-        int[] coordinates   = new int[MAX_NUM_VARS * 2 + 1];   /* one interval number per relevant dimension */
-        int num_coordinates = num_doubles + num_ints + 1;
-
-        for (i = 0; i<num_ints; i++)
-            coordinates[num_doubles+1+i] = ints[i];
+        final double[] doubles   = context.doubles;
+        final int[]    qstate    = context.qstate,
+                       remainder = context.remainder,
+                       step      = context.step;
+        final int      nt        = nTilings_,
+                       nf        = nFeatures_;
+        final long     m         = memorySize_;
+        final long[]   seq       = rndseq;
+        
+        if( first_call )
+            initialiseRandomSequence();
 
         /* quantize state to integers (henceforth, tile widths == num_tilings) */
-        for (i = 0; i < num_doubles; i++)
-        {
-            qstate[i] = (int) Math.floor(doubles[i] * num_tilings);
-            base[i] = 0;
+        for( int i=0; i<nf; i++ ) {
+            qstate[i]    = (int) Math.floor(doubles[i] * nt);
+            remainder[i] = Math.floorMod(qstate[i], nt);
         }
 
-        /*compute the tile numbers */
-        for (j = 0; j < num_tilings; j++)
-        {
+        /* compute the tile numbers */
+        for( int j=0; j<nt; j++ ) {
+            long sum = 0;
 
             /* loop over each relevant dimension */
-            for (i = 0; i < num_doubles; i++)
-            {
-
-                /* find coordinates of activated tile in tiling space */
-                coordinates[i] = qstate[i] - mod(qstate[i]-base[i],num_tilings);
+            for( int i=0; i<nf; i++ ) {
+                /* find coordinates of activated tile in tiling space and hash them */
+                sum += seq[(qstate[i] - remainder[i] + (449 * i)) & (RNDSEQ_SIZE - 1)];
 
                 /* compute displacement of next tiling in quantized space */
-                base[i] += 1 + (2 * i);
+                int r = remainder[i] - step[i];
+                remainder[i] = r < 0 ? r + nt : r;
             }
-            /* add additional indices for tiling and hashing_set so they hash differently */
-            coordinates[i] = j;
+            /* add additional index for the tiling so they hash differently */
+            sum += seq[(j + (449 * nf)) & (RNDSEQ_SIZE - 1)];
 
-            tiles[j] = hash_UNH(coordinates, num_coordinates, memory_size, 449);
+            tiles[offset + j] = (int) Math.floorMod(sum, m);
         }
-        return;
     }
 
 
 
+    private int mod(int n, int k) {return (n >= 0) ? n%k : k-1-((-n-1)%k);}
+    
+    private static final int RNDSEQ_SIZE = 2048;
+    private static final long RNDSEQ_SEED = 0x5eed71e5L;
+    static long[]  rndseq     = new long[RNDSEQ_SIZE];
+    static volatile boolean first_call =  true;
+    
+    /**
+     * Initialises the table of random numbers used for hashing. The table is
+     * shared by all tile codings, so it is drawn from a fixed seed to give
+     * the same hashing whichever thread initialises it, and whatever streams
+     * the {@link marl.utility.Rand} instance has handed out before.
+     */
+    private static synchronized void initialiseRandomSequence()
+    {
+        if (first_call)
+        {
+            Random random = new Random(RNDSEQ_SEED);
+            for (int k = 0; k < RNDSEQ_SIZE; k++)
+            {
+                rndseq[k] = 0;
+                for (int i=0; i < /*(int)sizeof(int)*/rndseq.length; ++i)
+                    rndseq[k] = (rndseq[k] << 8) | ((int)(/*Math.random()*/random.nextDouble()*Integer.MAX_VALUE) & 0xff);
+            }
+            first_call = false;
+        }
+    }
+    
     /**
      *  hash_UNH
      *  Takes an array of integers and returns the corresponding tile after hashing 
      */
-    static long[]  rndseq     = new long[2048];
-    static boolean first_call =  true;
     private int hash_UNH(int[] ints, int num_ints, long m, int increment)
     {
-        int i,k;
+        int i;
         long index;
         long sum = 0;
 
         /* if first call to hashing, initialize table of random numbers */
         if (first_call)
-        {
-            for (k = 0; k < 2048; k++)
-            {
-                rndseq[k] = 0;
-                for (i=0; i < /*(int)sizeof(int)*/rndseq.length; ++i)
-                    rndseq[k] = (rndseq[k] << 8) | ((int)(/*Math.random()*/Rand.INSTANCE.nextDouble()*Integer.MAX_VALUE) & 0xff);
-            }
-            first_call = false;
-        }
+            initialiseRandomSequence();
 
         for (i = 0; i < num_ints; i++)
         {
@@ -208,11 +285,6 @@ public class TileCoding
     
     private static int[]   i_tmp_arr = new int[MAX_NUM_VARS];
 //    private static double[] f_tmp_arr = new double[MAX_NUM_VARS];
-    // no ints
-    private void GetTiles(int tiles[],int nt,int memory,double doubles[],int nf)
-    {
-        GetTiles(tiles,nt,memory,doubles,nf,i_tmp_arr,0);
-    }
 
 /*
     // one int
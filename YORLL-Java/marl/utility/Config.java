@@ -58,6 +58,17 @@ public class Config extends FileReader
         return false;
     }
 
+    /**
+     * Sets the value of the given named variable, replacing any value read
+     * from a file.
+     * @param name  The name of the variable
+     * @param value The value of the variable
+     */
+    public void setParam(String name, String value)
+    {
+        lookup.put(name, value);
+    }
+
     /**
      * Returns the value of the given named variable as a string.
      * @param name The name of the variable
@@ -2,11 +2,19 @@ package marl.utility;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * The singleton Random object, so that all parts of the system can have access
  * to the same Random object.
  * 
+ * For parallel experiments the singleton also hands out independent streams,
+ * derived deterministically from a root seed and a key (such as the id of an
+ * agent, an environment or a worker). A stream can be bound to the current
+ * thread, after which all the methods of the singleton on that thread use it
+ * instead of the shared Random object. Threads then no longer contend on the
+ * shared seed and the results do not depend on how the threads interleave.
+ * 
  * @author Pete Scopes
  * @version 06/09/2012
  */
@@ -14,31 +22,149 @@ public enum Rand {
 	INSTANCE;
 	
 	
+	/**
+	 * A stream of random numbers backed by a {@link SplittableRandom}. It can
+	 * be used wherever a {@link Random} is expected but, unlike Random, it is
+	 * not thread safe and must only be used by one thread at a time.
+	 */
+	public static final class Stream extends Random {
+		private static final long serialVersionUID = 1L;
+		
+		private SplittableRandom random_;
+		
+		private Stream(SplittableRandom random) {
+			super(0L);
+			random_ = random;
+		}
+		
+		/**
+		 * @return A new stream that is independent of this one
+		 */
+		public Stream split() {
+			return new Stream(random_.split());
+		}
+		
+		@Override
+		public void setSeed(long seed) {
+			// called by the Random constructor before the stream exists
+			if( random_ != null )
+				random_ = new SplittableRandom(seed);
+		}
+		@Override
+		protected int next(int bits) {
+			return (int)(random_.nextLong() >>> (64 - bits));
+		}
+		@Override
+		public int nextInt() {
+			return random_.nextInt();
+		}
+		@Override
+		public int nextInt(int bound) {
+			return random_.nextInt(bound);
+		}
+		@Override
+		public long nextLong() {
+			return random_.nextLong();
+		}
+		@Override
+		public double nextDouble() {
+			return random_.nextDouble();
+		}
+		@Override
+		public boolean nextBoolean() {
+			return random_.nextBoolean();
+		}
+	}
+	
+	
 	private Random random = new Random();
+	private long   rootSeed = new Random().nextLong();
+	private final ThreadLocal<Random> bound = new ThreadLocal<Random>();
+	
+	/**
+	 * @return The Random object bound to the current thread, otherwise the
+	 *         shared Random object
+	 */
+	public Random getRandom()
+	{
+		Random stream = bound.get();
+		return stream != null ? stream : random;
+	}
+	/**
+	 * Seeds the shared Random object and sets the root seed the streams are
+	 * derived from.
+	 * @param seed The seed
+	 */
 	public void setSeed(long seed)
 	{
 		random.setSeed(seed);
+		rootSeed = seed;
+	}
+	
+	/**
+	 * Creates the stream for the given key. The same root seed and key always
+	 * give the same stream, and different keys give independent streams.
+	 * @param key The key, e.g. the id of an agent, environment or worker
+	 * @return A new stream
+	 */
+	public Stream stream(long key)
+	{
+		return new Stream(new SplittableRandom(mix(rootSeed + GOLDEN_GAMMA * (key + 1))));
+	}
+	/**
+	 * Binds the stream for the given key to the current thread, so that all
+	 * the methods of this object use it when called from this thread.
+	 * @param key The key of the stream
+	 * @return The bound stream
+	 */
+	public Stream bind(long key)
+	{
+		Stream stream = stream(key);
+		bound.set(stream);
+		return stream;
+	}
+	/**
+	 * Removes the stream bound to the current thread, if any, so that the
+	 * shared Random object is used again.
+	 */
+	public void unbind()
+	{
+		bound.remove();
 	}
+	
 	public int nextInt()
 	{
-		return random.nextInt();
+		return getRandom().nextInt();
 	}
 	public int nextInt(int max)
 	{
-		return random.nextInt(max);
+		return getRandom().nextInt(max);
 	}
 	public double nextDouble()
 	{
-		return random.nextDouble();
+		return getRandom().nextDouble();
 	}
 	public double nextDouble(double min, double max)
 	{
-		return min + (random.nextDouble() * (max - min));
+		return min + (getRandom().nextDouble() * (max - min));
 	}
 	
 	public double nextGaussian()
 	{
-	    return random.nextGaussian();
+	    return getRandom().nextGaussian();
+	}
+	
+	
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	/**
+	 * The finaliser of the 64 bit MurmurHash3, spreads the bits of the given
+	 * value so that nearby keys give unrelated seeds.
+	 */
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
 	}
     
     
@@ -51,7 +177,7 @@ public enum Rand {
      * @since 2013-01-09
      */
     public int randomIndex(double[] probabilities, double sumOfProbabilities) {
-        double selector = random.nextDouble() * sumOfProbabilities;
+        double selector = getRandom().nextDouble() * sumOfProbabilities;
         for (int i=0; i<probabilities.length; i++) {
             if (selector <= probabilities[i]) {// select the ith gaussian
                 return i;
@@ -72,5 +198,31 @@ public enum Rand {
     public int randomIndex(double[] probabilities) {
         return randomIndex(probabilities, 1.0);
     }
+    
+    /**
+     * Select a random index of the given slice of weights, with probability
+     * proportional to the weight. Nothing is allocated, which makes this
+     * suitable for selecting an action from a row of a larger table.
+     * @param weights The array holding the weights
+     * @param offset  The index of the first weight
+     * @param length  The number of weights
+     * @param sum     The sum of the weights in the slice
+     * @param random  The random source to use
+     * @return An index between 0 and length-1, relative to the offset
+     */
+    public static int randomIndex(double[] weights, int offset, int length, double sum, Random random) {
+        double selector = random.nextDouble() * sum;
+        for (int i=0; i<length; i++) {
+            selector -= weights[offset + i];
+            if (selector < 0.0)
+                return i;
+        }
+        // only reachable through rounding errors, give the last non-zero weight
+        for (int i=length-1; i>0; i--) {
+            if (weights[offset + i] > 0.0)
+                return i;
+        }
+        return 0;
+    }
 
 }